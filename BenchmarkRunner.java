@@ -0,0 +1,333 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for timing benchmarks and reading and writing their results
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs micro-benchmarks the way JMH does, measuring the average time of an operation in nanoseconds.
+ * Each benchmark is run for a number of warmup iterations, so the JIT has compiled it, and then for a number of
+ * measured iterations of a fixed length. Within an iteration the operation is called in batches, growing until a batch
+ * takes long enough that reading the clock costs nothing next to it, and every result is folded into a sink
+ * so the JIT can't remove the work as dead code.
+ * The score is the mean of the iterations with the error of its 99.9% confidence interval, as JMH reports it,
+ * and the results can be written in JMH's JSON result format and compared against an earlier run to find regressions.
+ *
+ * @author 18181
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * An operation being benchmarked.
+	 * Returning something computed from the work done stops the JIT removing the work.
+	 */
+	public interface Operation {
+		long run();
+	}
+
+	/**
+	 * The result of one benchmark with one set of parameters.
+	 */
+	public static class Result {
+		final String benchmark;
+		final LinkedHashMap<String, String> params;
+		final double[] nanosPerOp;
+		final double score;
+		final double error;
+
+		Result(String benchmark, LinkedHashMap<String, String> params, double[] nanosPerOp) {
+			this.benchmark = benchmark;
+			this.params = params;
+			this.nanosPerOp = nanosPerOp;
+
+			double sum = 0;
+			for (double value : nanosPerOp) {
+				sum += value;
+			}
+			score = sum / nanosPerOp.length;
+
+			// half the width of the 99.9% confidence interval of the mean
+			double squares = 0;
+			for (double value : nanosPerOp) {
+				squares += (value - score) * (value - score);
+			}
+			error = nanosPerOp.length < 2 ? Double.NaN
+					: studentT(nanosPerOp.length - 1) * Math.sqrt(squares / (nanosPerOp.length - 1)) / Math.sqrt(nanosPerOp.length);
+		}
+
+		/**
+		 * Returns a key naming the benchmark and its parameters, which is the same from one run to the next.
+		 * @return
+		 */
+		String key() {
+			return benchmark + params;
+		}
+	}
+
+	// the two-sided 99.9% quantile of Student's t-distribution with 1 to 30 degrees of freedom, as JMH uses for its error
+	private static final double[] T_999 = {
+		636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+		4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+		3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+
+	// a batch is grown until it takes this long
+	private static final long MIN_BATCH_NANOS = 100000;
+
+	// settings of the run
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+
+	// the results so far, in the order they were run
+	private final ArrayList<Result> results = new ArrayList<Result>();
+
+	// every operation's result is folded into this, and it is public so the JIT can't prove nothing reads it
+	public volatile long sink;
+
+	/**
+	 * Constructor sets how long each benchmark is run for.
+	 * @param warmupIterations
+	 * @param measurementIterations
+	 * @param iterationMillis length of each iteration
+	 */
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+	}
+
+	/**
+	 * Runs a benchmark, prints its score and keeps its result.
+	 * @param benchmark name of the benchmark
+	 * @param params the parameters it is run with, such as the map size
+	 * @param operation
+	 * @return
+	 */
+	public Result run(String benchmark, LinkedHashMap<String, String> params, Operation operation) {
+		for (int i = 0; i < warmupIterations; i++) {
+			iteration(operation);
+		}
+
+		double[] nanosPerOp = new double[measurementIterations];
+		for (int i = 0; i < measurementIterations; i++) {
+			nanosPerOp[i] = iteration(operation);
+		}
+
+		Result result = new Result(benchmark, params, nanosPerOp);
+		results.add(result);
+		System.out.println(format(result));
+		return result;
+	}
+
+	/**
+	 * Runs the operation for one iteration.
+	 * @param operation
+	 * @return the average time of one call in nanoseconds
+	 */
+	private double iteration(Operation operation) {
+		long folded = 0;
+		long operations = 0;
+		int batch = 1;
+
+		long start = System.nanoTime();
+		long now = start;
+		while (now - start < iterationNanos) {
+			long batchStart = now;
+			for (int i = 0; i < batch; i++) {
+				folded += operation.run();
+			}
+			operations += batch;
+			now = System.nanoTime();
+
+			// grow short batches, so the clock is read rarely
+			if (now - batchStart < MIN_BATCH_NANOS && batch < (1 << 30)) {
+				batch *= 2;
+			}
+		}
+
+		sink += folded;
+		return (double) (now - start) / operations;
+	}
+
+	/**
+	 * Accessor method returns the results so far.
+	 * @return
+	 */
+	public ArrayList<Result> getResults() {
+		return results;
+	}
+
+	/**
+	 * Formats a result as a line of the results table.
+	 * @param result
+	 * @return
+	 */
+	private static String format(Result result) {
+		StringBuilder params = new StringBuilder();
+		for (String name : result.params.keySet()) {
+			params.append(String.format(Locale.ROOT, "  %s=%-6s", name, result.params.get(name)));
+		}
+		return String.format(Locale.ROOT, "%-24s%s  %,16.1f +- %,12.1f ns/op", result.benchmark, params, result.score, result.error);
+	}
+
+	/**
+	 * Writes the results in JMH's JSON result format, one benchmark result to a line.
+	 * @param target
+	 * @throws IOException
+	 */
+	public void writeJson(File target) throws IOException {
+		PrintWriter out = new PrintWriter(target, "UTF-8");
+		try {
+			out.println("[");
+			for (int r = 0; r < results.size(); r++) {
+				Result result = results.get(r);
+
+				StringBuilder params = new StringBuilder();
+				for (String name : result.params.keySet()) {
+					if (params.length() > 0) {
+						params.append(", ");
+					}
+					params.append(jsonString(name)).append(": ").append(jsonString(result.params.get(name)));
+				}
+
+				StringBuilder rawData = new StringBuilder();
+				for (double value : result.nanosPerOp) {
+					if (rawData.length() > 0) {
+						rawData.append(", ");
+					}
+					rawData.append(String.format(Locale.ROOT, "%.3f", value));
+				}
+
+				out.printf(Locale.ROOT, "  {\"benchmark\": %s, \"mode\": \"avgt\", \"threads\": 1, \"forks\": 1, "
+						+ "\"warmupIterations\": %d, \"warmupTime\": \"%d ms\", \"measurementIterations\": %d, \"measurementTime\": \"%d ms\", "
+						+ "\"params\": {%s}, \"primaryMetric\": {\"score\": %.3f, \"scoreError\": %s, \"scoreConfidence\": [%s, %s], "
+						+ "\"scoreUnit\": \"ns/op\", \"rawData\": [[%s]]}}%s%n",
+						jsonString(result.benchmark), warmupIterations, iterationNanos / 1000000, measurementIterations, iterationNanos / 1000000,
+						params, result.score, jsonNumber(result.error), jsonNumber(result.score - result.error), jsonNumber(result.score + result.error),
+						rawData, r + 1 < results.size() ? "," : "");
+			}
+			out.println("]");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Compares the results with those of an earlier run written by writeJson, printing how much each benchmark has changed.
+	 * A benchmark has regressed if it is slower by more than the threshold, and by more than the errors of both runs together,
+	 * so noise alone isn't reported as a regression.
+	 * @param baseline
+	 * @param thresholdPercent
+	 * @return the number of benchmarks which have regressed
+	 * @throws IOException
+	 */
+	public int compare(File baseline, double thresholdPercent) throws IOException {
+		HashMap<String, double[]> before = readScores(baseline);
+
+		int regressions = 0;
+		System.out.println();
+		System.out.println("Compared with " + baseline + ":");
+		for (Result result : results) {
+			double[] old = before.get(result.key());
+			if (old == null) {
+				System.out.println(format(result) + "  (new)");
+				continue;
+			}
+
+			double change = (result.score - old[0]) / old[0] * 100;
+			double noise = (Double.isNaN(old[1]) ? 0 : old[1]) + (Double.isNaN(result.error) ? 0 : result.error);
+			boolean regressed = change > thresholdPercent && result.score - old[0] > noise;
+			if (regressed) {
+				regressions++;
+			}
+			System.out.printf(Locale.ROOT, "%s  %+7.1f%%%s%n", format(result), change, regressed ? "  REGRESSION" : "");
+		}
+		return regressions;
+	}
+
+	/**
+	 * Reads the score and error of each benchmark from a file written by writeJson.
+	 * @param file
+	 * @return score and error by benchmark key
+	 * @throws IOException
+	 */
+	private static HashMap<String, double[]> readScores(File file) throws IOException {
+		Pattern benchmark = Pattern.compile("\"benchmark\": \"([^\"]*)\"");
+		Pattern params = Pattern.compile("\"params\": \\{([^}]*)\\}");
+		Pattern param = Pattern.compile("\"([^\"]*)\": \"([^\"]*)\"");
+		Pattern score = Pattern.compile("\"score\": ([-0-9.eE]+), \"scoreError\": ([-0-9.eENa\"]+)");
+
+		HashMap<String, double[]> scores = new HashMap<String, double[]>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				Matcher name = benchmark.matcher(line);
+				Matcher values = score.matcher(line);
+				if (!name.find() || !values.find()) {
+					continue;
+				}
+
+				LinkedHashMap<String, String> lineParams = new LinkedHashMap<String, String>();
+				Matcher paramList = params.matcher(line);
+				if (paramList.find()) {
+					Matcher pair = param.matcher(paramList.group(1));
+					while (pair.find()) {
+						lineParams.put(pair.group(1), pair.group(2));
+					}
+				}
+
+				String error = values.group(2).replace("\"", "");
+				scores.put(name.group(1) + lineParams, new double[] {Double.parseDouble(values.group(1)), Double.parseDouble(error)});
+			}
+		} finally {
+			in.close();
+		}
+		return scores;
+	}
+
+	/**
+	 * Returns the t-distribution quantile for the given degrees of freedom, using the normal quantile beyond the table.
+	 * @param degreesOfFreedom
+	 * @return
+	 */
+	private static double studentT(int degreesOfFreedom) {
+		return degreesOfFreedom <= T_999.length ? T_999[degreesOfFreedom - 1] : 3.291;
+	}
+
+	/**
+	 * Writes a number for JSON, which has no NaN, so an unknown error is written as JMH writes it.
+	 * @param value
+	 * @return
+	 */
+	private static String jsonNumber(double value) {
+		return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * Quotes a JSON string.
+	 * @param text
+	 * @return
+	 */
+	private static String jsonString(String text) {
+		return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
@@ -0,0 +1,272 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for reading and writing the binary map format
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes maps in the compact binary map format (.dmap files), which loads far faster than the text format.
+ * The file starts with a header holding everything about the map which would otherwise need the whole map to be read:
+ *
+ *   "DMAP", format version (int)
+ *   name (2-byte length in bytes, then the name in standard UTF-8)
+ *   win, width, height, gold count, exit count (ints), then each exit as y and x (ints)
+ *   palette size (byte), then each tile character of the palette (byte)
+ *   padding up to a multiple of 8 bytes
+ *
+ * followed by the tiles packed 3 bits each, 21 to a long, each row starting a new long - exactly as PackedTileStorage holds them.
+ * Loading copies 64 rows of packed longs at a time straight into a PackedTileStorage, without looking at a single tile.
+ *
+ * @author 18181
+ */
+public class BinaryMapFile {
+
+	// the first bytes of every binary map file, and the version of the format written
+	private static final byte[] MAGIC = {'D', 'M', 'A', 'P'};
+	private static final int VERSION = 1;
+
+	// file extension for binary maps
+	public static final String EXTENSION = ".dmap";
+
+	// the header of the loaded map
+	private final String name;
+	private final int win;
+	private final int goldCount;
+	private final int[][] exits;
+
+	// the tiles of the loaded map
+	private final PackedTileStorage tiles;
+
+	/**
+	 * Constructor loads a binary map file.
+	 * @param mapFile
+	 * @throws IOException if the file can't be read or isn't a binary map
+	 */
+	public BinaryMapFile(File mapFile) throws IOException {
+		MappedByteBuffer file;
+		FileChannel channel = FileChannel.open(mapFile.toPath(), StandardOpenOption.READ);
+		try {
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+
+		try {
+			// header
+			for (byte b : MAGIC) {
+				if (file.get() != b) {
+					throw new IOException("not a binary map file");
+				}
+			}
+			int version = file.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported binary map version " + version);
+			}
+
+			byte[] nameBytes = new byte[file.getShort() & 0xffff];
+			file.get(nameBytes);
+			name = new String(nameBytes, StandardCharsets.UTF_8);
+			win = file.getInt();
+			int width = file.getInt();
+			int height = file.getInt();
+			goldCount = file.getInt();
+
+			exits = new int[file.getInt()][];
+			for (int i = 0; i < exits.length; i++) {
+				exits[i] = new int[] {file.getInt(), file.getInt()};
+			}
+
+			char[] palette = new char[file.get() & 0xff];
+			if (palette.length > PackedTileStorage.PALETTE_SIZE) {
+				throw new IOException("binary map has " + palette.length + " tiles in its palette");
+			}
+			for (int i = 0; i < palette.length; i++) {
+				palette[i] = (char) (file.get() & 0xff);
+			}
+
+			file.position(padded(file.position()));
+
+			// tiles, a chunk at a time
+			tiles = new PackedTileStorage(width, palette);
+			int wordsPerRow = PackedTileStorage.wordsPerRow(width);
+			LongBuffer words = file.asLongBuffer();
+			for (int y = 0; y < height; y += PackedTileStorage.ROWS_PER_CHUNK) {
+				int rows = Math.min(PackedTileStorage.ROWS_PER_CHUNK, height - y);
+				long[] chunk = new long[PackedTileStorage.ROWS_PER_CHUNK * wordsPerRow];
+				words.get(chunk, 0, rows * wordsPerRow);
+				tiles.appendPackedRows(chunk, rows);
+			}
+		} catch (RuntimeException e) {
+			// a truncated or corrupt file runs off the end of the buffer
+			throw new IOException("binary map file is corrupt", e);
+		}
+	}
+
+	/**
+	 * Returns whether a file starts like a binary map file.
+	 * @param mapFile
+	 * @return
+	 */
+	public static boolean isBinaryMap(File mapFile) {
+		byte[] start = new byte[MAGIC.length];
+		try {
+			FileInputStream in = new FileInputStream(mapFile);
+			try {
+				if (in.read(start) != start.length) {
+					return false;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (start[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a map in the binary map format.
+	 * @param map
+	 * @param target
+	 * @throws IOException if the file can't be written, or the map's name is too long
+	 */
+	public static void write(Map map, File target) throws IOException {
+		int width = map.getMapWidth();
+		int height = map.getMapHeight();
+		TileStorage storage = map.getTileStorage();
+
+		// the tiles are written packed, so pack them first unless they already are
+		PackedTileStorage packed;
+		if (storage instanceof PackedTileStorage) {
+			packed = (PackedTileStorage) storage;
+		}
+		else {
+			packed = new PackedTileStorage(width);
+			StringBuilder row = new StringBuilder(width);
+			for (int y = 0; y < height; y++) {
+				row.setLength(0);
+				for (int x = 0; x < width; x++) {
+					row.append(storage.getTile(y, x));
+				}
+				packed.appendRow(row);
+			}
+		}
+		char[] palette = packed.getPalette();
+		int[][] exits = map.getExits();
+
+		// the name is written as standard UTF-8 rather than with writeUTF, whose modified UTF-8 the loader wouldn't decode
+		byte[] name = map.getMapName().getBytes(StandardCharsets.UTF_8);
+		if (name.length > 0xffff) {
+			throw new IOException("map name is too long for a binary map");
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 65536));
+		try {
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeShort(name.length);
+			out.write(name);
+			out.writeInt(map.getWin());
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(map.getGoldCount());
+			out.writeInt(exits.length);
+			for (int[] exit : exits) {
+				out.writeInt(exit[0]);
+				out.writeInt(exit[1]);
+			}
+			out.writeByte(palette.length);
+			for (char tile : palette) {
+				out.writeByte(tile);
+			}
+
+			// pad so that the tiles start on a whole long
+			while (out.size() != padded(out.size())) {
+				out.writeByte(0);
+			}
+
+			long[] row = new long[PackedTileStorage.wordsPerRow(width)];
+			for (int y = 0; y < height; y++) {
+				packed.copyPackedRow(y, row, 0);
+				for (long word : row) {
+					out.writeLong(word);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Rounds a position up to a multiple of 8 bytes.
+	 * @param position
+	 * @return
+	 */
+	private static int padded(int position) {
+		return (position + 7) & ~7;
+	}
+
+	/**
+	 * Accessor method returns the map name.
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Accessor method returns the amount of gold needed to win.
+	 * @return
+	 */
+	public int getWin() {
+		return win;
+	}
+
+	/**
+	 * Accessor method returns the number of gold tiles on the map when it was written.
+	 * @return
+	 */
+	public int getGoldCount() {
+		return goldCount;
+	}
+
+	/**
+	 * Accessor method returns the position [y,x] of every exit tile.
+	 * @return
+	 */
+	public int[][] getExits() {
+		return exits;
+	}
+
+	/**
+	 * Accessor method returns the map's tiles.
+	 * @return
+	 */
+	public PackedTileStorage getTiles() {
+		return tiles;
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for building frames into byte arrays and reading them back from a stream or buffer
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The compact binary form of the game protocol, which a client can switch to instead of the text protocol.
+ * A client asks for it by sending the text command "HELLO BINARY". A server which supports it replies
+ * with the line "BINARY" and from then on both sides send only binary frames. A server which doesn't
+ * treats the command as an ordinary HELLO, so the client stays with the text protocol.
+ * The client must wait for the reply before sending anything else, as the server switches straight after it.
+ *
+ * Every frame starts with a 1-byte opcode. Commands from the client are a single byte,
+ * except MOVE which is followed by the direction as one ASCII character,
+ * and ROUTE which is followed by the row and column of the tile to go to, each as two bytes, highest first.
+ * Replies carry the look window as 25 bytes, row by row, numbers as zig-zag varints,
+ * so small gold counts take a single byte, and the direction NAV or ROUTE suggests as one ASCII character.
+ *
+ * @author 18181
+ */
+public final class BinaryProtocol {
+
+	// text command a client sends to ask for the binary protocol, and the server's reply agreeing to it
+	public static final String NEGOTIATE = "HELLO BINARY";
+	public static final String ACCEPTED = "BINARY";
+
+	// commands sent by the client
+	public static final int HELLO = 0x01;
+	public static final int MOVE = 0x02;
+	public static final int PICKUP = 0x03;
+	public static final int LOOK = 0x04;
+	public static final int SUBSCRIBE = 0x05;
+	public static final int WIN = 0x06;
+	public static final int ID = 0x07;
+	public static final int MAP = 0x08;
+	public static final int QUIT = 0x09;
+	public static final int NAV = 0x0A;
+	public static final int ROUTE = 0x0B;
+
+	// replies sent by the server
+	public static final int SUCCESS = 0x81;
+	public static final int FAIL = 0x82;
+	public static final int LOOK_REPLY = 0x83;
+	public static final int GOLD_REPLY = 0x84;
+	public static final int WIN_REPLY = 0x85;
+	public static final int ID_REPLY = 0x86;
+	public static final int SUBSCRIBED = 0x87;
+	public static final int WON = 0x88;
+	public static final int TEXT = 0x89;
+	public static final int NAV_REPLY = 0x8A;
+	public static final int ROUTE_REPLY = 0x8B;
+
+	// the direction NAV suggests when a cooperative server wants the player to wait where they are for a tick
+	public static final char HOLD = 'H';
+
+	// number of tiles in a look window
+	public static final int LOOK_WINDOW_SIZE = 25;
+
+	private BinaryProtocol() {
+	}
+
+	/**
+	 * Returns the length of a command frame starting with the given opcode, including the opcode itself.
+	 * Unknown opcodes are treated as a single byte so the server can reply FAIL and carry on.
+	 * The bytes after the opcode are read as one number, highest first, e.g. the row and column of a ROUTE.
+	 * @param opcode
+	 * @return
+	 */
+	public static int commandLength(int opcode) {
+		switch (opcode) {
+			case MOVE:
+				return 2;
+			case ROUTE:
+				return 5;
+			default:
+				return 1;
+		}
+	}
+
+	/**
+	 * Turns a text command into the equivalent binary frame.
+	 * @param command a command as it would be sent in the text protocol, e.g. "MOVE N"
+	 * @return the frame, or null if the command has no binary form
+	 */
+	public static byte[] encodeCommand(String command) {
+		String trimmed = command.trim().toUpperCase();
+		int space = trimmed.indexOf(' ');
+		String name = space < 0 ? trimmed : trimmed.substring(0, space);
+
+		switch (name) {
+			case "HELLO":
+				return new byte[] {HELLO};
+			case "MOVE":
+				// a move needs exactly one direction character after the command
+				if (space < 0 || trimmed.length() != space + 2) {
+					return null;
+				}
+				return new byte[] {MOVE, (byte) trimmed.charAt(space + 1)};
+			case "PICKUP":
+				return new byte[] {PICKUP};
+			case "LOOK":
+				return new byte[] {LOOK};
+			case "SUBSCRIBE":
+				return new byte[] {SUBSCRIBE};
+			case "WIN":
+				return new byte[] {WIN};
+			case "ID":
+				return new byte[] {ID};
+			case "MAP":
+				return new byte[] {MAP};
+			case "QUIT":
+				return new byte[] {QUIT};
+			case "NAV":
+				return new byte[] {NAV};
+			case "ROUTE":
+				// a route needs the row and column of the tile to go to, each of which must fit in two bytes
+				String[] position = trimmed.substring(space < 0 ? trimmed.length() : space + 1).trim().split(" +");
+				try {
+					if (position.length != 2) {
+						return null;
+					}
+					int y = Integer.parseInt(position[0]);
+					int x = Integer.parseInt(position[1]);
+					if (y < 0 || x < 0 || y > 0xffff || x > 0xffff) {
+						return null;
+					}
+					return new byte[] {ROUTE, (byte) (y >> 8), (byte) y, (byte) (x >> 8), (byte) x};
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Builds a reply frame which is just an opcode.
+	 * @param opcode
+	 * @return
+	 */
+	public static byte[] reply(int opcode) {
+		return new byte[] {(byte) opcode};
+	}
+
+	/**
+	 * Builds a reply frame carrying a number.
+	 * @param opcode
+	 * @param value
+	 * @return
+	 */
+	public static byte[] number(int opcode, int value) {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(6);
+		frame.write(opcode);
+		writeVarint(frame, value);
+		return frame.toByteArray();
+	}
+
+	/**
+	 * Builds a reply frame carrying the direction of the next step towards a player's goal.
+	 * @param direction one of N, E, S or W, or HOLD
+	 * @return
+	 */
+	public static byte[] navigation(char direction) {
+		return new byte[] {(byte) NAV_REPLY, (byte) direction};
+	}
+
+	/**
+	 * Builds a reply frame carrying the direction of the first step of a route, and the number of steps in it.
+	 * @param direction one of N, E, S or W
+	 * @param steps
+	 * @return
+	 */
+	public static byte[] route(char direction, int steps) {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(7);
+		frame.write(ROUTE_REPLY);
+		frame.write(direction);
+		writeVarint(frame, steps);
+		return frame.toByteArray();
+	}
+
+	/**
+	 * Builds a reply frame carrying a look window.
+	 * @param tiles the 25 tiles of the window, row by row
+	 * @return
+	 */
+	public static byte[] look(char[] tiles) {
+		byte[] frame = new byte[1 + LOOK_WINDOW_SIZE];
+		frame[0] = (byte) LOOK_REPLY;
+		for (int i = 0; i < LOOK_WINDOW_SIZE; i++) {
+			frame[i + 1] = (byte) tiles[i];
+		}
+		return frame;
+	}
+
+	/**
+	 * Builds a reply frame carrying a message which has no binary form of its own, such as the whole map.
+	 * @param text
+	 * @return
+	 */
+	public static byte[] text(String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(bytes.length + 6);
+		frame.write(TEXT);
+		writeVarint(frame, bytes.length);
+		frame.write(bytes, 0, bytes.length);
+		return frame.toByteArray();
+	}
+
+	/**
+	 * Writes a number as a zig-zag varint - seven bits per byte, lowest first, with the top bit set on every byte but the last.
+	 * Zig-zag encoding keeps small negative numbers short too.
+	 * @param out
+	 * @param value
+	 */
+	public static void writeVarint(ByteArrayOutputStream out, int value) {
+		int bits = (value << 1) ^ (value >> 31);
+		while ((bits & ~0x7f) != 0) {
+			out.write((bits & 0x7f) | 0x80);
+			bits >>>= 7;
+		}
+		out.write(bits);
+	}
+
+	/**
+	 * Reads a number written by writeVarint.
+	 * @param in
+	 * @return
+	 * @throws IOException if the stream ends part way through the number or the number is too long
+	 */
+	public static int readVarint(InputStream in) throws IOException {
+		int bits = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			bits |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return (bits >>> 1) ^ -(bits & 1);
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads a number written by writeVarint from a buffer, for readers which can't block waiting for the rest of it.
+	 * @param in
+	 * @return
+	 * @throws java.nio.BufferUnderflowException if the buffer ends part way through the number
+	 * @throws IOException if the number is too long
+	 */
+	public static int readVarint(ByteBuffer in) throws IOException {
+		int bits = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.get();
+			bits |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return (bits >>> 1) ^ -(bits & 1);
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads the text carried by a TEXT frame, after its opcode.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static String readText(InputStream in) throws IOException {
+		int length = readVarint(in);
+		byte[] bytes = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int count = in.read(bytes, read, length - read);
+			if (count < 0) {
+				throw new EOFException();
+			}
+			read += count;
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for choosing directions at random
+import java.util.Random;
+
+/**
+ * Decides where a bot moves next from what it can see in its look window.
+ * A bot heads for the nearest gold it can see while it still needs gold, then for the nearest exit,
+ * and otherwise wanders in a random direction which isn't blocked.
+ * The brain keeps no state of its own, so a single brain can be shared by any number of bots.
+ * A bot can also bring its own ExploredWorld, so the brain can plan beyond the look window across everything the bot has seen.
+ * When the brain isn't playing to win, bots never step onto an exit, so a game used for load testing never ends.
+ *
+ * @author 18181
+ */
+public class BotBrain {
+
+	// size of the look window, and the position of the bot in the middle of it
+	private static final int WINDOW = 5;
+	private static final int CENTRE = (WINDOW * WINDOW) / 2;
+
+	// the directions a bot can move in, and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// whether bots head for an exit once they have enough gold
+	private final boolean playToWin;
+
+	/**
+	 * Constructor creates a brain which either plays the game to win or wanders forever.
+	 * @param playToWin
+	 */
+	public BotBrain(boolean playToWin) {
+		this.playToWin = playToWin;
+	}
+
+	/**
+	 * Returns whether bots head for an exit once they have enough gold.
+	 * @return
+	 */
+	public boolean isPlayingToWin() {
+		return playToWin;
+	}
+
+	/**
+	 * Returns the direction to move next.
+	 * @param look the 25 tiles of the look window, row by row, with the bot in the middle
+	 * @param needGold whether the bot still needs more gold to win
+	 * @param random
+	 * @return one of N, E, S or W
+	 */
+	public char chooseDirection(char[] look, boolean needGold, Random random) {
+		char target = needGold ? 'G' : (playToWin ? 'E' : 0);
+		if (target != 0) {
+			int step = firstStepTowards(look, target);
+			if (step >= 0) {
+				return DIRECTIONS[step];
+			}
+		}
+
+		// wander, trying the directions from a random starting point until one isn't blocked
+		int start = random.nextInt(DIRECTIONS.length);
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			int d = (start + i) % DIRECTIONS.length;
+			int neighbour = neighbour(CENTRE, d);
+			if (neighbour >= 0 && isPassable(look[neighbour])) {
+				return DIRECTIONS[d];
+			}
+		}
+		return DIRECTIONS[start];
+	}
+
+	/**
+	 * Returns the direction to move next for a bot which remembers what it has explored,
+	 * heading for gold, exits and unexplored ground beyond its look window.
+	 * @param world what the bot has seen so far
+	 * @param needGold whether the bot still needs more gold to win
+	 * @param random
+	 * @return one of N, E, S or W
+	 */
+	public char chooseDirection(ExploredWorld world, boolean needGold, Random random) {
+		return world.nextDirection(needGold, playToWin, random);
+	}
+
+	/**
+	 * Finds the nearest tile of a type in the look window with a breadth first search out from the bot,
+	 * and returns the first step of the shortest path to it.
+	 * @param look
+	 * @param target
+	 * @return the index of the direction of the first step, or -1 if no tile of that type can be reached
+	 */
+	private int firstStepTowards(char[] look, char target) {
+		// the queue of tiles to visit, and the first step taken to reach each tile (-1 until reached)
+		int[] queue = new int[WINDOW * WINDOW];
+		int[] firstStep = new int[WINDOW * WINDOW];
+		for (int i = 0; i < firstStep.length; i++) {
+			firstStep[i] = -1;
+		}
+
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = CENTRE;
+		firstStep[CENTRE] = DIRECTIONS.length;
+
+		while (head < tail) {
+			int tile = queue[head++];
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int next = neighbour(tile, d);
+				if (next < 0 || firstStep[next] >= 0) {
+					continue;
+				}
+
+				// the first step is the direction out of the centre, which every later tile inherits
+				firstStep[next] = tile == CENTRE ? d : firstStep[tile];
+				if (look[next] == target) {
+					return firstStep[next];
+				}
+				if (isPassable(look[next])) {
+					queue[tail++] = next;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the tile next to a tile in the look window, or -1 if it is outside the window.
+	 * @param tile
+	 * @param direction
+	 * @return
+	 */
+	private static int neighbour(int tile, int direction) {
+		int row = tile / WINDOW + ROW_STEP[direction];
+		int column = tile % WINDOW + COLUMN_STEP[direction];
+		if (row < 0 || row >= WINDOW || column < 0 || column >= WINDOW) {
+			return -1;
+		}
+		return row * WINDOW + column;
+	}
+
+	/**
+	 * Returns whether a bot may walk onto a tile: not a wall, outside the map, another player,
+	 * or an exit when not playing to win.
+	 * @param tile
+	 * @return
+	 */
+	private boolean isPassable(char tile) {
+		return tile != '#' && tile != 'X' && tile != 'P' && (playToWin || tile != 'E');
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for running many bots from one event loop
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays any number of HeadlessBots against a server from a single thread, for load testing the server.
+ * Every bot's connection is registered with one selector. The event loop reads the replies of whichever bots
+ * have some, and starts the next step of each bot whose think time is up, waiting in the selector until then.
+ * With a think time of zero, a bot starts its next step as soon as its last one has been answered.
+ * Usage: java BotFleet [host] [port] [bots] [think time ms] [seconds] [win|wander] [nav]
+ * Bots wander without ever leaving the dungeon, unless the sixth argument is "win".
+ * With "nav", bots ask the server which way to go with NAV before each move, rather than planning for themselves,
+ * while they need gold or are playing to win.
+ * With 0 seconds the fleet stops as soon as every bot has its answer to HELLO and its first look window,
+ * printing how long that took from the JVM starting, which is how StartupBenchmark times a bot's startup.
+ *
+ * @author 18181
+ */
+public class BotFleet implements Runnable {
+
+	// settings used for any argument not given
+	private static final String DEFAULT_HOST = "localhost";
+	private static final int DEFAULT_PORT = 40004;
+	private static final int DEFAULT_BOTS = 100;
+	private static final long DEFAULT_THINK_MILLIS = 100;
+	private static final int DEFAULT_SECONDS = 30;
+
+	// the brain shared by every bot, and whether bots ask the server which way to go
+	final BotBrain brain;
+	final boolean navigate;
+
+	// average time between one step being answered and the next starting
+	private final long thinkNanos;
+
+	// the selector every bot's connection is registered with, and the bots waiting for their next step, soonest first
+	private final Selector selector;
+	private final PriorityQueue<HeadlessBot> thinking = new PriorityQueue<HeadlessBot>(new Comparator<HeadlessBot>() {
+		public int compare(HeadlessBot a, HeadlessBot b) {
+			return Long.compare(a.nextStepAt, b.nextStepAt);
+		}
+	});
+
+	// random numbers for think times and for seeding each bot
+	private final Random random = new Random();
+
+	// bots still connected, and whether the event loop should keep running
+	private int liveBots = 0;
+	private volatile boolean running = true;
+
+	// counts of bots started, steps completed, results received and the total time the steps took, read by the reporting thread
+	final AtomicLong started = new AtomicLong();
+	final AtomicLong steps = new AtomicLong();
+	final AtomicLong successes = new AtomicLong();
+	final AtomicLong failures = new AtomicLong();
+	final AtomicLong stepNanos = new AtomicLong();
+
+	/**
+	 * Constructor creates a fleet with no bots yet.
+	 * @param brain
+	 * @param thinkMillis average think time between steps, 0 for none
+	 * @throws IOException
+	 */
+	public BotFleet(BotBrain brain, long thinkMillis) throws IOException {
+		this(brain, thinkMillis, false);
+	}
+
+	/**
+	 * Constructor creates a fleet with no bots yet, whose bots may ask the server which way to go.
+	 * @param brain
+	 * @param thinkMillis average think time between steps, 0 for none
+	 * @param navigate whether bots send NAV before each move
+	 * @throws IOException
+	 */
+	public BotFleet(BotBrain brain, long thinkMillis, boolean navigate) throws IOException {
+		this.brain = brain;
+		this.navigate = navigate;
+		this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Connects a number of bots to a server. Must be called before the event loop is started.
+	 * @param address
+	 * @param count
+	 * @return the number of bots which connected
+	 */
+	public int connect(InetSocketAddress address, int count) {
+		int connected = 0;
+		for (int i = 0; i < count; i++) {
+			try {
+				// connecting blocks, but everything after that is non-blocking
+				SocketChannel channel = SocketChannel.open(address);
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+
+				HeadlessBot bot = new HeadlessBot(this, channel, new Random(random.nextLong()));
+				bot.key = channel.register(selector, SelectionKey.OP_READ, bot);
+				bot.start();
+				liveBots++;
+				connected++;
+			} catch (IOException e) {
+				System.err.println("Bot " + (i + 1) + " could not connect: " + e.getMessage());
+			}
+		}
+		return connected;
+	}
+
+	/**
+	 * Runs the event loop until every bot has finished or the fleet is stopped.
+	 */
+	public void run() {
+		while (running && liveBots > 0) {
+			try {
+				// wait for replies, but no longer than until the next bot's think time is up
+				HeadlessBot next = thinking.peek();
+				if (next == null) {
+					selector.select();
+				}
+				else {
+					long waitMillis = TimeUnit.NANOSECONDS.toMillis(next.nextStepAt - System.nanoTime());
+					if (waitMillis > 0) {
+						selector.select(waitMillis);
+					}
+					else {
+						selector.selectNow();
+					}
+				}
+			} catch (IOException e) {
+				System.err.println("Bot event loop failed: " + e.getMessage());
+				return;
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				serve(key);
+			}
+
+			// start the next step of every bot which has finished thinking
+			long now = System.nanoTime();
+			while (!thinking.isEmpty() && thinking.peek().nextStepAt <= now) {
+				HeadlessBot bot = thinking.poll();
+				try {
+					bot.step(now);
+				} catch (IOException e) {
+					bot.finish();
+				}
+			}
+		}
+
+		try {
+			selector.close();
+		} catch (IOException e) {
+			// the fleet is finished with anyway
+		}
+	}
+
+	/**
+	 * Stops the event loop, and with it every bot.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Reads from and writes to a bot's connection which the selector has reported ready.
+	 * @param key
+	 */
+	private void serve(SelectionKey key) {
+		HeadlessBot bot = (HeadlessBot) key.attachment();
+		try {
+			if (key.isValid() && key.isReadable() && !bot.read()) {
+				return;
+			}
+			if (key.isValid() && key.isWritable()) {
+				bot.flush();
+			}
+		} catch (IOException e) {
+			bot.finish();
+		}
+	}
+
+	/**
+	 * Called when a bot has its first look window, so can take its first step.
+	 * The first steps are spread over a whole think time, so the bots don't all move together.
+	 * @param bot
+	 */
+	void botStarted(HeadlessBot bot) {
+		long spread = thinkNanos > 0 ? (long) (random.nextDouble() * thinkNanos) : 0;
+		bot.nextStepAt = System.nanoTime() + spread;
+		thinking.add(bot);
+		started.incrementAndGet();
+	}
+
+	/**
+	 * Called when both commands of a bot's step have been answered.
+	 * The bot thinks for a random time averaging the think time, or steps again straight away if there is none.
+	 * @param bot
+	 * @param nanos how long the step took, from sending it to the last answer
+	 * @throws IOException
+	 */
+	void stepFinished(HeadlessBot bot, long nanos) throws IOException {
+		steps.incrementAndGet();
+		stepNanos.addAndGet(nanos);
+
+		long now = System.nanoTime();
+		if (thinkNanos == 0) {
+			bot.step(now);
+			return;
+		}
+		bot.nextStepAt = now + (long) (random.nextDouble() * 2 * thinkNanos);
+		thinking.add(bot);
+	}
+
+	/**
+	 * Called for every SUCCESS or FAIL the server sends.
+	 * @param success
+	 */
+	void resultReceived(boolean success) {
+		if (success) {
+			successes.incrementAndGet();
+		}
+		else {
+			failures.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Called when a bot stops playing.
+	 * @param bot
+	 */
+	void botFinished(HeadlessBot bot) {
+		thinking.remove(bot);
+		liveBots--;
+	}
+
+	/**
+	 * Main method connects the bots, then plays them for the given time, printing the step rate and latency every second.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String host = args.length > 0 ? args[0] : DEFAULT_HOST;
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		int bots = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BOTS;
+		long thinkMillis = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_THINK_MILLIS;
+		int seconds = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SECONDS;
+		boolean playToWin = args.length > 5 && args[5].equalsIgnoreCase("win");
+		boolean navigate = args.length > 6 && args[6].equalsIgnoreCase("nav");
+		
+		final BotFleet fleet = new BotFleet(new BotBrain(playToWin), thinkMillis, navigate);
+		int connected = fleet.connect(new InetSocketAddress(host, port), bots);
+		System.out.println(connected + " bots connected to " + host + ":" + port + ", thinking for " + thinkMillis + " ms between steps");
+		
+		Thread eventLoop = new Thread(fleet, "bot-fleet");
+		eventLoop.start();
+		
+		// only time how long the bots take to start
+		if (seconds == 0) {
+			while (fleet.started.get() < connected && eventLoop.isAlive()) {
+				Thread.sleep(1);
+			}
+			Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+			System.out.println(fleet.started.get() + " bots started " + Duration.between(jvmStart, Instant.now()).toMillis() + " ms after the JVM");
+		}
+		
+		// report once a second until the time is up or every bot has finished
+		long lastSteps = 0;
+		for (int second = 1; second <= seconds && eventLoop.isAlive(); second++) {
+			Thread.sleep(1000);
+			long totalSteps = fleet.steps.get();
+			long stepsThisSecond = totalSteps - lastSteps;
+			lastSteps = totalSteps;
+			double averageMillis = totalSteps == 0 ? 0 : fleet.stepNanos.get() / 1e6 / totalSteps;
+			System.out.printf("%3ds: %,d steps/s, %,d moves and pickups answered (%,d failed), average step %.2f ms%n",
+					second, stepsThisSecond, fleet.successes.get() + fleet.failures.get(), fleet.failures.get(), averageMillis);
+		}
+		
+		fleet.stop();
+		eventLoop.join();
+	}
+}
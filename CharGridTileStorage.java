@@ -0,0 +1,72 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for the list of rows built up whilst loading
+import java.util.ArrayList;
+
+/**
+ * Stores the tiles as one char array per row, the way maps have always been stored.
+ * Quick to read and write, but every tile takes two bytes and every row is an object of its own,
+ * so it is only suitable for small maps.
+ *
+ * @implements TileStorage, ITileLoader
+ * @author 18181
+ */
+public class CharGridTileStorage implements TileStorage, ITileLoader {
+
+	// the tiles, one array per row
+	private final ArrayList<char[]> rows = new ArrayList<char[]>();
+
+	// number of tiles in each row
+	private final int width;
+
+	/**
+	 * Constructor creates an empty storage for rows of the given width.
+	 * @param width
+	 */
+	public CharGridTileStorage(int width) {
+		this.width = width;
+	}
+
+	@Override
+	public int getHeight() {
+		return rows.size();
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public char getTile(int y, int x) {
+		return rows.get(y)[x];
+	}
+
+	@Override
+	public void setTile(int y, int x, char tile) {
+		rows.get(y)[x] = tile;
+	}
+
+	@Override
+	public void appendRow(CharSequence row) {
+		char[] tiles = new char[width];
+		for (int x = 0; x < width; x++) {
+			tiles[x] = row.charAt(x);
+		}
+		rows.add(tiles);
+	}
+
+	@Override
+	public TileStorage getTiles() {
+		return this;
+	}
+}
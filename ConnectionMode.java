@@ -0,0 +1,42 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * The ways in which the server can run the connections of its clients.
+ * The mode is chosen when the server starts.
+ *
+ * @author 18181
+ */
+public enum ConnectionMode {
+
+	// one blocking thread per connected client (the original behaviour)
+	THREAD_PER_CLIENT("Thread per client"),
+	// a small fixed pool of selector event loops shared by all clients
+	NIO("NIO event loops"),
+	// one blocking virtual thread per client, falling back to platform threads before Java 21
+	VIRTUAL_THREAD("Virtual thread per client");
+
+	// name shown to the user when choosing the mode
+	private final String displayName;
+
+	ConnectionMode(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Accessor method returns the name shown to the user.
+	 * @return
+	 */
+	@Override
+	public String toString() {
+		return displayName;
+	}
+}
@@ -0,0 +1,252 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for generating maps and playing games without a network
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Counts the moves many bots sharing a dungeon make to escape it, when each follows the server's NAV on its own
+ * and when they follow a CooperativePlanner, which plans their steps around each other's.
+ * The game is played in rounds, as a server with a tick rate plays it: in each round every bot still in the game
+ * takes one step, in the order of their player IDs. A step is a MOVE followed by a PICKUP, or only a PICKUP when the
+ * bot holds where it is, and a move into a wall or another player still counts, as a FAIL.
+ * Bots which step onto an exit with enough gold leave the game, and their tile with it.
+ * Every way of choosing moves starts the bots from the same random tiles, chosen from the seed, from which gold
+ * and an exit can both be reached. Bots which haven't escaped within the limit count as the limit.
+ *
+ * Usage: java CooperationBenchmark [--size 100] [--bots 100,300] [--win 0] [--limit 2000] [--seed 1]
+ * The map is a generated square dungeon, with its exits in the corners, which needs --win gold to escape.
+ *
+ * @author 18181
+ */
+public class CooperationBenchmark {
+
+	// every way of choosing moves, in the order they are run
+	private static final String[] STRATEGIES = {"nav", "coop"};
+
+	// the directions a bot can move in, and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// the map played, and the most rounds a game may take
+	private final File mapFile;
+	private final int limit;
+
+	/**
+	 * Constructor sets up the map to play.
+	 * @param mapFile
+	 * @param limit
+	 */
+	public CooperationBenchmark(File mapFile, int limit) {
+		this.mapFile = mapFile;
+		this.limit = limit;
+	}
+
+	/**
+	 * Plays one game with a number of bots and a way of choosing moves, until every bot has escaped, and prints what it took.
+	 * @param strategy
+	 * @param botCount
+	 * @param seed
+	 * @throws Exception if the bots couldn't be placed on the map
+	 */
+	public void play(String strategy, int botCount, long seed) throws Exception {
+		DungeonServer server = new DungeonServer(new Map(mapFile));
+		ArrayList<PlayerConnection> bots = placeAll(server, botCount, new Random(seed));
+		CooperativePlanner planner = strategy.equals("coop") ? new CooperativePlanner(server.map, server.occupancy) : null;
+
+		long moves = 0;
+		long fails = 0;
+		long holds = 0;
+		long roundsToEscape = 0;
+		long planNanos = 0;
+		long plans = 0;
+		int escaped = 0;
+		int rounds = 0;
+		boolean[] left = new boolean[bots.size()];
+		while (escaped < bots.size() && rounds < limit) {
+			for (int b = 0; b < bots.size(); b++) {
+				if (left[b]) {
+					continue;
+				}
+				PlayerConnection bot = bots.get(b);
+				boolean needGold = bot.goldRemaining() > 0;
+				int[] position = bot.getPlayerPosition();
+
+				long planStart = System.nanoTime();
+				char direction;
+				if (planner != null) {
+					DistanceField goal = needGold ? server.goldDistances : server.exitDistances;
+					direction = planner.nextDirection(bot.getPlayerID(), position[0], position[1], goal, rounds);
+				}
+				else {
+					direction = bot.navigate();
+				}
+				planNanos += System.nanoTime() - planStart;
+				plans++;
+
+				// the server has no step to suggest when the bot is on gold it hasn't picked up yet
+				int d = indexOf(direction);
+				if (d < 0) {
+					holds++;
+					bot.pickupGold();
+					continue;
+				}
+
+				// stepping onto an exit with enough gold wins, which ends the server's game, so it is counted here instead
+				moves++;
+				if (!needGold && server.map.lookAtTile(position[0] + ROW_STEP[d], position[1] + COLUMN_STEP[d]) == 'E') {
+					left[b] = true;
+					escaped++;
+					roundsToEscape += rounds + 1;
+					server.removePlayerPosition(position[0], position[1], bot.getPlayerID());
+					if (planner != null) {
+						planner.forget(bot.getPlayerID());
+					}
+					continue;
+				}
+				if (!bot.moveTo(direction)) {
+					fails++;
+				}
+				bot.pickupGold();
+			}
+			rounds++;
+		}
+
+		roundsToEscape += (long) (bots.size() - escaped) * limit;
+		System.out.printf(Locale.ROOT, "%-6s %9s %8d %10.1f %10d %10d %10d %10.1f%n", strategy, escaped + "/" + bots.size(),
+				rounds, (double) roundsToEscape / bots.size(), moves, fails, holds, planNanos / 1e3 / plans);
+	}
+
+	/**
+	 * Returns the index of a direction.
+	 * @param direction
+	 * @return the index, or -1 if it isn't a move
+	 */
+	private static int indexOf(char direction) {
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (DIRECTIONS[d] == direction) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the bots to a game, each on a different random floor tile from which it can reach both gold and an exit.
+	 * The tiles are all chosen before any bot is added, so they only depend on the random numbers given.
+	 * @param server
+	 * @param botCount
+	 * @param random
+	 * @return the bots in the order of their player IDs
+	 * @throws Exception if there aren't enough such tiles, or a bot couldn't be added
+	 */
+	private static ArrayList<PlayerConnection> placeAll(DungeonServer server, int botCount, Random random) throws Exception {
+		int height = server.map.getMapHeight();
+		int width = server.map.getMapWidth();
+		ArrayList<int[]> starts = new ArrayList<int[]>();
+		boolean[] taken = new boolean[height * width];
+		for (int attempt = 0; starts.size() < botCount; attempt++) {
+			if (attempt == height * width * 10) {
+				throw new Exception("not enough room for " + botCount + " bots");
+			}
+			int y = random.nextInt(height);
+			int x = random.nextInt(width);
+			if (taken[y * width + x] || server.map.lookAtTile(y, x) != '.'
+					|| server.goldDistances.stepsFrom(y, x) == DistanceField.UNREACHABLE
+					|| server.exitDistances.stepsFrom(y, x) == DistanceField.UNREACHABLE) {
+				continue;
+			}
+			taken[y * width + x] = true;
+			starts.add(new int[] {y, x});
+		}
+
+		// each bot is added at a random tile, which may be a later bot's start but never an earlier one's, as those are taken
+		ArrayList<PlayerConnection> bots = new ArrayList<PlayerConnection>();
+		for (int[] start : starts) {
+			PlayerConnection bot = ExplorationBenchmark.place(server);
+			int[] position = bot.getPlayerPosition();
+			if (position[0] != start[0] || position[1] != start[1]) {
+				if (!server.movePlayer(position[0], position[1], start[0], start[1], bot.getPlayerID())) {
+					throw new Exception("could not move a bot to its start");
+				}
+				bot.setPlayerPosition(start);
+			}
+			bots.add(bot);
+		}
+		return bots;
+	}
+
+	/**
+	 * Plays a game with every way of choosing moves for each number of bots, and prints what each took.
+	 * @param size
+	 * @param botCounts
+	 * @param seed
+	 * @throws Exception
+	 */
+	public void runAll(int size, String botCounts, long seed) throws Exception {
+		for (String count : botCounts.split(",")) {
+			int botCount = Integer.parseInt(count.trim());
+			System.out.println();
+			System.out.println(botCount + " bots escaping a " + size + "x" + size + " map");
+			System.out.printf("%-6s %9s %8s %10s %10s %10s %10s %10s%n", "", "escaped", "rounds", "mean", "moves",
+					"fails", "holds", "us/step");
+			for (String strategy : STRATEGIES) {
+				play(strategy, botCount, seed);
+			}
+		}
+	}
+
+	/**
+	 * Main method reads the settings and plays every number of bots.
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int size = 100;
+		String bots = "100,300";
+		int win = 0;
+		int limit = 2000;
+		long seed = 1;
+
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--size": size = Integer.parseInt(value); break;
+					case "--bots": bots = value; break;
+					case "--win": win = Integer.parseInt(value); break;
+					case "--limit": limit = Integer.parseInt(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("unknown option " + args[i]);
+				}
+			}
+			if (args.length % 2 != 0) {
+				throw new IllegalArgumentException("option " + args[args.length - 1] + " has no value");
+			}
+			if (size < 5 || limit < 1 || win < 0) {
+				throw new IllegalArgumentException("the map must be at least 5 tiles across, with at least one round");
+			}
+		} catch (IllegalArgumentException e) { // covers invalid numbers too
+			System.err.println(e.getMessage());
+			System.err.println("usage: java CooperationBenchmark [--size n] [--bots 100,300] [--win n] [--limit rounds] [--seed n]");
+			System.exit(-1);
+		}
+
+		File mapFile = File.createTempFile("cooperation", ".txt");
+		mapFile.deleteOnExit();
+		TileStorageBenchmark.writeMapFile(mapFile, size, win);
+		new CooperationBenchmark(mapFile, limit).runAll(size, bots, seed);
+	}
+}
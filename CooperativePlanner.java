@@ -0,0 +1,407 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for the plan held for each agent
+import java.util.HashMap;
+
+/**
+ * Plans the steps of many agents on the same map so that they stay out of each other's way, rather than each heading
+ * straight for its goal and bumping into whoever is in the way, as agents following NAV alone do.
+ * Each agent plans a window of the next few ticks with a search over both space and time, in which it may also wait,
+ * and reserves the tile it will be on at each tick in a ReservationTable. Agents with lower IDs come first: an agent
+ * treats their reservations as walls, so it never plans to step onto a tile one of them will be on or to swap places
+ * with one, and plans over the reservations of agents with higher IDs, which plan around it when they next ask.
+ * Moves in a tick are carried out in the order of player IDs, so an agent may follow one with a lower ID onto the tile
+ * it is leaving, but not one with a higher ID, which will not have left yet. Whilst it waits for one to move off,
+ * it claims the tile for the tick, so the other steps aside rather than waiting there as well.
+ * Agents meeting head on where only the one with the lower ID could step aside, e.g. into a bay it has already passed,
+ * would wait for each other for ever, so an agent which has waited STANDOFF_HOLDS ticks in a row for the same agent with
+ * a higher ID to move off its next tile gives way to it for a window: each plans as if the other's ID were the lower,
+ * so the one giving way backs off out of the other's path, wherever it can find room within the window.
+ * Beyond the window the search is guided by the distance fields NAV answers from, which ignore the other agents.
+ * Each agent plans again from where it really is every time it asks for a step, and only takes the first step of each plan,
+ * so no plan is followed after the agents around it have changed theirs.
+ *
+ * @author 18181
+ */
+public class CooperativePlanner {
+
+	// the number of ticks each plan looks ahead
+	public static final int WINDOW = 8;
+
+	// the most states a search may reach before it settles for the best it has found
+	private static final int MAX_NODES = 4096;
+
+	// the ticks in a row an agent waits for the same agent with a higher ID before giving way to it
+	public static final int STANDOFF_HOLDS = 3;
+
+	// the directions an agent can move in, and the change in row and column for each, followed by waiting where it is
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W', BinaryProtocol.HOLD};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1, 0};
+
+	// the map planned over, and the players standing on it now
+	private final Map map;
+	private final OccupancyIndex occupancy;
+	private final int width;
+
+	// the tiles every agent has reserved, and the plan each agent is following
+	private final ReservationTable reservations = new ReservationTable(1024);
+	private final HashMap<Integer, Plan> plans = new HashMap<Integer, Plan>();
+
+	// the agent each agent has been waiting for and for how many ticks, and the agent each is giving way to and until when
+	private final HashMap<Integer, Standoff> waiting = new HashMap<Integer, Standoff>();
+	private final HashMap<Integer, Standoff> givingWay = new HashMap<Integer, Standoff>();
+
+	// the states of a search, reused by every search: the tile and tick of each state and the state it was reached from
+	private final int[] nodeTile = new int[MAX_NODES];
+	private final int[] nodeDepth = new int[MAX_NODES];
+	private final int[] nodeParent = new int[MAX_NODES];
+	private final IntMinHeap open = new IntMinHeap(MAX_NODES);
+	private final ReservationTable reached = new ReservationTable(MAX_NODES);
+
+	/**
+	 * The tiles an agent has planned to be on, one for each tick from when the plan was made,
+	 * and the tile it has claimed for the first tick whilst it waits for another agent to move off it, if any.
+	 */
+	private static final class Plan {
+		private final long start;
+		private final int[] tiles;
+		private final int claim;
+
+		private Plan(long start, int[] tiles, int claim) {
+			this.start = start;
+			this.tiles = tiles;
+			this.claim = claim;
+		}
+	}
+
+	/**
+	 * Another agent an agent is held up by, with a count of ticks: those waited so far, or the tick giving way ends.
+	 */
+	private static final class Standoff {
+		private final int other;
+		private long ticks;
+
+		private Standoff(int other, long ticks) {
+			this.other = other;
+			this.ticks = ticks;
+		}
+	}
+
+	/**
+	 * Constructor creates a planner for a map, with nothing planned.
+	 * @param map
+	 * @param occupancy
+	 */
+	public CooperativePlanner(Map map, OccupancyIndex occupancy) {
+		this.map = map;
+		this.occupancy = occupancy;
+		this.width = map.getMapWidth();
+	}
+
+	/**
+	 * Returns the direction an agent should take at a tick to head towards its goal without getting in anyone's way,
+	 * replacing the plan it had with a new one.
+	 * @param agent the agent's player ID
+	 * @param y
+	 * @param x
+	 * @param goal the distance field to the agent's goal
+	 * @param time the tick the agent is moving in
+	 * @return one of N, E, S or W, BinaryProtocol.HOLD to wait where it is, or 0 if the agent is on its goal or can't reach one
+	 */
+	public synchronized char nextDirection(int agent, int y, int x, DistanceField goal, long time) {
+		int tile = y * width + x;
+		release(agent);
+		Standoff giving = givingWay.get(agent);
+		if (giving != null && time >= giving.ticks) {
+			givingWay.remove(agent);
+		}
+		int steps = goal.stepsFrom(y, x);
+		if (steps == 0 || steps == DistanceField.UNREACHABLE) {
+			waiting.remove(agent);
+			return 0;
+		}
+
+		int[] tiles = search(agent, tile, goal, time);
+		// count the ticks in a row spent waiting for the same agent, and once there have been enough give way to it
+		int blocker = waitingFor(agent, tile, tiles, time);
+		Standoff standoff = waiting.get(agent);
+		if (blocker == OccupancyIndex.FREE) {
+			waiting.remove(agent);
+		}
+		else if (standoff == null || standoff.other != blocker) {
+			waiting.put(agent, new Standoff(blocker, 1));
+		}
+		else if (++standoff.ticks >= STANDOFF_HOLDS) {
+			waiting.remove(agent);
+			givingWay.put(agent, new Standoff(blocker, time + WINDOW));
+			tiles = search(agent, tile, goal, time);
+			blocker = OccupancyIndex.FREE;
+		}
+
+		// an agent reaching an exit leaves the map, and one reaching gold plans again once it has picked it up,
+		// so the goal itself is not held and the next agent may reach it in the same tick
+		int last = tiles[tiles.length - 1];
+		int held = steps(goal, last) == 0 ? tiles.length - 1 : tiles.length;
+		for (int t = 0; t < held; t++) {
+			// a tile may be held by an agent which comes after this one, and will plan around it when it next plans,
+			// and the first tile by an agent which comes first and planned to be there before this one arrived
+			int owner = reservations.ownerAt(tiles[t], time + t);
+			if (owner == ReservationTable.NONE || !comesBefore(owner, agent, time + t)) {
+				reservations.reserve(tiles[t], time + t, agent);
+			}
+		}
+		// an agent waiting for one with a higher ID to move off its next tile claims that tile for this tick too, as the
+		// other moves after it in the tick and would otherwise be free to wait there for as long as this agent waits
+		int claim = -1;
+		if (blocker != OccupancyIndex.FREE && reservations.ownerAt(tiles[2], time + 1) == ReservationTable.NONE) {
+			claim = tiles[2];
+			reservations.reserve(claim, time + 1, agent);
+		}
+		plans.put(agent, new Plan(time, tiles, claim));
+		return tiles.length > 1 ? directionOf(tile, tiles[1]) : BinaryProtocol.HOLD;
+	}
+
+	/**
+	 * Releases everything an agent has reserved and forgets whoever it was waiting for, for when it leaves the game.
+	 * @param agent
+	 */
+	public synchronized void forget(int agent) {
+		release(agent);
+		waiting.remove(agent);
+		givingWay.remove(agent);
+	}
+
+	/**
+	 * Releases everything an agent has reserved, for when it leaves the game or changes its plan.
+	 * @param agent
+	 */
+	private void release(int agent) {
+		Plan plan = plans.remove(agent);
+		if (plan == null) {
+			return;
+		}
+		for (int t = 0; t < plan.tiles.length; t++) {
+			if (reservations.ownerAt(plan.tiles[t], plan.start + t) == agent) {
+				reservations.release(plan.tiles[t], plan.start + t);
+			}
+		}
+		if (plan.claim >= 0 && reservations.ownerAt(plan.claim, plan.start + 1) == agent) {
+			reservations.release(plan.claim, plan.start + 1);
+		}
+	}
+
+	/**
+	 * Searches the next WINDOW ticks for the way to the agent's goal that avoids every other agent's reservations.
+	 * The search stops at the goal, or at the end of the window at the tile closest to it. If it runs out of states
+	 * first, it settles for the state it reached closest to the goal.
+	 * @param agent
+	 * @param start
+	 * @param goal
+	 * @param time
+	 * @return the tile to be on at each tick from now, starting with where the agent is
+	 */
+	private int[] search(int agent, int start, DistanceField goal, long time) {
+		open.clear();
+		reached.clear();
+		int nodes = 0;
+		nodeTile[0] = start;
+		nodeDepth[0] = 0;
+		nodeParent[0] = -1;
+		reached.reserve(start, 0, 0);
+		open.push(0, priority(0, steps(goal, start)));
+		nodes++;
+
+		int best = 0;
+		int bestSteps = steps(goal, start);
+		while (!open.isEmpty()) {
+			int node = open.pop();
+			int tile = nodeTile[node];
+			int depth = nodeDepth[node];
+			int h = steps(goal, tile);
+			if (h < bestSteps || (h == bestSteps && depth > nodeDepth[best])) {
+				best = node;
+				bestSteps = h;
+			}
+			// every step takes a tick, so the first state popped at the goal or the end of the window is the best
+			if (h == 0 || depth == WINDOW) {
+				best = node;
+				break;
+			}
+
+			long now = time + depth;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int y = tile / width + ROW_STEP[d];
+				int x = tile % width + COLUMN_STEP[d];
+				// tiles outside the map look like walls
+				if (map.lookAtTile(y, x) == '#' || goal.stepsFrom(y, x) == DistanceField.UNREACHABLE) {
+					continue;
+				}
+				int next = y * width + x;
+				if (reached.ownerAt(next, depth + 1) != ReservationTable.NONE || isReservedBefore(next, now + 1, agent)) {
+					continue;
+				}
+				if (next != tile) {
+					// onto a tile another agent is on now only if it moves off it first, and not onto this agent's tile
+					int leaving = reservations.ownerAt(next, now);
+					if (leaving != ReservationTable.NONE && leaving != agent && comesBefore(leaving, agent, now)
+							&& !leavesFirst(leaving, agent, next, tile, now)) {
+						continue;
+					}
+					// players standing still without a plan only matter for the first step, as they may have moved by the next
+					int owner = occupancy.ownerAt(y, x);
+					if (depth == 0 && owner != OccupancyIndex.FREE && owner != agent && !leavesFirst(owner, agent, next, tile, now)) {
+						continue;
+					}
+				}
+				if (nodes == MAX_NODES) {
+					continue;
+				}
+				nodeTile[nodes] = next;
+				nodeDepth[nodes] = depth + 1;
+				nodeParent[nodes] = node;
+				reached.reserve(next, depth + 1, nodes);
+				open.push(nodes, priority(depth + 1, steps(goal, next)));
+				nodes++;
+			}
+		}
+
+		int[] tiles = new int[nodeDepth[best] + 1];
+		for (int node = best; node >= 0; node = nodeParent[node]) {
+			tiles[nodeDepth[node]] = nodeTile[node];
+		}
+		return tiles;
+	}
+
+	/**
+	 * Returns whether another agent on a tile will have moved off it earlier in the tick an agent moves onto it:
+	 * it moves first if its ID is lower, and its plan must take it somewhere other than the tile the agent is coming from.
+	 * @param other the agent on the tile
+	 * @param agent the agent moving onto it
+	 * @param tile
+	 * @param from the tile the agent is moving from
+	 * @param time the tick of the move
+	 * @return
+	 */
+	private boolean leavesFirst(int other, int agent, int tile, int from, long time) {
+		if (other > agent) {
+			return false;
+		}
+		Plan plan = plans.get(other);
+		if (plan == null) {
+			return false;
+		}
+		long offset = time - plan.start;
+		if (offset < 0 || offset + 1 >= plan.tiles.length || plan.tiles[(int) offset] != tile) {
+			return false;
+		}
+		int next = plan.tiles[(int) offset + 1];
+		return next != tile && next != from;
+	}
+
+	/**
+	 * Returns whether a tile is reserved at a time by an agent which comes before the one planning.
+	 * @param tile
+	 * @param time
+	 * @param agent
+	 * @return
+	 */
+	private boolean isReservedBefore(int tile, long time, int agent) {
+		int owner = reservations.ownerAt(tile, time);
+		return owner != ReservationTable.NONE && owner != agent && comesBefore(owner, agent, time);
+	}
+
+	/**
+	 * Returns whether one agent's reservations come before another's at a tick: the lower ID comes first,
+	 * unless the other is giving way to it.
+	 * @param other
+	 * @param agent
+	 * @param time
+	 * @return
+	 */
+	private boolean comesBefore(int other, int agent, long time) {
+		if (isGivingWay(agent, other, time)) {
+			return true;
+		}
+		if (isGivingWay(other, agent, time)) {
+			return false;
+		}
+		return other < agent;
+	}
+
+	/**
+	 * Returns whether an agent is giving way to another at a tick.
+	 * @param agent
+	 * @param other
+	 * @param time
+	 * @return
+	 */
+	private boolean isGivingWay(int agent, int other, long time) {
+		Standoff giving = givingWay.get(agent);
+		return giving != null && giving.other == other && time < giving.ticks;
+	}
+
+	/**
+	 * Returns the agent a plan starts by waiting for: one standing on the plan's next tile which moves after this
+	 * agent in the tick and comes after it, so would only plan around this agent rather than moving off first.
+	 * @param agent
+	 * @param tile the tile the agent is on
+	 * @param tiles the plan
+	 * @param time
+	 * @return the agent waited for, or OccupancyIndex.FREE if the plan doesn't start by waiting for one
+	 */
+	private int waitingFor(int agent, int tile, int[] tiles, long time) {
+		if (tiles.length <= 2 || tiles[1] != tile || tiles[2] == tile) {
+			return OccupancyIndex.FREE;
+		}
+		int other = occupancy.ownerAt(tiles[2] / width, tiles[2] % width);
+		if (other == OccupancyIndex.FREE || other < agent || !comesBefore(agent, other, time)) {
+			return OccupancyIndex.FREE;
+		}
+		return other;
+	}
+
+	/**
+	 * Returns the priority of a state: the steps it takes to reach the goal through it, with deeper states first among equals.
+	 * @param depth
+	 * @param steps
+	 * @return
+	 */
+	private static int priority(int depth, int steps) {
+		return (depth + steps) * (WINDOW + 1) + WINDOW - depth;
+	}
+
+	/**
+	 * Returns the steps from a tile to the goal, ignoring other agents.
+	 * @param goal
+	 * @param tile
+	 * @return
+	 */
+	private int steps(DistanceField goal, int tile) {
+		return goal.stepsFrom(tile / width, tile % width);
+	}
+
+	/**
+	 * Returns the direction of a step between neighbouring tiles.
+	 * @param from
+	 * @param to
+	 * @return one of N, E, S or W, or BinaryProtocol.HOLD if they are the same tile
+	 */
+	private char directionOf(int from, int to) {
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (to == (from / width + ROW_STEP[d]) * width + from % width + COLUMN_STEP[d]) {
+				return DIRECTIONS[d];
+			}
+		}
+		return BinaryProtocol.HOLD;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for the lock-free set of changed tiles
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records which tiles of the map have changed since the last frame was published.
+ * A tile changed several times within one frame is only recorded once, so each frame
+ * re-renders every changed tile exactly once however busy the players are.
+ * Tiles are identified by their index y * width + x.
+ * Marking a tile never takes a lock, so players changing different tiles never wait for each other.
+ *
+ * @author 18181
+ */
+public class DirtyTileTracker {
+
+	// width of the map, used to turn a position into an index
+	private final int width;
+
+	// one bit per tile, set whilst the tile is waiting to be published
+	private final AtomicLongArray marked;
+
+	// the indices of the marked tiles in the order they changed
+	private final ConcurrentLinkedQueue<Integer> dirty = new ConcurrentLinkedQueue<Integer>();
+
+	// the tiles taken off the queue by a drain, grown as needed and reused by the next
+	private int[] drained = new int[64];
+
+	// counts every change, so that anything derived from the map can tell whether it is out of date
+	private final LongAdder version = new LongAdder();
+
+	/**
+	 * Constructor creates an empty tracker for a map of the given size.
+	 * @param height
+	 * @param width
+	 */
+	public DirtyTileTracker(int height, int width) {
+		this.width = width;
+		this.marked = new AtomicLongArray((height * width + 63) / 64);
+	}
+
+	/**
+	 * Records that the tile at the given position has changed.
+	 * @param y
+	 * @param x
+	 */
+	public void mark(int y, int x) {
+		int index = y * width + x;
+		int word = index >>> 6;
+		long bit = 1L << index;
+
+		version.increment();
+
+		// only add the tile to the queue the first time it changes within a frame
+		while (true) {
+			long current = marked.get(word);
+			if ((current & bit) != 0) {
+				return;
+			}
+			if (marked.compareAndSet(word, current, current | bit)) {
+				dirty.add(index);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns every tile which has changed since the last call.
+	 * The queue is polled until it is empty rather than sized first, as counting it means walking all of it.
+	 * Tiles stay marked until the queue is empty, so one changed again meanwhile isn't queued twice and the queue
+	 * can't grow faster than it is emptied. They are unmarked before they are returned, so a change made whilst
+	 * the caller reads the tile's new state is marked again and published with the next frame.
+	 * @return the indices of the changed tiles, or null if nothing has changed
+	 */
+	public synchronized int[] drain() {
+		int count = 0;
+		Integer index;
+		while ((index = dirty.poll()) != null) {
+			if (count == drained.length) {
+				drained = Arrays.copyOf(drained, count * 2);
+			}
+			drained[count++] = index;
+		}
+
+		if (count == 0) {
+			return null;
+		}
+		for (int i = 0; i < count; i++) {
+			int word = drained[i] >>> 6;
+			long bit = 1L << drained[i];
+			while (true) {
+				long current = marked.get(word);
+				if (marked.compareAndSet(word, current, current & ~bit)) {
+					break;
+				}
+			}
+		}
+		return Arrays.copyOf(drained, count);
+	}
+
+	/**
+	 * Accessor method returns the number of changes recorded so far.
+	 * @return
+	 */
+	public long getVersion() {
+		return version.sum();
+	}
+}
@@ -0,0 +1,336 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for growing and clearing the arrays used to work the field out
+import java.util.Arrays;
+
+/**
+ * Holds, for every tile of the map, how many steps it is from the nearest tile of one type, such as gold or an exit,
+ * so the server can tell any player which way to go with a few array lookups rather than a search of its own.
+ * The steps are found with a single breadth first search out from every tile of the type at once,
+ * walking onto anything which isn't a wall, and other players are ignored as they will have moved on.
+ *
+ * The field isn't worked out until it is first asked for, as it holds an int for every tile of the map: 4 bytes a tile,
+ * or 400 MB for a map of 10,000 by 10,000. Nothing else it keeps grows with the map: the search only queues
+ * the tiles at its edge, and a removal only keeps room for the tiles it works out again.
+ * When a tile stops being of the type, e.g. its gold is picked up, only the tiles whose shortest path may have
+ * ended there are worked out again: those which can be reached from it by steps which are each one further away.
+ * Their new steps are found from the tiles around them, which are unaffected, and written in one go once found,
+ * so a player asking for directions whilst a tile is removed never sees a tile with no steps at all.
+ * Reading the field never waits for a removal, and only removals wait for each other.
+ *
+ * @author 18181
+ */
+public class DistanceField {
+
+	// the steps stored for a tile which can't reach any tile of the type
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	// the directions a player can move in, and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// the map the field is worked out across, the tile type the steps lead to, and the size of the map
+	private final Map map;
+	private final char source;
+	private final int height;
+	private final int width;
+
+	// the steps from every tile to the nearest tile of the type, once worked out
+	private int[] steps;
+	private volatile boolean built = false;
+
+	// for removing a tile: the tiles taken in and their new steps, a hash table of each tile's place in that list whose
+	// slots only count if stamped with the current removal, so it is never cleared, and the tiles waiting to have
+	// their new steps passed on
+	private int[] affected = new int[64];
+	private int[] newSteps = new int[64];
+	private int[] slotPlace = new int[128];
+	private int[] slotRemoval = new int[128];
+	private int removal = 0;
+	private final IntMinHeap open = new IntMinHeap(64);
+
+	/**
+	 * Constructor creates a field of the steps to the nearest tile of a type, which is worked out when first asked for.
+	 * @param map
+	 * @param source the tile type, e.g. 'G' or 'E'
+	 */
+	public DistanceField(Map map, char source) {
+		this.map = map;
+		this.source = source;
+		this.height = map.getMapHeight();
+		this.width = map.getMapWidth();
+	}
+
+	/**
+	 * Works out the steps from every tile with a breadth first search out from every tile of the type, if not done yet.
+	 */
+	private synchronized void build() {
+		if (built) {
+			return;
+		}
+
+		steps = new int[height * width];
+		// the queue wraps around, and only ever holds the tiles at the edge of the search
+		int[] queue = new int[64];
+		int head = 0;
+		int queued = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int tile = y * width + x;
+				if (map.lookAtTile(y, x) == source) {
+					steps[tile] = 0;
+					if (queued == queue.length) {
+						queue = grow(queue, head);
+						head = 0;
+					}
+					queue[(head + queued++) & (queue.length - 1)] = tile;
+				}
+				else {
+					steps[tile] = UNREACHABLE;
+				}
+			}
+		}
+
+		// every tile is reached first by the nearest tile of the type, as the queue is in order of steps
+		while (queued > 0) {
+			int tile = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			queued--;
+			int y = tile / width;
+			int x = tile - y * width;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int next = neighbour(y, x, d);
+				if (next >= 0 && steps[next] == UNREACHABLE) {
+					steps[next] = steps[tile] + 1;
+					if (queued == queue.length) {
+						queue = grow(queue, head);
+						head = 0;
+					}
+					queue[(head + queued++) & (queue.length - 1)] = next;
+				}
+			}
+		}
+		built = true;
+	}
+
+	/**
+	 * Returns a queue which wraps around with twice the room, with the tiles of a full one moved to the start in order.
+	 * @param queue
+	 * @param head the place of the first tile in the queue
+	 * @return
+	 */
+	private static int[] grow(int[] queue, int head) {
+		int[] grown = new int[queue.length * 2];
+		System.arraycopy(queue, head, grown, 0, queue.length - head);
+		System.arraycopy(queue, 0, grown, queue.length - head, head);
+		return grown;
+	}
+
+	/**
+	 * Returns the steps from a tile to the nearest tile of the type.
+	 * @param y
+	 * @param x
+	 * @return the number of steps, or UNREACHABLE
+	 */
+	public int stepsFrom(int y, int x) {
+		if (!built) {
+			build();
+		}
+		if (y < 0 || x < 0 || y >= height || x >= width) {
+			return UNREACHABLE;
+		}
+		return steps[y * width + x];
+	}
+
+	/**
+	 * Returns the direction of the first step on a shortest path from a tile to the nearest tile of the type.
+	 * @param y
+	 * @param x
+	 * @return one of N, E, S or W, or 0 if the tile is of the type already or none can be reached
+	 */
+	public char directionFrom(int y, int x) {
+		int best = stepsFrom(y, x);
+		char direction = 0;
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int next = neighbour(y, x, d);
+			if (next >= 0 && steps[next] < best) {
+				best = steps[next];
+				direction = DIRECTIONS[d];
+			}
+		}
+		return direction;
+	}
+
+	/**
+	 * Works the field out again around a tile which is no longer of the type. Called once the map has been changed.
+	 * Does nothing if the field hasn't been worked out yet, as it will be worked out from the changed map.
+	 * @param y
+	 * @param x
+	 */
+	public synchronized void sourceRemoved(int y, int x) {
+		if (!built || steps[y * width + x] != 0) {
+			return;
+		}
+		startRemoval();
+
+		// take in every tile which can be reached from the removed tile by steps which are each one further away
+		int count = 0;
+		count = take(y * width + x, count);
+		for (int i = 0; i < count; i++) {
+			int tile = affected[i];
+			int tileY = tile / width;
+			int tileX = tile - tileY * width;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int next = neighbour(tileY, tileX, d);
+				if (next >= 0 && steps[next] == steps[tile] + 1 && placeOf(next) < 0) {
+					count = take(next, count);
+				}
+			}
+		}
+
+		// start each tile taken in from the best of the tiles around it which weren't taken in
+		for (int i = 0; i < count; i++) {
+			int tile = affected[i];
+			int tileY = tile / width;
+			int tileX = tile - tileY * width;
+			newSteps[i] = map.lookAtTile(tileY, tileX) == source ? 0 : UNREACHABLE;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int next = neighbour(tileY, tileX, d);
+				if (next >= 0 && steps[next] != UNREACHABLE && steps[next] + 1 < newSteps[i] && placeOf(next) < 0) {
+					newSteps[i] = steps[next] + 1;
+				}
+			}
+			if (newSteps[i] != UNREACHABLE) {
+				open.push(tile, newSteps[i]);
+			}
+		}
+
+		// then pass the steps on between the tiles taken in, nearest first
+		while (!open.isEmpty()) {
+			int tileSteps = open.peekPriority();
+			int tile = open.pop();
+			// a tile pushed again with fewer steps has already passed them on
+			if (tileSteps > newSteps[placeOf(tile)]) {
+				continue;
+			}
+			int tileY = tile / width;
+			int tileX = tile - tileY * width;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int next = neighbour(tileY, tileX, d);
+				int nextPlace = next >= 0 ? placeOf(next) : -1;
+				if (nextPlace >= 0 && tileSteps + 1 < newSteps[nextPlace]) {
+					newSteps[nextPlace] = tileSteps + 1;
+					open.push(next, tileSteps + 1);
+				}
+			}
+		}
+
+		// only now are the new steps written, so readers always see a number worked out from the whole map
+		for (int i = 0; i < count; i++) {
+			steps[affected[i]] = newSteps[i];
+		}
+	}
+
+	/**
+	 * Gets the arrays ready for a new removal.
+	 */
+	private void startRemoval() {
+		// when the removal numbers run out, start again from a table which has been cleared
+		if (removal == Integer.MAX_VALUE) {
+			Arrays.fill(slotRemoval, 0);
+			removal = 0;
+		}
+		removal++;
+		open.clear();
+	}
+
+	/**
+	 * Takes a tile into the current removal.
+	 * @param tile
+	 * @param count the number of tiles taken in so far
+	 * @return the number of tiles taken in now
+	 */
+	private int take(int tile, int count) {
+		if (count == affected.length) {
+			affected = Arrays.copyOf(affected, count * 2);
+			newSteps = Arrays.copyOf(newSteps, count * 2);
+		}
+		affected[count] = tile;
+
+		// keep the table at most half full, putting back every tile taken in so far when it grows
+		if ((count + 1) * 2 > slotPlace.length) {
+			slotPlace = new int[slotPlace.length * 2];
+			slotRemoval = new int[slotRemoval.length * 2];
+			for (int i = 0; i < count; i++) {
+				putPlace(i);
+			}
+		}
+		putPlace(count);
+		return count + 1;
+	}
+
+	/**
+	 * Adds a tile taken into the current removal to the table of places.
+	 * @param place the tile's place in the list of tiles taken in
+	 */
+	private void putPlace(int place) {
+		int mask = slotPlace.length - 1;
+		int slot = hash(affected[place]) & mask;
+		while (slotRemoval[slot] == removal) {
+			slot = (slot + 1) & mask;
+		}
+		slotRemoval[slot] = removal;
+		slotPlace[slot] = place;
+	}
+
+	/**
+	 * Returns a tile's place in the list of tiles taken into the current removal.
+	 * @param tile
+	 * @return the place, or -1 if the tile hasn't been taken in
+	 */
+	private int placeOf(int tile) {
+		int mask = slotPlace.length - 1;
+		for (int slot = hash(tile) & mask; slotRemoval[slot] == removal; slot = (slot + 1) & mask) {
+			if (affected[slotPlace[slot]] == tile) {
+				return slotPlace[slot];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Spreads the bits of a tile's index so that tiles next to each other don't crowd into neighbouring slots.
+	 * @param tile
+	 * @return
+	 */
+	private static int hash(int tile) {
+		int h = tile * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the index of the tile next to a tile in a direction, or -1 if it is a wall or outside the map.
+	 * @param y
+	 * @param x
+	 * @param direction
+	 * @return
+	 */
+	private int neighbour(int y, int x, int direction) {
+		int nextY = y + ROW_STEP[direction];
+		int nextX = x + COLUMN_STEP[direction];
+		if (map.lookAtTile(nextY, nextX) == '#') {
+			return -1;
+		}
+		return nextY * width + nextX;
+	}
+}
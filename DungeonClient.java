@@ -11,13 +11,18 @@
 
 // import libraries necessary to establish a connection from client to server.
 // import libraries necessary to handle exceptions during these processes.
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import javax.swing.SwingUtilities;
@@ -44,11 +49,18 @@ public class DungeonClient implements Runnable {
 	protected boolean goldToPickUp;
 	protected ArrayList<char[]> lookWindow;
 	
+	// the rows the look window is read into, reused for every window since the GUI copies them
+	private final char[][] lookRows = new char[5][5];
+	
 	// declare input and output streams to connect to the server as well as to read user input 
 	BufferedReader serverOutput;
 	PrintWriter sendToServer;
 	protected boolean connectionActive;
 	protected boolean responseFailed;
+	
+	// whether the server agreed to switch to the binary protocol, and the stream frames are sent through
+	protected boolean binary;
+	private OutputStream frameOutput;
 		
 	/**
 	 * Constructor connects Scanner and PrintWriter to socket connection
@@ -64,11 +76,15 @@ public class DungeonClient implements Runnable {
 		socket = new Socket(ipAddress, portNumber);
 		connectionActive = true;
 		
+		// offer to switch to the binary protocol, before anything else is sent or read
+		binary = negotiateBinary(socket.getInputStream(), socket.getOutputStream());
+		frameOutput = new BufferedOutputStream(socket.getOutputStream());
+		
 		// Open BufferedReader to manage response from server
-		serverOutput = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		serverOutput = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
 		
-		// Open PrintWriter to send response to server
-		sendToServer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+		// Open PrintWriter to send response to server, flushed once per batch of commands rather than per line
+		sendToServer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1), false);
 		
 		lookWindow = new ArrayList<char[]>();
 		
@@ -76,11 +92,11 @@ public class DungeonClient implements Runnable {
 				SwingUtilities.invokeLater(new Runnable() {
 					public void run() {
 						// build a new player GUI
-						gui = new PlayerGUI(sendToServer, ipAddress, portNumber, playerType);
+						gui = new PlayerGUI(DungeonClient.this, ipAddress, portNumber, playerType);
 						gui.buildGUI();
 						// send look and hello to the server so the player view can be constructed
-						sendToServer("LOOK");
-						sendToServer("HELLO");
+						// and ask the server to push the view whenever it changes, so it doesn't have to be polled
+						sendCommands("LOOK", "HELLO", "SUBSCRIBE");
 					}
 				});
 		
@@ -89,6 +105,27 @@ public class DungeonClient implements Runnable {
 		goldToPickUp = true;
 	}
 	
+	/**
+	 * Asks the server to switch to the binary protocol and waits for its answer.
+	 * The answer is read a byte at a time straight from the socket, so nothing after it is read by mistake.
+	 * A server without the binary protocol answers the HELLO as usual, and the text protocol carries on.
+	 * @param in
+	 * @param out
+	 * @return true if the server agreed to switch
+	 * @throws IOException
+	 */
+	private static boolean negotiateBinary(InputStream in, OutputStream out) throws IOException {
+		out.write((BinaryProtocol.NEGOTIATE + "\n").getBytes(StandardCharsets.ISO_8859_1));
+		out.flush();
+		
+		StringBuilder answer = new StringBuilder();
+		int b;
+		while((b = in.read()) != -1 && b != '\n'){
+			answer.append((char) b);
+		}
+		return answer.toString().trim().equals(BinaryProtocol.ACCEPTED);
+	}
+	
 	/**
 	 * Sends user input to the server ready to be parsed as a command and evaluated.
 	 * @param userInput
@@ -102,81 +139,268 @@ public class DungeonClient implements Runnable {
 			}
 			// otherwise, send the command to the server.
 			else	{ 
-				sendToServer.println(userInput);
+				sendCommand(userInput);
+			}
+		}
+	}
+	
+	/**
+	 * Sends a command to the server in whichever protocol is being used, without any special handling of QUIT.
+	 * @param command a command as it is written in the text protocol, e.g. "MOVE N"
+	 */
+	public void sendCommand(String command){
+		sendCommands(command);
+	}
+	
+	/**
+	 * Sends several commands to the server at once, so that they all travel in one round trip.
+	 * The server answers all of them before sending its replies back together.
+	 * @param commands commands as they are written in the text protocol, e.g. "MOVE N"
+	 */
+	public synchronized void sendCommands(String... commands){
+		try {
+			for(String command : commands){
+				queueCommand(command);
+			}
+			
+			if(binary){
+				frameOutput.flush();
 			}
+			else {
+				sendToServer.flush();
+			}
+		} catch (IOException e) {
+			gui.changeText("Sending to server unsuccessful.");
 		}
 	}
 	
+	/**
+	 * Writes a command ready to be sent with the next flush.
+	 * @param command
+	 * @throws IOException
+	 */
+	private void queueCommand(String command) throws IOException {
+		if(!binary){
+			sendToServer.println(command);
+			return;
+		}
+		
+		byte[] frame = BinaryProtocol.encodeCommand(command);
+		// a command with no binary form can't be understood by the server, so fail it straight away
+		if(frame == null){
+			responseFailed = true;
+			gui.changeText("FAIL");
+			return;
+		}
+		frameOutput.write(frame);
+	}
+	
 	/**
 	 * A thread which listens on a loop to the server, printing any feedback to commands to the terminal.
 	 */
 	@Override
 	public void run()	{
-		
+		try {
+			if(binary){
+				readFrames(new BufferedInputStream(socket.getInputStream()));
+			}
+			else {
+				readLines();
+			}
+		} catch (IOException e) {
+			gui.changeText("Socket closed.");
+			
+			try {
+				socket.close(); // if the output from the server ever results in an exception, close the connection
+				gui.disableButtons();
+			} catch (IOException e1) {
+				gui.changeText("Socket closure unsuccessful."); // if this is unsuccessful, print an error
+				
+			}
+		}
+	}
+	
+	/**
+	 * Reads replies in the text protocol until the server closes the connection.
+	 * @throws IOException
+	 */
+	private void readLines() throws IOException {
 		String serverResponse;
 		
-		try {
-			while((serverResponse = serverOutput.readLine()) != null) { // whilst there is feedback
+		while((serverResponse = serverOutput.readLine()) != null) { // whilst there is feedback
+			
+			// the server will push the view from now on, so stop polling for it
+			if(serverResponse.equals("SUBSCRIBED")){
+				gui.stopPolling();
+				continue;
+			}
+			
+			// check if the previous response failed. If so, set the boolean to true
+			if(serverResponse.equals("FAIL")){
+				responseFailed = true;
+				resultReceived(false);
+			}
+			else if(serverResponse.equals("SUCCESS")){
+				resultReceived(true);
+			}
+			
+			// check if the player has won the game. If so, run the method pushing this info to the GUI
+			if(serverResponse.equals("You have won the game!")){
+				gui.gameWon();
+				connectionActive = false;
+			}
+			
+			// if the response is a LookReply, capture the information in an arraylist ready for processing
+			if(serverResponse.length() == 5) {
+				char[] row = lookRows[lookWindow.size()];
 				
-				// check if the previous response failed. If so, set the boolean to true
-				if(serverResponse.equals("FAIL")){
-					responseFailed = true;
+				for(int i=0; i<5; i++){
+					row[i] = serverResponse.charAt(i);
 				}
 				
-				// check if the player has won the game. If so, run the method pushing this info to the GUI
-				if(serverResponse.equals("You have won the game!")){
-					gui.gameWon();
-					connectionActive = false;
-				}
+				lookWindow.add(row);
 				
-				// if the response is a LookReply, capture the information in an arraylist ready for processing
-				if(serverResponse.length() == 5) {
-					char[] row = new char[5];
-					
-					for(int i=0; i<5; i++){
-						row[i] = serverResponse.charAt(i);
-					}
-					
-					lookWindow.add(row);
-					
-					// if the lookwindow arrayList is 'full' (stores a complete 5x5 view), send it to the GUI
-					if(lookWindow.size()==5){
-						gui.printLookWindow(lookWindow);
-						lookWindow.clear();
-					}
-					
+				// if the lookwindow arrayList is 'full' (stores a complete 5x5 view), send it to the GUI
+				if(lookWindow.size()==5){
+					lookReceived(lookWindow);
+					gui.printLookWindow(lookWindow);
+					lookWindow.clear();
 				}
 				
-				// otherwise if the response is to a hello command, update the remaining gold on the GUI
-				else if(serverResponse.contains(" ")){
-					if(serverResponse.split(" ")[0].equals("GOLD:") && Integer.parseInt(serverResponse.split(" ")[1])>0){
-						goldToPickUp = true;
-						gui.updateGoldRemaining(Integer.parseInt(serverResponse.split(" ")[1]));
-					}
-					else if(serverResponse.split(" ")[0].equals("GOLD:") && Integer.parseInt(serverResponse.split(" ")[1])==0){
-						goldToPickUp = false;
-						gui.updateGoldRemaining(Integer.parseInt(serverResponse.split(" ")[1]));
-					}
-					else if(serverResponse.split(" ")[0].equals("Win:") && Integer.parseInt(serverResponse.split(" ")[1])>0){
-						gui.updateMaxGold(Integer.parseInt(serverResponse.split(" ")[1]));
-					}
+			}
+			
+			// otherwise if the response is to a hello command, update the remaining gold on the GUI
+			else if(serverResponse.contains(" ")){
+				String[] words = serverResponse.split(" ");
+				if(words[0].equals("GOLD:")){
+					updateGold(Integer.parseInt(words[1]));
 				}
-				// otherwise, print what the server response is to the GUI
-				else{
-					gui.changeText(serverResponse); // print the feedback to the client
+				else if(words[0].equals("Win:")){
+					updateMaxGold(Integer.parseInt(words[1]));
+				}
+				else if(words[0].equals("NAV:") || words[0].equals("ROUTE:")){
+					gui.changeText(serverResponse);
 				}
-				
 			}
-		} catch (IOException e) {
-			gui.changeText("Socket closed.");
+			// otherwise, print what the server response is to the GUI
+			else{
+				gui.changeText(serverResponse); // print the feedback to the client
+			}
 			
-			try {
-				socket.close(); // if the output from the server ever results in an exception, close the connection
-				gui.disableButtons();
-			} catch (IOException e1) {
-				gui.changeText("Socket closure unsuccessful."); // if this is unsuccessful, print an error
-				
+		}
+	}
+	
+	/**
+	 * Reads replies in the binary protocol until the server closes the connection.
+	 * @param in
+	 * @throws IOException
+	 */
+	private void readFrames(InputStream in) throws IOException {
+		byte[] tiles = new byte[BinaryProtocol.LOOK_WINDOW_SIZE];
+		int opcode;
+		
+		while((opcode = in.read()) != -1) {
+			switch(opcode){
+				case BinaryProtocol.SUCCESS:
+					resultReceived(true);
+					gui.changeText("SUCCESS");
+					break;
+				case BinaryProtocol.FAIL:
+					responseFailed = true;
+					resultReceived(false);
+					gui.changeText("FAIL");
+					break;
+				case BinaryProtocol.LOOK_REPLY:
+					// read the whole window, then hand it to the GUI row by row as the text protocol does
+					int read = 0;
+					while(read < tiles.length){
+						int count = in.read(tiles, read, tiles.length - read);
+						if(count == -1){
+							return;
+						}
+						read += count;
+					}
+					for(int i=0; i<5; i++){
+						char[] row = lookRows[i];
+						for(int j=0; j<5; j++){
+							row[j] = (char) (tiles[i * 5 + j] & 0xff);
+						}
+						lookWindow.add(row);
+					}
+					lookReceived(lookWindow);
+					gui.printLookWindow(lookWindow);
+					lookWindow.clear();
+					break;
+				case BinaryProtocol.GOLD_REPLY:
+					updateGold(BinaryProtocol.readVarint(in));
+					break;
+				case BinaryProtocol.WIN_REPLY:
+					updateMaxGold(BinaryProtocol.readVarint(in));
+					break;
+				case BinaryProtocol.ID_REPLY:
+					gui.changeText(Integer.toString(BinaryProtocol.readVarint(in)));
+					break;
+				case BinaryProtocol.SUBSCRIBED:
+					gui.stopPolling();
+					break;
+				case BinaryProtocol.WON:
+					gui.gameWon();
+					connectionActive = false;
+					break;
+				case BinaryProtocol.TEXT:
+					gui.changeText(BinaryProtocol.readText(in));
+					break;
+				case BinaryProtocol.NAV_REPLY:
+					gui.changeText("NAV: " + (char) in.read());
+					break;
+				case BinaryProtocol.ROUTE_REPLY:
+					char direction = (char) in.read();
+					gui.changeText("ROUTE: " + direction + " " + BinaryProtocol.readVarint(in));
+					break;
+				default:
+					throw new IOException("Unknown reply from server: " + opcode);
 			}
 		}
 	}
+	
+	/**
+	 * Called from the listening thread with every SUCCESS or FAIL, in the order the commands were sent,
+	 * for subclasses which need to know how their commands went. Does nothing here.
+	 * @param success
+	 */
+	protected void resultReceived(boolean success){
+	}
+	
+	/**
+	 * Called from the listening thread with every look window, whether asked for or pushed by the server,
+	 * before it is shown on the GUI. The rows are reused for the next window, so must be copied to be kept. Does nothing here.
+	 * @param window the five rows of the look window
+	 */
+	protected void lookReceived(ArrayList<char[]> window){
+	}
+	
+	/**
+	 * Updates the remaining gold on the GUI, and whether there is still gold to pick up.
+	 * @param remaining
+	 */
+	private void updateGold(int remaining){
+		if(remaining > 0){
+			goldToPickUp = true;
+			gui.updateGoldRemaining(remaining);
+		}
+		else if(remaining == 0){
+			goldToPickUp = false;
+			gui.updateGoldRemaining(remaining);
+		}
+	}
+	
+	/**
+	 * Updates the gold needed to win on the GUI.
+	 * @param maxGold
+	 */
+	private void updateMaxGold(int maxGold){
+		if(maxGold > 0){
+			gui.updateMaxGold(maxGold);
+		}
+	}
 }
\ No newline at end of file
@@ -16,6 +16,13 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.SwingUtilities;
 
@@ -24,37 +31,87 @@ import javax.swing.SwingUtilities;
  * The server stores the map that the players move around on.
  * Clients communicate with an instance of DungeonServer
  * The server stores the map and socket to create a common connection with the client.
- * A list of ClientConnections is compiled when a new client joins, starting a new thread per client.
+ * A list of ClientConnections is compiled when a new client joins, starting a new thread per client
+ * or handing the client to an NIO event loop, depending on the connection mode chosen at start.
  * 
  * @implements IServerFunctionality
  * @author 18181
  */
 public class DungeonServer implements IServerFunctionality {
 	
-	GameEngineGUI gui; // hold an instance of the game engine GUI
-	char[][] wholeMap;
+	GameEngineGUI gui; // hold an instance of the game engine GUI, null when running headless
+	
+	// whatever is watching the game (the GUI, or nothing when headless)
+	protected volatile IGameObserver observer;
 	
 	// define common port number, in keeping with the client side
 	public static int PORT_NUMBER;
 	
 	// diagnostic variable to check connection still active
-    protected static Boolean isListening = true;
+    protected static volatile Boolean isListening = true;
     
     // dynamic list of clients connected to the server
     protected ArrayList<PlayerConnection> clientList = new ArrayList<PlayerConnection>();
     
     // game data from a birds eye view - player positions and the map they are playing on
-    public int[][] playerPositions;
+    public OccupancyIndex occupancy;
     protected Map map;
     
     // socket connections to establish communication with each new client
     protected Socket sock;
     private ServerSocket ssock;
     
+    // how client connections are run, and the engine used when they share NIO event loops
+    private final ConnectionMode connectionMode;
+    private NioConnectionEngine nioEngine;
+    
+    // runs each connection on its own virtual thread, null unless in virtual thread mode
+    protected ExecutorService connectionExecutor;
+    
+    // how often changed tiles are gathered up and published to the GUI, in milliseconds
+    private static final long MAP_FRAME_MILLIS = 50;
+    
+    // tiles changed since the last frame, and the thread which publishes them once per frame
+    protected DirtyTileTracker dirtyTiles;
+    private ScheduledExecutorService mapPublisher;
+    
+    // runs MOVE and PICKUP commands in fixed ticks, null unless the server was started with a tick rate
+    protected GameTickLoop tickLoop;
+    
+    // clients which have asked for their look window to be pushed to them when it changes
+    protected LookSubscriptions lookSubscriptions;
+    
+    // the steps from every tile to the nearest gold and the nearest exit, which NAV answers from
+    protected DistanceField goldDistances;
+    protected DistanceField exitDistances;
+    
+    // the abstract graph of the map's clusters, which ROUTE finds paths to any tile across
+    protected HierarchicalPathfinder routes;
+    
+    // plans NAV's answers around the other players' plans, null unless the server was started cooperative
+    protected CooperativePlanner planner;
+    
+    // text of the whole map from the last MAP command with the map version it was built from,
+    // published together so a thread never sees the text of one version paired with another
+    private volatile MapText mapText;
+    
+    /**
+     * The text of the whole map and the map version it was built from.
+     */
+    private static final class MapText {
+        private final String text;
+        private final long version;
+        
+        private MapText(String text, long version) {
+            this.text = text;
+            this.version = version;
+        }
+    }
+    
 	/**
 	 * Constructor stores a record of the socket connection through which the server can listen to clients
 	 * The map is set up only when when the server starts.
-	 * An array to keep track of player positions on the map is created here.
+	 * An index to keep track of player positions on the map is created here.
 	 * @param chosenMap 
 	 * 
 	 * @param sock 
@@ -62,22 +119,104 @@ public class DungeonServer implements IServerFunctionality {
 	 * @throws UnknownHostException 
 	 */
 	public DungeonServer(final int portNumber, String chosenMap) throws UnknownHostException, IOException {
-		ssock = new ServerSocket(portNumber); // new server sockets to which clients connect
+		this(portNumber, chosenMap, ConnectionMode.THREAD_PER_CLIENT);
+	}
+	
+	/**
+	 * Constructor as above, with a choice of how client connections are run.
+	 * @param portNumber
+	 * @param chosenMap
+	 * @param connectionMode
+	 * @throws UnknownHostException
+	 * @throws IOException
+	 */
+	public DungeonServer(final int portNumber, String chosenMap, ConnectionMode connectionMode) throws UnknownHostException, IOException {
+		this(portNumber, chosenMap, connectionMode, 0);
+	}
+	
+	/**
+	 * Constructor as above, optionally running MOVE and PICKUP commands in fixed ticks rather than as they arrive.
+	 * @param portNumber
+	 * @param chosenMap
+	 * @param connectionMode
+	 * @param tickRate ticks per second, or 0 to carry out commands as they arrive
+	 * @throws UnknownHostException
+	 * @throws IOException
+	 */
+	public DungeonServer(final int portNumber, String chosenMap, ConnectionMode connectionMode, int tickRate) throws UnknownHostException, IOException {
+		this(portNumber, chosenMap, connectionMode, tickRate, true);
+	}
+	
+	/**
+	 * Constructor as above, with or without the game engine GUI.
+	 * Without it the server runs headless, reporting nothing and doing no rendering, until an observer is attached.
+	 * @param portNumber
+	 * @param chosenMap
+	 * @param connectionMode
+	 * @param tickRate ticks per second, or 0 to carry out commands as they arrive
+	 * @param showGUI whether to build the game engine GUI
+	 * @throws UnknownHostException
+	 * @throws IOException
+	 */
+	public DungeonServer(final int portNumber, String chosenMap, ConnectionMode connectionMode, int tickRate, boolean showGUI) throws UnknownHostException, IOException {
+		this(portNumber, chosenMap, connectionMode, tickRate, showGUI, false);
+	}
+	
+	/**
+	 * Constructor as above, optionally answering NAV from a CooperativePlanner so players following it keep out of each other's way.
+	 * Plans are made tick by tick, so cooperative planning needs a tick rate.
+	 * @param portNumber
+	 * @param chosenMap
+	 * @param connectionMode
+	 * @param tickRate ticks per second, or 0 to carry out commands as they arrive
+	 * @param showGUI whether to build the game engine GUI
+	 * @param cooperative whether NAV plans around the other players
+	 * @throws UnknownHostException
+	 * @throws IOException
+	 */
+	public DungeonServer(final int portNumber, String chosenMap, ConnectionMode connectionMode, int tickRate, boolean showGUI, boolean cooperative) throws UnknownHostException, IOException {
+		if(cooperative && tickRate <= 0){
+			throw new IllegalArgumentException("Cooperative planning needs a tick rate");
+		}
+		this.connectionMode = connectionMode;
+		if(connectionMode == ConnectionMode.NIO){
+			// new server channel to which clients connect, served by a small pool of event loops
+			nioEngine = new NioConnectionEngine(portNumber, this, NioConnectionEngine.defaultEventLoopCount());
+		}
+		else {
+			ssock = new ServerSocket(portNumber); // new server sockets to which clients connect
+			if(connectionMode == ConnectionMode.VIRTUAL_THREAD){
+				connectionExecutor = VirtualThreads.newThreadPerTaskExecutor();
+			}
+		}
 		setMap(chosenMap);
-		playerPositions = new int[map.getMapHeight()][map.getMapWidth()];
-		wholeMap = new char[map.getMapHeight()][map.getMapWidth()];
+		setUpGame();
 		
-		// Schedule a job for the event-dispatching thread
-				SwingUtilities.invokeLater(new Runnable() {
-					public void run() {
-						// build the game engine GUI
-						gui = new GameEngineGUI(portNumber, map.getMapWidth(), map.getMapHeight());
-						gui.buildGUI();
-						showMap(); // display the map on the GUI as well as its map name
-						gui.changeText("Map name: " + map.getMapName());
-					}
-				});
-				runGame();
+		// in tick mode the changes are published at the end of each tick, otherwise once per frame
+		if(tickRate > 0){
+			tickLoop = new GameTickLoop(this, tickRate);
+			if(cooperative){
+				planner = new CooperativePlanner(map, occupancy);
+			}
+			tickLoop.start();
+		}
+		else {
+			startMapPublisher();
+		}
+		
+		// Schedule a job for the event-dispatching thread, unless running headless
+		if(showGUI){
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					// build the game engine GUI
+					gui = new GameEngineGUI(portNumber, map.getMapWidth(), map.getMapHeight());
+					gui.buildGUI();
+					attachObserver(gui); // display the map on the GUI as well as its map name
+					gui.changeText("Map name: " + map.getMapName());
+				}
+			});
+		}
+		runGame();
 	}
 	
 	/**
@@ -86,11 +225,19 @@ public class DungeonServer implements IServerFunctionality {
 	 * Accept connection once client makes contact.
 	 * Once that happens, create a new thread which creates a new instance of PlayerConnection on its own thread
 	 * i.e. allow multiple connections, each one with its own thread
+	 * In NIO mode, the connections are shared between a small number of event loop threads instead.
+	 * In virtual thread mode, each connection's thread is a virtual thread.
 	 * 
 	 * @throws UnknownHostException
 	 * @throws IOException
 	 */
 	public void runGame() throws UnknownHostException, IOException	{
+		// in NIO mode the engine accepts clients and serves them from its event loops
+		if(connectionMode == ConnectionMode.NIO){
+			nioEngine.runGame();
+			return;
+		}
+		
 		// whilst the server is listening on the port, accept new connections
 		while (isListening) {
 			sock = ssock.accept();
@@ -98,7 +245,8 @@ public class DungeonServer implements IServerFunctionality {
 			try {
 				clientList.add(new PlayerConnection(sock, this));
 			} catch (Exception e) {
-				gui.changeText("Too many clients are already connected. Client " + (clientList.size()+1) + " has been disconnected");
+				report("Too many clients are already connected. Client " + (clientList.size()+1) + " has been disconnected");
+				sock.close(); // close socket
 			}
 		}
 	}
@@ -115,91 +263,272 @@ public class DungeonServer implements IServerFunctionality {
 	 * Mutator method sets the map by loading the example map.
 	 */
 	public void setMap(String chosenMap) {
-		map = new Map(new File("maps", chosenMap + ".txt"));
+		// a map converted to the binary format loads far faster, so use it when there is one
+		File binaryMap = new File("maps", chosenMap + BinaryMapFile.EXTENSION);
+		if (binaryMap.exists()) {
+			map = new Map(binaryMap);
+		}
+		else {
+			map = new Map(new File("maps", chosenMap + ".txt"));
+		}
+	}
+	
+	/**
+	 * Constructor sets up a game on a map which is already loaded, with no network, GUI or publishing thread.
+	 * Used to run the game logic directly, e.g. in benchmarks: players join by creating PlayerConnections on the server,
+	 * and changed tiles are only published when publishMapChanges is called.
+	 * @param map
+	 */
+	public DungeonServer(Map map) {
+		this.connectionMode = ConnectionMode.THREAD_PER_CLIENT;
+		this.map = map;
+		setUpGame();
 	}
 	
 	/**
-	 * Prints whole view of map with players.
+	 * Creates the record of player positions and of changed tiles for the map, once it has been loaded.
+	 */
+	private void setUpGame() {
+		occupancy = new OccupancyIndex(map.getMapHeight(), map.getMapWidth());
+		
+		// record tiles as they change, both player positions here and replaced tiles in the map
+		dirtyTiles = new DirtyTileTracker(map.getMapHeight(), map.getMapWidth());
+		map.setDirtyTileTracker(dirtyTiles);
+		lookSubscriptions = new LookSubscriptions(map.getMapWidth());
+		
+		// these are only worked out once a player first asks for directions
+		goldDistances = new DistanceField(map, 'G');
+		exitDistances = new DistanceField(map, 'E');
+		routes = new HierarchicalPathfinder(map);
+	}
+	
+	/**
+	 * Returns whole view of map with players as text.
+	 * The text is only built when a client asks for it, and is reused until a tile changes.
 	 * @return
 	 */
 	public String showMap()	{
-		String output = "";
+		// take the version before building, so a change made whilst building makes the next call rebuild
+		long version = dirtyTiles.getVersion();
+		MapText cached = mapText;
+		if(cached != null && cached.version == version){
+			return cached.text;
+		}
 		
-		for (int i=0;i<map.getMap().length;i++){
-			for (int j=0;j<map.getMap()[0].length;j++){
-				if(playerPositions[i][j]==1)	{
-					output += 'P';
-					wholeMap[i][j] = 'P';
+		StringBuilder output = new StringBuilder(map.getMapHeight() * (map.getMapWidth() + System.lineSeparator().length()));
+		for (int i=0;i<map.getMapHeight();i++){
+			for (int j=0;j<map.getMapWidth();j++){
+				if(occupancy.isOccupied(i, j))	{
+					output.append('P');
 				}
 				else	{
-					output += map.getMap()[i][j];
-					wholeMap[i][j] = map.getMap()[i][j];
+					output.append(map.lookAtTile(i, j));
 				}
-				
 			}
-			output += System.lineSeparator();
+			output.append(System.lineSeparator());
 		}
 		
-		gui.printMap(wholeMap, map.getMapHeight(), map.getMapWidth());
-		return output;
+		String text = output.toString();
+		mapText = new MapText(text, version);
+		return text;
 	}
 	
 	/**
-	 * Method returns a diagnostic true/fale value for if a position on the map is taken by a player.
-	 * No location in the dungeon can be occupied by two actors (i.e. human players or bots) simultaneously
+	 * Returns the tile the GUI should show at a position - a player if there is one there, otherwise the map tile.
 	 * @param y
 	 * @param x
 	 * @return
 	 */
-	public boolean isTileTaken(int y, int x)	{
+	private char tileWithPlayers(int y, int x) {
+		if(occupancy.isOccupied(y, x)){
+			return 'P';
+		}
+		return map.lookAtTile(y, x);
+	}
+	
+	/**
+	 * Attaches an observer to watch the game, showing it the whole map with players.
+	 * After that it is shown only the tiles which change. The copy of the whole map is only made to be handed over,
+	 * and never written again, so the server doesn't hold one and the observer can read it on any thread.
+	 * @param newObserver
+	 */
+	public synchronized void attachObserver(IGameObserver newObserver) {
+		char[][] wholeMap = new char[map.getMapHeight()][map.getMapWidth()];
+		// attach before filling in the map, so no change made whilst it is filled in is missed
+		observer = newObserver;
+		for (int i=0;i<map.getMapHeight();i++){
+			for (int j=0;j<map.getMapWidth();j++){
+				wholeMap[i][j] = tileWithPlayers(i, j);
+			}
+		}
 		
-		if(playerPositions[y][x] == 1){ // if taken, return true
-			return true;
+		newObserver.showWholeMap(wholeMap, map.getMapHeight(), map.getMapWidth());
+	}
+	
+	/**
+	 * Reports an event to the observer, if there is one.
+	 * @param text
+	 */
+	protected void report(String text) {
+		IGameObserver current = observer;
+		if(current != null){
+			current.showMessage(text);
 		}
-		else if(playerPositions[y][x] == 0){ // if free , return false
-			return false;
+	}
+	
+	/**
+	 * Returns whether client commands should be carried out, which they always are without an observer.
+	 * @return
+	 */
+	protected boolean isAcceptingCommands() {
+		IGameObserver current = observer;
+		return current == null || current.isAcceptingCommands();
+	}
+	
+	/**
+	 * Starts a background thread which publishes the changed tiles to the GUI once per frame.
+	 */
+	private void startMapPublisher() {
+		mapPublisher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "map-publisher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		mapPublisher.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				publishMapChanges();
+			}
+		}, MAP_FRAME_MILLIS, MAP_FRAME_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Gathers up every tile changed since the last frame and re-renders only those tiles on the observer.
+	 * A tile changed many times within a frame is only rendered once, with its latest state.
+	 * Clients which have subscribed are pushed their look window if any of the changed tiles is inside it.
+	 */
+	protected void publishMapChanges() {
+		// with nobody watching and nobody subscribed, the changes are left marked rather than gathered up
+		if(observer == null && lookSubscriptions.isEmpty()){
+			return;
+		}
+		
+		final int[] changed = dirtyTiles.drain();
+		if(changed == null){
+			return;
+		}
+		
+		pushLookWindows(changed);
+		
+		// nothing is rendered without an observer, and an observer attached later is shown the whole map,
+		// which covers any changes made before then
+		final IGameObserver current = observer;
+		if(current == null){
+			return;
+		}
+		
+		// take the current state of each changed tile, so the observer doesn't read state still being changed
+		final char[] tiles = new char[changed.length];
+		int width = map.getMapWidth();
+		for (int i=0;i<changed.length;i++){
+			int y = changed[i] / width;
+			int x = changed[i] % width;
+			tiles[i] = tileWithPlayers(y, x);
 		}
-		return false;
 		
+		current.showChangedTiles(changed, tiles);
 	}
 	
 	/**
-	 * Method updates the player positions 2D array when a new player is added to add them to the map.
+	 * Pushes the look window to every subscribed client which can see at least one of the changed tiles.
+	 * Each client is sent one window per frame however many of the tiles it can see.
+	 * @param changed the indices of the tiles changed this frame
+	 */
+	private void pushLookWindows(int[] changed) {
+		if(lookSubscriptions.isEmpty()){
+			return;
+		}
+		
+		Set<PlayerConnection> watching = new HashSet<PlayerConnection>();
+		int width = map.getMapWidth();
+		for (int i=0;i<changed.length;i++){
+			lookSubscriptions.collectWatching(changed[i] / width, changed[i] % width, watching);
+		}
+		
+		for(PlayerConnection connection : watching){
+			connection.pushLook();
+		}
+	}
+	
+	/**
+	 * Method returns a diagnostic true/fale value for if a position on the map is taken by a player.
+	 * No location in the dungeon can be occupied by two actors (i.e. human players or bots) simultaneously
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	public boolean isTileTaken(int y, int x)	{
+		return occupancy.isOccupied(y, x);
+	}
+	
+	/**
+	 * Method takes a position in the occupancy index when a new player is added to add them to the map.
 	 * @param newY
 	 * @param newX
+	 * @param playerID
+	 * @return true if the position was free and is now taken, false if another player got there first
 	 */
-	public void updatePlayerPositions(int newY, int newX) { // this version is to be called with
-		for(int i=0; i<map.getMapHeight(); i++)	{
-			for (int j=0; j<map.getMapWidth(); j++)	{
-				if(i==newY && j==newX) {
-					playerPositions[i][j]=1;
-				}
-			}
+	public boolean updatePlayerPositions(int newY, int newX, int playerID) {
+		if(!occupancy.claim(newY, newX, playerID)){
+			return false;
 		}
+		dirtyTiles.mark(newY, newX);
+		return true;
 	}
 	
 	/**
-	 * Method updates the player positions 2D array to replace a player's old and new position when they move
+	 * Method updates the occupancy index to replace a player's old and new position when they move
+	 * The player moved is whoever occupies the old position.
 	 * @param oldY
 	 * @param oldX
 	 * @param newY
 	 * @param newX
 	 */
 	public void updatePlayerPositions(int oldY, int oldX, int newY, int newX) {
-		for(int i=0; i<map.getMapHeight(); i++)	{
-			for (int j=0; j<map.getMapWidth(); j++)	{
-				if(i==oldY && j==oldX) {
-					playerPositions[i][j]=0;
-				}
-			}
+		movePlayer(oldY, oldX, newY, newX, occupancy.ownerAt(oldY, oldX));
+	}
+	
+	/**
+	 * Method moves a player from their old position to a new one in a single atomic step.
+	 * No location in the dungeon can be occupied by two actors, so the move fails if the new position is taken.
+	 * No lock is taken, so moves by different players proceed in parallel.
+	 * @param oldY
+	 * @param oldX
+	 * @param newY
+	 * @param newX
+	 * @param playerID
+	 * @return true if the player moved, false if the new position was taken
+	 */
+	public boolean movePlayer(int oldY, int oldX, int newY, int newX, int playerID) {
+		if(!occupancy.move(oldY, oldX, newY, newX, playerID)){
+			return false;
 		}
-		
-		for(int i=0; i<map.getMapHeight(); i++)	{
-			for (int j=0; j<map.getMapWidth(); j++)	{
-				if(i==newY && j==newX) {
-					playerPositions[i][j]=1;
-				}
-			}
+		dirtyTiles.mark(oldY, oldX);
+		dirtyTiles.mark(newY, newX);
+		return true;
+	}
+	
+	/**
+	 * Method removes a player from the occupancy index when they leave the game.
+	 * @param y
+	 * @param x
+	 * @param playerID
+	 */
+	public void removePlayerPosition(int y, int x, int playerID) {
+		if(occupancy.clear(y, x, playerID)){
+			dirtyTiles.mark(y, x);
 		}
 	}
 
@@ -210,6 +539,10 @@ public class DungeonServer implements IServerFunctionality {
 		else if(isListening==false){
 			isListening=true;
 		}
+		// event loops with no clients left have to wake up to notice
+		if(nioEngine != null){
+			nioEngine.wakeup();
+		}
 	}
 	
 }
@@ -0,0 +1,270 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for loading maps and playing games without a network
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Counts the steps a bot takes to escape a dungeon - to pick up the gold it needs and reach an exit - with each way
+ * a bot can choose its moves, playing one bot at a time in a game with no network:
+ *
+ *   random    a random direction every step, as the GUI bot used to
+ *   window    the stateless BotBrain, which heads for gold and exits it can see in its look window and otherwise wanders
+ *   explorer  an ExploredWorld, which remembers everything seen, heads for remembered gold and exits, and explores otherwise
+ *   nav       the server's answer to NAV, from its distance fields to the nearest gold and exit
+ *
+ * Every step is a MOVE followed by a PICKUP, as the bots send, and a move into a wall or another player still counts.
+ * Each trial starts a new game at a random position from which gold and an exit can be reached,
+ * chosen from the trial's seed so every way of choosing moves starts from the same places.
+ * A trial which hasn't escaped within the limit counts as the limit.
+ *
+ * Usage: java ExplorationBenchmark [--maps example,50,100] [--win 5] [--trials 100] [--limit 1000000] [--seed 1]
+ * The maps are "example" or the size of a generated square dungeon, which needs --win gold to escape.
+ *
+ * @author 18181
+ */
+public class ExplorationBenchmark {
+
+	// every way of choosing moves, in the order they are run
+	private static final String[] STRATEGIES = {"random", "window", "explorer", "nav"};
+
+	// the directions a bot can move in, and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// the number of times the bot is tried at a new random position before the map is taken to be full
+	private static final int PLACEMENT_ATTEMPTS = 100;
+
+	// the map played, and the most steps a trial may take
+	private final File mapFile;
+	private final int limit;
+
+	/**
+	 * Constructor sets up the map to play.
+	 * @param mapFile
+	 * @param limit
+	 */
+	public ExplorationBenchmark(File mapFile, int limit) {
+		this.mapFile = mapFile;
+		this.limit = limit;
+	}
+
+	/**
+	 * Plays one game with a way of choosing moves until the bot escapes.
+	 * @param strategy
+	 * @param seed
+	 * @return the steps taken to escape, or the limit if the bot didn't
+	 * @throws Exception if the bot couldn't be placed on the map
+	 */
+	public int play(String strategy, long seed) throws Exception {
+		// the bot picks up gold, so every game starts from a fresh copy of the map
+		DungeonServer server = new DungeonServer(new Map(mapFile));
+		PlayerConnection bot = place(server);
+		Random random = new Random(seed);
+		moveToStart(server, bot, random);
+		BotBrain brain = new BotBrain(true);
+		ExploredWorld world = new ExploredWorld();
+
+		char[] look = bot.lookTiles();
+		world.see(look);
+		for (int steps = 1; steps <= limit; steps++) {
+			boolean needGold = bot.goldRemaining() > 0;
+			char direction;
+			switch (strategy) {
+				case "random":
+					direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+					break;
+				case "window":
+					direction = brain.chooseDirection(look, needGold, random);
+					break;
+				case "nav":
+					// the server has no step to suggest when the bot is on gold it hasn't picked up
+					direction = bot.navigate();
+					if (direction == 0) {
+						direction = brain.chooseDirection(world, needGold, random);
+					}
+					break;
+				default:
+					direction = brain.chooseDirection(world, needGold, random);
+			}
+
+			// stepping onto an exit with enough gold wins, which ends the server's game, so it is counted here instead
+			int d = indexOf(direction);
+			int[] position = bot.getPlayerPosition();
+			if (!needGold && server.map.lookAtTile(position[0] + ROW_STEP[d], position[1] + COLUMN_STEP[d]) == 'E') {
+				return steps;
+			}
+
+			if (bot.moveTo(direction)) {
+				look = bot.lookTiles();
+				world.moved(direction);
+				world.see(look);
+			}
+			else {
+				world.failed(direction);
+			}
+			bot.pickupGold();
+		}
+		return limit;
+	}
+
+	/**
+	 * Returns the index of a direction.
+	 * @param direction
+	 * @return
+	 */
+	private static int indexOf(char direction) {
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (DIRECTIONS[d] == direction) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the bot to a game at a random free position, as when it connects, answering into nothing.
+	 * Also used by CooperationBenchmark, to fill a game with bots.
+	 * @param server
+	 * @return
+	 * @throws Exception if there isn't a free position for it
+	 */
+	static PlayerConnection place(DungeonServer server) throws Exception {
+		// a player whose random position is a wall only searches a few more positions, so give it more tries
+		PlayerConnection bot = null;
+		for (int attempt = 1; bot == null; attempt++) {
+			try {
+				bot = new PlayerConnection(server);
+			} catch (Exception e) {
+				if (attempt == PLACEMENT_ATTEMPTS) {
+					throw e;
+				}
+			}
+		}
+		bot.dataToClient = new PrintWriter(Writer.nullWriter());
+		server.clientList.add(bot);
+		return bot;
+	}
+
+	/**
+	 * Moves the bot to a random floor tile from which it can reach both gold and an exit,
+	 * as generated dungeons have pockets which are walled in.
+	 * @param server
+	 * @param bot
+	 * @param random
+	 */
+	private static void moveToStart(DungeonServer server, PlayerConnection bot, Random random) {
+		int height = server.map.getMapHeight();
+		int width = server.map.getMapWidth();
+		while (true) {
+			int y = random.nextInt(height);
+			int x = random.nextInt(width);
+			if (server.map.lookAtTile(y, x) != '.'
+					|| server.goldDistances.stepsFrom(y, x) == DistanceField.UNREACHABLE
+					|| server.exitDistances.stepsFrom(y, x) == DistanceField.UNREACHABLE) {
+				continue;
+			}
+			int[] position = bot.getPlayerPosition();
+			if (server.movePlayer(position[0], position[1], y, x, bot.getPlayerID())) {
+				bot.setPlayerPosition(new int[] {y, x});
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Plays a number of trials with every way of choosing moves, and prints the steps each took to escape.
+	 * @param mapName
+	 * @param trials
+	 * @param seed
+	 * @throws Exception
+	 */
+	public void runAll(String mapName, int trials, long seed) throws Exception {
+		System.out.println();
+		System.out.println("Steps to escape the " + mapName + " map over " + trials + " trials");
+		System.out.printf("%-10s %8s %10s %10s %10s %10s%n", "", "escaped", "median", "mean", "p90", "max");
+		for (String strategy : STRATEGIES) {
+			int[] steps = new int[trials];
+			int escaped = 0;
+			for (int trial = 0; trial < trials; trial++) {
+				steps[trial] = play(strategy, seed + trial);
+				if (steps[trial] < limit) {
+					escaped++;
+				}
+			}
+
+			Arrays.sort(steps);
+			double sum = 0;
+			for (int s : steps) {
+				sum += s;
+			}
+			System.out.printf(Locale.ROOT, "%-10s %8s %10d %10.1f %10d %10d%n", strategy, escaped + "/" + trials,
+					steps[trials / 2], sum / trials, steps[(int) (trials * 0.9)], steps[trials - 1]);
+		}
+	}
+
+	/**
+	 * Main method reads the settings and plays every map.
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		String maps = "example,50,100";
+		int win = 5;
+		int trials = 100;
+		int limit = 1000000;
+		long seed = 1;
+
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--maps": maps = value; break;
+					case "--win": win = Integer.parseInt(value); break;
+					case "--trials": trials = Integer.parseInt(value); break;
+					case "--limit": limit = Integer.parseInt(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("unknown option " + args[i]);
+				}
+			}
+			if (args.length % 2 != 0) {
+				throw new IllegalArgumentException("option " + args[args.length - 1] + " has no value");
+			}
+			if (trials < 1 || limit < 1) {
+				throw new IllegalArgumentException("there must be at least one trial and one step");
+			}
+		} catch (IllegalArgumentException e) { // covers invalid numbers too
+			System.err.println(e.getMessage());
+			System.err.println("usage: java ExplorationBenchmark [--maps example,50,100] [--win n] [--trials n] [--limit steps] [--seed n]");
+			System.exit(-1);
+		}
+
+		for (String map : maps.split(",")) {
+			map = map.trim();
+			File mapFile;
+			if (map.equals("example")) {
+				mapFile = new File("maps" + File.separator + "example_map.txt");
+			}
+			else {
+				mapFile = File.createTempFile("exploration", ".txt");
+				mapFile.deleteOnExit();
+				TileStorageBenchmark.writeMapFile(mapFile, Integer.parseInt(map), win);
+			}
+			new ExplorationBenchmark(mapFile, limit).runAll(map, trials, seed);
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for clearing the memory and choosing directions at random
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A bot's memory of the dungeon it has explored, stitched together from the look windows it is sent.
+ * The bot never learns where it is on the map, so it keeps its own position by dead reckoning: it starts
+ * in the middle of an empty grid, and moves one tile whenever the server says a move succeeded.
+ * Each look window is then written into the grid around that position, which grows as the bot wanders.
+ *
+ * The bot plans with a breadth first search across the tiles it remembers: it heads for the nearest gold it
+ * still needs, or the nearest exit once it has enough, and if it remembers neither it heads for the nearest
+ * frontier - a tile it could walk onto next to one it has never seen - so every step uncovers new ground
+ * rather than going back over old ground as a random walk does.
+ *
+ * Walls never move, so if a look window ever disagrees with the walls remembered around the bot, its
+ * reckoning has gone wrong, and the memory is wiped rather than trusted.
+ * A world is used by one bot, and isn't safe to use from more than one thread at a time.
+ *
+ * @author 18181
+ */
+public class ExploredWorld implements IGrid {
+
+	// size of the look window, and how far the bot sees from the middle of it
+	private static final int WINDOW = 5;
+	private static final int RADIUS = WINDOW / 2;
+
+	// the tile stored where nothing has been seen yet
+	private static final char UNKNOWN = 0;
+
+	// how many rows or columns the grid grows by at least, so it doesn't grow by a little on every step
+	private static final int GROWTH = 16;
+
+	// the directions a bot can move in, and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// the tiles remembered, row by row, and the size of the grid
+	private char[] tiles;
+	private int height;
+	private int width;
+
+	// the bot's position in the grid
+	private int y;
+	private int x;
+
+	// tiles next to the bot which can't be walked onto for now - other players in the last look window,
+	// or where a move just failed - as changes in row and column from the bot
+	private final int[] blockedRows = new int[WINDOW * WINDOW];
+	private final int[] blockedColumns = new int[WINDOW * WINDOW];
+	private int blockedCount = 0;
+
+	// whether exits can be walked onto in the current plan
+	private boolean exitsWalkable = true;
+
+	// for the breadth first search: the search which last reached each tile and the first step taken towards it,
+	// the queue of tiles to visit, and the number of the current search
+	private int[] reachedBy = new int[0];
+	private byte[] firstStep = new byte[0];
+	private int[] queue = new int[0];
+	private int search = 0;
+
+	// how many times the look windows have disagreed with what was remembered
+	private int resets = 0;
+
+	/**
+	 * Constructor creates an empty memory with the bot in the middle of it.
+	 */
+	public ExploredWorld() {
+		height = GROWTH;
+		width = GROWTH;
+		tiles = new char[height * width];
+		y = height / 2;
+		x = width / 2;
+	}
+
+	/**
+	 * Writes a look window into the memory around the bot.
+	 * Other players are remembered as floor where nothing else is known, as that is all that can be said of the tile
+	 * under them, and are kept out of the next plan. The bot's own tile is floor, as any gold on it has been picked up.
+	 * @param look the 25 tiles of the look window, row by row, with the bot in the middle
+	 */
+	public void see(char[] look) {
+		ensureRoom(y, x);
+		if (disagrees(look)) {
+			forget();
+		}
+
+		blockedCount = 0;
+		for (int row = 0; row < WINDOW; row++) {
+			for (int column = 0; column < WINDOW; column++) {
+				char tile = look[row * WINDOW + column];
+				int index = (y + row - RADIUS) * width + (x + column - RADIUS);
+				// the corners are hidden from the bot, so say nothing
+				if (tile == 'X') {
+					continue;
+				}
+				if (row == RADIUS && column == RADIUS) {
+					if (tiles[index] != 'E') {
+						tiles[index] = '.';
+					}
+				}
+				else if (tile == 'P') {
+					if (tiles[index] == UNKNOWN) {
+						tiles[index] = '.';
+					}
+					blockedRows[blockedCount] = row - RADIUS;
+					blockedColumns[blockedCount++] = column - RADIUS;
+				}
+				else {
+					tiles[index] = tile;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the bot one tile, once the server has said the move succeeded.
+	 * @param direction one of N, E, S or W
+	 */
+	public void moved(char direction) {
+		int d = directionIndex(direction);
+		y += ROW_STEP[d];
+		x += COLUMN_STEP[d];
+		ensureRoom(y, x);
+		blockedCount = 0;
+	}
+
+	/**
+	 * Keeps the tile in a direction out of the next plan, once the server has said a move there failed.
+	 * A wall would already be remembered, so it is most likely another player, who will move on.
+	 * @param direction one of N, E, S or W
+	 */
+	public void failed(char direction) {
+		int d = directionIndex(direction);
+		if (blockedCount < blockedRows.length) {
+			blockedRows[blockedCount] = ROW_STEP[d];
+			blockedColumns[blockedCount++] = COLUMN_STEP[d];
+		}
+	}
+
+	/**
+	 * Returns the direction to move next: the first step towards the nearest gold while more is needed,
+	 * or the nearest exit if the bot may leave, else towards the nearest frontier, else in a random direction which isn't blocked.
+	 * @param needGold whether the bot still needs more gold to win
+	 * @param mayExit whether the bot may step onto an exit
+	 * @param random
+	 * @return one of N, E, S or W
+	 */
+	public char nextDirection(boolean needGold, boolean mayExit, Random random) {
+		exitsWalkable = mayExit;
+		char target = needGold ? 'G' : (mayExit ? 'E' : UNKNOWN);
+
+		// the directions are tried from a random starting point, so bots sharing a map don't all take the same paths
+		int offset = random.nextInt(DIRECTIONS.length);
+		int step = firstStepTowards(target, offset);
+		if (step >= 0) {
+			return DIRECTIONS[step];
+		}
+
+		// nothing left to explore can be reached, so wander
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			int d = (offset + i) % DIRECTIONS.length;
+			if (isWalkable(y + ROW_STEP[d], x + COLUMN_STEP[d])) {
+				return DIRECTIONS[d];
+			}
+		}
+		return DIRECTIONS[offset];
+	}
+
+	/**
+	 * Searches out from the bot across the tiles it can walk onto, and returns the first step towards the nearest
+	 * tile of a type, or failing that the nearest frontier.
+	 * @param target the type of tile wanted, or UNKNOWN to only explore
+	 * @param offset the direction tried first from each tile
+	 * @return the index of the direction of the first step, or -1 if there is nowhere to go
+	 */
+	private int firstStepTowards(char target, int offset) {
+		startSearch();
+		int start = y * width + x;
+		reachedBy[start] = search;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		int frontierStep = -1;
+
+		while (head < tail) {
+			int tile = queue[head++];
+			int tileY = tile / width;
+			int tileX = tile - tileY * width;
+
+			if (tile != start) {
+				if (tiles[tile] == target) {
+					return firstStep[tile];
+				}
+				// keep searching for the target, but remember the way to the nearest frontier
+				if (frontierStep < 0 && isFrontier(tileY, tileX)) {
+					frontierStep = firstStep[tile];
+				}
+			}
+
+			for (int i = 0; i < DIRECTIONS.length; i++) {
+				int d = (offset + i) % DIRECTIONS.length;
+				int nextY = tileY + ROW_STEP[d];
+				int nextX = tileX + COLUMN_STEP[d];
+				if (!isWalkable(nextY, nextX)) {
+					continue;
+				}
+				int next = nextY * width + nextX;
+				if (reachedBy[next] == search) {
+					continue;
+				}
+				reachedBy[next] = search;
+				// the first step is the direction out of the start, which every later tile inherits
+				firstStep[next] = tile == start ? (byte) d : firstStep[tile];
+				queue[tail++] = next;
+			}
+		}
+		return frontierStep;
+	}
+
+	/**
+	 * Gets the search arrays ready for a new search of the grid.
+	 */
+	private void startSearch() {
+		if (reachedBy.length < tiles.length) {
+			reachedBy = new int[tiles.length];
+			firstStep = new byte[tiles.length];
+			queue = new int[tiles.length];
+			search = 0;
+		}
+
+		// when the search numbers run out, start again from an array which has been cleared
+		if (search == Integer.MAX_VALUE) {
+			Arrays.fill(reachedBy, 0);
+			search = 0;
+		}
+		search++;
+	}
+
+	/**
+	 * Returns whether a tile is next to one which has never been seen.
+	 * @param tileY
+	 * @param tileX
+	 * @return
+	 */
+	private boolean isFrontier(int tileY, int tileX) {
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (tileAt(tileY + ROW_STEP[d], tileX + COLUMN_STEP[d]) == UNKNOWN) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether a look window disagrees with the walls remembered around the bot.
+	 * @param look
+	 * @return
+	 */
+	private boolean disagrees(char[] look) {
+		for (int row = 0; row < WINDOW; row++) {
+			for (int column = 0; column < WINDOW; column++) {
+				char seen = look[row * WINDOW + column];
+				char remembered = tiles[(y + row - RADIUS) * width + (x + column - RADIUS)];
+				if (seen != 'X' && remembered != UNKNOWN && (seen == '#') != (remembered == '#')) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Wipes the memory, keeping the bot where it is in the grid.
+	 */
+	private void forget() {
+		Arrays.fill(tiles, UNKNOWN);
+		blockedCount = 0;
+		resets++;
+	}
+
+	/**
+	 * Grows the grid if the look window around a position wouldn't fit inside it.
+	 * @param centreY
+	 * @param centreX
+	 */
+	private void ensureRoom(int centreY, int centreX) {
+		int top = RADIUS - centreY;
+		int bottom = centreY + RADIUS - (height - 1);
+		int left = RADIUS - centreX;
+		int right = centreX + RADIUS - (width - 1);
+		if (top <= 0 && bottom <= 0 && left <= 0 && right <= 0) {
+			return;
+		}
+
+		// grow each side which is too small by at least GROWTH, keeping the tiles where they were relative to the bot
+		top = top > 0 ? Math.max(top, GROWTH) : 0;
+		bottom = bottom > 0 ? Math.max(bottom, GROWTH) : 0;
+		left = left > 0 ? Math.max(left, GROWTH) : 0;
+		right = right > 0 ? Math.max(right, GROWTH) : 0;
+
+		int newHeight = height + top + bottom;
+		int newWidth = width + left + right;
+		char[] grown = new char[newHeight * newWidth];
+		for (int row = 0; row < height; row++) {
+			System.arraycopy(tiles, row * width, grown, (row + top) * newWidth + left, width);
+		}
+		tiles = grown;
+		height = newHeight;
+		width = newWidth;
+		y += top;
+		x += left;
+	}
+
+	/**
+	 * Returns the index of a direction.
+	 * @param direction
+	 * @return
+	 * @throws IllegalArgumentException if it isn't N, E, S or W
+	 */
+	private static int directionIndex(char direction) {
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (DIRECTIONS[d] == direction) {
+				return d;
+			}
+		}
+		throw new IllegalArgumentException("not a direction: " + direction);
+	}
+
+	/**
+	 * Returns the tile remembered at a position, or UNKNOWN if it is outside the grid.
+	 * @param tileY
+	 * @param tileX
+	 * @return
+	 */
+	public char tileAt(int tileY, int tileX) {
+		if (tileY < 0 || tileY >= height || tileX < 0 || tileX >= width) {
+			return UNKNOWN;
+		}
+		return tiles[tileY * width + tileX];
+	}
+
+	/**
+	 * Returns the number of rows in the grid.
+	 * @return
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of columns in the grid.
+	 * @return
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns whether the bot may walk onto a remembered tile: not unseen, a wall, blocked for now,
+	 * or an exit unless the last plan allowed them.
+	 * @param tileY
+	 * @param tileX
+	 * @return
+	 */
+	public boolean isWalkable(int tileY, int tileX) {
+		char tile = tileAt(tileY, tileX);
+		if (tile == UNKNOWN || tile == '#' || (tile == 'E' && !exitsWalkable)) {
+			return false;
+		}
+		for (int i = 0; i < blockedCount; i++) {
+			if (tileY == y + blockedRows[i] && tileX == x + blockedColumns[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the row of the bot in the grid.
+	 * @return
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Returns the column of the bot in the grid.
+	 * @return
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Returns how many tiles have been seen.
+	 * @return
+	 */
+	public int getExplored() {
+		int explored = 0;
+		for (char tile : tiles) {
+			if (tile != UNKNOWN) {
+				explored++;
+			}
+		}
+		return explored;
+	}
+
+	/**
+	 * Returns how many times the memory has been wiped because a look window disagreed with it.
+	 * @return
+	 */
+	public int getResets() {
+		return resets;
+	}
+}
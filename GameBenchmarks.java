@@ -0,0 +1,384 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for setting up games to benchmark
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+/**
+ * Benchmarks the hot paths of the game logic, without any network or GUI, so a change which slows one of them down is caught.
+ * Each benchmark is run on every map size given, with every number of players which fits on the map:
+ *
+ *   lookWindow             Map.lookWindow around a player
+ *   look                   PlayerConnection.look, the whole LOOK reply
+ *   parseCommand           PlayerConnection.parseCommand, cycling through HELLO, MOVE, LOOK and PICKUP
+ *   showMap                DungeonServer.showMap after a tile has changed, so the map text is rebuilt every time
+ *   updatePlayerPositions  DungeonServer.updatePlayerPositions, moving a player to a free tile next to them and back
+ *   botSearch              ExploredWorld.nextDirection, a bot planning its next step across a look window it has seen
+ *   navigate               PlayerConnection.navigate, the NAV answer looked up in the server's distance field to gold
+ *
+ * A map size is either "example", for maps/example_map.txt, or a number for a generated square dungeon of that size.
+ * Generated maps are written to a temporary map file first, so the largest are memory-mapped as they are when served.
+ * Results can be written in JMH's JSON format and compared with a baseline file from an earlier run,
+ * in which case the exit code is the number of benchmarks which have regressed.
+ * The 10,000 x 10,000 dungeon needs a large heap, e.g. java -Xmx3g GameBenchmarks
+ *
+ * Usage: java GameBenchmarks [--sizes example,100,1000,10000] [--players 1,100,1000] [--benchmarks all]
+ *                            [--warmup 3] [--iterations 5] [--time 1000] [--json file] [--baseline file] [--threshold 10]
+ * The time of each iteration is in milliseconds, and the threshold is how much slower, in percent, counts as a regression.
+ *
+ * @author 18181
+ */
+public class GameBenchmarks {
+
+	// every benchmark, in the order they are run
+	private static final String[] BENCHMARKS = {"lookWindow", "look", "parseCommand", "showMap", "updatePlayerPositions", "botSearch", "navigate"};
+
+	// the commands parseCommand cycles through
+	private static final String[] COMMANDS = {"HELLO", "MOVE N", "LOOK", "MOVE E", "PICKUP", "MOVE S", "LOOK", "MOVE W"};
+
+	// the number of times a player is tried at a new random position before the map is taken to be full
+	private static final int PLACEMENT_ATTEMPTS = 100;
+
+	// the most look windows botSearch plans across
+	private static final int SEARCH_WINDOWS = 256;
+
+	// the runner timing the benchmarks, and the benchmarks chosen to run
+	private final BenchmarkRunner runner;
+	private final ArrayList<String> selected;
+
+	/**
+	 * Constructor sets up the runner and the benchmarks to run.
+	 * @param runner
+	 * @param selected
+	 */
+	public GameBenchmarks(BenchmarkRunner runner, ArrayList<String> selected) {
+		this.runner = runner;
+		this.selected = selected;
+	}
+
+	/**
+	 * Runs every selected benchmark with each number of players on a map.
+	 * @param map
+	 * @param mapSize the name of the map size, reported as a parameter
+	 * @param playerCounts
+	 */
+	public void runAll(Map map, String mapSize, int[] playerCounts) {
+		for (int players : playerCounts) {
+			// each player count starts a new game, so the players of the last one are gone
+			DungeonServer server = new DungeonServer(map);
+			ArrayList<PlayerConnection> connections;
+			try {
+				connections = addPlayers(server, players);
+			} catch (Exception e) {
+				System.out.println("Skipping " + players + " players on the " + mapSize + " map, which has no room for them");
+				continue;
+			}
+
+			LinkedHashMap<String, String> params = new LinkedHashMap<String, String>();
+			params.put("mapSize", mapSize);
+			params.put("players", Integer.toString(players));
+
+			for (String benchmark : BENCHMARKS) {
+				if (!selected.contains(benchmark)) {
+					continue;
+				}
+				runner.run(benchmark, params, operation(benchmark, server, connections));
+			}
+		}
+	}
+
+	/**
+	 * Adds players to a game, each at a random free position as when they connect, answering into nothing.
+	 * @param server
+	 * @param players
+	 * @return
+	 * @throws Exception if there isn't a free position left for a player
+	 */
+	private static ArrayList<PlayerConnection> addPlayers(DungeonServer server, int players) throws Exception {
+		ArrayList<PlayerConnection> connections = new ArrayList<PlayerConnection>();
+		for (int i = 0; i < players; i++) {
+			// a player whose random position is a wall only searches a few more positions, so give them more tries
+			PlayerConnection connection = null;
+			for (int attempt = 1; connection == null; attempt++) {
+				try {
+					connection = new PlayerConnection(server);
+				} catch (Exception e) {
+					if (attempt == PLACEMENT_ATTEMPTS) {
+						throw e;
+					}
+				}
+			}
+			connection.dataToClient = new PrintWriter(Writer.nullWriter());
+			server.clientList.add(connection);
+			connections.add(connection);
+		}
+		return connections;
+	}
+
+	/**
+	 * Creates the operation for a benchmark, taking its turns with each player in turn.
+	 * @param benchmark
+	 * @param server
+	 * @param connections
+	 * @return
+	 */
+	private BenchmarkRunner.Operation operation(String benchmark, final DungeonServer server, final ArrayList<PlayerConnection> connections) {
+		switch (benchmark) {
+			case "lookWindow":
+				return new BenchmarkRunner.Operation() {
+					int next = 0;
+					@Override
+					public long run() {
+						int[] position = connections.get(next).playerPosition;
+						next = (next + 1) % connections.size();
+						return server.map.lookWindow(server.occupancy, position[0], position[1], 5)[1][1];
+					}
+				};
+			case "navigate":
+				return new BenchmarkRunner.Operation() {
+					int next = 0;
+					@Override
+					public long run() {
+						PlayerConnection connection = connections.get(next);
+						next = (next + 1) % connections.size();
+						return connection.navigate();
+					}
+				};
+			case "look":
+				return new BenchmarkRunner.Operation() {
+					int next = 0;
+					@Override
+					public long run() {
+						PlayerConnection connection = connections.get(next);
+						next = (next + 1) % connections.size();
+						return connection.look().length();
+					}
+				};
+			case "parseCommand":
+				return new BenchmarkRunner.Operation() {
+					int next = 0;
+					int command = 0;
+					@Override
+					public long run() {
+						PlayerConnection connection = connections.get(next);
+						next = (next + 1) % connections.size();
+						// the command changes once every player has had a turn, so each player works through all of them
+						if (next == 0) {
+							command = (command + 1) % COMMANDS.length;
+						}
+						try {
+							return connection.parseCommand(COMMANDS[command]).length();
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				};
+			case "showMap":
+				return new BenchmarkRunner.Operation() {
+					int next = 0;
+					@Override
+					public long run() {
+						int[] position = connections.get(next).playerPosition;
+						next = (next + 1) % connections.size();
+						server.dirtyTiles.mark(position[0], position[1]);
+						return server.showMap().length();
+					}
+				};
+			case "updatePlayerPositions":
+				return updatePlayerPositions(server, connections);
+			case "botSearch":
+				return botSearch(connections);
+			default:
+				throw new IllegalArgumentException("no benchmark called " + benchmark);
+		}
+	}
+
+	/**
+	 * Creates the operation moving players to a free tile next to them and back again.
+	 * Players boxed in by walls and other players are left out.
+	 * @param server
+	 * @param connections
+	 * @return
+	 */
+	private static BenchmarkRunner.Operation updatePlayerPositions(final DungeonServer server, ArrayList<PlayerConnection> connections) {
+		// each move as from y, from x, to y, to x
+		final ArrayList<int[]> moves = new ArrayList<int[]>();
+		int[][] offsets = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+		for (PlayerConnection connection : connections) {
+			int[] position = connection.playerPosition;
+			for (int[] offset : offsets) {
+				int y = position[0] + offset[0];
+				int x = position[1] + offset[1];
+				if (server.map.lookAtTile(y, x) != '#' && !server.isTileTaken(y, x)) {
+					moves.add(new int[] {position[0], position[1], y, x});
+					break;
+				}
+			}
+		}
+		if (moves.isEmpty()) {
+			throw new IllegalStateException("every player is boxed in");
+		}
+
+		return new BenchmarkRunner.Operation() {
+			int next = 0;
+			@Override
+			public long run() {
+				int[] move = moves.get(next);
+				next = (next + 1) % moves.size();
+				server.updatePlayerPositions(move[0], move[1], move[2], move[3]);
+				server.updatePlayerPositions(move[2], move[3], move[0], move[1]);
+				return move[2];
+			}
+		};
+	}
+
+	/**
+	 * Creates the operation planning a bot's next step across the players' look windows, each stitched into
+	 * a bot's memory of its own, towards gold if the window shows any and otherwise towards ground not yet seen.
+	 * @param connections
+	 * @return
+	 */
+	private static BenchmarkRunner.Operation botSearch(ArrayList<PlayerConnection> connections) {
+		final Random random = new Random(0);
+
+		// a memory of each look window, as a bot has just seen it
+		final ArrayList<ExploredWorld> worlds = new ArrayList<ExploredWorld>();
+		for (int w = 0; w < SEARCH_WINDOWS; w++) {
+			ExploredWorld world = new ExploredWorld();
+			world.see(connections.get(w % connections.size()).lookTiles());
+			worlds.add(world);
+		}
+
+		return new BenchmarkRunner.Operation() {
+			int next = 0;
+			@Override
+			public long run() {
+				ExploredWorld world = worlds.get(next);
+				next = (next + 1) % worlds.size();
+				return world.nextDirection(true, true, random);
+			}
+		};
+	}
+
+	/**
+	 * Loads the map for a map size.
+	 * @param mapSize "example" or the size of a generated square dungeon
+	 * @return
+	 * @throws IOException
+	 */
+	private static Map loadMap(String mapSize) throws IOException {
+		if (mapSize.equals("example")) {
+			return new Map(new File("maps" + File.separator + "example_map.txt"));
+		}
+
+		File mapFile = File.createTempFile("benchmark", ".txt");
+		mapFile.deleteOnExit();
+		TileStorageBenchmark.writeMapFile(mapFile, Integer.parseInt(mapSize));
+		return new Map(mapFile);
+	}
+
+	/**
+	 * Turns a comma separated list of numbers into an array.
+	 * @param list
+	 * @return
+	 */
+	private static int[] parseNumbers(String list) {
+		String[] parts = list.split(",");
+		int[] numbers = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			numbers[i] = Integer.parseInt(parts[i].trim());
+		}
+		return numbers;
+	}
+
+	/**
+	 * Main method reads the settings, runs the benchmarks on each map, then exports and compares the results.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		String sizes = "example,100,1000,10000";
+		String players = "1,100,1000";
+		String benchmarks = "all";
+		int warmup = 3;
+		int iterations = 5;
+		long time = 1000;
+		String json = null;
+		String baseline = null;
+		double threshold = 10;
+
+		ArrayList<String> selected = new ArrayList<String>();
+		int[] playerCounts = null;
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--sizes": sizes = value; break;
+					case "--players": players = value; break;
+					case "--benchmarks": benchmarks = value; break;
+					case "--warmup": warmup = Integer.parseInt(value); break;
+					case "--iterations": iterations = Integer.parseInt(value); break;
+					case "--time": time = Long.parseLong(value); break;
+					case "--json": json = value; break;
+					case "--baseline": baseline = value; break;
+					case "--threshold": threshold = Double.parseDouble(value); break;
+					default: throw new IllegalArgumentException("unknown option " + args[i]);
+				}
+			}
+			if (args.length % 2 != 0) {
+				throw new IllegalArgumentException("option " + args[args.length - 1] + " has no value");
+			}
+
+			for (String benchmark : benchmarks.split(",")) {
+				if (benchmark.equals("all")) {
+					selected.addAll(Arrays.asList(BENCHMARKS));
+				}
+				else if (Arrays.asList(BENCHMARKS).contains(benchmark)) {
+					selected.add(benchmark);
+				}
+				else {
+					throw new IllegalArgumentException("no benchmark called " + benchmark);
+				}
+			}
+			playerCounts = parseNumbers(players);
+		} catch (IllegalArgumentException e) { // covers invalid numbers too
+			System.err.println(e.getMessage());
+			System.err.println("usage: java GameBenchmarks [--sizes example,100,1000,10000] [--players 1,100,1000] "
+					+ "[--benchmarks " + String.join(",", BENCHMARKS) + "] [--warmup n] [--iterations n] [--time ms] "
+					+ "[--json file] [--baseline file] [--threshold %]");
+			System.exit(-1);
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, time);
+		GameBenchmarks suite = new GameBenchmarks(runner, selected);
+		for (String mapSize : sizes.split(",")) {
+			System.out.println("Loading the " + mapSize + " map");
+			Map map = loadMap(mapSize.trim());
+			suite.runAll(map, mapSize.trim(), playerCounts);
+		}
+
+		if (json != null) {
+			runner.writeJson(new File(json));
+		}
+		if (baseline != null) {
+			int regressions = runner.compare(new File(baseline), threshold);
+			System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+			System.exit(regressions);
+		}
+	}
+}
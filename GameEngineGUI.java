@@ -23,12 +23,15 @@ import javax.swing.*;
  * It displays a god's eye view of the map with players overlaid on it
  * It reports the IP for the server.
  * It allows the user to turn listening to clients on/off.
+ * It is attached to the server as an observer, and does all its drawing on the event dispatch thread.
+ * @implements IGameObserver
  * @author cjd47
  */
-public class GameEngineGUI {
+public class GameEngineGUI implements IGameObserver {
 	
-	// declare a radio button to turn on/off listening to clients
+	// declare a radio button to turn on/off listening to clients, and whether it is selected, for reading from other threads
 	JRadioButton listening;
+	volatile boolean listeningSelected = true;
 	
 	// declare the panel where the map will be stored as well as the text pane as public so that they can be updated from any method
 	JPanel leftPanel;
@@ -40,6 +43,9 @@ public class GameEngineGUI {
 	int mapWidth;
 	int mapHeight;
 	
+	// the component showing the map, which redraws only the tiles that change
+	MapCanvas mapCanvas;
+	
 	/**
 	 * Constructor method for the game engine GUI sets local variables to corresponding parameters.
 	 * @param portNumber
@@ -65,7 +71,62 @@ public class GameEngineGUI {
 	 * @return
 	 */
 	public boolean isListeningSelected(){
-		return listening.isSelected();
+		return listeningSelected;
+	}
+	
+	/**
+	 * Appends a message from the server to the text pane, on the event dispatch thread.
+	 * @param text
+	 */
+	@Override
+	public void showMessage(final String text) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				changeText(text);
+			}
+		});
+	}
+	
+	/**
+	 * Client commands are carried out whilst the listening button is selected.
+	 * @return
+	 */
+	@Override
+	public boolean isAcceptingCommands() {
+		return listeningSelected;
+	}
+	
+	/**
+	 * Shows the whole map when the GUI is attached to the server, on the event dispatch thread.
+	 * @param wholeMap
+	 * @param height
+	 * @param width
+	 */
+	@Override
+	public void showWholeMap(final char[][] wholeMap, final int height, final int width) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			printMap(wholeMap, height, width);
+			return;
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				printMap(wholeMap, height, width);
+			}
+		});
+	}
+	
+	/**
+	 * Shows the tiles which have changed, on the event dispatch thread.
+	 * @param changed
+	 * @param tiles
+	 */
+	@Override
+	public void showChangedTiles(final int[] changed, final char[] tiles) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				updateTiles(changed, tiles);
+			}
+		});
 	}
 	
 	/**
@@ -107,7 +168,7 @@ public class GameEngineGUI {
 		// change top panel layout to FlowLayout with left alignment
 		FlowLayout flowLayout = new FlowLayout(FlowLayout.CENTER);
 			topPanel.setLayout(flowLayout);
-		leftPanel.setLayout(new GridBagLayout());
+		leftPanel.setLayout(new BorderLayout());
 		
 		// create labels for button titles
 		JLabel commandsTitle = new JLabel("COMMANDS");
@@ -164,6 +225,12 @@ public class GameEngineGUI {
 			listening.setBackground(Color.BLACK);
 			listening.setFont(new Font("Lucida Console", Font.BOLD, 16));
 			listening.setForeground(new Color(0,255,9));
+			listening.addItemListener(new ItemListener() {
+				@Override
+				public void itemStateChanged(ItemEvent e) {
+					listeningSelected = listening.isSelected();
+				}
+			});
 		middlePanel.add(listening);
 		
 		// add the game label to the top panel
@@ -189,67 +256,36 @@ public class GameEngineGUI {
 	}
 
 	/**
-	 * This method repaints the left panel by updating the map when a new movement is made by any player.
+	 * This method shows the whole map on the left panel when the GUI is first built.
 	 * It receives the whole map with players overlaid as a parameter.
-	 * This method traverses the array, choosing the appropriate icon for each tile type.
+	 * Every tile is drawn once from the tile atlas, after which only changed tiles are drawn.
 	 * @param wholeMap
 	 * @param height
 	 * @param width
 	 */
 	public void printMap(char[][] wholeMap, int height, int width) {
-		// remove existing components from the panel and set new constraints
-		leftPanel.removeAll();
-		JLabel temp;
-		GridBagConstraints gbc = new GridBagConstraints();
-		
-		// traverse through the 2D array
-		for (int i=0;i<height;i++){
-			for (int j=0;j<width;j++){
-				
-				// set the grid i,j co-ordinate that the new component will be added to
-				gbc.gridx = j;
-				gbc.gridy = i;
-				
-				// if tile is a wall tile, add that icon to the appropriate square on the grid
-				if(wholeMap[i][j]=='#')	{
-					ImageIcon wallTileIcon = new ImageIcon( "img/wallTile.png" );
-					temp = new JLabel(wallTileIcon);
-					leftPanel.add(temp, gbc);
-				}
-				// if tile is an empty tile, add that icon to the appropriate square on the grid
-				else if(wholeMap[i][j]=='.'){
-					ImageIcon emptyTileIcon = new ImageIcon( "img/emptyTile.png" );
-					temp = new JLabel(emptyTileIcon);
-					leftPanel.add(temp, gbc);
-				}
-				// if tile is a player tile, add that icon to the appropriate square on the grid
-				else if(wholeMap[i][j]=='P'){
-					ImageIcon playerTileIcon = new ImageIcon( "img/playerTile.png" );
-					temp = new JLabel(playerTileIcon);
-					leftPanel.add(temp, gbc);
-				}
-				// if tile is a gold tile, add that icon to the appropriate square on the grid
-				else if(wholeMap[i][j]=='G'){
-					ImageIcon goldTileIcon = new ImageIcon( "img/goldTile.png" );
-					temp = new JLabel(goldTileIcon);
-					leftPanel.add(temp, gbc);
-				}
-				// if tile is an exit tile, add that icon to the appropriate square on the grid
-				else if(wholeMap[i][j]=='E'){
-					ImageIcon exitTileIcon = new ImageIcon( "img/exitTile.png" );
-					temp = new JLabel(exitTileIcon);
-					leftPanel.add(temp, gbc);
-				}
-				// if tile is an X tile, add that icon to the appropriate square on the grid
-				else if(wholeMap[i][j]=='X'){
-					ImageIcon xTileIcon = new ImageIcon( "img/xTile.png" );
-					temp = new JLabel(xTileIcon);
-					leftPanel.add(temp, gbc);
-				}
-			}
+		// the canvas is only created once, so printing the map again just redraws its tiles
+		if (mapCanvas == null) {
+			mapCanvas = new MapCanvas(TileAtlas.mapTiles(), width, height);
+			
+			// keep the map centred in the panel, scrolling when it is too big to fit
+			JPanel centred = new JPanel(new GridBagLayout());
+			centred.setBackground(Color.DARK_GRAY);
+			centred.add(mapCanvas);
+			JScrollPane scrollMap = new JScrollPane(centred);
+			scrollMap.setBorder(null);
+			leftPanel.add(scrollMap, BorderLayout.CENTER);
+			leftPanel.revalidate();
 		}
-		
-		window.setVisible(true);
-		window.repaint();
+		mapCanvas.setTiles(wholeMap);
+	}
+	
+	/**
+	 * This method updates only the tiles which have changed since the last update, rather than the whole map.
+	 * @param changed the index (y * width + x) of each changed tile
+	 * @param tiles the new type of each changed tile
+	 */
+	public void updateTiles(int[] changed, char[] tiles) {
+		mapCanvas.updateTiles(changed, tiles);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for the lock-free queue of intents and the thread which runs the ticks
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the game in fixed ticks instead of changing it the moment each command arrives.
+ * Connection threads only queue up the MOVE and PICKUP commands they receive, and a single game loop thread
+ * carries out everything queued at the start of each tick. Within a tick the commands are carried out in order
+ * of player ID, keeping each player's own commands in the order they were sent, so when two players try to move
+ * onto the same tile the player with the lower ID always gets it.
+ * Once a tick has been carried out its changes are published, as one set of changed tiles, to the GUI and subscribers.
+ *
+ * @author 18181
+ */
+public class GameTickLoop {
+
+	// tick rate used when none is given, in ticks per second
+	public static final int DEFAULT_TICK_RATE = 20;
+
+	// the server whose game is being run
+	private final DungeonServer server;
+
+	// number of ticks per second
+	private final int tickRate;
+
+	// commands waiting for the next tick, added to by every connection thread
+	private final ConcurrentLinkedQueue<Intent> intents = new ConcurrentLinkedQueue<Intent>();
+
+	// the commands being carried out this tick, and the connections which were sent replies, reused every tick
+	private final ArrayList<Intent> batch = new ArrayList<Intent>();
+	private final Set<PlayerConnection> replied = new LinkedHashSet<PlayerConnection>();
+
+	// the thread running the ticks
+	private ScheduledExecutorService executor;
+
+	// the number of ticks carried out so far
+	private volatile long tick = 0;
+
+	// sorts a tick's commands by player ID - the sort is stable, so each player's commands keep their order
+	private static final Comparator<Intent> BY_PLAYER = new Comparator<Intent>() {
+		public int compare(Intent a, Intent b) {
+			return Integer.compare(a.connection.getPlayerID(), b.connection.getPlayerID());
+		}
+	};
+
+	/**
+	 * A command which changes the game, waiting to be carried out in the next tick.
+	 */
+	private static final class Intent {
+
+		// the player sending the command
+		final PlayerConnection connection;
+		// which command it is, and the direction for a move
+		final boolean pickup;
+		final char direction;
+
+		Intent(PlayerConnection connection, boolean pickup, char direction) {
+			this.connection = connection;
+			this.pickup = pickup;
+			this.direction = direction;
+		}
+	}
+
+	/**
+	 * Constructor creates a tick loop for the given server.
+	 * @param server
+	 * @param tickRate number of ticks per second
+	 */
+	public GameTickLoop(DungeonServer server, int tickRate) {
+		if (tickRate <= 0) {
+			throw new IllegalArgumentException("Tick rate must be positive: " + tickRate);
+		}
+		this.server = server;
+		this.tickRate = tickRate;
+	}
+
+	/**
+	 * Accessor method for the number of ticks per second.
+	 * @return
+	 */
+	public int getTickRate() {
+		return tickRate;
+	}
+
+	/**
+	 * Accessor method for the number of ticks carried out so far, which is also the tick the next commands will be carried out in.
+	 * @return
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Starts running a tick at the fixed rate, on a thread of its own.
+	 */
+	public void start() {
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "game-tick");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		long periodMicros = 1000000L / tickRate;
+		executor.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				try {
+					tick();
+				} catch (RuntimeException e) {
+					// a failure in one tick must not stop the ticks which follow
+					e.printStackTrace();
+				}
+			}
+		}, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Queues a move to be carried out in the next tick.
+	 * @param connection
+	 * @param direction
+	 */
+	public void submitMove(PlayerConnection connection, char direction) {
+		intents.add(new Intent(connection, false, direction));
+	}
+
+	/**
+	 * Queues a pickup to be carried out in the next tick.
+	 * @param connection
+	 */
+	public void submitPickup(PlayerConnection connection) {
+		intents.add(new Intent(connection, true, ' '));
+	}
+
+	/**
+	 * Carries out every command queued since the last tick, then publishes the changes they made.
+	 */
+	void tick() {
+		Intent intent;
+		while ((intent = intents.poll()) != null) {
+			batch.add(intent);
+		}
+
+		Collections.sort(batch, BY_PLAYER);
+
+		for (Intent queued : batch) {
+			PlayerConnection connection = queued.connection;
+			// a player may have left since sending the command
+			if (!connection.gameRunning()) {
+				continue;
+			}
+
+			if (queued.pickup) {
+				connection.applyPickup();
+			}
+			else {
+				connection.applyMove(queued.direction);
+			}
+			replied.add(connection);
+		}
+
+		// send every player's replies for this tick at once
+		for (PlayerConnection connection : replied) {
+			connection.pushed();
+		}
+
+		batch.clear();
+		replied.clear();
+		tick++;
+
+		server.publishMapChanges();
+	}
+}
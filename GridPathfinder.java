@@ -0,0 +1,234 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for clearing the arrays of past searches
+import java.util.Arrays;
+
+/**
+ * Finds shortest paths across any IGrid with A*, moving one tile north, east, south or west at a time.
+ * Tiles are searched in order of the steps taken so far plus the Manhattan distance left to the goal,
+ * which never overestimates the steps left, so the first path found to the goal is a shortest one
+ * and no tile has to be searched twice.
+ * Nothing is allocated for each tile searched: tiles are known by their index y * width + x, the open set is an
+ * IntMinHeap of indices, and the steps to each tile and the tile it was reached from are kept in arrays which are
+ * reused from one search to the next. Rather than clearing those arrays, each search has its own number, and a tile's
+ * entries only count if they were written with the number of the current search.
+ * The arrays grow to fit the largest grid searched. A pathfinder isn't safe to use from more than one thread at a time.
+ *
+ * @author 18181
+ */
+public class GridPathfinder {
+
+	// the directions of each step and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// for each tile: the search which last reached it, the search which last finished with it,
+	// the fewest steps found to it, and the tile it was reached from
+	private int[] reachedBy = new int[0];
+	private int[] closedBy = new int[0];
+	private int[] steps = new int[0];
+	private int[] cameFrom = new int[0];
+
+	// the number of the current search
+	private int search = 0;
+
+	// the tiles waiting to be searched, lowest estimated total path length first
+	private final IntMinHeap open = new IntMinHeap(64);
+
+	// the tiles of the last path found, from the first step to the goal, and the tile it starts from
+	private int[] path = new int[16];
+	private int pathLength = 0;
+	private int pathStart;
+
+	// the width of the grid last searched, and how many tiles that search finished with
+	private int width;
+	private int expanded;
+
+	/**
+	 * Finds a shortest path from one tile to another. The start tile doesn't have to be walkable, as the player is on it.
+	 * @param grid
+	 * @param startY
+	 * @param startX
+	 * @param goalY
+	 * @param goalX
+	 * @return the number of steps in the path, or -1 if the goal can't be reached
+	 */
+	public int findPath(IGrid grid, int startY, int startX, int goalY, int goalX) {
+		int height = grid.getHeight();
+		width = grid.getWidth();
+		pathLength = 0;
+		expanded = 0;
+		if (!inside(startY, startX, height) || !inside(goalY, goalX, height) || !grid.isWalkable(goalY, goalX)) {
+			return -1;
+		}
+
+		startSearch(height * width);
+		int start = startY * width + startX;
+		int goal = goalY * width + goalX;
+		pathStart = start;
+		reach(start, 0, start, goalY, goalX);
+
+		while (!open.isEmpty()) {
+			int tile = open.pop();
+			// a tile pushed again with fewer steps has already been finished with
+			if (closedBy[tile] == search) {
+				continue;
+			}
+			closedBy[tile] = search;
+			expanded++;
+
+			if (tile == goal) {
+				return buildPath(goal);
+			}
+
+			int y = tile / width;
+			int x = tile - y * width;
+			int nextSteps = steps[tile] + 1;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int nextY = y + ROW_STEP[d];
+				int nextX = x + COLUMN_STEP[d];
+				if (!inside(nextY, nextX, height)) {
+					continue;
+				}
+				int next = nextY * width + nextX;
+				if (closedBy[next] == search || (reachedBy[next] == search && steps[next] <= nextSteps)) {
+					continue;
+				}
+				if (grid.isWalkable(nextY, nextX)) {
+					reach(next, nextSteps, tile, goalY, goalX);
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Records a tile as reached in a number of steps and adds it to the open set.
+	 * @param tile
+	 * @param tileSteps
+	 * @param from the tile it was reached from
+	 * @param goalY
+	 * @param goalX
+	 */
+	private void reach(int tile, int tileSteps, int from, int goalY, int goalX) {
+		reachedBy[tile] = search;
+		steps[tile] = tileSteps;
+		cameFrom[tile] = from;
+
+		int y = tile / width;
+		int x = tile - y * width;
+		open.push(tile, tileSteps + Math.abs(goalY - y) + Math.abs(goalX - x));
+	}
+
+	/**
+	 * Gets the arrays ready for a new search of a grid with a number of tiles.
+	 * @param tiles
+	 */
+	private void startSearch(int tiles) {
+		if (reachedBy.length < tiles) {
+			reachedBy = new int[tiles];
+			closedBy = new int[tiles];
+			steps = new int[tiles];
+			cameFrom = new int[tiles];
+			search = 0;
+		}
+
+		// when the search numbers run out, start again from arrays which have been cleared
+		if (search == Integer.MAX_VALUE) {
+			Arrays.fill(reachedBy, 0);
+			Arrays.fill(closedBy, 0);
+			search = 0;
+		}
+		search++;
+		open.clear();
+	}
+
+	/**
+	 * Follows the tiles each tile was reached from back from the goal to the start, storing the path.
+	 * @param goal
+	 * @return the number of steps in the path
+	 */
+	private int buildPath(int goal) {
+		pathLength = steps[goal];
+		if (path.length < pathLength) {
+			path = new int[Math.max(pathLength, path.length * 2)];
+		}
+		int tile = goal;
+		for (int i = pathLength - 1; i >= 0; i--) {
+			path[i] = tile;
+			tile = cameFrom[tile];
+		}
+		return pathLength;
+	}
+
+	/**
+	 * Returns whether a position is inside a grid of the last width searched.
+	 * @param y
+	 * @param x
+	 * @param height
+	 * @return
+	 */
+	private boolean inside(int y, int x, int height) {
+		return y >= 0 && y < height && x >= 0 && x < width;
+	}
+
+	/**
+	 * Returns the number of steps in the last path found, 0 if none was found.
+	 * @return
+	 */
+	public int getPathLength() {
+		return pathLength;
+	}
+
+	/**
+	 * Returns the row a step of the last path found ends on.
+	 * @param step from 0 for the first step
+	 * @return
+	 */
+	public int getStepY(int step) {
+		return path[step] / width;
+	}
+
+	/**
+	 * Returns the column a step of the last path found ends on.
+	 * @param step from 0 for the first step
+	 * @return
+	 */
+	public int getStepX(int step) {
+		return path[step] % width;
+	}
+
+	/**
+	 * Returns the direction of a step of the last path found.
+	 * @param step from 0 for the first step
+	 * @return one of N, E, S or W
+	 */
+	public char getDirection(int step) {
+		int from = step == 0 ? pathStart : path[step - 1];
+		int to = path[step];
+		// compare rows rather than indices, which can't tell east from south in a grid one tile wide
+		int rowChange = to / width - from / width;
+		if (rowChange != 0) {
+			return rowChange < 0 ? 'N' : 'S';
+		}
+		return to > from ? 'E' : 'W';
+	}
+
+	/**
+	 * Returns how many tiles the last search finished with, which shows how much work it did.
+	 * @return
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+}
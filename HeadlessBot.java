@@ -0,0 +1,326 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for talking to the server over a non-blocking channel
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A bot with no GUI and no thread of its own, played by a BotFleet's event loop alongside many others.
+ * It switches its connection to the binary protocol, then plays in steps: each step sends a MOVE chosen by the
+ * fleet's BotBrain followed by a PICKUP, and the step is over once both have been answered.
+ * If the fleet navigates, the step starts by asking the server which way to go with NAV instead, and sends the move
+ * once it has the answer - or the brain's choice if the server has no step to suggest. A cooperative server may answer
+ * that the bot should hold where it is for a tick, in which case the step is only a PICKUP.
+ * The fleet then waits for the bot's think time before starting the next step.
+ * Look windows and gold sent by the server, whether asked for or not, are remembered for the brain to use.
+ * Each look window is also stitched into the bot's ExploredWorld: the server sends the look window for a move
+ * before the move's SUCCESS, so a look window which arrives while a move is unanswered means the bot has moved.
+ *
+ * @author 18181
+ */
+public class HeadlessBot {
+
+	// what the bot is doing: waiting to hear the server has switched protocol, waiting for its first look window, playing, or finished
+	private static final int NEGOTIATING = 0;
+	private static final int STARTING = 1;
+	private static final int PLAYING = 2;
+	private static final int FINISHED = 3;
+
+	// frames making up each step, built once
+	private static final byte[] PICKUP = {BinaryProtocol.PICKUP};
+	private static final byte[] NAV = {BinaryProtocol.NAV};
+	private static final byte[] FIRST_LOOK = {BinaryProtocol.HELLO, BinaryProtocol.LOOK};
+
+	// the fleet playing this bot, and the connection to the server
+	private final BotFleet fleet;
+	private final SocketChannel channel;
+	SelectionKey key;
+
+	// replies read but not yet handled, and commands not yet written
+	private ByteBuffer input = ByteBuffer.allocate(1024);
+	private final ByteBuffer output = ByteBuffer.allocate(256);
+
+	// what the bot knows about the game: its look window and the gold still needed to win (unknown until told)
+	private final char[] look = new char[BinaryProtocol.LOOK_WINDOW_SIZE];
+	private int goldRemaining = Integer.MAX_VALUE;
+
+	// everything the bot has seen, and the direction of the move of the current step until it is answered (0 when there isn't one)
+	private final ExploredWorld world = new ExploredWorld();
+	private char pendingMove = 0;
+
+	// whether the step is waiting for the server's answer to NAV before it moves
+	private boolean awaitingNav = false;
+
+	// state of the current step: the answers still to come and when it started, and when the next step is due
+	private int state = NEGOTIATING;
+	private int awaitingResults;
+	private long stepStartedAt;
+	long nextStepAt;
+
+	// the bot's own random numbers, so its choices don't depend on the other bots
+	private final Random random;
+
+	/**
+	 * Constructor creates a bot for a connected channel. Nothing is sent until start is called.
+	 * @param fleet
+	 * @param channel
+	 * @param random
+	 */
+	public HeadlessBot(BotFleet fleet, SocketChannel channel, Random random) {
+		this.fleet = fleet;
+		this.channel = channel;
+		this.random = random;
+	}
+
+	/**
+	 * Asks the server to switch to the binary protocol.
+	 * @throws IOException
+	 */
+	void start() throws IOException {
+		output.put((BinaryProtocol.NEGOTIATE + "\n").getBytes(StandardCharsets.ISO_8859_1));
+		flush();
+	}
+
+	/**
+	 * Returns whether the bot has stopped playing, because it won, the game ended or the connection closed.
+	 * @return
+	 */
+	boolean isFinished() {
+		return state == FINISHED;
+	}
+
+	/**
+	 * Starts the next step, sending a move and a pickup in one write.
+	 * @param now the current time from System.nanoTime
+	 * @throws IOException
+	 */
+	void step(long now) throws IOException {
+		if (state != PLAYING) {
+			return;
+		}
+
+		stepStartedAt = now;
+		boolean needGold = goldRemaining > 0;
+		if (fleet.navigate && (needGold || fleet.brain.isPlayingToWin())) {
+			output.put(NAV);
+			awaitingNav = true;
+			flush();
+			return;
+		}
+		move(fleet.brain.chooseDirection(world, needGold, random));
+	}
+
+	/**
+	 * Sends the move of the current step followed by a pickup, in one write.
+	 * @param direction
+	 * @throws IOException
+	 */
+	private void move(char direction) throws IOException {
+		output.put((byte) BinaryProtocol.MOVE).put((byte) direction).put(PICKUP);
+		pendingMove = direction;
+		awaitingResults = 2;
+		flush();
+	}
+
+	/**
+	 * Sends only a pickup for the current step, staying where the bot is as a cooperative server asked.
+	 * @throws IOException
+	 */
+	private void hold() throws IOException {
+		output.put(PICKUP);
+		awaitingResults = 1;
+		flush();
+	}
+
+	/**
+	 * Reads whatever the server has sent and handles every complete reply.
+	 * @return false once the server has closed the connection
+	 * @throws IOException
+	 */
+	boolean read() throws IOException {
+		if (channel.read(input) < 0) {
+			finish();
+			return false;
+		}
+
+		input.flip();
+		if (state == NEGOTIATING) {
+			readNegotiation();
+		}
+		while (state != NEGOTIATING && state != FINISHED && readFrame()) {
+			// keep handling replies until only part of one is left
+		}
+		input.compact();
+
+		// a reply bigger than the buffer needs a bigger buffer to ever be read whole
+		if (!input.hasRemaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(input.capacity() * 2);
+			input.flip();
+			larger.put(input);
+			input = larger;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes as many waiting commands as the channel will take, asking to be told when it can take more if some are left.
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		output.flip();
+		channel.write(output);
+		boolean waiting = output.hasRemaining();
+		output.compact();
+
+		if (key != null && key.isValid()) {
+			key.interestOps(waiting ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Stops playing and closes the connection.
+	 */
+	void finish() {
+		if (state == FINISHED) {
+			return;
+		}
+		state = FINISHED;
+		fleet.botFinished(this);
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the connection is being given up on anyway
+		}
+	}
+
+	/**
+	 * Reads the server's answer to the request to switch protocol - a line of text - then asks for the bot's gold and look window.
+	 * @throws IOException
+	 */
+	private void readNegotiation() throws IOException {
+		for (int i = input.position(); i < input.limit(); i++) {
+			if (input.get(i) == '\n') {
+				byte[] line = new byte[i - input.position()];
+				input.get(line);
+				input.get(); // the line break
+				String reply = new String(line, StandardCharsets.ISO_8859_1).trim();
+				if (!reply.equals(BinaryProtocol.ACCEPTED)) {
+					throw new IOException("server did not switch to the binary protocol: " + reply);
+				}
+
+				state = STARTING;
+				output.put(FIRST_LOOK);
+				flush();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Handles one reply if the whole of it has been read.
+	 * @return false if only part of a reply is waiting
+	 * @throws IOException
+	 */
+	private boolean readFrame() throws IOException {
+		if (!input.hasRemaining()) {
+			return false;
+		}
+
+		int start = input.position();
+		try {
+			int opcode = input.get() & 0xff;
+			switch (opcode) {
+				case BinaryProtocol.SUCCESS:
+				case BinaryProtocol.FAIL:
+					// NAV fails when the server has no step to suggest, so the brain chooses instead
+					if (awaitingNav) {
+						awaitingNav = false;
+						move(fleet.brain.chooseDirection(world, goldRemaining > 0, random));
+						break;
+					}
+					fleet.resultReceived(opcode == BinaryProtocol.SUCCESS);
+					// the first answer of a step is the move's
+					if (pendingMove != 0) {
+						if (opcode == BinaryProtocol.FAIL) {
+							world.failed(pendingMove);
+						}
+						pendingMove = 0;
+					}
+					if (--awaitingResults == 0) {
+						fleet.stepFinished(this, System.nanoTime() - stepStartedAt);
+					}
+					break;
+				case BinaryProtocol.LOOK_REPLY:
+					if (input.remaining() < look.length) {
+						input.position(start);
+						return false;
+					}
+					for (int i = 0; i < look.length; i++) {
+						look[i] = (char) (input.get() & 0xff);
+					}
+					if (pendingMove != 0) {
+						world.moved(pendingMove);
+						pendingMove = 0;
+					}
+					world.see(look);
+					// the first look window means the bot knows enough to start playing
+					if (state == STARTING) {
+						state = PLAYING;
+						fleet.botStarted(this);
+					}
+					break;
+				case BinaryProtocol.GOLD_REPLY:
+					goldRemaining = BinaryProtocol.readVarint(input);
+					break;
+				case BinaryProtocol.NAV_REPLY:
+					char direction = (char) (input.get() & 0xff);
+					awaitingNav = false;
+					if (direction == BinaryProtocol.HOLD) {
+						hold();
+					}
+					else {
+						move(direction);
+					}
+					break;
+				case BinaryProtocol.WIN_REPLY:
+				case BinaryProtocol.ID_REPLY:
+					BinaryProtocol.readVarint(input);
+					break;
+				case BinaryProtocol.TEXT:
+					int length = BinaryProtocol.readVarint(input);
+					if (input.remaining() < length) {
+						input.position(start);
+						return false;
+					}
+					input.position(input.position() + length);
+					break;
+				case BinaryProtocol.SUBSCRIBED:
+					break;
+				case BinaryProtocol.WON:
+					finish();
+					return false;
+				default:
+					throw new IOException("Unknown reply from server: " + opcode);
+			}
+		} catch (BufferUnderflowException e) {
+			// the rest of the reply hasn't arrived yet
+			input.position(start);
+			return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for starting the server
+import java.io.IOException;
+
+/**
+ * Starts the server without any GUI, for running on machines without a display.
+ * Nothing is rendered and no events are reported, so the game runs without paying for either.
+ * Usage: java HeadlessServer [port] [map] [connection mode] [tick rate] [COOP]
+ * where the connection mode is one of THREAD_PER_CLIENT, NIO or VIRTUAL_THREAD,
+ * and the tick rate is in ticks per second, or 0 to carry out commands as they arrive.
+ * With COOP, NAV is answered by a CooperativePlanner which keeps players following it out of each other's way,
+ * which needs a tick rate.
+ *
+ * @author 18181
+ */
+public class HeadlessServer {
+
+	// settings used for any argument not given
+	private static final int DEFAULT_PORT = 40004;
+	private static final String DEFAULT_MAP = "example_map";
+
+	/**
+	 * Main method reads the settings from the arguments and runs the server until it is stopped.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		String chosenMap = DEFAULT_MAP;
+		ConnectionMode mode = ConnectionMode.THREAD_PER_CLIENT;
+		int tickRate = 0;
+		boolean cooperative = false;
+		
+		try {
+			if (args.length > 0) {
+				port = Integer.parseInt(args[0]);
+			}
+			if (args.length > 1) {
+				chosenMap = args[1];
+			}
+			if (args.length > 2) {
+				mode = ConnectionMode.valueOf(args[2].toUpperCase());
+			}
+			if (args.length > 3) {
+				tickRate = Integer.parseInt(args[3]);
+			}
+			if (args.length > 4) {
+				if (!args[4].equalsIgnoreCase("COOP")) {
+					throw new IllegalArgumentException(args[4]);
+				}
+				cooperative = true;
+			}
+		} catch (IllegalArgumentException e) { // covers invalid numbers as well as unknown modes
+			System.err.println("usage: java HeadlessServer [port] [map] [THREAD_PER_CLIENT|NIO|VIRTUAL_THREAD] [tick rate] [COOP]");
+			System.exit(-1);
+		}
+		
+		if (port <= 0 || port >= 65536 || tickRate < 0) {
+			System.err.println("port must be between 1 and 65535, and tick rate can't be negative");
+			System.exit(-1);
+		}
+		if (cooperative && tickRate == 0) {
+			System.err.println("cooperative planning needs a tick rate");
+			System.exit(-1);
+		}
+		
+		System.out.println("Running headless server on port " + port + " with map " + chosenMap
+				+ " (" + mode + (tickRate > 0 ? ", " + tickRate + " ticks per second" : "") + (cooperative ? ", cooperative" : "") + ")");
+		try {
+			// runs until the game is won
+			new DungeonServer(port, chosenMap, mode, tickRate, false, cooperative);
+		} catch (IOException e) {
+			System.err.println("Could not start server: " + e.getMessage());
+			System.exit(-1);
+		}
+	}
+}
@@ -0,0 +1,1026 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for growing arrays, pooling searches and letting many searches share the abstract graph
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds long paths across very large grids quickly, with hierarchical path finding (HPA*).
+ * The grid is cut into square clusters. Wherever two neighbouring clusters can be walked between, the tiles either
+ * side of the border are made nodes of an abstract graph: one pair in the middle of a short opening, one at each end
+ * of a long one. Openings close together which lead between the same parts of the two clusters share a pair, as
+ * rough ground breaks a border into many small openings which would otherwise each add nodes to search through.
+ * Nodes either side of a border are one step apart, and the steps between every two nodes of the same cluster are
+ * found once, with a search inside the cluster.
+ *
+ * A path is then found by joining the start and goal to the nodes of their own clusters, and searching the abstract
+ * graph with A*, which only visits a few nodes per cluster crossed rather than every tile. The path found is a list
+ * of waypoints, each in the same cluster as the next or one step across a border from it, so any part of it can be
+ * turned into steps with a search inside a single cluster when it is needed: the first step costs one small search,
+ * however long the path. The search bounds a route's length only against the best path through the abstract graph,
+ * which may be longer than the shortest path across the tiles, so routes are a few percent longer on average and some more.
+ *
+ * The graph is built when first asked for. When a tile's walkability changes, only its own cluster and the borders
+ * around it are worked out again. Any number of threads may find paths at once, each with its own search from a pool,
+ * and only wait whilst the graph is being changed.
+ *
+ * @author 18181
+ */
+public class HierarchicalPathfinder {
+
+	// the smallest and largest width and height of a cluster in tiles chosen for a grid, and the number of clusters
+	// across its longer side above which the next larger size is chosen
+	private static final int SMALLEST_CLUSTER_SIZE = 16;
+	private static final int LARGEST_CLUSTER_SIZE = 64;
+	private static final int CLUSTERS_ACROSS = 48;
+
+	// openings narrower than this get a single pair of nodes in the middle, wider ones a pair at each end
+	private static final int WIDE_OPENING = 6;
+
+	// the estimate of the steps left to the goal is raised by this power of two's fraction of itself,
+	// so that of the many paths which look equally short the search follows one towards the goal rather than all of them,
+	// and routes are at most that fraction longer than the shortest across the graph
+	private static final int ESTIMATE_SHIFT = 4;
+
+	// where each node's search state is kept among its four ints
+	private static final int REACHED = 0;
+	private static final int CLOSED = 1;
+	private static final int STEPS = 2;
+	private static final int FROM = 3;
+
+	// the steps stored between nodes which can't reach each other
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	// the directions of each step and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// the grid searched, its size, and the size and number of the clusters it is cut into
+	private final IGrid grid;
+	private final int height;
+	private final int width;
+	private final int clusterSize;
+	private final int clusterRows;
+	private final int clusterColumns;
+
+	// openings between the same parts of two clusters only get nodes of their own if further than this from the last
+	private final int openingSpacing;
+
+	// whether each tile could be walked onto when last looked at, one bit per tile
+	private long[] walkable;
+	private volatile boolean built = false;
+
+	// for each node: its tile, its cluster, its place in its cluster's list of nodes,
+	// the node across the border from it, and the border it is on
+	private int[] nodeTile = new int[64];
+	private int[] nodeCluster = new int[64];
+	private int[] nodePlace = new int[64];
+	private int[] nodePartner = new int[64];
+	private int[] nodeBorder = new int[64];
+	private int nodeCount = 0;
+
+	// numbers of nodes which have been removed, to be given to new nodes
+	private int[] freeNodes = new int[16];
+	private int freeCount = 0;
+
+	// for each cluster: its nodes, and the steps between every two of them, row by row
+	private int[][] clusterNodes;
+	private int[] clusterNodeCount;
+	private int[][] clusterSteps;
+
+	// for adding the nodes of a border whilst the graph is being changed: the part of each cluster either side
+	// every tile is in, the tiles waiting to be labelled, and each pair of parts joined by an opening with where its last nodes are
+	private final int[] parts;
+	private final int[] neighbourParts;
+	private final int[] partQueue;
+	private int[] groupKeys = new int[8];
+	private int[] groupLast = new int[8];
+	private int groupCount;
+
+	// searches may share the graph, but changing it waits for them all to finish
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// searches not in use, and the search used whilst building and changing the graph
+	private final ConcurrentLinkedQueue<Search> searches = new ConcurrentLinkedQueue<Search>();
+	private Search builder;
+
+	/**
+	 * Constructor creates a pathfinder for a grid with clusters sized for it. Nothing is worked out until needed.
+	 * @param grid
+	 */
+	public HierarchicalPathfinder(IGrid grid) {
+		this(grid, clusterSizeFor(grid));
+	}
+
+	/**
+	 * Constructor creates a pathfinder for a grid with clusters of a given size. Nothing is worked out until needed.
+	 * @param grid
+	 * @param clusterSize the width and height of each cluster, at least 2
+	 */
+	public HierarchicalPathfinder(IGrid grid, int clusterSize) {
+		if (clusterSize < 2) {
+			throw new IllegalArgumentException("clusters must be at least 2 tiles across");
+		}
+		this.grid = grid;
+		this.height = grid.getHeight();
+		this.width = grid.getWidth();
+		this.clusterSize = clusterSize;
+		this.clusterRows = (height + clusterSize - 1) / clusterSize;
+		this.clusterColumns = (width + clusterSize - 1) / clusterSize;
+		this.openingSpacing = clusterSize / 4;
+		this.parts = new int[clusterSize * clusterSize];
+		this.neighbourParts = new int[clusterSize * clusterSize];
+		this.partQueue = new int[clusterSize * clusterSize];
+	}
+
+	/**
+	 * Returns the cluster size chosen for a grid: larger clusters for larger grids, as finding a long route costs
+	 * most for the clusters it crosses, and joining its ends to the graph most for the size of each cluster.
+	 * @param grid
+	 * @return
+	 */
+	public static int clusterSizeFor(IGrid grid) {
+		int longest = Math.max(grid.getHeight(), grid.getWidth());
+		int size = SMALLEST_CLUSTER_SIZE;
+		while (size < LARGEST_CLUSTER_SIZE && longest > size * CLUSTERS_ACROSS) {
+			size *= 2;
+		}
+		return size;
+	}
+
+	/**
+	 * A path found across the abstract graph: its length, and the waypoints it passes through from the start to the goal.
+	 * The steps between the waypoints are found when asked for, with firstDirection or refine.
+	 */
+	public static class Route {
+
+		// the number of steps in the path, and the tiles it passes through, as y * width + x
+		private final int length;
+		private final int[] waypoints;
+
+		/**
+		 * Constructor creates a route.
+		 * @param length
+		 * @param waypoints
+		 */
+		Route(int length, int[] waypoints) {
+			this.length = length;
+			this.waypoints = waypoints;
+		}
+
+		/**
+		 * Returns the number of steps in the path.
+		 * @return
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns the number of waypoints, including the start and the goal.
+		 * @return
+		 */
+		public int getWaypointCount() {
+			return waypoints.length;
+		}
+	}
+
+	/**
+	 * Works out the abstract graph, if it hasn't been already.
+	 */
+	private void build() {
+		lock.writeLock().lock();
+		try {
+			if (built) {
+				return;
+			}
+
+			walkable = new long[(height * width + 63) / 64];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					if (grid.isWalkable(y, x)) {
+						int tile = y * width + x;
+						walkable[tile >>> 6] |= 1L << tile;
+					}
+				}
+			}
+
+			int clusters = clusterRows * clusterColumns;
+			clusterNodes = new int[clusters][];
+			clusterNodeCount = new int[clusters];
+			clusterSteps = new int[clusters][];
+			for (int c = 0; c < clusters; c++) {
+				clusterNodes[c] = new int[8];
+			}
+			builder = new Search();
+
+			// every border is the south or east border of one cluster
+			for (int c = 0; c < clusters; c++) {
+				addBorderNodes(c, true);
+				addBorderNodes(c, false);
+			}
+			for (int c = 0; c < clusters; c++) {
+				findClusterSteps(c);
+			}
+			built = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds a path from one tile to another.
+	 * @param startY
+	 * @param startX
+	 * @param goalY
+	 * @param goalX
+	 * @return the route, or null if the goal can't be reached or isn't walkable
+	 */
+	public Route findRoute(int startY, int startX, int goalY, int goalX) {
+		if (!built) {
+			build();
+		}
+		if (!inside(startY, startX) || !inside(goalY, goalX)) {
+			return null;
+		}
+
+		Search search = takeSearch();
+		lock.readLock().lock();
+		try {
+			if (!isWalkable(goalY * width + goalX)) {
+				return null;
+			}
+			return search.findRoute(startY * width + startX, goalY * width + goalX);
+		} finally {
+			lock.readLock().unlock();
+			searches.offer(search);
+		}
+	}
+
+	/**
+	 * Returns the direction of the first step of a route, found with a search inside a single cluster.
+	 * @param route
+	 * @return one of N, E, S or W, or 0 if the route has no steps or the way has since been blocked
+	 */
+	public char firstDirection(Route route) {
+		Search search = takeSearch();
+		lock.readLock().lock();
+		try {
+			for (int i = 0; i + 1 < route.waypoints.length; i++) {
+				// waypoints on the same tile are nodes for two borders, with no steps between them
+				if (route.waypoints[i] != route.waypoints[i + 1]) {
+					if (search.refineLeg(route.waypoints[i], route.waypoints[i + 1]) <= 0) {
+						return 0;
+					}
+					return direction(route.waypoints[i], search.legTile(0));
+				}
+			}
+			return 0;
+		} finally {
+			lock.readLock().unlock();
+			searches.offer(search);
+		}
+	}
+
+	/**
+	 * Turns a whole route into steps, with a search inside a single cluster for each leg.
+	 * @param route
+	 * @return the tiles of every step, as y * width + x, or null if the way has since been blocked
+	 */
+	public int[] refine(Route route) {
+		Search search = takeSearch();
+		lock.readLock().lock();
+		try {
+			int[] path = new int[Math.max(route.length, 1)];
+			int length = 0;
+			for (int i = 0; i + 1 < route.waypoints.length; i++) {
+				if (route.waypoints[i] == route.waypoints[i + 1]) {
+					continue;
+				}
+				int steps = search.refineLeg(route.waypoints[i], route.waypoints[i + 1]);
+				if (steps <= 0) {
+					return null;
+				}
+				if (length + steps > path.length) {
+					path = Arrays.copyOf(path, Math.max(length + steps, path.length * 2));
+				}
+				for (int s = 0; s < steps; s++) {
+					path[length++] = search.legTile(s);
+				}
+			}
+			return Arrays.copyOf(path, length);
+		} finally {
+			lock.readLock().unlock();
+			searches.offer(search);
+		}
+	}
+
+	/**
+	 * Works the graph out again around a tile whose walkability may have changed. Does nothing if it hasn't changed,
+	 * or if the graph hasn't been worked out yet, as it will be worked out from the changed grid.
+	 * @param y
+	 * @param x
+	 */
+	public void tileChanged(int y, int x) {
+		if (!built || !inside(y, x)) {
+			return;
+		}
+		int tile = y * width + x;
+		// most changes, such as gold being picked up, leave a tile as walkable as it was, and searches needn't wait
+		if (grid.isWalkable(y, x) == isWalkable(tile)) {
+			return;
+		}
+
+		lock.writeLock().lock();
+		try {
+			// another change to the tile may have been worked out whilst waiting
+			boolean nowWalkable = grid.isWalkable(y, x);
+			if (nowWalkable == isWalkable(tile)) {
+				return;
+			}
+			if (nowWalkable) {
+				walkable[tile >>> 6] |= 1L << tile;
+			}
+			else {
+				walkable[tile >>> 6] &= ~(1L << tile);
+			}
+
+			int cluster = clusterOf(tile);
+			int row = cluster / clusterColumns;
+			int column = cluster % clusterColumns;
+			int north = row > 0 ? cluster - clusterColumns : -1;
+			int west = column > 0 ? cluster - 1 : -1;
+			int south = row + 1 < clusterRows ? cluster + clusterColumns : -1;
+			int east = column + 1 < clusterColumns ? cluster + 1 : -1;
+
+			// the borders of the cluster are its own south and east borders, and those of the clusters north and west of it
+			int[] borders = {2 * cluster, 2 * cluster + 1, north >= 0 ? 2 * north : -1, west >= 0 ? 2 * west + 1 : -1};
+			int[] neighbours = {cluster, north, west, south, east};
+			for (int c : neighbours) {
+				if (c >= 0) {
+					removeBorderNodes(c, borders);
+				}
+			}
+
+			addBorderNodes(cluster, true);
+			addBorderNodes(cluster, false);
+			if (north >= 0) {
+				addBorderNodes(north, true);
+			}
+			if (west >= 0) {
+				addBorderNodes(west, false);
+			}
+			for (int c : neighbours) {
+				if (c >= 0) {
+					findClusterSteps(c);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a pair of nodes for every opening in the south or east border of a cluster.
+	 * @param cluster
+	 * @param south true for the south border, false for the east
+	 */
+	private void addBorderNodes(int cluster, boolean south) {
+		int row = cluster / clusterColumns;
+		int column = cluster % clusterColumns;
+		int neighbour;
+		int border;
+		if (south) {
+			if (row + 1 >= clusterRows) {
+				return;
+			}
+			neighbour = cluster + clusterColumns;
+			border = 2 * cluster;
+		}
+		else {
+			if (column + 1 >= clusterColumns) {
+				return;
+			}
+			neighbour = cluster + 1;
+			border = 2 * cluster + 1;
+		}
+
+		// walk along the border, from the first tile of the cluster's last row or column
+		int first = south ? column * clusterSize : row * clusterSize;
+		int last = Math.min(first + clusterSize, south ? width : height) - 1;
+		int edge = south ? Math.min((row + 1) * clusterSize, height) - 1 : Math.min((column + 1) * clusterSize, width) - 1;
+		int across = south ? width : 1;
+
+		// openings which lead between the same parts of the two clusters share nodes, unless they are far apart
+		labelParts(cluster, parts);
+		labelParts(neighbour, neighbourParts);
+		groupCount = 0;
+		int runStart = -1;
+		for (int i = first; i <= last + 1; i++) {
+			boolean open = false;
+			if (i <= last) {
+				int tile = south ? edge * width + i : i * width + edge;
+				open = isWalkable(tile) && isWalkable(tile + across);
+			}
+			if (open && runStart < 0) {
+				runStart = i;
+			}
+			else if (!open && runStart >= 0) {
+				int runEnd = i - 1;
+				if (runEnd - runStart + 1 < WIDE_OPENING) {
+					addOpening(cluster, neighbour, border, south, edge, (runStart + runEnd) / 2);
+				}
+				else {
+					addOpening(cluster, neighbour, border, south, edge, runStart);
+					addOpening(cluster, neighbour, border, south, edge, runEnd);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/**
+	 * Adds a pair of nodes at a place in an opening, unless the parts of the clusters either side of it
+	 * already have a pair nearby along the same border, which a path can cross at instead for a few steps more.
+	 * @param cluster the cluster north or west of the border
+	 * @param neighbour the cluster south or east of it
+	 * @param border
+	 * @param south whether the border runs along the south of the cluster
+	 * @param edge the last row or column of the cluster
+	 * @param along the column or row of the opening
+	 */
+	private void addOpening(int cluster, int neighbour, int border, boolean south, int edge, int along) {
+		int tile = south ? edge * width + along : along * width + edge;
+		int group = parts[localIndex(tile)] * (clusterSize * clusterSize + 1) + neighbourParts[localIndex(tile + (south ? width : 1))];
+		for (int g = 0; g < groupCount; g++) {
+			if (groupKeys[g] == group) {
+				if (along - groupLast[g] <= openingSpacing) {
+					return;
+				}
+				groupLast[g] = along;
+				addPair(cluster, neighbour, border, south, edge, along);
+				return;
+			}
+		}
+
+		if (groupCount == groupKeys.length) {
+			groupKeys = Arrays.copyOf(groupKeys, groupCount * 2);
+			groupLast = Arrays.copyOf(groupLast, groupCount * 2);
+		}
+		groupKeys[groupCount] = group;
+		groupLast[groupCount++] = along;
+		addPair(cluster, neighbour, border, south, edge, along);
+	}
+
+	/**
+	 * Numbers the parts of a cluster which can't be walked between without leaving it, and labels each tile with its part.
+	 * @param cluster
+	 * @param labels filled in for every tile of the cluster by its place in the cluster, 0 for walls
+	 */
+	private void labelParts(int cluster, int[] labels) {
+		int originY = (cluster / clusterColumns) * clusterSize;
+		int originX = (cluster % clusterColumns) * clusterSize;
+		int clusterHeight = Math.min(clusterSize, height - originY);
+		int clusterWidth = Math.min(clusterSize, width - originX);
+		Arrays.fill(labels, 0);
+
+		int part = 0;
+		for (int y = 0; y < clusterHeight; y++) {
+			for (int x = 0; x < clusterWidth; x++) {
+				if (labels[y * clusterSize + x] != 0 || !isWalkable((originY + y) * width + originX + x)) {
+					continue;
+				}
+
+				// flood the new part out from its first tile
+				part++;
+				labels[y * clusterSize + x] = part;
+				int head = 0;
+				int tail = 0;
+				partQueue[tail++] = y * clusterSize + x;
+				while (head < tail) {
+					int local = partQueue[head++];
+					int localY = local / clusterSize;
+					int localX = local - localY * clusterSize;
+					for (int d = 0; d < DIRECTIONS.length; d++) {
+						int nextY = localY + ROW_STEP[d];
+						int nextX = localX + COLUMN_STEP[d];
+						if (nextY < 0 || nextY >= clusterHeight || nextX < 0 || nextX >= clusterWidth) {
+							continue;
+						}
+						int next = nextY * clusterSize + nextX;
+						if (labels[next] == 0 && isWalkable((originY + nextY) * width + originX + nextX)) {
+							labels[next] = part;
+							partQueue[tail++] = next;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the place of a tile within its cluster, row by row.
+	 * @param tile
+	 * @return
+	 */
+	private int localIndex(int tile) {
+		int y = tile / width;
+		int x = tile - y * width;
+		return (y % clusterSize) * clusterSize + x % clusterSize;
+	}
+
+	/**
+	 * Adds a node either side of a border, each the other's partner.
+	 * @param cluster the cluster north or west of the border
+	 * @param neighbour the cluster south or east of it
+	 * @param border
+	 * @param south whether the border runs along the south of the cluster
+	 * @param edge the last row or column of the cluster
+	 * @param along the column or row of the pair
+	 */
+	private void addPair(int cluster, int neighbour, int border, boolean south, int edge, int along) {
+		int tile = south ? edge * width + along : along * width + edge;
+		int a = addNode(cluster, tile, border);
+		int b = addNode(neighbour, tile + (south ? width : 1), border);
+		nodePartner[a] = b;
+		nodePartner[b] = a;
+	}
+
+	/**
+	 * Adds a node to a cluster.
+	 * @param cluster
+	 * @param tile
+	 * @param border
+	 * @return the new node
+	 */
+	private int addNode(int cluster, int tile, int border) {
+		int node;
+		if (freeCount > 0) {
+			node = freeNodes[--freeCount];
+		}
+		else {
+			if (nodeCount == nodeTile.length) {
+				int capacity = nodeCount * 2;
+				nodeTile = Arrays.copyOf(nodeTile, capacity);
+				nodeCluster = Arrays.copyOf(nodeCluster, capacity);
+				nodePlace = Arrays.copyOf(nodePlace, capacity);
+				nodePartner = Arrays.copyOf(nodePartner, capacity);
+				nodeBorder = Arrays.copyOf(nodeBorder, capacity);
+			}
+			node = nodeCount++;
+		}
+
+		int count = clusterNodeCount[cluster];
+		if (count == clusterNodes[cluster].length) {
+			clusterNodes[cluster] = Arrays.copyOf(clusterNodes[cluster], count * 2);
+		}
+		clusterNodes[cluster][count] = node;
+		clusterNodeCount[cluster] = count + 1;
+
+		nodeTile[node] = tile;
+		nodeCluster[node] = cluster;
+		nodePlace[node] = count;
+		nodeBorder[node] = border;
+		return node;
+	}
+
+	/**
+	 * Removes the nodes of a cluster which are on any of the given borders.
+	 * @param cluster
+	 * @param borders border numbers, with -1 for none
+	 */
+	private void removeBorderNodes(int cluster, int[] borders) {
+		int[] nodes = clusterNodes[cluster];
+		int kept = 0;
+		for (int i = 0; i < clusterNodeCount[cluster]; i++) {
+			int node = nodes[i];
+			boolean remove = false;
+			for (int border : borders) {
+				remove |= border >= 0 && nodeBorder[node] == border;
+			}
+			if (remove) {
+				if (freeCount == freeNodes.length) {
+					freeNodes = Arrays.copyOf(freeNodes, freeCount * 2);
+				}
+				freeNodes[freeCount++] = node;
+			}
+			else {
+				nodePlace[node] = kept;
+				nodes[kept++] = node;
+			}
+		}
+		clusterNodeCount[cluster] = kept;
+	}
+
+	/**
+	 * Finds the steps between every two nodes of a cluster, searching inside the cluster from each one.
+	 * @param cluster
+	 */
+	private void findClusterSteps(int cluster) {
+		int count = clusterNodeCount[cluster];
+		int[] steps = new int[count * count];
+		for (int i = 0; i < count; i++) {
+			builder.searchCluster(cluster, nodeTile[clusterNodes[cluster][i]]);
+			for (int j = 0; j < count; j++) {
+				steps[i * count + j] = builder.clusterStepsTo(nodeTile[clusterNodes[cluster][j]]);
+			}
+		}
+		clusterSteps[cluster] = steps;
+	}
+
+	/**
+	 * Takes a search from the pool, or creates one if none are free.
+	 * @return
+	 */
+	private Search takeSearch() {
+		Search search = searches.poll();
+		return search != null ? search : new Search();
+	}
+
+	/**
+	 * Returns the cluster a tile is in.
+	 * @param tile
+	 * @return
+	 */
+	private int clusterOf(int tile) {
+		int y = tile / width;
+		int x = tile - y * width;
+		return (y / clusterSize) * clusterColumns + x / clusterSize;
+	}
+
+	/**
+	 * Returns whether a tile could be walked onto when last looked at.
+	 * @param tile
+	 * @return
+	 */
+	private boolean isWalkable(int tile) {
+		return (walkable[tile >>> 6] & (1L << tile)) != 0;
+	}
+
+	/**
+	 * Returns whether a position is inside the grid.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	private boolean inside(int y, int x) {
+		return y >= 0 && y < height && x >= 0 && x < width;
+	}
+
+	/**
+	 * Returns the direction of a step between two neighbouring tiles.
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private char direction(int from, int to) {
+		// compare rows rather than indices, which can't tell east from south in a grid one tile wide
+		int rowChange = to / width - from / width;
+		if (rowChange != 0) {
+			return rowChange < 0 ? 'N' : 'S';
+		}
+		return to > from ? 'E' : 'W';
+	}
+
+	/**
+	 * Returns the number of nodes in the abstract graph, which shows how much it has to search.
+	 * @return
+	 */
+	public int getNodeCount() {
+		if (!built) {
+			build();
+		}
+		return nodeCount - freeCount;
+	}
+
+	/**
+	 * Everything one search needs for itself, so that searches on different threads don't get in each other's way.
+	 * Arrays are reused from one search to the next, and entries only count if written with the current search's number.
+	 */
+	private class Search {
+
+		// for searching inside a cluster: the search which last reached each tile of it and the steps to each,
+		// the queue of tiles to visit, and the number of the current search
+		private final int[] clusterReachedBy = new int[clusterSize * clusterSize];
+		private final int[] clusterStepCounts = new int[clusterSize * clusterSize];
+		private final int[] clusterQueue = new int[clusterSize * clusterSize];
+		private int clusterSearch = 0;
+
+		// the corner and width of the cluster last searched
+		private int originY;
+		private int originX;
+		private int clusterWidth;
+
+		// for searching the abstract graph: four ints for each node, kept together as most nodes are only looked at once,
+		// holding the search which last reached it and finished with it, the steps to it and the node it was reached from,
+		// then the open set, and the number of the current search
+		private int[] state = new int[0];
+		private final IntMinHeap open = new IntMinHeap(64);
+		private int search = 0;
+
+		// the steps from the start to each node of the start's cluster, and from each node of the goal's cluster to the goal
+		private int[] startSteps = new int[16];
+		private int[] goalSteps = new int[16];
+
+		// finds the steps of a leg inside one cluster, searching a view of just that cluster,
+		// or holds the tile of a leg which is one step across a border, -1 if the last leg was inside a cluster
+		private final GridPathfinder legFinder = new GridPathfinder();
+		private int legAcross = -1;
+		private final IGrid clusterView = new IGrid() {
+			public int getHeight() {
+				return Math.min(clusterSize, height - originY);
+			}
+			public int getWidth() {
+				return clusterWidth;
+			}
+			public boolean isWalkable(int y, int x) {
+				return HierarchicalPathfinder.this.isWalkable((originY + y) * width + originX + x);
+			}
+		};
+
+		/**
+		 * Finds a route between two tiles across the abstract graph.
+		 * @param start
+		 * @param goal
+		 * @return the route, or null if there is none
+		 */
+		Route findRoute(int start, int goal) {
+			int startCluster = clusterOf(start);
+			int goalCluster = clusterOf(goal);
+			int goalY = goal / width;
+			int goalX = goal - goalY * width;
+
+			// a goal in the start's own cluster may be reached without leaving it, though leaving may be shorter
+			int bestSteps = UNREACHABLE;
+			int bestNode = -1;
+			searchCluster(startCluster, start);
+			if (startCluster == goalCluster && clusterStepsTo(goal) != UNREACHABLE) {
+				bestSteps = clusterStepsTo(goal);
+				bestNode = -2;
+			}
+
+			// join the start to the nodes of its cluster, and the nodes of the goal's cluster to the goal
+			int startCount = clusterNodeCount[startCluster];
+			int[] startNodes = clusterNodes[startCluster];
+			if (startSteps.length < startCount) {
+				startSteps = new int[startCount * 2];
+			}
+			boolean leaves = false;
+			for (int i = 0; i < startCount; i++) {
+				startSteps[i] = clusterStepsTo(nodeTile[startNodes[i]]);
+				leaves |= startSteps[i] != UNREACHABLE;
+			}
+			int goalCount = clusterNodeCount[goalCluster];
+			int[] goalNodes = clusterNodes[goalCluster];
+			if (goalSteps.length < goalCount) {
+				goalSteps = new int[goalCount * 2];
+			}
+			searchCluster(goalCluster, goal);
+			boolean enters = false;
+			for (int i = 0; i < goalCount; i++) {
+				goalSteps[i] = clusterStepsTo(nodeTile[goalNodes[i]]);
+				enters |= goalSteps[i] != UNREACHABLE;
+			}
+
+			// a start or goal walled in away from every node can't be joined by the graph, which needn't be searched
+			if (!leaves || !enters) {
+				return bestNode == -2 ? new Route(bestSteps, new int[] {start, goal}) : null;
+			}
+
+			startSearch();
+			for (int i = 0; i < startCount; i++) {
+				if (startSteps[i] != UNREACHABLE) {
+					reach(startNodes[i], startSteps[i], -1, goalY, goalX);
+				}
+			}
+
+			// A* across the nodes, until no node left could lead to a shorter way to the goal than the best found
+			while (!open.isEmpty() && open.peekPriority() < bestSteps) {
+				int node = open.pop();
+				if (state[4 * node + CLOSED] == search) {
+					continue;
+				}
+				state[4 * node + CLOSED] = search;
+
+				int cluster = nodeCluster[node];
+				int place = nodePlace[node];
+				if (cluster == goalCluster && goalSteps[place] != UNREACHABLE && state[4 * node + STEPS] + goalSteps[place] < bestSteps) {
+					bestSteps = state[4 * node + STEPS] + goalSteps[place];
+					bestNode = node;
+				}
+
+				// one step across the border, or the steps to any other node of the same cluster
+				relax(nodePartner[node], state[4 * node + STEPS] + 1, node, goalY, goalX);
+
+				// the steps between nodes of a cluster are the fewest inside it, so going on to a third node of the cluster
+				// is never shorter than going to it straight from the node this one was reached from, or from the start
+				int from = state[4 * node + FROM];
+				if (from == -1 || nodeCluster[from] == cluster) {
+					continue;
+				}
+				int count = clusterNodeCount[cluster];
+				int[] nodes = clusterNodes[cluster];
+				int[] between = clusterSteps[cluster];
+				for (int i = 0; i < count; i++) {
+					int inside = between[place * count + i];
+					if (i != place && inside != UNREACHABLE) {
+						relax(nodes[i], state[4 * node + STEPS] + inside, node, goalY, goalX);
+					}
+				}
+			}
+
+			if (bestNode == -1) {
+				return null;
+			}
+			if (bestNode == -2) {
+				return new Route(bestSteps, new int[] {start, goal});
+			}
+
+			// follow the nodes back to the start, then list them with the start first and the goal last
+			int nodes = 0;
+			for (int node = bestNode; node != -1; node = state[4 * node + FROM]) {
+				nodes++;
+			}
+			int[] waypoints = new int[nodes + 2];
+			waypoints[0] = start;
+			waypoints[nodes + 1] = goal;
+			int i = nodes;
+			for (int node = bestNode; node != -1; node = state[4 * node + FROM]) {
+				waypoints[i--] = nodeTile[node];
+			}
+			return new Route(bestSteps, waypoints);
+		}
+
+		/**
+		 * Reaches a node with fewer steps than it has been reached with so far, if it hasn't been finished with.
+		 * @param node
+		 * @param nodeSteps
+		 * @param from
+		 * @param goalY
+		 * @param goalX
+		 */
+		private void relax(int node, int nodeSteps, int from, int goalY, int goalX) {
+			if (state[4 * node + CLOSED] == search || (state[4 * node + REACHED] == search && state[4 * node + STEPS] <= nodeSteps)) {
+				return;
+			}
+			reach(node, nodeSteps, from, goalY, goalX);
+		}
+
+		/**
+		 * Records a node as reached in a number of steps and adds it to the open set.
+		 * @param node
+		 * @param nodeSteps
+		 * @param from the node it was reached from, -1 for the start
+		 * @param goalY
+		 * @param goalX
+		 */
+		private void reach(int node, int nodeSteps, int from, int goalY, int goalX) {
+			state[4 * node + REACHED] = search;
+			state[4 * node + STEPS] = nodeSteps;
+			state[4 * node + FROM] = from;
+			int tile = nodeTile[node];
+			int y = tile / width;
+			int x = tile - y * width;
+			int estimate = Math.abs(goalY - y) + Math.abs(goalX - x);
+			open.push(node, nodeSteps + estimate + (estimate >> ESTIMATE_SHIFT));
+		}
+
+		/**
+		 * Gets the arrays ready for a new search of the abstract graph.
+		 */
+		private void startSearch() {
+			if (state.length < 4 * nodeCount) {
+				state = new int[4 * nodeTile.length];
+				search = 0;
+			}
+
+			// when the search numbers run out, start again from an array which has been cleared
+			if (search == Integer.MAX_VALUE) {
+				Arrays.fill(state, 0);
+				search = 0;
+			}
+			search++;
+			open.clear();
+		}
+
+		/**
+		 * Finds the steps from a tile to every tile of a cluster it can reach without leaving the cluster,
+		 * with a breadth first search.
+		 * @param cluster
+		 * @param from a walkable tile in the cluster, or the start, which needn't be walkable
+		 */
+		void searchCluster(int cluster, int from) {
+			originY = (cluster / clusterColumns) * clusterSize;
+			originX = (cluster % clusterColumns) * clusterSize;
+			int clusterHeight = Math.min(clusterSize, height - originY);
+			clusterWidth = Math.min(clusterSize, width - originX);
+
+			if (clusterSearch == Integer.MAX_VALUE) {
+				Arrays.fill(clusterReachedBy, 0);
+				clusterSearch = 0;
+			}
+			clusterSearch++;
+
+			int fromY = from / width - originY;
+			int fromX = from % width - originX;
+			int first = fromY * clusterSize + fromX;
+			clusterReachedBy[first] = clusterSearch;
+			clusterStepCounts[first] = 0;
+			int head = 0;
+			int tail = 0;
+			clusterQueue[tail++] = first;
+			while (head < tail) {
+				int tile = clusterQueue[head++];
+				int y = tile / clusterSize;
+				int x = tile - y * clusterSize;
+				// the same tile's index in the whole grid, for looking up whether its neighbours are walkable
+				int global = (originY + y) * width + originX + x;
+				int nextSteps = clusterStepCounts[tile] + 1;
+				if (y > 0) {
+					tail = visit(tile - clusterSize, global - width, nextSteps, tail);
+				}
+				if (x + 1 < clusterWidth) {
+					tail = visit(tile + 1, global + 1, nextSteps, tail);
+				}
+				if (y + 1 < clusterHeight) {
+					tail = visit(tile + clusterSize, global + width, nextSteps, tail);
+				}
+				if (x > 0) {
+					tail = visit(tile - 1, global - 1, nextSteps, tail);
+				}
+			}
+		}
+
+		/**
+		 * Reaches a tile of the cluster being searched, if it is walkable and hasn't been reached already.
+		 * @param tile its place in the cluster
+		 * @param global its index in the whole grid
+		 * @param tileSteps
+		 * @param tail the end of the queue
+		 * @return the new end of the queue
+		 */
+		private int visit(int tile, int global, int tileSteps, int tail) {
+			if (clusterReachedBy[tile] == clusterSearch || (walkable[global >>> 6] & (1L << global)) == 0) {
+				return tail;
+			}
+			clusterReachedBy[tile] = clusterSearch;
+			clusterStepCounts[tile] = tileSteps;
+			clusterQueue[tail] = tile;
+			return tail + 1;
+		}
+
+		/**
+		 * Returns the steps to a tile of the cluster last searched, from the tile the search started from.
+		 * @param tile
+		 * @return the steps, or UNREACHABLE
+		 */
+		int clusterStepsTo(int tile) {
+			int y = tile / width - originY;
+			int x = tile % width - originX;
+			int local = y * clusterSize + x;
+			return clusterReachedBy[local] == clusterSearch ? clusterStepCounts[local] : UNREACHABLE;
+		}
+
+		/**
+		 * Finds the steps between two waypoints: one step across a border, or a shortest path inside their cluster.
+		 * @param from
+		 * @param to
+		 * @return the number of steps, or -1 if the way is blocked
+		 */
+		int refineLeg(int from, int to) {
+			int cluster = clusterOf(from);
+			if (cluster != clusterOf(to)) {
+				legAcross = to;
+				return 1;
+			}
+			originY = (cluster / clusterColumns) * clusterSize;
+			originX = (cluster % clusterColumns) * clusterSize;
+			clusterWidth = Math.min(clusterSize, width - originX);
+			legAcross = -1;
+			return legFinder.findPath(clusterView, from / width - originY, from % width - originX, to / width - originY, to % width - originX);
+		}
+
+		/**
+		 * Returns the tile a step of the last leg found ends on.
+		 * @param step from 0 for the first step
+		 * @return
+		 */
+		int legTile(int step) {
+			if (legAcross >= 0) {
+				return legAcross;
+			}
+			return (originY + legFinder.getStepY(step)) * width + originX + legFinder.getStepX(step);
+		}
+	}
+}
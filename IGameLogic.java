@@ -24,6 +24,8 @@ public interface IGameLogic {
 	public String move(char direction);
 	public String pickup();
 	public String look();
+	public String nav();
+	public String route(int y, int x);
 	public boolean gameRunning();
 	public void quitGame();
 	
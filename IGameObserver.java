@@ -0,0 +1,32 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * Hides implementation detail of whatever watches the game being played on the server.
+ * Defines the methods the server calls to report what is happening, so the server can run
+ * with no observer at all (headless) or with one such as the game engine GUI attached.
+ * Methods are called from the server's own threads and must not block them, so an observer
+ * which draws on screen should hand the work to its own thread.
+ * Implemented by the GameEngineGUI class.
+ * 
+ * @author 18181
+ */
+public interface IGameObserver {
+	
+	// methods to report events as text and to ask whether client commands should be carried out
+	public void showMessage(String text);
+	public boolean isAcceptingCommands();
+	
+	// methods to show the whole map once when the observer is attached, then the tiles which change after that
+	public void showWholeMap(char[][] wholeMap, int height, int width);
+	public void showChangedTiles(int[] changed, char[] tiles);
+	
+}
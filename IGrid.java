@@ -0,0 +1,28 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * Hides implementation detail of a grid of tiles which paths can be found across, such as a look window or a whole map.
+ * Positions are given as row (y) then column (x), counting from 0 at the top left.
+ * Implemented by ExploredWorld for what a bot remembers and by Map for the whole map,
+ * and searched by GridPathfinder and HierarchicalPathfinder.
+ *
+ * @author 18181
+ */
+public interface IGrid {
+
+	// methods to return the number of rows and columns in the grid
+	public int getHeight();
+	public int getWidth();
+
+	// method to say whether a player may walk onto the tile at a position inside the grid
+	public boolean isWalkable(int y, int x);
+}
@@ -0,0 +1,32 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * Fills a TileStorage a row at a time, as a map is read from text by Map.loadMap.
+ * Only the layouts which can be built up this way have a loader, so storage served straight from a file,
+ * like MappedTileStorage, never has to turn rows away.
+ *
+ * @author 18181
+ */
+public interface ITileLoader {
+
+	/**
+	 * Adds a row of tiles below the rows added so far.
+	 * @param row the tiles of the row, which must be as long as the width
+	 */
+	void appendRow(CharSequence row);
+
+	/**
+	 * Returns the storage holding every row added so far.
+	 * @return
+	 */
+	TileStorage getTiles();
+}
@@ -0,0 +1,132 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for growing the heap
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int values, each with an int priority, kept in two plain arrays so nothing is allocated
+ * for each value pushed. Used as the open set of path searches, with tile indices as values.
+ * A value can be pushed again with a better priority rather than being updated in place,
+ * so the searcher skips values it has already finished with when they come off the heap.
+ *
+ * @author 18181
+ */
+public class IntMinHeap {
+
+	// the values and their priorities, with the lowest priority first, and the number of values held
+	private int[] values;
+	private int[] priorities;
+	private int size = 0;
+
+	/**
+	 * Constructor creates an empty heap with room for a number of values before it has to grow.
+	 * @param capacity
+	 */
+	public IntMinHeap(int capacity) {
+		values = new int[Math.max(capacity, 1)];
+		priorities = new int[values.length];
+	}
+
+	/**
+	 * Adds a value with a priority.
+	 * @param value
+	 * @param priority
+	 */
+	public void push(int value, int priority) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+			priorities = Arrays.copyOf(priorities, size * 2);
+		}
+
+		// move parents down until the new value's place is found
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (priorities[parent] <= priority) {
+				break;
+			}
+			values[i] = values[parent];
+			priorities[i] = priorities[parent];
+			i = parent;
+		}
+		values[i] = value;
+		priorities[i] = priority;
+	}
+
+	/**
+	 * Removes and returns the value with the lowest priority.
+	 * @return
+	 * @throws IllegalStateException if the heap is empty
+	 */
+	public int pop() {
+		if (size == 0) {
+			throw new IllegalStateException("the heap is empty");
+		}
+		int top = values[0];
+
+		// move the last value down from the top until its children are no lower than it
+		int value = values[--size];
+		int priority = priorities[size];
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+				child++;
+			}
+			if (priority <= priorities[child]) {
+				break;
+			}
+			values[i] = values[child];
+			priorities[i] = priorities[child];
+			i = child;
+		}
+		values[i] = value;
+		priorities[i] = priority;
+		return top;
+	}
+
+	/**
+	 * Returns the lowest priority in the heap, without removing its value.
+	 * @return
+	 * @throws IllegalStateException if the heap is empty
+	 */
+	public int peekPriority() {
+		if (size == 0) {
+			throw new IllegalStateException("the heap is empty");
+		}
+		return priorities[0];
+	}
+
+	/**
+	 * Returns whether the heap holds no values.
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of values in the heap.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every value, keeping the arrays for the next search.
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
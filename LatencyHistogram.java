@@ -0,0 +1,163 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * Counts latencies in buckets whose width grows with the latency, in the style of an HDR histogram,
+ * so any latency from a microsecond to hours is recorded to within 1% using a fixed, small array and no allocation.
+ * Latencies below 256 microseconds each have a bucket of their own. Above that, every doubling of the latency
+ * is split into 128 buckets of equal width, so no bucket is wider than 1/128 of the latencies in it.
+ * A histogram is not thread-safe: it should be recorded into by one thread, and only read once that thread is done,
+ * or merged into another histogram.
+ *
+ * @author 18181
+ */
+public class LatencyHistogram {
+
+	// buckets in each doubling of the latency, and the number of buckets below the first doubling
+	private static final int SUB_BUCKET_BITS = 8;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+	// the largest latency recorded exactly, in microseconds (about 19 hours) - anything larger is counted as this
+	private static final long MAX_MICROS = (1L << 36) - 1;
+
+	// the count of latencies in each bucket
+	private final long[] counts = new long[bucketIndex(MAX_MICROS) + 1];
+
+	// totals across every bucket
+	private long totalCount;
+	private long totalMicros;
+	private long minMicros = Long.MAX_VALUE;
+	private long maxMicros;
+
+	/**
+	 * Records one latency.
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.min(MAX_MICROS, Math.max(0, nanos / 1000));
+		counts[bucketIndex(micros)]++;
+		totalCount++;
+		totalMicros += micros;
+		minMicros = Math.min(minMicros, micros);
+		maxMicros = Math.max(maxMicros, micros);
+	}
+
+	/**
+	 * Adds every latency recorded in another histogram to this one.
+	 * @param other
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		totalMicros += other.totalMicros;
+		minMicros = Math.min(minMicros, other.minMicros);
+		maxMicros = Math.max(maxMicros, other.maxMicros);
+	}
+
+	/**
+	 * Forgets every latency recorded so far.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		totalCount = 0;
+		totalMicros = 0;
+		minMicros = Long.MAX_VALUE;
+		maxMicros = 0;
+	}
+
+	/**
+	 * Accessor method returns the number of latencies recorded.
+	 * @return
+	 */
+	public long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Returns the mean latency in microseconds, or 0 if none have been recorded.
+	 * @return
+	 */
+	public double getMeanMicros() {
+		return totalCount == 0 ? 0 : (double) totalMicros / totalCount;
+	}
+
+	/**
+	 * Returns the smallest latency recorded in microseconds, or 0 if none have been recorded.
+	 * @return
+	 */
+	public long getMinMicros() {
+		return totalCount == 0 ? 0 : minMicros;
+	}
+
+	/**
+	 * Returns the largest latency recorded in microseconds.
+	 * @return
+	 */
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	/**
+	 * Returns the latency which the given percentage of latencies are at or below, in microseconds.
+	 * The answer is the top of the bucket holding that latency, so it is never an underestimate.
+	 * @param percentile from 0 to 100, e.g. 99.9
+	 * @return the latency, or 0 if none have been recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				// the top of the bucket can't be above the largest latency actually recorded
+				return Math.min(maxMicros, highestInBucket(i));
+			}
+		}
+		return maxMicros;
+	}
+
+	/**
+	 * Returns the bucket a latency is counted in.
+	 * @param micros
+	 * @return
+	 */
+	private static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		// shift the latency down until it lies between 128 and 255, and count 128 buckets for each place shifted
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - (SUB_BUCKET_BITS - 1);
+		return shift * HALF_SUB_BUCKETS + (int) (micros >>> shift);
+	}
+
+	/**
+	 * Returns the largest latency counted in a bucket.
+	 * @param index
+	 * @return
+	 */
+	private static long highestInBucket(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / HALF_SUB_BUCKETS - 1;
+		long subBucket = index - shift * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
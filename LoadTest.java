@@ -0,0 +1,545 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for running the simulated players and writing out the results
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how the server copes with many players at once.
+ * Simulated players (LoadTestPlayers) are connected gradually over the ramp-up time, all from one event loop,
+ * and each sends commands one at a time from a weighted mix of MOVE, PICKUP, LOOK, HELLO and MAP.
+ * Once every player is connected, the time each command takes to be answered is recorded in a LatencyHistogram
+ * for its type, and at the end the throughput and the 50th, 99th and 99.9th percentile latency of each are reported.
+ * The results can also be written as CSV or JSON, labelled, so runs against different builds can be compared.
+ *
+ * Usage: java LoadTest [--host localhost] [--port 40004] [--players 100] [--ramp 10] [--duration 30] [--think 10]
+ *                      [--mix MOVE=50,PICKUP=20,LOOK=20,HELLO=9,MAP=1] [--label name] [--csv file] [--json file]
+ * Times are in seconds, apart from the think time between a player's commands, which is in milliseconds.
+ * Players move the way BotFleet's bots do, so never leave the dungeon and end the game.
+ *
+ * @author 18181
+ */
+public class LoadTest implements Runnable {
+
+	// the commands which can be in the mix, their binary opcodes, and the reply which completes each one's answer
+	static final String[] COMMANDS = {"MOVE", "PICKUP", "LOOK", "HELLO", "MAP"};
+	static final int[] OPCODES = {BinaryProtocol.MOVE, BinaryProtocol.PICKUP, BinaryProtocol.LOOK, BinaryProtocol.HELLO, BinaryProtocol.MAP};
+
+	// percentiles reported
+	private static final double[] PERCENTILES = {50, 99, 99.9};
+
+	// the brain choosing where players move
+	final BotBrain brain = new BotBrain(false);
+
+	// settings of the run
+	private final InetSocketAddress address;
+	private final int playerCount;
+	private final long rampNanos;
+	private final long durationNanos;
+	private final long thinkNanos;
+
+	// the weight of each command in the mix, and their total
+	private final int[] weights;
+	private final int totalWeight;
+
+	// the selector every player's connection is registered with, and the players waiting to send their next command, soonest first
+	private final Selector selector;
+	private final PriorityQueue<LoadTestPlayer> thinking = new PriorityQueue<LoadTestPlayer>(new Comparator<LoadTestPlayer>() {
+		public int compare(LoadTestPlayer a, LoadTestPlayer b) {
+			return Long.compare(a.nextCommandAt, b.nextCommandAt);
+		}
+	});
+
+	// random numbers for think times and for seeding each player
+	private final Random random = new Random();
+
+	// players connected so far, those playing now, and those which could not connect or were disconnected
+	private int playersConnected = 0;
+	final AtomicInteger playersPlaying = new AtomicInteger();
+	final AtomicInteger playersLost = new AtomicInteger();
+
+	// the latency of each type of command, recorded once every player is connected, and when recording started and stopped
+	private final LatencyHistogram[] latencies = new LatencyHistogram[COMMANDS.length];
+	private boolean recording = false;
+	private long recordingStarted;
+	private long recordingStopped;
+
+	// commands answered so far, read by the reporting thread
+	final AtomicLong answered = new AtomicLong();
+
+	/**
+	 * Constructor sets up a load test without connecting anything yet.
+	 * @param address the server
+	 * @param playerCount
+	 * @param rampSeconds time over which the players are connected
+	 * @param durationSeconds time the latencies are recorded for once every player is connected
+	 * @param thinkMillis average time between a command being answered and the player's next one
+	 * @param weights the weight of each command in COMMANDS
+	 * @throws IOException
+	 */
+	public LoadTest(InetSocketAddress address, int playerCount, int rampSeconds, int durationSeconds, long thinkMillis, int[] weights) throws IOException {
+		this.address = address;
+		this.playerCount = playerCount;
+		this.rampNanos = TimeUnit.SECONDS.toNanos(rampSeconds);
+		this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+		this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+		this.weights = weights;
+
+		int total = 0;
+		for (int weight : weights) {
+			total += weight;
+		}
+		this.totalWeight = total;
+		if (totalWeight <= 0) {
+			throw new IllegalArgumentException("the command mix must have at least one command with a weight");
+		}
+
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+		selector = Selector.open();
+	}
+
+	/**
+	 * Returns whether a reply is the last one the server sends in answer to a command.
+	 * A TEXT reply always is, as the server answers in text when it isn't carrying out commands.
+	 * @param command the index of the command in COMMANDS
+	 * @param opcode the reply
+	 * @return
+	 */
+	static boolean isLastReply(int command, int opcode) {
+		if (opcode == BinaryProtocol.TEXT) {
+			return true;
+		}
+		switch (OPCODES[command]) {
+			case BinaryProtocol.MOVE:
+			case BinaryProtocol.PICKUP:
+				return opcode == BinaryProtocol.SUCCESS || opcode == BinaryProtocol.FAIL;
+			case BinaryProtocol.LOOK:
+				return opcode == BinaryProtocol.LOOK_REPLY;
+			case BinaryProtocol.HELLO:
+				return opcode == BinaryProtocol.GOLD_REPLY;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Runs the load test: connects the players over the ramp-up time, then records latencies for the duration.
+	 */
+	public void run() {
+		long started = System.nanoTime();
+
+		while (true) {
+			long now = System.nanoTime();
+
+			// connect as many players as should be connected by now
+			long due = rampNanos == 0 ? playerCount : Math.min(playerCount, (now - started) * playerCount / rampNanos + 1);
+			while (playersConnected < due) {
+				connectPlayer();
+			}
+
+			// start recording once every player is playing, or has given up, and stop at the end of the duration
+			if (!recording && playersConnected == playerCount && playersPlaying.get() + playersLost.get() == playerCount) {
+				recording = true;
+				recordingStarted = now;
+			}
+			if (recording && now - recordingStarted >= durationNanos) {
+				recordingStopped = now;
+				break;
+			}
+			if (playersConnected == playerCount && playersLost.get() == playerCount) {
+				System.err.println("Every player was disconnected");
+				recordingStopped = now;
+				break;
+			}
+
+			try {
+				// wait for replies, but no longer than until the next player's think time is up, or the next connection is due
+				long waitNanos = playersConnected < playerCount ? rampNanos / playerCount : TimeUnit.MILLISECONDS.toNanos(100);
+				LoadTestPlayer next = thinking.peek();
+				if (next != null) {
+					waitNanos = Math.min(waitNanos, next.nextCommandAt - now);
+				}
+				if (waitNanos > 0) {
+					selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+				}
+				else {
+					selector.selectNow();
+				}
+			} catch (IOException e) {
+				System.err.println("Load test event loop failed: " + e.getMessage());
+				break;
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				serve(key);
+			}
+
+			// send the next command of every player which has finished thinking
+			now = System.nanoTime();
+			while (!thinking.isEmpty() && thinking.peek().nextCommandAt <= now) {
+				LoadTestPlayer player = thinking.poll();
+				try {
+					player.sendNext(now);
+				} catch (IOException e) {
+					player.finish();
+				}
+			}
+		}
+
+		try {
+			// closing the selector leaves the channels open, so the players quit along with the program
+			selector.close();
+		} catch (IOException e) {
+			// the test is finished with it anyway
+		}
+	}
+
+	/**
+	 * Starts connecting one more player, without waiting for the connection to be made.
+	 */
+	private void connectPlayer() {
+		playersConnected++;
+		try {
+			SocketChannel channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			LoadTestPlayer player = new LoadTestPlayer(this, channel, new Random(random.nextLong()));
+			if (channel.connect(address)) {
+				player.key = channel.register(selector, SelectionKey.OP_READ, player);
+				player.connected();
+			}
+			else {
+				player.key = channel.register(selector, SelectionKey.OP_CONNECT, player);
+			}
+		} catch (IOException e) {
+			playersLost.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Connects, reads from and writes to a player's connection which the selector has reported ready.
+	 * @param key
+	 */
+	private void serve(SelectionKey key) {
+		LoadTestPlayer player = (LoadTestPlayer) key.attachment();
+		try {
+			if (key.isValid() && key.isConnectable()) {
+				player.connected();
+				return;
+			}
+			if (key.isValid() && key.isReadable() && !player.read()) {
+				return;
+			}
+			if (key.isValid() && key.isWritable()) {
+				player.flush();
+			}
+		} catch (IOException e) {
+			player.finish();
+		}
+	}
+
+	/**
+	 * Picks a command at random from the mix, more likely the heavier its weight.
+	 * @param random
+	 * @return the index of the command in COMMANDS
+	 */
+	int chooseCommand(Random random) {
+		int pick = random.nextInt(totalWeight);
+		for (int i = 0; i < weights.length; i++) {
+			pick -= weights[i];
+			if (pick < 0) {
+				return i;
+			}
+		}
+		return weights.length - 1;
+	}
+
+	/**
+	 * Called when a player has its first look window, so can send its first command.
+	 * The first commands are spread over a whole think time, so the players don't all act together.
+	 * @param player
+	 */
+	void playerStarted(LoadTestPlayer player) {
+		playersPlaying.incrementAndGet();
+		player.nextCommandAt = System.nanoTime() + (long) (random.nextDouble() * thinkNanos);
+		thinking.add(player);
+	}
+
+	/**
+	 * Called when a player's command has been answered. Records its latency, then lets the player think before its next command.
+	 * @param player
+	 * @param command the index of the command in COMMANDS
+	 * @param nanos the time from sending the command to its last reply
+	 * @throws IOException
+	 */
+	void commandAnswered(LoadTestPlayer player, int command, long nanos) throws IOException {
+		answered.incrementAndGet();
+		if (recording) {
+			latencies[command].record(nanos);
+		}
+
+		long now = System.nanoTime();
+		if (thinkNanos == 0) {
+			player.sendNext(now);
+			return;
+		}
+		player.nextCommandAt = now + (long) (random.nextDouble() * 2 * thinkNanos);
+		thinking.add(player);
+	}
+
+	/**
+	 * Called when a player is disconnected, or fails to connect.
+	 * @param player
+	 * @param wasPlaying whether the player had started playing
+	 */
+	void playerFinished(LoadTestPlayer player, boolean wasPlaying) {
+		thinking.remove(player);
+		if (wasPlaying) {
+			playersPlaying.decrementAndGet();
+		}
+		playersLost.incrementAndGet();
+	}
+
+	/**
+	 * Returns the latencies of every command together.
+	 * @return
+	 */
+	private LatencyHistogram allLatencies() {
+		LatencyHistogram all = new LatencyHistogram();
+		for (LatencyHistogram latency : latencies) {
+			all.add(latency);
+		}
+		return all;
+	}
+
+	/**
+	 * Returns the number of seconds latencies were recorded for.
+	 * @return
+	 */
+	private double recordedSeconds() {
+		return Math.max(1, recordingStopped - recordingStarted) / 1e9;
+	}
+
+	/**
+	 * Prints a table of the results.
+	 */
+	public void printResults() {
+		System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %10s%n", "command", "count", "per sec", "mean us", "p50 us", "p99 us", "p99.9 us", "max us");
+		for (int i = 0; i < COMMANDS.length; i++) {
+			printRow(COMMANDS[i], latencies[i]);
+		}
+		printRow("ALL", allLatencies());
+	}
+
+	/**
+	 * Prints one row of the table of results.
+	 * @param name
+	 * @param latency
+	 */
+	private void printRow(String name, LatencyHistogram latency) {
+		System.out.printf("%-8s %,10d %,10.0f %,10.0f", name, latency.getCount(), latency.getCount() / recordedSeconds(), latency.getMeanMicros());
+		for (double percentile : PERCENTILES) {
+			System.out.printf(" %,10d", latency.getPercentileMicros(percentile));
+		}
+		System.out.printf(" %,10d%n", latency.getMaxMicros());
+	}
+
+	/**
+	 * Writes the results as CSV, one row per command and one for every command together.
+	 * @param target
+	 * @param label names the run, e.g. the build tested
+	 * @throws IOException
+	 */
+	public void writeCsv(File target, String label) throws IOException {
+		PrintWriter out = new PrintWriter(target, "UTF-8");
+		try {
+			out.println("label,players,seconds,command,count,per_second,mean_us,p50_us,p99_us,p999_us,max_us");
+			for (int i = 0; i <= COMMANDS.length; i++) {
+				LatencyHistogram latency = i < COMMANDS.length ? latencies[i] : allLatencies();
+				String name = i < COMMANDS.length ? COMMANDS[i] : "ALL";
+				out.printf(Locale.ROOT, "%s,%d,%.1f,%s,%d,%.1f,%.1f,%d,%d,%d,%d%n", csvField(label), playerCount, recordedSeconds(), name,
+						latency.getCount(), latency.getCount() / recordedSeconds(), latency.getMeanMicros(),
+						latency.getPercentileMicros(50), latency.getPercentileMicros(99), latency.getPercentileMicros(99.9), latency.getMaxMicros());
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the results as a JSON object, with the settings of the run and an object for each command.
+	 * @param target
+	 * @param label names the run, e.g. the build tested
+	 * @throws IOException
+	 */
+	public void writeJson(File target, String label) throws IOException {
+		PrintWriter out = new PrintWriter(target, "UTF-8");
+		try {
+			out.println("{");
+			out.println("  \"label\": " + jsonString(label) + ",");
+			out.println("  \"players\": " + playerCount + ",");
+			out.println("  \"playersLost\": " + playersLost.get() + ",");
+			out.printf(Locale.ROOT, "  \"seconds\": %.1f,%n", recordedSeconds());
+			out.printf(Locale.ROOT, "  \"thinkMillis\": %d,%n", TimeUnit.NANOSECONDS.toMillis(thinkNanos));
+			out.println("  \"commands\": {");
+			for (int i = 0; i <= COMMANDS.length; i++) {
+				LatencyHistogram latency = i < COMMANDS.length ? latencies[i] : allLatencies();
+				String name = i < COMMANDS.length ? COMMANDS[i] : "ALL";
+				out.printf(Locale.ROOT, "    \"%s\": {\"weight\": %d, \"count\": %d, \"perSecond\": %.1f, \"meanMicros\": %.1f, "
+						+ "\"p50Micros\": %d, \"p99Micros\": %d, \"p999Micros\": %d, \"maxMicros\": %d}%s%n",
+						name, i < COMMANDS.length ? weights[i] : totalWeight, latency.getCount(), latency.getCount() / recordedSeconds(),
+						latency.getMeanMicros(), latency.getPercentileMicros(50), latency.getPercentileMicros(99),
+						latency.getPercentileMicros(99.9), latency.getMaxMicros(), i < COMMANDS.length ? "," : "");
+			}
+			out.println("  }");
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Quotes a CSV field if it needs it.
+	 * @param field
+	 * @return
+	 */
+	private static String csvField(String field) {
+		if (field.contains(",") || field.contains("\"")) {
+			return "\"" + field.replace("\"", "\"\"") + "\"";
+		}
+		return field;
+	}
+
+	/**
+	 * Quotes a JSON string.
+	 * @param text
+	 * @return
+	 */
+	private static String jsonString(String text) {
+		return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * Turns a mix such as MOVE=50,PICKUP=20 into a weight for each command, 0 for any not given.
+	 * @param mix
+	 * @return
+	 * @throws IllegalArgumentException if the mix names a command which can't be used or has an invalid weight
+	 */
+	static int[] parseMix(String mix) {
+		int[] weights = new int[COMMANDS.length];
+		for (String part : mix.split(",")) {
+			String[] pair = part.trim().split("=");
+			int command = -1;
+			for (int i = 0; i < COMMANDS.length; i++) {
+				if (COMMANDS[i].equalsIgnoreCase(pair[0].trim())) {
+					command = i;
+				}
+			}
+			if (command < 0 || pair.length != 2) {
+				throw new IllegalArgumentException("not a command and weight: " + part);
+			}
+			weights[command] = Integer.parseInt(pair[1].trim());
+			if (weights[command] < 0) {
+				throw new IllegalArgumentException("weights can't be negative: " + part);
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * Main method reads the settings, runs the load test, printing progress every second, then reports and exports the results.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String host = "localhost";
+		int port = 40004;
+		int players = 100;
+		int ramp = 10;
+		int duration = 30;
+		long think = 10;
+		String mix = "MOVE=50,PICKUP=20,LOOK=20,HELLO=9,MAP=1";
+		String label = "run";
+		String csv = null;
+		String json = null;
+		
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--host": host = value; break;
+					case "--port": port = Integer.parseInt(value); break;
+					case "--players": players = Integer.parseInt(value); break;
+					case "--ramp": ramp = Integer.parseInt(value); break;
+					case "--duration": duration = Integer.parseInt(value); break;
+					case "--think": think = Long.parseLong(value); break;
+					case "--mix": mix = value; break;
+					case "--label": label = value; break;
+					case "--csv": csv = value; break;
+					case "--json": json = value; break;
+					default: throw new IllegalArgumentException("unknown option " + args[i]);
+				}
+			}
+			if (args.length % 2 != 0) {
+				throw new IllegalArgumentException("option " + args[args.length - 1] + " has no value");
+			}
+		} catch (IllegalArgumentException e) { // covers invalid numbers too
+			System.err.println(e.getMessage());
+			System.err.println("usage: java LoadTest [--host h] [--port p] [--players n] [--ramp s] [--duration s] [--think ms] "
+					+ "[--mix MOVE=50,PICKUP=20,LOOK=20,HELLO=9,MAP=1] [--label name] [--csv file] [--json file]");
+			System.exit(-1);
+		}
+		
+		final LoadTest test = new LoadTest(new InetSocketAddress(host, port), players, ramp, duration, think, parseMix(mix));
+		System.out.println("Ramping up " + players + " players against " + host + ":" + port + " over " + ramp + " s, then measuring for " + duration + " s");
+		
+		Thread eventLoop = new Thread(test, "load-test");
+		eventLoop.start();
+		
+		// report progress once a second until the test is over
+		long lastAnswered = 0;
+		int second = 0;
+		while (eventLoop.isAlive()) {
+			eventLoop.join(1000);
+			long total = test.answered.get();
+			System.out.printf("%3ds: %,d players playing, %,d lost, %,d commands/s%n", ++second, test.playersPlaying.get(), test.playersLost.get(), total - lastAnswered);
+			lastAnswered = total;
+		}
+		
+		test.printResults();
+		if (csv != null) {
+			test.writeCsv(new File(csv), label);
+		}
+		if (json != null) {
+			test.writeJson(new File(json), label);
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for talking to the server over a non-blocking channel
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * One simulated player in a LoadTest, played by the load test's event loop alongside every other player.
+ * It switches its connection to the binary protocol, then sends one command at a time, chosen from the
+ * load test's mix, and times how long the server takes to answer it. Only one command is ever waiting for
+ * an answer, so each answer is known to belong to it even when the server runs moves in ticks.
+ * A command has been answered once its last reply arrives: SUCCESS or FAIL for MOVE and PICKUP
+ * (after any look window or gold they send first), the look window for LOOK, the gold for HELLO and the text for MAP.
+ *
+ * @author 18181
+ */
+public class LoadTestPlayer {
+
+	// what the player is doing: connecting, waiting to hear the server has switched protocol,
+	// waiting for its first look window, playing, or finished
+	private static final int CONNECTING = 0;
+	private static final int NEGOTIATING = 1;
+	private static final int STARTING = 2;
+	private static final int PLAYING = 3;
+	private static final int FINISHED = 4;
+
+	// the frame asking for the player's gold and look window before it starts
+	private static final byte[] FIRST_LOOK = {BinaryProtocol.HELLO, BinaryProtocol.LOOK};
+
+	// the load test playing this player, and the connection to the server
+	private final LoadTest test;
+	private final SocketChannel channel;
+	SelectionKey key;
+
+	// replies read but not yet handled, and commands not yet written
+	private ByteBuffer input = ByteBuffer.allocate(4096);
+	private final ByteBuffer output = ByteBuffer.allocate(256);
+
+	// what the player knows about the game: its look window and the gold still needed to win (unknown until told)
+	private final char[] look = new char[BinaryProtocol.LOOK_WINDOW_SIZE];
+	private int goldRemaining = Integer.MAX_VALUE;
+
+	// the command waiting for an answer (-1 for none) and when it was sent, and when the next command is due
+	private int state = CONNECTING;
+	private int awaiting = -1;
+	private long sentAt;
+	long nextCommandAt;
+
+	// the player's own random numbers, so its choices don't depend on the other players
+	private final Random random;
+
+	/**
+	 * Constructor creates a player for a channel which is connecting to the server.
+	 * @param test
+	 * @param channel
+	 * @param random
+	 */
+	public LoadTestPlayer(LoadTest test, SocketChannel channel, Random random) {
+		this.test = test;
+		this.channel = channel;
+		this.random = random;
+	}
+
+	/**
+	 * Finishes connecting, then asks the server to switch to the binary protocol.
+	 * @throws IOException if the connection failed
+	 */
+	void connected() throws IOException {
+		channel.finishConnect();
+		channel.socket().setTcpNoDelay(true);
+		state = NEGOTIATING;
+		output.put((BinaryProtocol.NEGOTIATE + "\n").getBytes(StandardCharsets.ISO_8859_1));
+		flush();
+	}
+
+	/**
+	 * Sends the next command from the load test's mix.
+	 * @param now the current time from System.nanoTime
+	 * @throws IOException
+	 */
+	void sendNext(long now) throws IOException {
+		if (state != PLAYING) {
+			return;
+		}
+
+		awaiting = test.chooseCommand(random);
+		int opcode = LoadTest.OPCODES[awaiting];
+		output.put((byte) opcode);
+		if (opcode == BinaryProtocol.MOVE) {
+			output.put((byte) test.brain.chooseDirection(look, goldRemaining > 0, random));
+		}
+		sentAt = now;
+		flush();
+	}
+
+	/**
+	 * Reads whatever the server has sent and handles every complete reply.
+	 * @return false once the server has closed the connection
+	 * @throws IOException
+	 */
+	boolean read() throws IOException {
+		if (channel.read(input) < 0) {
+			finish();
+			return false;
+		}
+
+		input.flip();
+		if (state == NEGOTIATING) {
+			readNegotiation();
+		}
+		while (state != NEGOTIATING && state != FINISHED && readFrame()) {
+			// keep handling replies until only part of one is left
+		}
+		input.compact();
+
+		// a reply bigger than the buffer, such as the whole map, needs a bigger buffer to ever be read whole
+		if (!input.hasRemaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(input.capacity() * 2);
+			input.flip();
+			larger.put(input);
+			input = larger;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes as many waiting commands as the channel will take, asking to be told when it can take more if some are left.
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		output.flip();
+		channel.write(output);
+		boolean waiting = output.hasRemaining();
+		output.compact();
+
+		if (key != null && key.isValid()) {
+			key.interestOps(waiting ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Stops playing and closes the connection.
+	 */
+	void finish() {
+		if (state == FINISHED) {
+			return;
+		}
+		boolean wasPlaying = state == PLAYING;
+		state = FINISHED;
+		test.playerFinished(this, wasPlaying);
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the connection is being given up on anyway
+		}
+	}
+
+	/**
+	 * Reads the server's answer to the request to switch protocol - a line of text - then asks for the player's gold and look window.
+	 * @throws IOException
+	 */
+	private void readNegotiation() throws IOException {
+		for (int i = input.position(); i < input.limit(); i++) {
+			if (input.get(i) == '\n') {
+				byte[] line = new byte[i - input.position()];
+				input.get(line);
+				input.get(); // the line break
+				String reply = new String(line, StandardCharsets.ISO_8859_1).trim();
+				if (!reply.equals(BinaryProtocol.ACCEPTED)) {
+					throw new IOException("server did not switch to the binary protocol: " + reply);
+				}
+
+				state = STARTING;
+				output.put(FIRST_LOOK);
+				flush();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Handles one reply if the whole of it has been read.
+	 * @return false if only part of a reply is waiting
+	 * @throws IOException
+	 */
+	private boolean readFrame() throws IOException {
+		if (!input.hasRemaining()) {
+			return false;
+		}
+
+		int start = input.position();
+		try {
+			int opcode = input.get() & 0xff;
+			switch (opcode) {
+				case BinaryProtocol.SUCCESS:
+				case BinaryProtocol.FAIL:
+					answered(opcode);
+					break;
+				case BinaryProtocol.LOOK_REPLY:
+					if (input.remaining() < look.length) {
+						input.position(start);
+						return false;
+					}
+					for (int i = 0; i < look.length; i++) {
+						look[i] = (char) (input.get() & 0xff);
+					}
+					// the first look window means the player knows enough to start playing
+					if (state == STARTING) {
+						state = PLAYING;
+						test.playerStarted(this);
+					}
+					else {
+						answered(opcode);
+					}
+					break;
+				case BinaryProtocol.GOLD_REPLY:
+					goldRemaining = BinaryProtocol.readVarint(input);
+					answered(opcode);
+					break;
+				case BinaryProtocol.WIN_REPLY:
+				case BinaryProtocol.ID_REPLY:
+					BinaryProtocol.readVarint(input);
+					break;
+				case BinaryProtocol.TEXT:
+					int length = BinaryProtocol.readVarint(input);
+					if (input.remaining() < length) {
+						input.position(start);
+						return false;
+					}
+					input.position(input.position() + length);
+					answered(opcode);
+					break;
+				case BinaryProtocol.SUBSCRIBED:
+					break;
+				case BinaryProtocol.WON:
+					finish();
+					return false;
+				default:
+					throw new IOException("Unknown reply from server: " + opcode);
+			}
+		} catch (BufferUnderflowException e) {
+			// the rest of the reply hasn't arrived yet
+			input.position(start);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a reply is the last one for the command waiting for an answer, and if so records how long it took.
+	 * @param opcode
+	 * @throws IOException
+	 */
+	private void answered(int opcode) throws IOException {
+		if (awaiting < 0 || !LoadTest.isLastReply(awaiting, opcode)) {
+			return;
+		}
+
+		int command = awaiting;
+		awaiting = -1;
+		test.commandAnswered(this, command, System.nanoTime() - sentAt);
+	}
+}
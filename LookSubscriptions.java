@@ -0,0 +1,154 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for the concurrent sets of subscribers kept per area of the map
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the clients which have asked the server to push their look window to them
+ * instead of polling for it, and finds which of them can see a tile when it changes.
+ * Subscribers are filed by the square area of the map (a bucket) they are standing in,
+ * so a changed tile only has to be checked against the few subscribers standing close to it.
+ *
+ * @author 18181
+ */
+public class LookSubscriptions {
+
+	// width and height of the square area of map covered by one bucket
+	private static final int BUCKET_SIZE = 8;
+
+	// how far a player can see from where they are standing - the look window is 5 tiles across
+	private static final int LOOK_RADIUS = 2;
+
+	// number of buckets across the width of the map
+	private final int bucketsWide;
+
+	// the subscribers standing in each bucket, only buckets that have been used are created
+	private final ConcurrentHashMap<Integer, Set<PlayerConnection>> buckets = new ConcurrentHashMap<Integer, Set<PlayerConnection>>();
+
+	// total number of subscribers, so that changes can be skipped quickly when nobody has subscribed
+	private final Set<PlayerConnection> subscribers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Constructor creates an empty set of subscriptions for a map of the given width.
+	 * @param mapWidth
+	 */
+	public LookSubscriptions(int mapWidth) {
+		this.bucketsWide = (mapWidth + BUCKET_SIZE - 1) / BUCKET_SIZE;
+	}
+
+	/**
+	 * Returns whether any client has subscribed.
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return subscribers.isEmpty();
+	}
+
+	/**
+	 * Subscribes a client standing at the given position.
+	 * @param connection
+	 * @param y
+	 * @param x
+	 */
+	public void subscribe(PlayerConnection connection, int y, int x) {
+		subscribers.add(connection);
+		bucket(bucketIndex(y, x)).add(connection);
+	}
+
+	/**
+	 * Removes a client standing at the given position.
+	 * @param connection
+	 * @param y
+	 * @param x
+	 */
+	public void unsubscribe(PlayerConnection connection, int y, int x) {
+		subscribers.remove(connection);
+		bucket(bucketIndex(y, x)).remove(connection);
+	}
+
+	/**
+	 * Refiles a subscribed client after it has moved, if it has moved into a different bucket.
+	 * @param connection
+	 * @param oldY
+	 * @param oldX
+	 * @param newY
+	 * @param newX
+	 */
+	public void moved(PlayerConnection connection, int oldY, int oldX, int newY, int newX) {
+		int oldBucket = bucketIndex(oldY, oldX);
+		int newBucket = bucketIndex(newY, newX);
+		if (oldBucket != newBucket) {
+			bucket(newBucket).add(connection);
+			bucket(oldBucket).remove(connection);
+		}
+	}
+
+	/**
+	 * Adds every subscriber whose look window contains the given tile to a collection.
+	 * @param y
+	 * @param x
+	 * @param affected
+	 */
+	public void collectWatching(int y, int x, Collection<PlayerConnection> affected) {
+		// a subscriber can see the tile if it is standing within the look radius of it,
+		// so only the buckets overlapping that square need to be searched
+		int firstRow = Math.max(0, y - LOOK_RADIUS) / BUCKET_SIZE;
+		int lastRow = (y + LOOK_RADIUS) / BUCKET_SIZE;
+		int firstColumn = Math.max(0, x - LOOK_RADIUS) / BUCKET_SIZE;
+		int lastColumn = Math.min(bucketsWide * BUCKET_SIZE - 1, x + LOOK_RADIUS) / BUCKET_SIZE;
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				Set<PlayerConnection> bucket = buckets.get(row * bucketsWide + column);
+				if (bucket == null) {
+					continue;
+				}
+
+				for (PlayerConnection connection : bucket) {
+					int[] position = connection.getPlayerPosition();
+					if (Math.abs(position[0] - y) <= LOOK_RADIUS && Math.abs(position[1] - x) <= LOOK_RADIUS) {
+						affected.add(connection);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the bucket covering a position.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	private int bucketIndex(int y, int x) {
+		return (y / BUCKET_SIZE) * bucketsWide + (x / BUCKET_SIZE);
+	}
+
+	/**
+	 * Returns the bucket with the given index, creating it the first time it is used.
+	 * @param index
+	 * @return
+	 */
+	private Set<PlayerConnection> bucket(int index) {
+		Set<PlayerConnection> bucket = buckets.get(index);
+		if (bucket == null) {
+			Set<PlayerConnection> created = ConcurrentHashMap.newKeySet();
+			bucket = buckets.putIfAbsent(index, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		return bucket;
+	}
+}
@@ -11,15 +11,17 @@
 
 // import libraries to handle exceptions reading from the map file and structures for storing map data 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 
 /**
  * Reads a sample ASCII-art map text file and can load any map written in the same format.
- * Stores the map information in a 2D array (char[][]).
+ * Stores the map information in a TileStorage, laid out in memory in whichever way was chosen when loading.
  * This class encapsulates all map characteristics.
  * It reads, loads and prints the map.
  * It also extracts the map name and the number of gold pieces required to win a game.
@@ -28,22 +30,35 @@ import java.util.ArrayList;
  * 
  * @author 18181
  */
-public class Map {
+public class Map implements IGrid {
 	
-	// store the compiled map in 2D char array
-	private char[][] map;
+	// store the compiled map, and how its tiles are laid out in memory
+	private TileStorage map;
+	private TileLayout layout;
 	
 	// store name of map and the total number of gold pieces on the map.
 	private String mapName;
 	private int totalGoldOnMap;
 	
+	// number of gold tiles and the position of every exit, found when first asked for unless the map file gives them
+	private int goldCount = -1;
+	private int[][] exits;
+	
+	// map files larger than this are mapped into memory rather than read in, in bytes
+	private static final long LARGE_MAP_BYTES = 8 * 1024 * 1024;
+	
+	// told about every replaced tile so the change can be published, may be null
+	private DirtyTileTracker dirtyTiles;
+	
 	/**
 	 * Constructor without parameters sets the map object to null
 	 * Name of map is set to null.
 	 * Default gold on map = -1.
+	 * Tiles are packed 3 bits each unless another layout is chosen.
 	 */
 	public Map(){
 		map = null;
+		layout = TileLayout.PACKED;
 		mapName = "";
 		totalGoldOnMap = -1;
 	}
@@ -52,10 +67,21 @@ public class Map {
 	 * Constructor with parameter resets map object by calling first constructor (without parameters).
 	 * Reads new map file in.
 	 * Calls method to set the map up - read it and load it into the game.
+	 * Large map files are mapped into memory, so that they open straight away.
 	 * @param mapFile
 	 */
 	public Map(File mapFile){
+		this(mapFile, mapFile.length() > LARGE_MAP_BYTES ? TileLayout.MAPPED : TileLayout.PACKED);
+	}
+	
+	/**
+	 * Constructor as above, with a choice of how the tiles are laid out in memory.
+	 * @param mapFile
+	 * @param layout
+	 */
+	public Map(File mapFile, TileLayout layout){
 		this();
+		this.layout = layout;
 		readMap(mapFile);
 	}
 	
@@ -66,6 +92,22 @@ public class Map {
 	 * @param mapFile - A File pointed to a correctly formatted map file
 	 */
 	public void readMap(File mapFile) {
+		// a binary map file holds its tiles already packed, so it is loaded whole rather than read line by line
+		if (BinaryMapFile.isBinaryMap(mapFile)) {
+			openBinaryMap(mapFile);
+			return;
+		}
+		
+		// a mapped map is served from the file itself, so there is nothing to read in
+		if (layout == TileLayout.MAPPED) {
+			if (mapFile.isFile()) {
+				openMappedMap(mapFile);
+				return;
+			}
+			// without a file to map, the example map is read in its place, packed as mapped maps are closest to
+			layout = TileLayout.PACKED;
+		}
+		
 		// a buffered reader for the map data to be read from a text file
 		BufferedReader reader = null;
 		
@@ -94,19 +136,98 @@ public class Map {
 		}	
 	}
 	
+	/**
+	 * Loads a map in the binary map format.
+	 * @param mapFile
+	 */
+	private void openBinaryMap(File mapFile) {
+		try {
+			BinaryMapFile binary = new BinaryMapFile(mapFile);
+			mapName = binary.getName();
+			totalGoldOnMap = binary.getWin();
+			goldCount = binary.getGoldCount();
+			exits = binary.getExits();
+			map = binary.getTiles();
+		} catch (IOException e) {
+			System.err.println("map file invalid or wrongly formatted");
+			System.exit(-1); // exit program
+		}
+	}
+	
+	/**
+	 * Maps a map file into memory, reading only its header - the tiles are read from the file as they are needed.
+	 * @param mapFile
+	 */
+	private void openMappedMap(File mapFile) {
+		boolean error = false;
+		
+		try {
+			MappedTileStorage mapped = new MappedTileStorage(mapFile);
+			
+			// check the header the same way as when the map is read in
+			if (mapped.getNameLine().startsWith("name")){
+				error = setName(mapped.getNameLine());
+			}
+			if (mapped.getWinLine().startsWith("win")){
+				error = setWin(mapped.getWinLine());
+			}
+			map = mapped;
+		} catch (IOException e) {
+			error = true;
+		}
+		
+		if (error) {
+			System.err.println("map file invalid or wrongly formatted");
+			System.exit(-1); // exit program
+		}
+	}
+	
+	/**
+	 * Writes the map, including every tile replaced during the game, to a file in the text map format.
+	 * @param target
+	 * @throws IOException
+	 */
+	public void writeMap(File target) throws IOException {
+		// a mapped map copies its unchanged rows straight from the original file
+		if (map instanceof MappedTileStorage) {
+			((MappedTileStorage) map).writeTo(target);
+			return;
+		}
+		
+		BufferedWriter writer = new BufferedWriter(new FileWriter(target));
+		try {
+			writer.write("name " + mapName);
+			writer.newLine();
+			writer.write("win " + totalGoldOnMap);
+			writer.newLine();
+			
+			char[] row = new char[getMapWidth()];
+			for (int y = 0; y < getMapHeight(); y++) {
+				for (int x = 0; x < row.length; x++) {
+					row[x] = map.getTile(y, x);
+				}
+				writer.write(row);
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+	
 	/**
 	 * Load a map from file using BufferedReader
+	 * Each row is added to the tile storage as soon as it is read, so the whole map is never held as text.
 	 * 
 	 * @param reader
 	 * @return
 	 * @throws IOException
 	 */
-	public char[][] loadMap(BufferedReader reader) throws IOException {
+	public TileStorage loadMap(BufferedReader reader) throws IOException {
 		// initialise error diagnostic to false
 		boolean error = false;
 		
-		// set new 1D char array ArrayList and map width to -1
-		ArrayList<char[]> tempMap = new ArrayList<char[]>();
+		// set map width to -1 until the first row has been read
+		ITileLoader tiles = null;
 		int width = -1;
 		
 		// read input to see if file starts with "name"
@@ -123,27 +244,22 @@ public class Map {
 		
 		// read input from file, calculate width from length of line
 		in = reader.readLine();
-		if (in.charAt(0) == '#' && in.length() > 1)
+		if (in.charAt(0) == '#' && in.length() > 1) {
 			width = in.trim().length();
+			tiles = layout.loader(width);
+		}
 		
 		// whilst there is still text to read and errors haven't occurred
 		while (in != null && !error)
 		{
-			// create new 1D char array of length equal to the line
-			char[] row = new char[in.length()];
-			
 			// return error if line length doesn't match width
-			if  (in.length() != width)
+			if  (in.length() != width) {
 				error = true;
-			
-			// sparse each tile on map to new element in 1D array
-			for (int i = 0; i < in.length(); i++)
-			{
-				row[i] = in.charAt(i);
 			}
-
-			// add to element of temporary map in ArrayList
-			tempMap.add(row);
+			else {
+				// add the row of tiles to the map
+				tiles.appendRow(in);
+			}
 
 			// read next line for loop to repeat with
 			in = reader.readLine();
@@ -156,14 +272,7 @@ public class Map {
 			return null;
 		}
 		
-		// create 2D array to store map.
-		char[][] map = new char[tempMap.size()][width];
-		
-		// populate 2D array with each element (array) in ArrayList
-		for (int i=0;i<tempMap.size();i++){
-			map[i] = tempMap.get(i);
-		}
-		return map;
+		return tiles.getTiles();
 	}
 	
 	/**
@@ -222,24 +331,36 @@ public class Map {
 	
 	/**
 	 * The method replaces a char at a given position of the map with a new char
+	 * No lock is taken - players only replace the tile they are standing on, and no two players can stand on the same tile.
 	 * @param y the vertical position of the tile to replace
 	 * @param x the horizontal position of the tile to replace
 	 * @param tile the char character of the tile to replace
 	 * @return The old character which was replaced will be returned.
 	 */
-	protected synchronized char replaceTile(int y, int x, char tile) {
-		char output = map[y][x]; // store tile at desired location
-		map[y][x] = tile; // set new tile to replaced tile
+	protected char replaceTile(int y, int x, char tile) {
+		char output = map.getTile(y, x); // store tile at desired location
+		map.setTile(y, x, tile); // set new tile to replaced tile
+		if(dirtyTiles != null){
+			dirtyTiles.mark(y, x);
+		}
 		return output;
 	}
 	
+	/**
+	 * Mutator method sets the tracker told about every replaced tile.
+	 * @param dirtyTiles
+	 */
+	public void setDirtyTileTracker(DirtyTileTracker dirtyTiles) {
+		this.dirtyTiles = dirtyTiles;
+	}
+	
 	/**
 	 * Method prints the entire 2D map.
 	 */
 	protected void printMap(){
 		for (int y = 0; y < getMapHeight(); y++) {
 			for (int x = 0; x < getMapWidth(); x++) {
-				System.out.print(map[y][x]);
+				System.out.print(map.getTile(y, x));
 			}
 			System.out.println();
 		}
@@ -253,11 +374,11 @@ public class Map {
 	 * @return The old character which was replaced will be returned.
 	 */
 	protected char lookAtTile(int y, int x) {
-		if (y < 0 || x < 0 || y >= map.length || x >= map[0].length){
+		if (y < 0 || x < 0 || y >= map.getHeight() || x >= map.getWidth()){
 			return '#'; // look at case for wall tiles
 		}
 		
-		char output = map[y][x]; // otherwise, return the element of the map being looked at
+		char output = map.getTile(y, x); // otherwise, return the element of the map being looked at
 		
 		return output;
 	}
@@ -265,13 +386,14 @@ public class Map {
 	/**
 	 * This method is used to retrieve a map view around a certain location.
 	 * The method should be used to get the look() around the player location.
+	 * @param occupancy The index of tiles occupied by players
 	 * @param y Y coordinate of the location
 	 * @param x X coordinate of the location
 	 * @param radius The radius defining the area which will be returned. 
 	 * Without the usage of a lamp the standard value is 5 units.
 	 * @return
 	 */
-	protected char[][] lookWindow(int[][] playerPositions, int y, int x, int radius) {
+	protected char[][] lookWindow(OccupancyIndex occupancy, int y, int x, int radius) {
 		char[][] reply = new char[radius][radius]; // set array of the player's viewing scope
 		
 		for (int i = 0; i < radius; i++) {
@@ -279,12 +401,12 @@ public class Map {
 				int posX = x + j - radius/2;
 				int posY = y + i - radius/2;
 				if (posX >= 0 && posX < getMapWidth() && posY >= 0 && posY < getMapHeight()) // if 0 < x,y < width/height
-					if(playerPositions[posY][posX]==1) // check if any other player exists in the view scope 
+					if(occupancy.isOccupied(posY, posX)) // check if any other player exists in the view scope 
 					{
 						reply[j][i] = 'P'; // print a player symbol if one exists there
 					}
 					else {
-						reply[j][i] = map[posY][posX]; // if a player does not reside in the window, print the map tile
+						reply[j][i] = map.getTile(posY, posX); // if a player does not reside in the window, print the map tile
 					}
 				else
 					reply[j][i] = '#'; // otherwise print a wall tile
@@ -301,10 +423,24 @@ public class Map {
 	}
 	
 	/**
-	 * Accessor method returns the map array.
+	 * Accessor method returns a copy of the map as a 2D char array.
 	 * @return
 	 */
 	public char[][] getMap()	{
+		char[][] copy = new char[getMapHeight()][getMapWidth()];
+		for (int y = 0; y < copy.length; y++) {
+			for (int x = 0; x < copy[y].length; x++) {
+				copy[y][x] = map.getTile(y, x);
+			}
+		}
+		return copy;
+	}
+	
+	/**
+	 * Accessor method returns the storage holding the map's tiles.
+	 * @return
+	 */
+	public TileStorage getTileStorage() {
 		return map;
 	}
 
@@ -316,6 +452,51 @@ public class Map {
 		return totalGoldOnMap;
 	}
 
+	/**
+	 * Accessor method returns the number of gold tiles on the map as it was loaded.
+	 * @return
+	 */
+	public synchronized int getGoldCount() {
+		if (goldCount < 0) {
+			findGoldAndExits();
+		}
+		return goldCount;
+	}
+	
+	/**
+	 * Accessor method returns the position [y,x] of every exit tile.
+	 * @return
+	 */
+	public synchronized int[][] getExits() {
+		if (exits == null) {
+			findGoldAndExits();
+		}
+		return exits;
+	}
+	
+	/**
+	 * Counts the gold tiles and finds the exits by looking at every tile.
+	 */
+	private void findGoldAndExits() {
+		int gold = 0;
+		ArrayList<int[]> found = new ArrayList<int[]>();
+		
+		for (int y = 0; y < getMapHeight(); y++) {
+			for (int x = 0; x < getMapWidth(); x++) {
+				char tile = map.getTile(y, x);
+				if (tile == 'G') {
+					gold++;
+				}
+				else if (tile == 'E') {
+					found.add(new int[] {y, x});
+				}
+			}
+		}
+		
+		goldCount = gold;
+		exits = found.toArray(new int[found.size()][]);
+	}
+	
 	/**
 	 * Accessor method returns the map name.
 	 * @return
@@ -329,7 +510,7 @@ public class Map {
 	 * @return
 	 */
 	protected int getMapWidth() {
-		return map[0].length;
+		return map.getWidth();
 	}
 
 	/**
@@ -337,7 +518,33 @@ public class Map {
 	 * @return
 	 */
 	protected int getMapHeight() {
-		return map.length;
+		return map.getHeight();
+	}
+
+	/**
+	 * Returns the map height, so paths can be found across the whole map.
+	 * @return
+	 */
+	public int getHeight() {
+		return map.getHeight();
+	}
+
+	/**
+	 * Returns the map width, so paths can be found across the whole map.
+	 * @return
+	 */
+	public int getWidth() {
+		return map.getWidth();
+	}
+
+	/**
+	 * Returns whether a player may walk onto a tile, which is anything but a wall.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	public boolean isWalkable(int y, int x) {
+		return lookAtTile(y, x) != '#';
 	}
 
 }
\ No newline at end of file
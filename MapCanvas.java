@@ -0,0 +1,153 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for painting the map
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+/**
+ * Shows the map as a single component painted from an image of the whole map, rather than one label per tile.
+ * Each tile is drawn into the image from the tile atlas, and only the cells which change are drawn again,
+ * with only their area of the screen repainted.
+ * Tiles are drawn smaller on large maps, so the image of the map never takes more than 64MB.
+ * Every method must be called on the event dispatch thread.
+ *
+ * @author 18181
+ */
+public class MapCanvas extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	// the most pixels the image of the map may have
+	private static final long MAX_PIXELS = 16 * 1024 * 1024;
+
+	// colour of tiles without an image
+	private static final Color BACKGROUND = Color.DARK_GRAY;
+
+	// size of the map in tiles, and of each tile in pixels
+	private final int mapWidth;
+	private final int mapHeight;
+	private final int cellSize;
+
+	// the tile images at the size they are drawn
+	private final TileAtlas atlas;
+
+	// the image of the whole map, which the screen is painted from
+	private final BufferedImage mapImage;
+	private final Graphics2D mapGraphics;
+
+	/**
+	 * Constructor creates a canvas for a map of the given size, with every tile drawn as background.
+	 * @param atlas
+	 * @param mapWidth
+	 * @param mapHeight
+	 */
+	public MapCanvas(TileAtlas atlas, int mapWidth, int mapHeight) {
+		this.mapWidth = mapWidth;
+		this.mapHeight = mapHeight;
+		this.cellSize = cellSize(atlas.getTileSize(), mapWidth, mapHeight);
+		this.atlas = atlas.scaledTo(cellSize);
+
+		mapImage = new BufferedImage(mapWidth * cellSize, mapHeight * cellSize, BufferedImage.TYPE_INT_RGB);
+		mapGraphics = mapImage.createGraphics();
+		mapGraphics.setColor(BACKGROUND);
+		mapGraphics.fillRect(0, 0, mapImage.getWidth(), mapImage.getHeight());
+
+		setPreferredSize(new Dimension(mapImage.getWidth(), mapImage.getHeight()));
+		setOpaque(true);
+	}
+
+	/**
+	 * Returns the largest size up to the image size at which a map of the given size fits within the most pixels allowed.
+	 * @param tileSize
+	 * @param mapWidth
+	 * @param mapHeight
+	 * @return
+	 */
+	private static int cellSize(int tileSize, int mapWidth, int mapHeight) {
+		long tiles = Math.max(1L, (long) mapWidth * mapHeight);
+		int fits = (int) Math.sqrt((double) MAX_PIXELS / tiles);
+		return Math.max(1, Math.min(tileSize, fits));
+	}
+
+	/**
+	 * Draws every tile of the map and repaints all of it.
+	 * @param wholeMap
+	 */
+	public void setTiles(char[][] wholeMap) {
+		for (int y = 0; y < mapHeight; y++) {
+			for (int x = 0; x < mapWidth; x++) {
+				drawTile(y, x, wholeMap[y][x]);
+			}
+		}
+		repaint();
+	}
+
+	/**
+	 * Draws only the tiles which have changed, and repaints only the area they cover.
+	 * @param changed the index (y * width + x) of each changed tile
+	 * @param tiles the new type of each changed tile
+	 */
+	public void updateTiles(int[] changed, char[] tiles) {
+		if (changed.length == 0) {
+			return;
+		}
+
+		// the area to repaint is everything between the changed cells furthest apart
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+		for (int i = 0; i < changed.length; i++) {
+			int y = changed[i] / mapWidth;
+			int x = changed[i] % mapWidth;
+			drawTile(y, x, tiles[i]);
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+		repaint(minX * cellSize, minY * cellSize, (maxX - minX + 1) * cellSize, (maxY - minY + 1) * cellSize);
+	}
+
+	/**
+	 * Draws a tile into the image of the map.
+	 * @param y
+	 * @param x
+	 * @param tile
+	 */
+	private void drawTile(int y, int x, char tile) {
+		BufferedImage image = atlas.getImage(tile);
+		if (image == null) {
+			mapGraphics.setColor(BACKGROUND);
+			mapGraphics.fillRect(x * cellSize, y * cellSize, cellSize, cellSize);
+		}
+		else {
+			mapGraphics.drawImage(image, x * cellSize, y * cellSize, null);
+		}
+	}
+
+	/**
+	 * Paints the part of the map image which needs repainting.
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, mapImage.getWidth(), mapImage.getHeight());
+		}
+		g.drawImage(mapImage, clip.x, clip.y, clip.x + clip.width, clip.y + clip.height,
+				clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, null);
+	}
+}
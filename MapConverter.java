@@ -0,0 +1,97 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for the map files
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts a map from the text format to the binary map format, which the server loads far faster.
+ * Usage: java MapConverter <map.txt> [map.dmap]
+ * The binary map is written next to the text map unless another file is given.
+ * Both are then loaded again to check they hold the same tiles and to compare how long each takes to load.
+ *
+ * @author 18181
+ */
+public class MapConverter {
+
+	/**
+	 * Main method converts the map named in the arguments.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: java MapConverter <map.txt> [map.dmap]");
+			System.exit(-1);
+		}
+		
+		// the binary map takes the text map's name, with the binary extension
+		File textFile = new File(args[0]);
+		File binaryFile;
+		if (args.length > 1) {
+			binaryFile = new File(args[1]);
+		}
+		else {
+			String name = textFile.getName();
+			if (name.endsWith(".txt")) {
+				name = name.substring(0, name.length() - 4);
+			}
+			binaryFile = new File(textFile.getParentFile(), name + BinaryMapFile.EXTENSION);
+		}
+		
+		// load the text map as it always has been, packed in memory
+		long start = System.nanoTime();
+		Map textMap = new Map(textFile, TileLayout.PACKED);
+		long textTime = System.nanoTime() - start;
+		
+		BinaryMapFile.write(textMap, binaryFile);
+		
+		// load the binary map back, timing it against the text map
+		start = System.nanoTime();
+		Map binaryMap = new Map(binaryFile);
+		long binaryTime = System.nanoTime() - start;
+		
+		if (!sameMap(textMap, binaryMap)) {
+			System.err.println("converted map does not match " + textFile);
+			System.exit(-1);
+		}
+		
+		System.out.println("wrote " + binaryFile + " (" + binaryMap.getMapWidth() + " x " + binaryMap.getMapHeight() + ", "
+				+ binaryMap.getGoldCount() + " gold, " + binaryMap.getExits().length + " exits)");
+		System.out.printf("text:   %,d bytes, loaded in %d ms%n", textFile.length(), textTime / 1000000);
+		System.out.printf("binary: %,d bytes, loaded in %d ms%n", binaryFile.length(), binaryTime / 1000000);
+	}
+	
+	/**
+	 * Returns whether two maps have the same header and tiles.
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static boolean sameMap(Map a, Map b) {
+		if (!a.getMapName().equals(b.getMapName()) || a.getWin() != b.getWin()
+				|| a.getMapWidth() != b.getMapWidth() || a.getMapHeight() != b.getMapHeight()) {
+			return false;
+		}
+		
+		TileStorage tilesA = a.getTileStorage();
+		TileStorage tilesB = b.getTileStorage();
+		for (int y = 0; y < a.getMapHeight(); y++) {
+			for (int x = 0; x < a.getMapWidth(); x++) {
+				if (tilesA.getTile(y, x) != tilesB.getTile(y, x)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
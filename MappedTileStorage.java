@@ -0,0 +1,281 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for mapping the map file into memory and recording the tiles changed since it was opened
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Serves tiles straight out of a text map file mapped into memory, so a map of any size opens almost instantly
+ * and none of it is copied onto the heap. Every row of the file is the same length, so a tile is found
+ * directly from its position without reading the rows before it.
+ * The file itself is never changed. Replaced tiles are kept in an overlay on top of it, and a bit per tile
+ * (allocated 64 rows at a time, only for rows with changes) records which tiles the overlay holds.
+ * writeTo saves the map with its changes to a new file, copying the unchanged rows straight from the mapping.
+ * Maps up to 2GB can be mapped.
+ *
+ * @implements TileStorage
+ * @author 18181
+ */
+public class MappedTileStorage implements TileStorage {
+
+	// rows per block of change bits
+	private static final int BAND_SHIFT = 6;
+	private static final int ROWS_PER_BAND = 1 << BAND_SHIFT;
+
+	// the mapped file
+	private final MappedByteBuffer file;
+
+	// the two header lines, the offset of the first row and the distance from one row to the next
+	private final String nameLine;
+	private final String winLine;
+	private final int dataStart;
+	private final int rowStride;
+
+	// size of the map
+	private final int width;
+	private final int height;
+
+	// the replaced tiles, by index y * width + x, and the bits recording which tiles have been replaced
+	private final ConcurrentHashMap<Long, Character> overlay = new ConcurrentHashMap<Long, Character>();
+	private final AtomicReferenceArray<AtomicLongArray> changedBands;
+
+	/**
+	 * Maps a map file into memory and finds its header and rows, without reading the tiles themselves.
+	 * @param mapFile a map in the text format - name and win lines followed by rows of equal length
+	 * @throws IOException if the file can't be read or its rows aren't all the same length
+	 */
+	public MappedTileStorage(File mapFile) throws IOException {
+		FileChannel channel = FileChannel.open(mapFile.toPath(), StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("map file is too large to map: " + channel.size() + " bytes");
+			}
+			// the mapping stays valid once the channel is closed
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+
+		// the header is the first two lines
+		int nameEnd = lineEnd(0);
+		int winEnd = lineEnd(nameEnd + 1);
+		nameLine = text(0, nameEnd);
+		winLine = text(nameEnd + 1, winEnd);
+		dataStart = winEnd + 1;
+
+		// the first row gives the width, and whether lines end in \n or \r\n
+		int firstRowEnd = lineEnd(dataStart);
+		if (firstRowEnd <= dataStart || file.get(dataStart) != '#') {
+			throw new IOException("map has no rows");
+		}
+		boolean crlf = file.get(firstRowEnd - 1) == '\r';
+		int separatorLength = crlf ? 2 : 1;
+		width = firstRowEnd - dataStart - (crlf ? 1 : 0);
+		rowStride = width + separatorLength;
+
+		// the last row may or may not be followed by a line separator
+		int remaining = file.limit() - dataStart;
+		if (remaining % rowStride == 0) {
+			height = remaining / rowStride;
+		}
+		else if ((remaining + separatorLength) % rowStride == 0) {
+			height = (remaining + separatorLength) / rowStride;
+		}
+		else {
+			throw new IOException("map rows are not all " + width + " tiles wide");
+		}
+
+		// check every row ends where it should, which is one read per row rather than one per tile
+		for (int y = 0; y < height; y++) {
+			int end = dataStart + y * rowStride + width;
+			if (end < file.limit() && file.get(end + separatorLength - 1) != '\n') {
+				throw new IOException("row " + y + " of the map is not " + width + " tiles wide");
+			}
+		}
+
+		changedBands = new AtomicReferenceArray<AtomicLongArray>((height + ROWS_PER_BAND - 1) / ROWS_PER_BAND);
+	}
+
+	/**
+	 * Accessor method returns the first header line, holding the map name.
+	 * @return
+	 */
+	public String getNameLine() {
+		return nameLine;
+	}
+
+	/**
+	 * Accessor method returns the second header line, holding the gold needed to win.
+	 * @return
+	 */
+	public String getWinLine() {
+		return winLine;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public char getTile(int y, int x) {
+		AtomicLongArray band = changedBands.get(y >>> BAND_SHIFT);
+		if (band != null) {
+			int bit = changeBit(y, x);
+			if ((band.get(bit >>> 6) & (1L << bit)) != 0) {
+				return overlay.get((long) y * width + x);
+			}
+		}
+		return (char) (file.get(dataStart + y * rowStride + x) & 0xff);
+	}
+
+	@Override
+	public void setTile(int y, int x, char tile) {
+		// store the tile before marking it as changed, so a reader that sees the mark always finds the tile
+		overlay.put((long) y * width + x, tile);
+
+		AtomicLongArray band = changedBands.get(y >>> BAND_SHIFT);
+		if (band == null) {
+			changedBands.compareAndSet(y >>> BAND_SHIFT, null, new AtomicLongArray((ROWS_PER_BAND * width + 63) / 64));
+			band = changedBands.get(y >>> BAND_SHIFT);
+		}
+
+		int bit = changeBit(y, x);
+		while (true) {
+			long current = band.get(bit >>> 6);
+			if ((current & (1L << bit)) != 0 || band.compareAndSet(bit >>> 6, current, current | (1L << bit))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes the map, with every replaced tile, to a file in the same text format.
+	 * Blocks of 64 rows without any changes are copied from the mapping in one write.
+	 * @param target
+	 * @throws IOException
+	 */
+	public void writeTo(File target) throws IOException {
+		FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			// the header is copied as it is
+			writeFully(channel, slice(0, dataStart));
+
+			ByteBuffer row = ByteBuffer.allocate(rowStride);
+			for (int band = 0; band < changedBands.length(); band++) {
+				int firstRow = band << BAND_SHIFT;
+				int lastRow = Math.min(height, firstRow + ROWS_PER_BAND);
+				int start = dataStart + firstRow * rowStride;
+				int end = Math.min(file.limit(), dataStart + lastRow * rowStride);
+
+				if (changedBands.get(band) == null) {
+					writeFully(channel, slice(start, end));
+					continue;
+				}
+
+				// copy the band a row at a time, putting each replaced tile over the original
+				for (int y = firstRow; y < lastRow; y++) {
+					int rowStart = dataStart + y * rowStride;
+					row.clear();
+					row.put(slice(rowStart, Math.min(file.limit(), rowStart + rowStride)));
+					for (int x = 0; x < width; x++) {
+						row.put(x, (byte) getTile(y, x));
+					}
+					row.flip();
+					writeFully(channel, row);
+				}
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the position of the bit recording whether a tile has changed, within its band.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	private int changeBit(int y, int x) {
+		return (y & (ROWS_PER_BAND - 1)) * width + x;
+	}
+
+	/**
+	 * Returns the position of the line break ending the line which starts at the given position,
+	 * or the end of the file if the line isn't ended.
+	 * @param start
+	 * @return
+	 */
+	private int lineEnd(int start) {
+		int position = start;
+		while (position < file.limit() && file.get(position) != '\n') {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns part of the file as text, without any carriage return at the end.
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private String text(int start, int end) {
+		if (end > start && file.get(end - 1) == '\r') {
+			end--;
+		}
+		byte[] bytes = new byte[Math.max(0, end - start)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = file.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns a view of part of the mapped file.
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private ByteBuffer slice(int start, int end) {
+		ByteBuffer view = file.duplicate();
+		view.position(start);
+		view.limit(end);
+		return view;
+	}
+
+	/**
+	 * Writes everything remaining in a buffer to a channel.
+	 * @param channel
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
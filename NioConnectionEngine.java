@@ -0,0 +1,336 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for selectors, non-blocking channels and the queues used to hand channels between threads
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is an alternative to running one thread per client.
+ * New connections are accepted on the thread which calls runGame, then handed round-robin to a small fixed pool of event loops.
+ * Each event loop owns a Selector and serves every client registered with it, framing lines,
+ * running them through PlayerConnection's game logic and writing the replies back.
+ * A client isn't read from while replies to it are still waiting to be written, so a client which stops reading
+ * stops being served rather than having replies pile up for it.
+ * Once the game has been won, each event loop carries on until every one of its connections has written its last
+ * replies and closed, or has taken too long to, and the last event loop to finish ends the server.
+ *
+ * @author 18181
+ */
+public class NioConnectionEngine {
+
+	// size of the direct buffer each event loop reads into
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	// how long a closing connection may take to write its last replies, and how often that is checked
+	private static final long CLOSE_TIMEOUT_NANOS = 5000000000L;
+	private static final long CLOSE_CHECK_MILLIS = 100;
+
+	// the server whose game the clients are playing
+	private final DungeonServer server;
+
+	// channel new clients connect through
+	private final ServerSocketChannel serverChannel;
+
+	// the event loops, and the next one to be given a client
+	private final EventLoop[] eventLoops;
+	private int nextEventLoop = 0;
+
+	// the event loops still running, the server ends when the last one finishes
+	private final AtomicInteger runningLoops;
+
+	/**
+	 * Constructor binds the server channel to the port and opens one selector per event loop.
+	 * @param portNumber
+	 * @param dungeonServer
+	 * @param eventLoopCount
+	 * @throws IOException
+	 */
+	public NioConnectionEngine(int portNumber, DungeonServer dungeonServer, int eventLoopCount) throws IOException {
+		this.server = dungeonServer;
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(portNumber));
+
+		eventLoops = new EventLoop[eventLoopCount];
+		for (int i = 0; i < eventLoopCount; i++) {
+			eventLoops[i] = new EventLoop(i + 1);
+		}
+		runningLoops = new AtomicInteger(eventLoopCount);
+	}
+
+	/**
+	 * Wakes every event loop up, so they notice the game has ended even if they have no clients.
+	 */
+	public void wakeup() {
+		for (EventLoop eventLoop : eventLoops) {
+			eventLoop.wakeup();
+		}
+	}
+
+	/**
+	 * Number of event loops to use by default - one per core, but never more than four.
+	 * @return
+	 */
+	public static int defaultEventLoopCount() {
+		return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Starts the event loops, then accepts new clients whilst the server is listening.
+	 * Each new client is given to the next event loop in turn.
+	 * @throws IOException
+	 */
+	public void runGame() throws IOException {
+		for (EventLoop eventLoop : eventLoops) {
+			Thread thread = new Thread(eventLoop, "nio-event-loop-" + eventLoop.number);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		while (DungeonServer.isListening) {
+			SocketChannel channel = serverChannel.accept();
+			channel.configureBlocking(false);
+
+			EventLoop eventLoop = eventLoops[nextEventLoop];
+			nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+
+			// add the new connection to an arrayList to monitor clients
+			try {
+				NioPlayerConnection connection = new NioPlayerConnection(channel, server, eventLoop);
+				server.clientList.add(connection);
+				eventLoop.register(connection);
+			} catch (Exception e) {
+				server.report("Too many clients are already connected. Client " + (server.clientList.size()+1) + " has been disconnected");
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * A single thread multiplexing many client channels through one Selector.
+	 */
+	class EventLoop implements Runnable {
+
+		// number used to name the thread running this loop
+		private final int number;
+		private final Selector selector;
+
+		// connections accepted on another thread, waiting to be registered with the selector
+		private final ConcurrentLinkedQueue<NioPlayerConnection> newConnections = new ConcurrentLinkedQueue<NioPlayerConnection>();
+
+		// connections given replies by another thread, waiting for this loop to write them
+		private final ConcurrentLinkedQueue<NioPlayerConnection> pendingWrites = new ConcurrentLinkedQueue<NioPlayerConnection>();
+
+		// every connection on this loop reads through the same buffer, as they are served one at a time
+		private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+		// connections closing once their last replies have been written
+		private final ArrayList<NioPlayerConnection> draining = new ArrayList<NioPlayerConnection>();
+
+		EventLoop(int number) throws IOException {
+			this.number = number;
+			this.selector = Selector.open();
+		}
+
+		/**
+		 * Queues a connection to be registered by this loop's own thread, then wakes the selector up.
+		 * @param connection
+		 */
+		void register(NioPlayerConnection connection) {
+			newConnections.add(connection);
+			selector.wakeup();
+		}
+
+		/**
+		 * Queues a connection whose replies were added by another thread, then wakes the selector up to write them.
+		 * @param connection
+		 */
+		void requestWrite(NioPlayerConnection connection) {
+			pendingWrites.add(connection);
+			selector.wakeup();
+		}
+
+		/**
+		 * Wakes the selector up so that closed channels and new work are noticed straight away.
+		 */
+		void wakeup() {
+			selector.wakeup();
+		}
+
+		/**
+		 * Event loop - waits for channels to become ready and serves each one in turn.
+		 * Once the game is over it carries on until all of its connections have closed, then ends the server if it is the last.
+		 */
+		@Override
+		public void run() {
+			while (DungeonServer.isListening || !selector.keys().isEmpty()) {
+				try {
+					// whilst connections are closing, wake up now and again to give up on any taking too long
+					if (draining.isEmpty() && DungeonServer.isListening) {
+						selector.select();
+					}
+					else {
+						selector.select(CLOSE_CHECK_MILLIS);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+					return;
+				}
+
+				registerNewConnections();
+				writePendingReplies();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					serve(key);
+				}
+
+				closeSlowConnections();
+			}
+
+			if (runningLoops.decrementAndGet() == 0) {
+				System.exit(0);
+			}
+		}
+
+		/**
+		 * Closes the connections which have taken too long to write their last replies,
+		 * and once the game is over starts closing any connection which isn't closing yet.
+		 */
+		private void closeSlowConnections() {
+			long now = System.nanoTime();
+			Iterator<NioPlayerConnection> closing = draining.iterator();
+			while (closing.hasNext()) {
+				NioPlayerConnection connection = closing.next();
+				if (!connection.getChannel().isOpen()) {
+					closing.remove();
+				}
+				else if (now - connection.getClosingSince() > CLOSE_TIMEOUT_NANOS) {
+					connection.closeNow();
+					closing.remove();
+				}
+			}
+
+			if (!DungeonServer.isListening) {
+				for (SelectionKey key : selector.keys()) {
+					NioPlayerConnection connection = (NioPlayerConnection) key.attachment();
+					if (key.isValid() && !connection.isClosing()) {
+						connection.closeConnection();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Registers every queued connection for reading.
+		 */
+		private void registerNewConnections() {
+			NioPlayerConnection connection;
+			while ((connection = newConnections.poll()) != null) {
+				try {
+					connection.key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+				} catch (IOException e) {
+					// the client went away before it could be registered
+					connection.quitGame();
+				}
+			}
+		}
+
+		/**
+		 * Writes the replies of every connection queued by another thread.
+		 */
+		private void writePendingReplies() {
+			NioPlayerConnection connection;
+			while ((connection = pendingWrites.poll()) != null) {
+				SelectionKey key = connection.key;
+				if (key == null || !key.isValid()) {
+					continue;
+				}
+
+				try {
+					writeReplies(connection, key);
+				} catch (IOException e) {
+					server.report("Client " + connection.getPlayerID() + " has disconnected."); // print message saying client has disconnected
+					connection.closeNow();
+					connection.quitGame();
+				}
+			}
+		}
+
+		/**
+		 * Reads from and writes to a connection which the selector has reported ready.
+		 * @param key
+		 */
+		private void serve(SelectionKey key) {
+			NioPlayerConnection connection = (NioPlayerConnection) key.attachment();
+
+			try {
+				if (key.isValid() && key.isReadable() && !connection.isClosing()) {
+					if (!connection.readInput(readBuffer)) {
+						// the client closed its end of the connection
+						connection.parseCommand("QUIT");
+						return;
+					}
+				}
+
+				if (key.isValid()) {
+					writeReplies(connection, key);
+				}
+			} catch (IOException e) {
+				readBuffer.clear();
+				server.report("Client " + connection.getPlayerID() + " has disconnected."); // print message saying client has disconnected
+				connection.closeNow();
+				connection.quitGame();
+			}
+		}
+
+		/**
+		 * Writes every reply waiting for a connection at once. While some are still waiting, the loop stops reading
+		 * from the client and only asks to be told about the channel becoming writable.
+		 * A closing connection is closed once everything has been written.
+		 * @param connection
+		 * @param key
+		 * @throws IOException
+		 */
+		private void writeReplies(NioPlayerConnection connection, SelectionKey key) throws IOException {
+			if (connection.hasOverflowed()) {
+				server.report("Client " + connection.getPlayerID() + " has been disconnected for not reading its replies.");
+				connection.closeNow();
+				connection.quitGame();
+				return;
+			}
+
+			boolean written = connection.writeReplies();
+			if (connection.isClosing()) {
+				if (written) {
+					connection.closeNow();
+					draining.remove(connection);
+					return;
+				}
+				if (!draining.contains(connection)) {
+					draining.add(connection);
+				}
+			}
+			key.interestOps(written ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+		}
+	}
+}
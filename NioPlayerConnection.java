@@ -0,0 +1,297 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for non-blocking socket channels and the buffers they read and write through
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A client connection which is driven by one of the event loops of a NioConnectionEngine rather than its own thread.
+ * Bytes read from the channel are framed into lines and handed to the same game logic as the threaded connection.
+ * Replies are collected while a batch of input is processed, then written from a direct buffer owned by this connection.
+ * Closing the connection only marks it as closing: the event loop closes the channel once every reply has been written,
+ * so messages such as the end of the game still reach the client. A client which reads so slowly that more than
+ * MAX_PENDING_REPLIES characters are waiting for it is disconnected rather than left to fill the server's memory.
+ *
+ * @extends PlayerConnection
+ * @author 18181
+ */
+public class NioPlayerConnection extends PlayerConnection {
+
+	// longest line accepted from a client before it is processed regardless of a line break
+	private static final int MAX_LINE_LENGTH = 8192;
+	// size of the direct buffer replies are written from
+	private static final int WRITE_BUFFER_SIZE = 16384;
+	// most characters of replies which may be waiting for a client before it is disconnected
+	static final int MAX_PENDING_REPLIES = 1 << 20;
+
+	// the channel and event loop serving this client
+	private final SocketChannel channel;
+	private final NioConnectionEngine.EventLoop eventLoop;
+	SelectionKey key;
+
+	// characters of a line which has not been completed by a line break yet
+	private final StringBuilder partialLine = new StringBuilder();
+
+	// opcode of a binary command still waiting for the bytes which follow it, or -1,
+	// the bytes of them read so far as one number, and how many are still to come
+	private int partialOpcode = -1;
+	private int partialArgument = 0;
+	private int partialRemaining = 0;
+
+	// replies waiting to be copied into the write buffer, and how far through them the copying has got
+	private final StringBuilder pendingReplies = new StringBuilder();
+	private int pendingOffset = 0;
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+	// whether too many replies were waiting, so the rest were dropped, and whether the channel is to be closed once written
+	private volatile boolean overflowed = false;
+	private volatile boolean closing = false;
+	// when the connection started closing, from System.nanoTime
+	private long closingSince;
+
+	/**
+	 * Constructor sets up the player and points its output at the pending replies rather than a socket stream.
+	 * @param channel
+	 * @param dungeonServer
+	 * @param eventLoop
+	 * @throws Exception if there is no free position left on the map for the player
+	 */
+	public NioPlayerConnection(SocketChannel channel, DungeonServer dungeonServer, NioConnectionEngine.EventLoop eventLoop) throws Exception {
+		super(dungeonServer);
+		this.channel = channel;
+		this.eventLoop = eventLoop;
+
+		// nothing has been written yet, so the write buffer starts empty
+		writeBuffer.flip();
+
+		// anything the game logic prints is appended to the pending replies
+		dataToClient = new PrintWriter(new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+				synchronized (pendingReplies) {
+					if (pendingReplies.length() - pendingOffset + len > MAX_PENDING_REPLIES) {
+						overflowed = true;
+					}
+					if (!overflowed) {
+						pendingReplies.append(cbuf, off, len);
+					}
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+	}
+
+	/**
+	 * Accessor method for the channel serving this client.
+	 * @return
+	 */
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Reads everything currently available on the channel, running each complete line through the game logic.
+	 * @param readBuffer a buffer shared by all connections on the same event loop
+	 * @return false once the client has closed its end of the connection
+	 * @throws IOException
+	 */
+	boolean readInput(ByteBuffer readBuffer) throws IOException {
+		int read;
+
+		// keep reading until the channel has nothing more to give
+		while ((read = channel.read(readBuffer)) > 0) {
+			readBuffer.flip();
+
+			// frame the bytes into lines, the protocol is plain ASCII so each byte is one character
+			while (readBuffer.hasRemaining()) {
+				char c = (char) (readBuffer.get() & 0xff);
+
+				// once the client has switched to the binary protocol, the rest of the input is frames
+				if (binary) {
+					readFrameByte(c);
+				}
+				else if (c == '\n' || partialLine.length() >= MAX_LINE_LENGTH) {
+					// strip the carriage return sent by clients using Windows line separators
+					int length = partialLine.length();
+					if (length > 0 && partialLine.charAt(length - 1) == '\r') {
+						partialLine.setLength(length - 1);
+					}
+
+					String line = partialLine.toString();
+					partialLine.setLength(0);
+					processInput(line);
+
+					// a line which was too long still needs its current character
+					if (c != '\n') {
+						partialLine.append(c);
+					}
+				}
+				else {
+					partialLine.append(c);
+				}
+			}
+
+			readBuffer.clear();
+		}
+
+		return read != -1;
+	}
+
+	/**
+	 * Adds one byte to the binary command being read, running the command once all of it has arrived.
+	 * @param b
+	 * @throws IOException
+	 */
+	private void readFrameByte(int b) throws IOException {
+		if (partialOpcode >= 0) {
+			// the bytes after the opcode are read into one number, highest first
+			partialArgument = (partialArgument << 8) | b;
+			if (--partialRemaining == 0) {
+				int opcode = partialOpcode;
+				partialOpcode = -1;
+				processFrame(opcode, partialArgument);
+			}
+		}
+		else if (BinaryProtocol.commandLength(b) > 1) {
+			partialOpcode = b;
+			partialArgument = 0;
+			partialRemaining = BinaryProtocol.commandLength(b) - 1;
+		}
+		else {
+			processFrame(b, 0);
+		}
+	}
+
+	/**
+	 * Copies the pending replies into the write buffer and writes as much as the channel will take.
+	 * Must only be called from the event loop serving this connection.
+	 * @return true if everything has been written, false if the channel is full and the rest must wait
+	 * @throws IOException
+	 */
+	boolean writeReplies() throws IOException {
+		while (true) {
+			// refill the write buffer once it has been written out completely
+			if (!writeBuffer.hasRemaining()) {
+				writeBuffer.clear();
+
+				synchronized (pendingReplies) {
+					int count = Math.min(pendingReplies.length() - pendingOffset, writeBuffer.capacity());
+					for (int i = 0; i < count; i++) {
+						char c = pendingReplies.charAt(pendingOffset + i);
+						writeBuffer.put(c < 256 ? (byte) c : (byte) '?');
+					}
+					pendingOffset += count;
+
+					// once every reply has been copied, reuse the builder from the start
+					if (pendingOffset == pendingReplies.length()) {
+						pendingReplies.setLength(0);
+						pendingOffset = 0;
+					}
+				}
+
+				writeBuffer.flip();
+
+				// nothing left to write at all
+				if (!writeBuffer.hasRemaining()) {
+					return true;
+				}
+			}
+
+			channel.write(writeBuffer);
+
+			// the socket send buffer is full, wait until the selector reports it writable again
+			if (writeBuffer.hasRemaining()) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Asks the event loop to write pushed messages, as no input from this client may arrive to trigger the write.
+	 */
+	@Override
+	protected void pushed() {
+		eventLoop.requestWrite(this);
+	}
+
+	/**
+	 * Marks the connection as closing, and asks the event loop to close the channel once the replies still waiting
+	 * have been written. Safe to call from any thread.
+	 */
+	@Override
+	protected void closeConnection() {
+		if (!closing) {
+			closingSince = System.nanoTime();
+			closing = true;
+		}
+		eventLoop.requestWrite(this);
+	}
+
+	/**
+	 * Closes the channel straight away, without writing anything still waiting.
+	 */
+	void closeNow() {
+		closing = true;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stops the game, leaving the event loops to close every connection once its replies have been written
+	 * and then end the server, rather than ending it before the last replies have been sent.
+	 */
+	@Override
+	protected void endGame() {
+		if (DungeonServer.isListening) {
+			server.toggleIsListening();
+		}
+		closeConnection();
+	}
+
+	/**
+	 * Returns whether the connection is to be closed once its replies have been written.
+	 * @return
+	 */
+	boolean isClosing() {
+		return closing;
+	}
+
+	/**
+	 * Returns when the connection started closing.
+	 * @return the time from System.nanoTime
+	 */
+	long getClosingSince() {
+		return closingSince;
+	}
+
+	/**
+	 * Returns whether replies were dropped because too many were waiting for the client.
+	 * @return
+	 */
+	boolean hasOverflowed() {
+		return overflowed;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for the atomically updated array holding the owner of each tile
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Records which player occupies each tile of the map, holding the occupying player's ID (or 0 for a free tile).
+ * Tiles are identified by their index y * width + x, so setting, clearing and testing a tile are direct lookups
+ * rather than scans of the whole map.
+ * Every update is a compare-and-set on the tile itself, so moves on different tiles never wait for each other
+ * and no lock is needed to keep two players from taking the same tile.
+ * Only the player holding a tile can free it, which also makes each player the only one able to change the tile they stand on.
+ *
+ * @author 18181
+ */
+public class OccupancyIndex {
+
+	// the ID stored for a tile with nobody on it, player IDs start from 1
+	public static final int FREE = 0;
+
+	// size of the map the index covers
+	private final int height;
+	private final int width;
+
+	// the ID of the player standing on each tile
+	private final AtomicIntegerArray owners;
+
+	/**
+	 * Constructor creates an index with every tile free.
+	 * @param height
+	 * @param width
+	 */
+	public OccupancyIndex(int height, int width) {
+		this.height = height;
+		this.width = width;
+		this.owners = new AtomicIntegerArray(height * width);
+	}
+
+	/**
+	 * Returns the ID of the player standing on the tile. Positions outside the map are always free.
+	 * @param y
+	 * @param x
+	 * @return the player's ID, or FREE
+	 */
+	public int ownerAt(int y, int x) {
+		if (y < 0 || x < 0 || y >= height || x >= width) {
+			return FREE;
+		}
+		return owners.get(y * width + x);
+	}
+
+	/**
+	 * Returns whether a player is standing on the tile. Positions outside the map are never occupied.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	public boolean isOccupied(int y, int x) {
+		return ownerAt(y, x) != FREE;
+	}
+
+	/**
+	 * Takes the tile for a player if it is free.
+	 * @param y
+	 * @param x
+	 * @param playerID
+	 * @return true if the tile was free and now belongs to the player, false if another player already had it
+	 */
+	public boolean claim(int y, int x, int playerID) {
+		return owners.compareAndSet(y * width + x, FREE, playerID);
+	}
+
+	/**
+	 * Frees the tile, as long as it belongs to the given player.
+	 * @param y
+	 * @param x
+	 * @param playerID
+	 * @return true if the tile was freed, false if it did not belong to the player
+	 */
+	public boolean clear(int y, int x, int playerID) {
+		return owners.compareAndSet(y * width + x, playerID, FREE);
+	}
+
+	/**
+	 * Moves a player from one tile to another.
+	 * The destination is claimed before the old tile is freed, so the player is never missing from the index
+	 * and no other player can take the destination in between.
+	 * @param oldY
+	 * @param oldX
+	 * @param newY
+	 * @param newX
+	 * @param playerID
+	 * @return true if the player moved, false if the destination was already occupied
+	 */
+	public boolean move(int oldY, int oldX, int newY, int newX, int playerID) {
+		if (!claim(newY, newX, playerID)) {
+			return false;
+		}
+		clear(oldY, oldX, playerID);
+		return true;
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for the atomically updated chunks of packed tiles
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stores every tile as a 3-bit code, packing 21 tiles into each long, for maps far too large to keep as chars.
+ * A 10,000 x 10,000 dungeon takes under 40MB this way rather than 200MB as chars.
+ * Rows are kept in chunks of 64 rows each, so a map can be loaded row by row without knowing its height in advance
+ * and rows which are near each other are near each other in memory.
+ * Each code is looked up in a palette of up to 8 tile characters, filled in as new tiles are seen.
+ * Replacing a tile is a compare-and-set on the long holding it, so tiles sharing a long can be replaced at the same time.
+ *
+ * @implements TileStorage, ITileLoader
+ * @author 18181
+ */
+public class PackedTileStorage implements TileStorage, ITileLoader {
+
+	// bits per tile, tiles per long and rows per chunk
+	private static final int BITS_PER_TILE = 3;
+	private static final int TILES_PER_WORD = 64 / BITS_PER_TILE;
+	private static final int TILE_MASK = (1 << BITS_PER_TILE) - 1;
+	private static final int CHUNK_SHIFT = 6;
+	static final int ROWS_PER_CHUNK = 1 << CHUNK_SHIFT;
+
+	// the most tile characters which can be told apart with 3 bits
+	static final int PALETTE_SIZE = 1 << BITS_PER_TILE;
+
+	// the tiles given codes before any map is loaded
+	private static final char[] COMMON_TILES = {'.', '#', 'G', 'E'};
+
+	// number of tiles in each row, and longs needed to hold them
+	private final int width;
+	private final int wordsPerRow;
+
+	// the chunks of rows, and the number of rows added so far
+	private final ArrayList<AtomicLongArray> chunks = new ArrayList<AtomicLongArray>();
+	private int height = 0;
+
+	// the tile character for each code, and the code for each ASCII tile character (or -1)
+	private final char[] palette = new char[PALETTE_SIZE];
+	private final byte[] codes = new byte[128];
+	private int paletteCount = 0;
+
+	/**
+	 * Constructor creates an empty storage for rows of the given width.
+	 * The common tiles are given codes up front, so most maps never need to add to the palette.
+	 * @param width
+	 */
+	public PackedTileStorage(int width) {
+		this(width, COMMON_TILES);
+	}
+
+	/**
+	 * Constructor creates an empty storage for rows of the given width, giving the tiles in a palette their codes in order.
+	 * Used to load tiles which were packed with that palette.
+	 * @param width
+	 * @param initialPalette
+	 */
+	public PackedTileStorage(int width, char[] initialPalette) {
+		this.width = width;
+		this.wordsPerRow = wordsPerRow(width);
+
+		Arrays.fill(codes, (byte) -1);
+		for (char tile : initialPalette) {
+			codeFor(tile);
+		}
+	}
+
+	/**
+	 * Returns the number of longs each row is packed into.
+	 * @param width
+	 * @return
+	 */
+	public static int wordsPerRow(int width) {
+		return (width + TILES_PER_WORD - 1) / TILES_PER_WORD;
+	}
+
+	/**
+	 * Returns a copy of the tile characters which have been given codes, in code order.
+	 * @return
+	 */
+	public synchronized char[] getPalette() {
+		return Arrays.copyOf(palette, paletteCount);
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public char getTile(int y, int x) {
+		long word = chunks.get(y >>> CHUNK_SHIFT).get(wordIndex(y, x));
+		return palette[(int) (word >>> shift(x)) & TILE_MASK];
+	}
+
+	@Override
+	public void setTile(int y, int x, char tile) {
+		long code = codeFor(tile);
+		AtomicLongArray chunk = chunks.get(y >>> CHUNK_SHIFT);
+		int index = wordIndex(y, x);
+		int shift = shift(x);
+
+		// only this tile's bits change, retrying if another tile in the same long changes first
+		while (true) {
+			long current = chunk.get(index);
+			long updated = (current & ~((long) TILE_MASK << shift)) | (code << shift);
+			if (chunk.compareAndSet(index, current, updated)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void appendRow(CharSequence row) {
+		// start a new chunk once the last one is full
+		if ((height & (ROWS_PER_CHUNK - 1)) == 0) {
+			chunks.add(new AtomicLongArray(ROWS_PER_CHUNK * wordsPerRow));
+		}
+
+		AtomicLongArray chunk = chunks.get(height >>> CHUNK_SHIFT);
+		int rowStart = (height & (ROWS_PER_CHUNK - 1)) * wordsPerRow;
+
+		// pack the row a whole long at a time
+		for (int w = 0; w < wordsPerRow; w++) {
+			long word = 0;
+			int first = w * TILES_PER_WORD;
+			int last = Math.min(width, first + TILES_PER_WORD);
+			for (int x = first; x < last; x++) {
+				word |= (long) codeFor(row.charAt(x)) << ((x - first) * BITS_PER_TILE);
+			}
+			chunk.set(rowStart + w, word);
+		}
+
+		height++;
+	}
+
+	/**
+	 * Adds up to a chunk's worth of rows which are already packed, without unpacking them.
+	 * The rows must have been packed with this storage's palette, and must start a new chunk.
+	 * @param words the packed rows one after another, at least a whole chunk long
+	 * @param rows number of rows in the words, at most 64
+	 */
+	public void appendPackedRows(long[] words, int rows) {
+		if ((height & (ROWS_PER_CHUNK - 1)) != 0 || rows > ROWS_PER_CHUNK || words.length < ROWS_PER_CHUNK * wordsPerRow) {
+			throw new IllegalArgumentException("packed rows must fill the start of a new chunk");
+		}
+		chunks.add(new AtomicLongArray(words));
+		height += rows;
+	}
+
+	/**
+	 * Copies the packed longs of a row into an array.
+	 * @param y
+	 * @param destination
+	 * @param offset where in the array to put the first long
+	 */
+	public void copyPackedRow(int y, long[] destination, int offset) {
+		AtomicLongArray chunk = chunks.get(y >>> CHUNK_SHIFT);
+		int rowStart = (y & (ROWS_PER_CHUNK - 1)) * wordsPerRow;
+		for (int w = 0; w < wordsPerRow; w++) {
+			destination[offset + w] = chunk.get(rowStart + w);
+		}
+	}
+
+	/**
+	 * Returns the index within its chunk of the long holding a tile.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	private int wordIndex(int y, int x) {
+		return (y & (ROWS_PER_CHUNK - 1)) * wordsPerRow + x / TILES_PER_WORD;
+	}
+
+	/**
+	 * Returns how far up its long a tile's bits are.
+	 * @param x
+	 * @return
+	 */
+	private static int shift(int x) {
+		return (x % TILES_PER_WORD) * BITS_PER_TILE;
+	}
+
+	/**
+	 * Returns the code for a tile character, giving it the next free code the first time it is seen.
+	 * @param tile
+	 * @return
+	 * @throws IllegalArgumentException if the map uses more different tiles than there are codes
+	 */
+	private int codeFor(char tile) {
+		if (tile < codes.length && codes[tile] >= 0) {
+			return codes[tile];
+		}
+		return addToPalette(tile);
+	}
+
+	/**
+	 * Gives a tile character the next free code.
+	 * The character is stored in the palette before any tile can use its code,
+	 * so a thread which reads the code also sees the character.
+	 * @param tile
+	 * @return
+	 */
+	private synchronized int addToPalette(char tile) {
+		if (tile >= codes.length) {
+			throw new IllegalArgumentException("Tile is not an ASCII character: " + tile);
+		}
+		if (codes[tile] >= 0) {
+			return codes[tile];
+		}
+		if (paletteCount == PALETTE_SIZE) {
+			throw new IllegalArgumentException("Map uses more than " + PALETTE_SIZE + " different tiles");
+		}
+
+		palette[paletteCount] = tile;
+		codes[tile] = (byte) paletteCount;
+		return paletteCount++;
+	}
+
+	@Override
+	public TileStorage getTiles() {
+		return this;
+	}
+}
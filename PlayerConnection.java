@@ -1,9 +1,13 @@
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
 /**
  * This inner class represents a new client connection being made with the server.
  * When a new client connection is accepted, a new PlayerConnection object storing the client's attributes is added to a list.
@@ -18,7 +22,7 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		public int playerID;
 		DungeonServer server;
 		public int counter;
-		public int[] playerPosition;
+		public volatile int[] playerPosition;
 		private int collectedGold;
 		BufferedReader dataFromClient;
 		PrintWriter dataToClient;
@@ -26,6 +30,13 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		// whether client connection active
 		private boolean active;
 		
+		// whether the client has asked for its look window to be pushed to it, and the last window it was sent
+		private volatile boolean subscribed;
+		private volatile String lastLook;
+		
+		// whether the client has switched to the binary protocol
+		protected volatile boolean binary;
+		
 		// declare socket to which client listens and communicates with server
 		private Socket listenAtSocket;
 		// new Thread variable to launch each player in a new thread.
@@ -33,40 +44,49 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		
 		/**
 		 * PlayerConnection constructor takes in the socket used to connect them
+		 * Streams are opened on the socket and a new thread is started to listen to the client.
 		 * @param sock
 		 * @param dungeonServer2 
 		 * @throws Exception 
 		 */
 		public PlayerConnection(Socket sock, DungeonServer dungeonServer) throws Exception {
+			this(dungeonServer);
+			listenAtSocket = sock;
+			
+			// Get input from client, one byte per character to match the replies
+			dataFromClient = new BufferedReader(new InputStreamReader(listenAtSocket.getInputStream(), StandardCharsets.ISO_8859_1));
+			// Send response to client, one byte per character so that binary frames pass through unchanged
+			// replies are only flushed once every command that has arrived has been answered
+			dataToClient = new PrintWriter(new OutputStreamWriter(listenAtSocket.getOutputStream(), StandardCharsets.ISO_8859_1), false);
+			
+			if(server.connectionExecutor != null){
+				server.connectionExecutor.execute(this); // run on a new virtual thread
+			}
+			else {
+				connectionThread = new Thread(this);
+				connectionThread.start(); // start new thread
+			}
+		}
+		
+		/**
+		 * PlayerConnection constructor sets up the client attributes without opening any streams.
+		 * Subclasses which read and write through something other than a blocking socket use this directly.
+		 * @param dungeonServer
+		 * @throws Exception if there is no free position left on the map for the player
+		 */
+		protected PlayerConnection(DungeonServer dungeonServer) throws Exception {
 			this.server = dungeonServer;
 			// set a unique client ID and initialise attributes
 			this.playerID = server.clientList.size()+1;
-			server.gui.changeText("Client " + playerID + " has connected.");
+			server.report("Client " + playerID + " has connected.");
 			collectedGold = 0;
 			active = true;
-			// set a random initial position on the map
-			playerPosition = initiatePlayerPosition();
-			// if this isn't null, update the map accordingly and create a new thread to store this new PlayerConnection object
-			if(playerPosition!=null){
-				server.updatePlayerPositions(playerPosition[0], playerPosition[1]);
-				server.showMap();
-				listenAtSocket = sock;
-				
-				// Get input from client
-				dataFromClient = new BufferedReader(new InputStreamReader(listenAtSocket.getInputStream()));
-				// Send response to client
-				dataToClient = new PrintWriter(listenAtSocket.getOutputStream(), true);
-				
-				connectionThread = new Thread(this);
-				connectionThread.start(); // start new thread
-			}
-			else if(playerPosition==null){ // if position null, print error
-				try {
-					sock.close(); // close socket
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-				
+			// set a random initial position on the map, trying again if another player takes it first
+			do {
+				playerPosition = initiatePlayerPosition();
+			} while(playerPosition!=null && !server.updatePlayerPositions(playerPosition[0], playerPosition[1], playerID));
+			// if position null, the caller closes the connection
+			if(playerPosition==null){
 				throw new Exception();
 			}
 		}
@@ -105,11 +125,12 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		
 		/**
 		 * Finds a random position for the player in the map.
+		 * The position is free when found, but another player may still take it before the caller does.
 		 * @return Return null; if no position is found or a position vector [y,x]
 		 */
-		public synchronized int[] initiatePlayerPosition() {
+		public int[] initiatePlayerPosition() {
 			int[] pos = new int[2]; // create position array for individual player
-			Random rand = new Random();
+			ThreadLocalRandom rand = ThreadLocalRandom.current();
 			
 			// attempt random position on map
 			pos[0]=rand.nextInt(server.map.getMapHeight());
@@ -141,39 +162,196 @@ public class PlayerConnection implements Runnable, IGameLogic {
 				String input = "";
 				
 				// whilst there is an active connection and input from the user isn't null
-				while((input = dataFromClient.readLine())!=null)
-					/**
-					 * Whilst game still active, print game response to screen.
-					 */
+				while((input = dataFromClient.readLine())!=null) {
+					processInput(input);
+					
+					// answer every other command which has already arrived before sending the replies,
+					// so that a batch of commands costs the client a single round trip
+					while(!binary && dataFromClient.ready() && (input = dataFromClient.readLine())!=null) {
+						processInput(input);
+					}
+					dataToClient.flush();
 					
-						if(gameRunning())	{
-							// send game response back
-							if(server.gui.isListeningSelected()){
-									dataToClient.println(parseCommand(input)); // interpret input and print response back to client
-							}
-							else {
-								dataToClient.println("Server is currently not listening to client requests."); 
-							}
-							
-							if(checkWin()){
-								dataToClient.println("You have won the game!"); 
-								System.exit(0); // if game won, close the connection
-							}
+					// the client waits for the switch to be agreed before sending any frames,
+					// so nothing after this line has been read into the reader's buffer
+					if(binary){
+						readFrames(new BufferedInputStream(listenAtSocket.getInputStream()));
+						break;
+					}
 				}
 				
 				parseCommand("QUIT");
 			}
 			// handle exception
 			catch (IOException e) {
-				server.gui.changeText("Client " + getPlayerID() + " has disconnected."); // print message saying client has disconnected
+				server.report("Client " + getPlayerID() + " has disconnected."); // print message saying client has disconnected
 				quitGame();
 			}
 		}
 		
+		/**
+		 * Whilst game still active, interpret a line of input and print the game response back to the client.
+		 * @param input a single line sent by the client
+		 * @throws IOException
+		 */
+		protected void processInput(String input) throws IOException {
+			if(gameRunning())	{
+				// send game response back
+				if(server.isAcceptingCommands()){
+						String answer = parseCommand(input); // interpret input and print response back to client
+						// commands carried out in a tick are answered by the tick instead
+						if(answer != null){
+							dataToClient.println(answer);
+						}
+				}
+				else {
+					dataToClient.println("Server is currently not listening to client requests."); 
+				}
+				
+				if(checkWin()){
+					sendWon(); 
+					endGame(); // if game won, close the connection
+				}
+			}
+		}
+		
+		/**
+		 * Ends the server once the game has been won, after sending the replies still waiting to this client.
+		 */
+		protected void endGame() {
+			dataToClient.flush();
+			System.exit(0);
+		}
+		
+		/**
+		 * Reads binary frames from the client until it disconnects, running each one through the game logic.
+		 * @param in
+		 * @throws IOException
+		 */
+		private void readFrames(InputStream in) throws IOException {
+			int opcode = in.read();
+			// the reader ends the line switching to binary at a carriage return, so if the line feed after it
+			// arrived later it is still waiting here, and would otherwise be read as a NAV
+			if(opcode == '\n'){
+				opcode = in.read();
+			}
+			for(; opcode != -1; opcode = in.read()) {
+				// read the bytes after the opcode into one number, highest first
+				int argument = 0;
+				int b = 0;
+				for(int i = 1; i < BinaryProtocol.commandLength(opcode) && b != -1; i++){
+					b = in.read();
+					argument = (argument << 8) | b;
+				}
+				if(b == -1){
+					break;
+				}
+				processFrame(opcode, argument);
+				
+				// only send the replies once every frame which has already arrived has been answered
+				if(in.available() == 0){
+					dataToClient.flush();
+				}
+			}
+		}
+		
+		/**
+		 * Whilst game still active, carry out a command sent in the binary protocol and send the game response back to the client.
+		 * @param opcode the command
+		 * @param argument the bytes following the command as one number, for commands which have them
+		 * @throws IOException
+		 */
+		protected void processFrame(int opcode, int argument) throws IOException {
+			if(gameRunning())	{
+				if(server.isAcceptingCommands()){
+					runFrame(opcode, argument);
+				}
+				else {
+					sendText("Server is currently not listening to client requests."); 
+				}
+				
+				if(checkWin()){
+					sendWon(); 
+					endGame(); // if game won, close the connection
+				}
+			}
+		}
+		
+		/**
+		 * Carries out a binary command, replying with binary frames.
+		 * @param opcode
+		 * @param argument
+		 * @throws IOException
+		 */
+		private void runFrame(int opcode, int argument) throws IOException {
+			switch (opcode)	{
+				case BinaryProtocol.HELLO:
+					sendGold();
+					break;
+				case BinaryProtocol.MOVE:
+					if(server.tickLoop != null){
+						server.tickLoop.submitMove(this, (char) argument);
+					}
+					else {
+						sendResult(moveTo((char) argument));
+					}
+					break;
+				case BinaryProtocol.PICKUP:
+					if(server.tickLoop != null){
+						server.tickLoop.submitPickup(this);
+					}
+					else {
+						sendResult(pickupGold());
+					}
+					break;
+				case BinaryProtocol.LOOK:
+					sendLook(lookTiles());
+					break;
+				case BinaryProtocol.SUBSCRIBE:
+					subscribe();
+					sendFrame(BinaryProtocol.reply(BinaryProtocol.SUBSCRIBED));
+					break;
+				case BinaryProtocol.WIN:
+					sendFrame(BinaryProtocol.number(BinaryProtocol.WIN_REPLY, server.map.getWin()));
+					break;
+				case BinaryProtocol.ID:
+					sendFrame(BinaryProtocol.number(BinaryProtocol.ID_REPLY, getPlayerID()));
+					break;
+				case BinaryProtocol.MAP:
+					sendText(server.showMap());
+					break;
+				case BinaryProtocol.QUIT:
+					quitGame();
+					break;
+				case BinaryProtocol.NAV:
+					char direction = navigate();
+					if(direction == 0){
+						sendResult(false);
+					}
+					else {
+						sendFrame(BinaryProtocol.navigation(direction));
+					}
+					break;
+				case BinaryProtocol.ROUTE:
+					// the row is in the top two bytes of the argument and the column in the bottom two
+					HierarchicalPathfinder.Route route = routeTo(argument >>> 16, argument & 0xffff);
+					char first = route == null ? 0 : server.routes.firstDirection(route);
+					if(first == 0){
+						sendResult(false);
+					}
+					else {
+						sendFrame(BinaryProtocol.route(first, route.getLength()));
+					}
+					break;
+				default:
+					sendResult(false);
+			}
+		}
+		
 		/**
 		 * Parsing and Evaluating the User Input.
 		 * @param readUserInput input the user generates
-		 * @return answer of GameLogic
+		 * @return answer of GameLogic, or null for a command which is answered once it has been carried out in a tick
 		 * @throws IOException 
 		 */
 		protected String parseCommand(String readUserInput) throws IOException {
@@ -185,10 +363,21 @@ public class PlayerConnection implements Runnable, IGameLogic {
 			// this shows an unsuccessful command or invalid input
 			switch (command[0].toUpperCase())	{
 				case "HELLO":
-					answer = hello();
+					// HELLO BINARY asks to switch to the binary protocol once this reply has been sent
+					if (command.length == 2 && command[1].equalsIgnoreCase("BINARY")) {
+						binary = true;
+						answer = BinaryProtocol.ACCEPTED;
+					}
+					else {
+						answer = hello();
+					}
 					break;
 				case "MOVE":
-					if (command.length == 2) {
+					if (command.length == 2 && server.tickLoop != null) {
+						server.tickLoop.submitMove(this, command[1].charAt(0));
+						answer = null;
+					}
+					else if (command.length == 2) {
 						answer = move(command[1].charAt(0));
 					}
 					else {
@@ -196,7 +385,13 @@ public class PlayerConnection implements Runnable, IGameLogic {
 					}
 				break;
 				case "PICKUP":
-					answer = pickup();
+					if (server.tickLoop != null) {
+						server.tickLoop.submitPickup(this);
+						answer = null;
+					}
+					else {
+						answer = pickup();
+					}
 					break;
 				case "MAP":
 					answer = server.showMap();
@@ -210,6 +405,19 @@ public class PlayerConnection implements Runnable, IGameLogic {
 				case "LOOK":
 					answer = look();
 					break;
+				case "SUBSCRIBE":
+					answer = subscribe();
+					break;
+				case "NAV":
+					answer = nav();
+					break;
+				case "ROUTE":
+					try {
+						answer = command.length == 3 ? route(Integer.parseInt(command[1]), Integer.parseInt(command[2])) : "FAIL";
+					} catch (NumberFormatException e) {
+						answer = "FAIL";
+					}
+					break;
 				case "QUIT":
 					quitGame();
 					break;
@@ -225,7 +433,15 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		 * Prints how much gold is still required to win!
 		 */
 		public String hello() {
-			return "GOLD: " + (server.map.getWin() - collectedGold);
+			return "GOLD: " + goldRemaining();
+		}
+		
+		/**
+		 * Returns how much more gold the player needs to win.
+		 * @return
+		 */
+		public int goldRemaining() {
+			return server.map.getWin() - collectedGold;
 		}
 
 		/**
@@ -234,7 +450,16 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		 * If it is true, the player is moved to the new location.
 		 * @return If the move was executed Success is returned. If the move could not execute Fail is returned.
 		 */
-		public synchronized String move(char direction) {
+		public String move(char direction) {
+			return moveTo(direction) ? "SUCCESS" : "FAIL";
+		}
+		
+		/**
+		 * Moves the player one tile in the given direction, if the tile isn't a wall or taken by another player.
+		 * @param direction one of N, E, S or W
+		 * @return true if the player moved
+		 */
+		public boolean moveTo(char direction) {
 			int oldY = playerPosition[0];
 			int oldX = playerPosition[1]; // store old X and Y position
 			
@@ -255,43 +480,63 @@ public class PlayerConnection implements Runnable, IGameLogic {
 					newPosition[1] -=1;
 					break;
 				default:
-					return "FAIL";
+					return false;
 			}
 			
 			// if tile isn't a wall and isn't taken by another player, set new position to current position (move to new position)
-			if(server.map.lookAtTile(newPosition[0], newPosition[1]) != '#' && !server.isTileTaken(newPosition[0], newPosition[1])){
-				int newY = newPosition[0];
-				int newX = newPosition[1];
-				
-				setPlayerPosition(newPosition); // set new position and update array according to this
-				server.updatePlayerPositions(oldY, oldX, newY, newX);
+			// taking the new tile is a single atomic step, so no two players can take the same tile
+			if(server.map.lookAtTile(newPosition[0], newPosition[1]) != '#'
+					&& server.movePlayer(oldY, oldX, newPosition[0], newPosition[1], playerID)){
+				setPlayerPosition(newPosition); // set new position
+				if(subscribed){
+					server.lookSubscriptions.moved(this, oldY, oldX, newPosition[0], newPosition[1]);
+				}
 				
 				// check if this move satisfies winning criteria
 				if (checkWin())	{
-					dataToClient.println("You have won the game!"); 
+					sendWon(); 
+					// stop listening first, so connections which finish closing can tell the game is over
+					server.toggleIsListening();
 					quitGame();
 					for(int i=0; i< server.clientList.size(); i++){
-						try {
-							server.clientList.get(i).listenAtSocket.close();
-						} catch (IOException e) {
-							e.printStackTrace();
-						}
+						server.clientList.get(i).closeConnection();
 					}
-					server.toggleIsListening();
 				}
 				
-				server.showMap();
-				
-				try {
-					dataToClient.println(parseCommand("LOOK"));
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				sendLook(lookTiles());
 				
 				// if move successful, print to terminal
-				return "SUCCESS";
+				return true;
 			} else {
-				return "FAIL"; // otherwise, print error about fail
+				return false; // otherwise, print error about fail
+			}
+		}
+		
+		/**
+		 * Carries out a move queued for a tick, and sends the answer in whichever protocol the client is using.
+		 * Called from the tick loop's thread.
+		 * @param direction
+		 */
+		void applyMove(char direction) {
+			boolean moved = moveTo(direction);
+			if(binary){
+				sendResult(moved);
+			}
+			else {
+				sendText(moved ? "SUCCESS" : "FAIL");
+			}
+		}
+		
+		/**
+		 * Carries out a pickup queued for a tick, and sends the answer in whichever protocol the client is using.
+		 * Called from the tick loop's thread.
+		 */
+		void applyPickup() {
+			if(binary){
+				sendResult(pickupGold());
+			}
+			else {
+				sendText(pickup());
 			}
 		}
 		
@@ -303,39 +548,232 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		 * Else, print fail message.
 		 */
 		public String pickup() {
+			if (pickupGold()) {
+				return "SUCCESS, GOLD COINS: " + collectedGold;
+			}
+			return "FAIL" + "\n" + "There is nothing to pick up...";
+		}
+		
+		/**
+		 * Picks up the gold on the player's tile, if there is any, and sends the player their new gold count.
+		 * @return true if gold was picked up
+		 */
+		public boolean pickupGold() {
 
-			if (server.map.lookAtTile(playerPosition[0], playerPosition[1]) == 'G') {
+			// only the player standing on a tile can change it, so no lock is needed between checking and replacing the gold
+			if (server.occupancy.ownerAt(playerPosition[0], playerPosition[1]) == playerID
+					&& server.map.lookAtTile(playerPosition[0], playerPosition[1]) == 'G') {
 				collectedGold++;
 				server.map.replaceTile(playerPosition[0], playerPosition[1], '.');
-				try {
-					dataToClient.println(parseCommand("HELLO"));
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-				return "SUCCESS, GOLD COINS: " + collectedGold;
+				server.goldDistances.sourceRemoved(playerPosition[0], playerPosition[1]);
+				server.routes.tileChanged(playerPosition[0], playerPosition[1]);
+				sendGold();
+				return true;
 			}
 
-			return "FAIL" + "\n" + "There is nothing to pick up...";
+			return false;
 		}
 
+		/**
+		 * Tells the player which way to step next towards the nearest gold while they need more, then the nearest exit.
+		 * @return the direction, or FAIL if there is no step to take
+		 */
+		public String nav() {
+			char direction = navigate();
+			if (direction == 0) {
+				return "FAIL";
+			}
+			return "NAV: " + direction;
+		}
+		
+		/**
+		 * Returns the direction of the next step towards the nearest gold while the player needs more, then the nearest exit,
+		 * looked up in the server's distance fields rather than searched for.
+		 * On a cooperative server the step is planned around the other players' plans instead, and may be to wait.
+		 * @return one of N, E, S or W, BinaryProtocol.HOLD, or 0 if the player is on their goal already or can't reach one
+		 */
+		public char navigate() {
+			int[] position = getPlayerPosition();
+			DistanceField goal = goldRemaining() > 0 ? server.goldDistances : server.exitDistances;
+			if (server.planner != null) {
+				return server.planner.nextDirection(playerID, position[0], position[1], goal, server.tickLoop.getTick());
+			}
+			return goal.directionFrom(position[0], position[1]);
+		}
+		
+		/**
+		 * Tells the player which way to step next towards any tile of the map, and how many steps away it is.
+		 * @param y
+		 * @param x
+		 * @return the direction and steps, or FAIL if the tile can't be reached or the player is on it already
+		 */
+		public String route(int y, int x) {
+			HierarchicalPathfinder.Route route = routeTo(y, x);
+			char direction = route == null ? 0 : server.routes.firstDirection(route);
+			if (direction == 0) {
+				return "FAIL";
+			}
+			return "ROUTE: " + direction + " " + route.getLength();
+		}
+		
+		/**
+		 * Finds a route from the player to any tile of the map, across the server's hierarchical pathfinder
+		 * rather than a search of every tile in between.
+		 * @param y
+		 * @param x
+		 * @return the route, or null if the tile can't be reached
+		 */
+		public HierarchicalPathfinder.Route routeTo(int y, int x) {
+			int[] position = getPlayerPosition();
+			return server.routes.findRoute(position[0], position[1], y, x);
+		}
+		
 		/**
 		 * The method shows the dungeon around the player location.
 		 */
 		public String look() {
-			String output = "";
-			int playerXpos = server.clientList.get(playerID-1).playerPosition[1];
-			int playerYpos = server.clientList.get(playerID-1).playerPosition[0];
+			char[] tiles = lookTiles();
+			lastLook = new String(tiles);
+			return formatLook(tiles);
+		}
+		
+		/**
+		 * Returns the 5x5 window of the dungeon around the player, row by row, with the player in the middle.
+		 * @return
+		 */
+		public char[] lookTiles() {
+			int[] position = playerPosition;
 			
-			char [][] lookReply = server.map.lookWindow(server.playerPositions, playerYpos, playerXpos, 5);
+			char [][] lookReply = server.map.lookWindow(server.occupancy, position[0], position[1], 5);
 			lookReply[2][2] = 'P';
 			
+			char[] tiles = new char[BinaryProtocol.LOOK_WINDOW_SIZE];
 			for (int i=0;i<lookReply.length;i++){
 				for (int j=0;j<lookReply[0].length;j++){
-					output += lookReply[j][i];
+					tiles[i * lookReply.length + j] = lookReply[j][i];
 				}
-				output += System.lineSeparator();
 			}
-			return output;
+			return tiles;
+		}
+		
+		/**
+		 * Lays out a look window as the text protocol sends it, one line per row.
+		 * @param tiles
+		 * @return
+		 */
+		private static String formatLook(char[] tiles) {
+			StringBuilder output = new StringBuilder(tiles.length + 5 * System.lineSeparator().length());
+			for (int i=0;i<tiles.length;i+=5){
+				output.append(tiles, i, 5);
+				output.append(System.lineSeparator());
+			}
+			return output.toString();
+		}
+		
+		/**
+		 * Subscribes the client to its look window, so the server pushes the window and gold count
+		 * whenever a tile inside it changes and the client no longer needs to keep asking for them.
+		 * @return SUBSCRIBED, which also tells the client the server can push
+		 */
+		public String subscribe() {
+			if(!subscribed){
+				subscribed = true;
+				server.lookSubscriptions.subscribe(this, playerPosition[0], playerPosition[1]);
+			}
+			return "SUBSCRIBED";
+		}
+		
+		/**
+		 * Pushes the look window and gold count to a subscribed client, unless the window is the same as the last one it was sent.
+		 * Called by the server when a tile inside the window has changed.
+		 */
+		public void pushLook() {
+			if(!subscribed || !gameRunning()){
+				return;
+			}
+			String previous = lastLook;
+			char[] tiles = lookTiles();
+			if(!new String(tiles).equals(previous)){
+				sendLook(tiles);
+				sendGold();
+				pushed();
+			}
+		}
+		
+		/**
+		 * Called after messages the client did not ask for have been sent from a thread other than the one serving the client.
+		 * They are not part of a batch of replies, so they are flushed straight away.
+		 */
+		protected void pushed() {
+			dataToClient.flush();
+		}
+		
+		/**
+		 * Sends the client a look window, in whichever protocol it is using.
+		 * @param tiles
+		 */
+		protected void sendLook(char[] tiles) {
+			lastLook = new String(tiles);
+			if(binary){
+				sendFrame(BinaryProtocol.look(tiles));
+			}
+			else {
+				dataToClient.println(formatLook(tiles));
+			}
+		}
+		
+		/**
+		 * Sends the client how much more gold it needs, in whichever protocol it is using.
+		 */
+		protected void sendGold() {
+			if(binary){
+				sendFrame(BinaryProtocol.number(BinaryProtocol.GOLD_REPLY, goldRemaining()));
+			}
+			else {
+				dataToClient.println(hello());
+			}
+		}
+		
+		/**
+		 * Sends the client a message, in whichever protocol it is using.
+		 * @param text
+		 */
+		protected void sendText(String text) {
+			if(binary){
+				sendFrame(BinaryProtocol.text(text));
+			}
+			else {
+				dataToClient.println(text);
+			}
+		}
+		
+		/**
+		 * Tells the client it has won the game, in whichever protocol it is using.
+		 */
+		protected void sendWon() {
+			if(binary){
+				sendFrame(BinaryProtocol.reply(BinaryProtocol.WON));
+			}
+			else {
+				dataToClient.println("You have won the game!");
+			}
+		}
+		
+		/**
+		 * Sends the client whether a binary command succeeded.
+		 * @param success
+		 */
+		private void sendResult(boolean success) {
+			sendFrame(BinaryProtocol.reply(success ? BinaryProtocol.SUCCESS : BinaryProtocol.FAIL));
+		}
+		
+		/**
+		 * Sends the client a binary frame, once the replies are next flushed.
+		 * The writer sends one byte per character, so each byte of the frame is written as a character.
+		 * @param frame
+		 */
+		protected void sendFrame(byte[] frame) {
+			dataToClient.write(new String(frame, StandardCharsets.ISO_8859_1));
 		}
 		
 		/**
@@ -345,7 +783,7 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		protected boolean checkWin() {
 			if (collectedGold >= server.map.getWin() && 
 					server.map.lookAtTile(playerPosition[0], playerPosition[1]) == 'E') {
-				dataToClient.println("Congratulations!!! \n You have escaped the Dungeon of Dooom!!!!!! \n"
+				sendText("Congratulations!!! \n You have escaped the Dungeon of Dooom!!!!!! \n"
 						+ "Thank you for playing!");
 				return true;
 			}
@@ -357,10 +795,25 @@ public class PlayerConnection implements Runnable, IGameLogic {
 		 */
 		public void quitGame() {
 			active = false;
-			server.playerPositions[playerPosition[0]][playerPosition[1]]=0;
-			server.showMap();
+			if(subscribed){
+				subscribed = false;
+				server.lookSubscriptions.unsubscribe(this, playerPosition[0], playerPosition[1]);
+			}
+			server.removePlayerPosition(playerPosition[0], playerPosition[1], playerID);
+			if(server.planner != null){
+				server.planner.forget(playerID);
+			}
+			closeConnection();
+		}
+
+		/**
+		 * Closes the connection to this client.
+		 */
+		protected void closeConnection() {
+			// send anything still waiting, such as the message telling the client the game is over
+			dataToClient.flush();
 			try {
-				server.sock.close();
+				listenAtSocket.close();
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
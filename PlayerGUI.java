@@ -12,7 +12,6 @@
 // import libraries necessary to build and show the GUI.
 import java.awt.*;
 import java.awt.event.*;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -28,8 +27,14 @@ public class PlayerGUI {
 	JLabel goldRemaining;
 	JProgressBar progress;
 	
-	// declare variables to set grid constraints
-	GridBagConstraints gbc;
+	// size of each tile of the look window in pixels, and the keys in the look tile atlas for the tiles which aren't map tiles
+	static final int LOOK_TILE_SIZE = 95;
+	static final char SELF_TILE = '@';
+	static final char FIRST_ESCAPED_TILE = '1';
+	
+	// the look window tile images, read from disk once and shared by every player window of the same type
+	private static TileAtlas humanLookTiles;
+	private static TileAtlas botLookTiles;
 	
 	// declare a variable to store the maximum number of gold collected before a win
 	int maxGold;
@@ -42,27 +47,87 @@ public class PlayerGUI {
 	JButton pickup;
 	JButton getID;
 	
-	// declare an array to store the lookWindow grid
+	// declare an array to store the lookWindow grid, the labels showing it and the tile each label is showing
 	char[][] lookWindowArray;
+	JLabel[][] lookCells;
+	char[][] shownTiles;
+	TileAtlas lookTiles;
+	
+	// the latest look window received, waiting to be shown on the event dispatch thread, and whether showing it is already scheduled
+	final char[][] pendingLook = new char[5][5];
+	boolean lookScheduled;
+	
+	// shows the pending look window, reused for every update
+	final Runnable showPendingLook = new Runnable() {
+		public void run() {
+			showLookWindow();
+		}
+	};
 	
 	// declare variables to store data passed to the GUI to help build the map and display server information
-	PrintWriter sendToServer;
+	DungeonClient client;
 	int PORT_NUMBER;
 	int playerType;
 	String IPAddress;
+	
+	// timer polling the server for the look window and gold, until the server pushes them instead
+	Timer pollTimer;
 
 	/**
 	 * Constructor method for the player GUI sets local variables to corresponding parameters.
-	 * @param sendToServer
+	 * @param client
 	 * @param ipAddress
 	 * @param portNumber
 	 * @param playerType
 	 */
-	public PlayerGUI(PrintWriter sendToServer, String ipAddress, int portNumber, int playerType) {
-		this.sendToServer = sendToServer;
+	public PlayerGUI(DungeonClient client, String ipAddress, int portNumber, int playerType) {
+		this.client = client;
 		this.IPAddress = ipAddress;
 		this.PORT_NUMBER = portNumber;
 		this.playerType = playerType; // 0 human, 1 bot
+		this.lookWindowArray = new char[5][5];
+		this.lookTiles = lookTilesFor(playerType);
+	}
+	
+	/**
+	 * This method returns the look window tile images for a type of player, reading them from disk the first time.
+	 * The player's own tile differs between humans and bots, so each has an atlas of its own.
+	 * @param playerType
+	 * @return
+	 */
+	private static synchronized TileAtlas lookTilesFor(int playerType) {
+		if(playerType == 1){
+			if(botLookTiles == null){
+				botLookTiles = loadLookTiles("img/lwBotTile.png");
+			}
+			return botLookTiles;
+		}
+		if(humanLookTiles == null){
+			humanLookTiles = loadLookTiles("img/lwPlayerTile.png");
+		}
+		return humanLookTiles;
+	}
+	
+	/**
+	 * This method reads the look window tile images, with the given image for the player's own tile.
+	 * @param selfImage
+	 * @return
+	 */
+	private static TileAtlas loadLookTiles(String selfImage) {
+		TileAtlas atlas = new TileAtlas(LOOK_TILE_SIZE);
+		atlas.load('#', "img/lwWallTile.png");
+		atlas.load('.', "img/lwEmptyTile.png");
+		atlas.load('P', "img/lwOtherPlayerTile.png");
+		atlas.load('G', "img/lwGoldTile.png");
+		atlas.load('E', "img/lwExitTile.png");
+		atlas.load('X', "img/lwXTile.png");
+		atlas.load(SELF_TILE, selfImage);
+		
+		// the escape message is shown across the middle row once the game is won
+		for(int i=0; i<5; i++){
+			atlas.load((char) (FIRST_ESCAPED_TILE + i), "img/escaped" + (i+1) + ".png");
+		}
+		return atlas;
 	}
 
 	/**
@@ -90,7 +155,7 @@ public class PlayerGUI {
 	 * @param text
 	 */
 	public void sendToServer(String text) {
-		sendToServer.println(text);
+		client.sendCommand(text);
 	}
 	
 	/**
@@ -460,102 +525,120 @@ public class PlayerGUI {
 		window.setVisible(true);
 		
 		// every 0.5 seconds, update the player window to reflect changes going on around the player
-		Timer timer = new Timer();
-		timer.scheduleAtFixedRate(new TimerTask() {
+		pollTimer = new Timer();
+		pollTimer.scheduleAtFixedRate(new TimerTask() {
 			  @Override
 			  public void run() {
-				  sendToServer("LOOK");
-				  sendToServer("HELLO");
+				  client.sendCommands("LOOK", "HELLO");
 			  }
 		}, 500, 500);
 	}
+	
+	/**
+	 * This method stops asking the server for the look window and gold every half second.
+	 * Called once the server has agreed to push them whenever they change.
+	 */
+	public void stopPolling() {
+		if(pollTimer != null){
+			pollTimer.cancel();
+		}
+	}
 
 	/**
-	 * This method repaints the middle panel by updating the look window when a new movement is made by the player.
+	 * This method updates the look window when a new movement is made by the player or the server pushes a new window.
 	 * It receives the look window array list with players overlaid as a parameter.
-	 * This method traverses the array list, populates an array with the data then 
-	 * traverses this to choose the appropriate icon for each tile type.
+	 * It can be called from any thread: the tiles are copied, and shown on the event dispatch thread.
+	 * If several windows arrive before one is shown, only the latest is shown.
 	 * @param lookWindow
 	 */
 	public void printLookWindow(ArrayList<char[]> lookWindow) {
-		// remove existing components from the panel and set new constraints
-		middlePanel.removeAll();
-		JLabel temp;
-		gbc = new GridBagConstraints();
-		lookWindowArray = new char[5][5];
-		
-		// traverse through the arrayList and populate a 2D array with its data
-		for(int x=0; x<5; x++){
-			for(int y=0; y<5; y++){
-				lookWindowArray[x][y] = lookWindow.get(x)[y];
+		synchronized(pendingLook){
+			// copy the data from the array list, so the caller can reuse its rows
+			for(int x=0; x<5; x++){
+				for(int y=0; y<5; y++){
+					pendingLook[x][y] = lookWindow.get(x)[y];
+				}
+			}
+			
+			if(lookScheduled){
+				return;
 			}
+			lookScheduled = true;
+		}
+		SwingUtilities.invokeLater(showPendingLook);
+	}
+	
+	/**
+	 * This method shows the latest look window received, changing only the cells whose tile has changed.
+	 */
+	private void showLookWindow() {
+		synchronized(pendingLook){
+			for(int x=0; x<5; x++){
+				for(int y=0; y<5; y++){
+					lookWindowArray[x][y] = pendingLook[x][y];
+				}
+			}
+			lookScheduled = false;
 		}
 		
 		// traverse through the 2D array
 		for (int i=0;i<5;i++){
 			for (int j=0;j<5;j++){
-				
-				// set the grid i,j co-ordinate that the new component will be added to
+				// the current player's own tile is shown with its own icon, otherwise the tile's icon is shown
+				if(i == 2 && j == 2 && lookWindowArray[i][j] == 'P'){
+					showTile(i, j, SELF_TILE);
+				}
+				else {
+					showTile(i, j, lookWindowArray[i][j]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This method sets the tile shown in one cell of the look window, if it isn't already showing it.
+	 * The 5x5 grid of cells is created the first time a tile is shown, and reused after that.
+	 * @param i
+	 * @param j
+	 * @param tile
+	 */
+	private void showTile(int i, int j, char tile) {
+		if(lookCells == null){
+			buildLookCells();
+		}
+		
+		if(shownTiles[i][j] != tile){
+			shownTiles[i][j] = tile;
+			lookCells[i][j].setIcon(lookTiles.getIcon(tile));
+		}
+	}
+	
+	/**
+	 * This method replaces the contents of the middle panel with a 5x5 grid of empty cells for the look window.
+	 */
+	private void buildLookCells() {
+		// remove existing components from the panel and set new constraints
+		middlePanel.removeAll();
+		GridBagConstraints gbc = new GridBagConstraints();
+		lookCells = new JLabel[5][5];
+		shownTiles = new char[5][5];
+		Dimension cellSize = new Dimension(LOOK_TILE_SIZE, LOOK_TILE_SIZE);
+		
+		for (int i=0;i<5;i++){
+			for (int j=0;j<5;j++){
+				// set the grid i,j co-ordinate that the new cell will be added to
 				gbc.gridx = j;
 				gbc.gridy = i;
 				
-				// if tile is a wall tile, add that icon to the appropriate square on the grid
-				if(lookWindowArray[i][j]=='#')	{
-					ImageIcon wallTileIcon = new ImageIcon( "img/lwWallTile.png" );
-					temp = new JLabel(wallTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// if tile is an empty tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='.'){
-					ImageIcon emptyTileIcon = new ImageIcon( "img/lwEmptyTile.png" );
-					temp = new JLabel(emptyTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// if tile is a player tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='P'){
-					// If it is the current player, add that icon
-					if(i == 2 && j == 2){
-						if(playerType == 0){ // if human, add the human icon
-							ImageIcon playerTileIcon = new ImageIcon( "img/lwPlayerTile.png" );
-							temp = new JLabel(playerTileIcon);
-							middlePanel.add(temp, gbc);
-						}
-						else if(playerType == 1){ // if bot, add the bot icon
-							ImageIcon botTileIcon = new ImageIcon( "img/lwBotTile.png" );
-							temp = new JLabel(botTileIcon);
-							middlePanel.add(temp, gbc);
-						}
-					}
-					// otherwise add the 'other player' icon
-					else {
-						ImageIcon otherPlayerTileIcon = new ImageIcon( "img/lwOtherPlayerTile.png" );
-						temp = new JLabel(otherPlayerTileIcon);
-						middlePanel.add(temp, gbc);
-					}
-				}
-				// if tile is a gold tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='G'){
-					ImageIcon goldTileIcon = new ImageIcon( "img/lwGoldTile.png" );
-					temp = new JLabel(goldTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// if tile is an exit tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='E'){
-					ImageIcon exitTileIcon = new ImageIcon( "img/lwExitTile.png" );
-					temp = new JLabel(exitTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// if tile is an X tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='X'){
-					ImageIcon xTileIcon = new ImageIcon( "img/lwXTile.png" );
-					temp = new JLabel(xTileIcon);
-					middlePanel.add(temp, gbc);
-				}
+				// cells keep their size even without an icon, so an unknown tile doesn't move the others
+				lookCells[i][j] = new JLabel();
+				lookCells[i][j].setPreferredSize(cellSize);
+				middlePanel.add(lookCells[i][j], gbc);
 			}
 		}
 		
-		window.setVisible(true);
-		window.repaint();
+		middlePanel.revalidate();
+		middlePanel.repaint();
 		window.setAlwaysOnTop(false);
 	}
 
@@ -581,109 +664,24 @@ public class PlayerGUI {
 	/**
 	 * This method prints the end of game congratulations message.
 	 * It also disables buttons to ensure the socket has closed and guards against errors
+	 * It can be called from any thread, and runs after any look window still waiting to be shown.
 	 */
 	public void gameWon() {
-		// print win message to the text area
-		changeText("Game won!");
-		
-		// remove all labels from the middle panel
-		middlePanel.removeAll();
-		JLabel temp = new JLabel();
-		
-		// traverse through the current look window array
-		for(int i=0; i<5;i++){
-			for(int j=0; j<5; j++){
-				
-				// // set the grid i,j co-ordinate that the new component will be added to
-				gbc.gridx = j;
-				gbc.gridy = i;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				// print win message to the text area
+				changeText("Game won!");
 				
-				// if the tile is in the 3rd row down, add the corresponding win message tile
-				if(i==2 && j==0){
-					ImageIcon escapeIcon = new ImageIcon( "img/escaped1.png" );
-					temp = new JLabel(escapeIcon);
-					middlePanel.add(temp, gbc);
-				}
-				else if(i==2 && j==1){
-					ImageIcon escapeIcon = new ImageIcon( "img/escaped2.png" );
-					temp = new JLabel(escapeIcon);
-					middlePanel.add(temp, gbc);
-				}
-				else if(i==2 && j==2){
-					ImageIcon escapeIcon = new ImageIcon( "img/escaped3.png" );
-					temp = new JLabel(escapeIcon);
-					middlePanel.add(temp, gbc);		
-				}
-				else if(i==2 && j==3){
-					ImageIcon escapeIcon = new ImageIcon( "img/escaped4.png" );
-					temp = new JLabel(escapeIcon);
-					middlePanel.add(temp, gbc);
-				}
-				else if(i==2 && j==4){
-					ImageIcon escapeIcon = new ImageIcon( "img/escaped5.png" );
-					temp = new JLabel(escapeIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// otherwise, if the if tile is a wall tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='#')	{
-					ImageIcon wallTileIcon = new ImageIcon( "img/lwWallTile.png" );
-					temp = new JLabel(wallTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// otherwise, if the if tile is an empty tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='.'){
-					ImageIcon emptyTileIcon = new ImageIcon( "img/lwEmptyTile.png" );
-					temp = new JLabel(emptyTileIcon);
-					middlePanel.add(temp, gbc);
+				// replace the 3rd row down of the look window with the win message tiles
+				for(int j=0; j<5; j++){
+					showTile(2, j, (char) (FIRST_ESCAPED_TILE + j));
 				}
-				// otherwise, if the if tile is a player tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='P'){
-					if(i == 2 && j == 2){ // if the current player
-						if(playerType == 0){ // if human, add human icon
-							ImageIcon playerTileIcon = new ImageIcon( "img/lwPlayerTile.png" );
-							temp = new JLabel(playerTileIcon);
-							middlePanel.add(temp, gbc);
-						}
-						else if(playerType == 1){ // if bot, add bot icon
-							ImageIcon botTileIcon = new ImageIcon( "img/lwBotTile.png" );
-							temp = new JLabel(botTileIcon);
-							middlePanel.add(temp, gbc);
-						}
-					} // otherwise, if the if tile is another player tile, add that icon to the appropriate square on the grid
-					else {
-						ImageIcon otherPlayerTileIcon = new ImageIcon( "img/lwOtherPlayerTile.png" );
-						temp = new JLabel(otherPlayerTileIcon);
-						middlePanel.add(temp, gbc);
-					}
-				}
-				// otherwise, if the if tile is a gold tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='G'){
-					ImageIcon goldTileIcon = new ImageIcon( "img/lwGoldTile.png" );
-					temp = new JLabel(goldTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// otherwise, if the if tile is a gold tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='E'){
-					ImageIcon exitTileIcon = new ImageIcon( "img/lwExitTile.png" );
-					temp = new JLabel(exitTileIcon);
-					middlePanel.add(temp, gbc);
-				}
-				// otherwise, if the if tile is an X tile, add that icon to the appropriate square on the grid
-				else if(lookWindowArray[i][j]=='X'){
-					ImageIcon xTileIcon = new ImageIcon( "img/lwXTile.png" );
-					temp = new JLabel(xTileIcon);
-					middlePanel.add(temp, gbc);
+				
+				if(playerType == 0){ // if human player
+				disableButtons(); // disable the buttons on the window
 				}
 			}
-		}
-		
-		if(playerType == 0){ // if human player
-		disableButtons(); // disable the buttons on the window
-		}
-		window.setVisible(true);
-		window.repaint();
-		window.setAlwaysOnTop(false);
-		
+		});
 	}
 	
 	/**
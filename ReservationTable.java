@@ -0,0 +1,178 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import library for emptying the table in one go
+import java.util.Arrays;
+
+/**
+ * Records which agent has reserved each tile of the map at each moment of time, for the CooperativePlanner.
+ * A reservation is keyed by the tile's index y * width + x and the tick it is held for, packed into one long,
+ * and kept in an open addressing hash table so a lookup is a few probes of flat arrays rather than a map of boxed keys.
+ * Removing a reservation shifts the entries after it back into place, so lookups never have to skip deleted entries.
+ * The planner also uses a table of its own to record the space-time states its searches have visited.
+ *
+ * @author 18181
+ */
+public class ReservationTable {
+
+	// the owner returned for a tile and time nobody has reserved
+	public static final int NONE = -1;
+
+	// the key of an empty slot, which no tile and time can have as both are never negative
+	private static final long EMPTY = -1L;
+
+	// the keys and owners of the reservations, and the number held
+	private long[] keys;
+	private int[] owners;
+	private int size = 0;
+
+	/**
+	 * Constructor creates an empty table with room for a number of reservations before it has to grow.
+	 * @param capacity
+	 */
+	public ReservationTable(int capacity) {
+		int slots = 16;
+		while (slots < capacity * 2) {
+			slots <<= 1;
+		}
+		keys = new long[slots];
+		owners = new int[slots];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Reserves a tile at a time for an agent, replacing whoever held it.
+	 * @param tile
+	 * @param time
+	 * @param owner
+	 */
+	public void reserve(int tile, long time, int owner) {
+		// grow once half full, so probe sequences stay short
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+		}
+		long key = keyOf(tile, time);
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			keys[slot] = key;
+			size++;
+		}
+		owners[slot] = owner;
+	}
+
+	/**
+	 * Returns the agent holding a tile at a time.
+	 * @param tile
+	 * @param time
+	 * @return the owner, or NONE if the tile is free then
+	 */
+	public int ownerAt(int tile, long time) {
+		int slot = find(keyOf(tile, time));
+		return keys[slot] == EMPTY ? NONE : owners[slot];
+	}
+
+	/**
+	 * Frees a tile at a time, whoever held it.
+	 * @param tile
+	 * @param time
+	 */
+	public void release(int tile, long time) {
+		int slot = find(keyOf(tile, time));
+		if (keys[slot] == EMPTY) {
+			return;
+		}
+		size--;
+
+		// move later entries of the probe sequence back into the gap, so none is cut off from its home slot
+		int mask = keys.length - 1;
+		int gap = slot;
+		for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = hash(keys[next]) & mask;
+			// the entry may move back only if the gap lies between its home slot and where it is now
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				owners[gap] = owners[next];
+				gap = next;
+			}
+		}
+		keys[gap] = EMPTY;
+	}
+
+	/**
+	 * Removes every reservation, keeping the space already allocated.
+	 */
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Accessor method for the number of reservations held.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the slot holding a key, or the empty slot where it would go.
+	 * @param key
+	 * @return
+	 */
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the number of slots and puts every reservation back in.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldOwners = owners;
+		keys = new long[oldKeys.length * 2];
+		owners = new int[keys.length];
+		Arrays.fill(keys, EMPTY);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				owners[slot] = oldOwners[i];
+			}
+		}
+	}
+
+	/**
+	 * Packs a tile and a time into one key. Package-private, with hash, so tests can pick keys which collide.
+	 * @param tile
+	 * @param time
+	 * @return
+	 */
+	static long keyOf(int tile, long time) {
+		return (time << 32) | (tile & 0xffffffffL);
+	}
+
+	/**
+	 * Mixes the bits of a key, so neighbouring tiles and times spread across the table.
+	 * @param key
+	 * @return
+	 */
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
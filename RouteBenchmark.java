@@ -0,0 +1,204 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for generating and loading maps and picking random queries
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times finding long paths across generated dungeons of growing size, with the HierarchicalPathfinder the server
+ * answers ROUTE from, against a GridPathfinder searching every tile of the map.
+ * For each map it prints how long the hierarchical pathfinder takes to build its abstract graph, how long a query
+ * takes to find a route and its first step, how much longer those routes are than the shortest paths,
+ * and how long it takes to repair the graph when a tile becomes a wall and then floor again.
+ * Queries are between random floor tiles anywhere on the map, so most are as long as the map is wide.
+ *
+ * Usage: java RouteBenchmark [--sizes 100,1000,4000] [--queries 2000] [--flat 50] [--cluster size] [--seed 1]
+ * Only the first --flat queries are also searched tile by tile, as on large maps each can take many milliseconds.
+ * Clusters are sized for each map as the server sizes them, unless --cluster is given.
+ *
+ * @author 18181
+ */
+public class RouteBenchmark {
+
+	// the number of tiles turned into walls and back to time repairs
+	private static final int REPAIRS = 200;
+
+	/**
+	 * Times every part of the hierarchical pathfinder on one map.
+	 * @param size the width and height of the generated map
+	 * @param queries
+	 * @param flatQueries the number of queries also searched tile by tile
+	 * @param clusterSize
+	 * @param seed
+	 * @throws Exception
+	 */
+	public static void run(int size, int queries, int flatQueries, int clusterSize, long seed) throws Exception {
+		File mapFile = File.createTempFile("routes", ".txt");
+		mapFile.deleteOnExit();
+		TileStorageBenchmark.writeMapFile(mapFile, size);
+		Map map = new Map(mapFile);
+		mapFile.delete();
+
+		long start = System.nanoTime();
+		if (clusterSize == 0) {
+			clusterSize = HierarchicalPathfinder.clusterSizeFor(map);
+		}
+		HierarchicalPathfinder routes = new HierarchicalPathfinder(map, clusterSize);
+		int nodes = routes.getNodeCount();
+		double buildMillis = (System.nanoTime() - start) / 1e6;
+
+		// pick the queries first, so both pathfinders answer the same ones
+		Random random = new Random(seed);
+		int[][] pairs = new int[queries][];
+		for (int q = 0; q < queries; q++) {
+			int[] from = floorTile(map, random);
+			int[] to = floorTile(map, random);
+			pairs[q] = new int[] {from[0], from[1], to[0], to[1]};
+		}
+
+		// run through the queries once first so the JIT has compiled the searches before they are timed
+		for (int[] pair : pairs) {
+			HierarchicalPathfinder.Route route = routes.findRoute(pair[0], pair[1], pair[2], pair[3]);
+			if (route != null) {
+				routes.firstDirection(route);
+			}
+		}
+
+		long[] routeNanos = new long[queries];
+		int[] lengths = new int[queries];
+		int found = 0;
+		for (int q = 0; q < queries; q++) {
+			int[] pair = pairs[q];
+			long queryStart = System.nanoTime();
+			HierarchicalPathfinder.Route route = routes.findRoute(pair[0], pair[1], pair[2], pair[3]);
+			if (route != null) {
+				routes.firstDirection(route);
+				found++;
+			}
+			routeNanos[q] = System.nanoTime() - queryStart;
+			lengths[q] = route == null ? -1 : route.getLength();
+		}
+
+		GridPathfinder flat = new GridPathfinder();
+		flatQueries = Math.min(flatQueries, queries);
+		long[] flatNanos = new long[flatQueries];
+		long extraSteps = 0;
+		long shortestSteps = 0;
+		for (int q = 0; q < flatQueries; q++) {
+			int[] pair = pairs[q];
+			long queryStart = System.nanoTime();
+			int shortest = flat.findPath(map, pair[0], pair[1], pair[2], pair[3]);
+			flatNanos[q] = System.nanoTime() - queryStart;
+			if (shortest >= 0 && lengths[q] >= 0) {
+				extraSteps += lengths[q] - shortest;
+				shortestSteps += shortest;
+			}
+		}
+
+		// turn floor tiles into walls and back again, repairing the graph each time
+		long[] repairNanos = new long[REPAIRS * 2];
+		for (int r = 0; r < REPAIRS; r++) {
+			int[] tile = floorTile(map, random);
+			long repairStart = System.nanoTime();
+			map.replaceTile(tile[0], tile[1], '#');
+			routes.tileChanged(tile[0], tile[1]);
+			repairNanos[2 * r] = System.nanoTime() - repairStart;
+			repairStart = System.nanoTime();
+			map.replaceTile(tile[0], tile[1], '.');
+			routes.tileChanged(tile[0], tile[1]);
+			repairNanos[2 * r + 1] = System.nanoTime() - repairStart;
+		}
+
+		System.out.println();
+		System.out.printf(Locale.ROOT, "%dx%d map, clusters of %d: %d nodes built in %.1f ms, %d/%d queries reachable%n",
+				size, size, clusterSize, nodes, buildMillis, found, queries);
+		System.out.printf("%-22s %12s %12s %12s%n", "", "p50 us", "p99 us", "max us");
+		print("route + first step", routeNanos);
+		print("flat A*", flatNanos);
+		print("repair", repairNanos);
+		System.out.printf(Locale.ROOT, "routes are %.2f%% longer than the shortest paths%n",
+				shortestSteps == 0 ? 0.0 : 100.0 * extraSteps / shortestSteps);
+	}
+
+	/**
+	 * Prints the percentiles of a set of timings.
+	 * @param name
+	 * @param nanos
+	 */
+	private static void print(String name, long[] nanos) {
+		if (nanos.length == 0) {
+			return;
+		}
+		Arrays.sort(nanos);
+		System.out.printf(Locale.ROOT, "%-22s %12.1f %12.1f %12.1f%n", name, nanos[nanos.length / 2] / 1e3,
+				nanos[(int) (nanos.length * 0.99)] / 1e3, nanos[nanos.length - 1] / 1e3);
+	}
+
+	/**
+	 * Returns a random floor tile of a map.
+	 * @param map
+	 * @param random
+	 * @return its row and column
+	 */
+	private static int[] floorTile(Map map, Random random) {
+		while (true) {
+			int y = random.nextInt(map.getMapHeight());
+			int x = random.nextInt(map.getMapWidth());
+			if (map.lookAtTile(y, x) == '.') {
+				return new int[] {y, x};
+			}
+		}
+	}
+
+	/**
+	 * Main method reads the settings and times every map size.
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		String sizes = "100,1000,4000";
+		int queries = 2000;
+		int flatQueries = 50;
+		int clusterSize = 0;
+		long seed = 1;
+
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--sizes": sizes = value; break;
+					case "--queries": queries = Integer.parseInt(value); break;
+					case "--flat": flatQueries = Integer.parseInt(value); break;
+					case "--cluster": clusterSize = Integer.parseInt(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("unknown option " + args[i]);
+				}
+			}
+			if (args.length % 2 != 0) {
+				throw new IllegalArgumentException("option " + args[args.length - 1] + " has no value");
+			}
+			if (queries < 1 || flatQueries < 0 || (clusterSize != 0 && clusterSize < 2)) {
+				throw new IllegalArgumentException("there must be at least one query, and clusters at least 2 tiles across");
+			}
+		} catch (IllegalArgumentException e) { // covers invalid numbers too
+			System.err.println(e.getMessage());
+			System.err.println("usage: java RouteBenchmark [--sizes 100,1000,4000] [--queries n] [--flat n] [--cluster n] [--seed n]");
+			System.exit(-1);
+		}
+
+		for (String size : sizes.split(",")) {
+			run(Integer.parseInt(size.trim()), queries, flatQueries, clusterSize, seed);
+		}
+	}
+}
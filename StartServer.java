@@ -28,6 +28,11 @@ public class StartServer {
 	JFrame window;
 	JTextField portNumberField;
 	JTextField mapNameField;
+	JComboBox<ConnectionMode> connectionModeBox;
+	JComboBox<String> tickRateBox;
+	
+	// the tick rates which can be chosen, in ticks per second - off carries out commands as they arrive
+	private static final String[] TICK_RATES = {"Off", "10", "20", "30", "60"};
 	
 	/**
 	 * This main method is the first method that will start up.
@@ -130,6 +135,42 @@ public class StartServer {
 						mapNameField.setAlignmentX(Component.CENTER_ALIGNMENT);
 					middlePanel.add(mapNameField);
 					
+					// create a label for the connection engine choice
+					JLabel connectionMode = new JLabel();
+						connectionMode.setText("Connection engine:");
+						connectionMode.setForeground(Color.WHITE);
+						connectionMode.setFont(new Font("Lucida Console", Font.BOLD, 16));
+						connectionMode.setPreferredSize(new Dimension(100,50));
+						connectionMode.setAlignmentX(Component.CENTER_ALIGNMENT);
+					middlePanel.add(connectionMode);
+					
+					// create a drop down list of the ways client connections can be run
+					connectionModeBox = new JComboBox<ConnectionMode>(ConnectionMode.values());
+						connectionModeBox.setFont(new Font("Lucida Console", Font.BOLD, 16));
+						connectionModeBox.setBackground(Color.BLACK);
+						connectionModeBox.setForeground(new Color(0,255,9));
+						connectionModeBox.setPreferredSize(new Dimension(100,50));
+						connectionModeBox.setAlignmentX(Component.CENTER_ALIGNMENT);
+					middlePanel.add(connectionModeBox);
+					
+					// create a label for the tick rate choice
+					JLabel tickRate = new JLabel();
+						tickRate.setText("Tick rate (per second):");
+						tickRate.setForeground(Color.WHITE);
+						tickRate.setFont(new Font("Lucida Console", Font.BOLD, 16));
+						tickRate.setPreferredSize(new Dimension(100,50));
+						tickRate.setAlignmentX(Component.CENTER_ALIGNMENT);
+					middlePanel.add(tickRate);
+					
+					// create a drop down list of the tick rates the game can be run at
+					tickRateBox = new JComboBox<String>(TICK_RATES);
+						tickRateBox.setFont(new Font("Lucida Console", Font.BOLD, 16));
+						tickRateBox.setBackground(Color.BLACK);
+						tickRateBox.setForeground(new Color(0,255,9));
+						tickRateBox.setPreferredSize(new Dimension(100,50));
+						tickRateBox.setAlignmentX(Component.CENTER_ALIGNMENT);
+					middlePanel.add(tickRateBox);
+					
 					// add button to start the server
 					JButton launchServer = new JButton("START SERVER");
 					launchServer.setBackground(new Color(26,0,255));
@@ -148,6 +189,8 @@ public class StartServer {
 							String chosenPort;
 							final String chosenMap;
 							final int chosenPortNumber;
+							final ConnectionMode chosenMode = (ConnectionMode) connectionModeBox.getSelectedItem();
+							final int chosenTickRate = tickRateBox.getSelectedIndex() == 0 ? 0 : Integer.parseInt((String) tickRateBox.getSelectedItem());
 							
 							// validate the entry for the port number
 							if(portNumberField!=null && mapNameField!=null){
@@ -164,7 +207,7 @@ public class StartServer {
 												// creating the new instance will launch a new GameEngineGUI
 												public void run(){
 													try {
-														new DungeonServer(chosenPortNumber, chosenMap);
+														new DungeonServer(chosenPortNumber, chosenMap, chosenMode, chosenTickRate);
 														window.dispose();
 													} catch (UnknownHostException e){
 														e.printStackTrace();
@@ -0,0 +1,291 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for launching JVMs and timing how long they take to answer
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times how long a new server or bot JVM takes to get its first HELLO answered, with and without class data sharing.
+ * Every run launches a fresh JVM, in turn with sharing turned off, with only the JDK's own archive,
+ * and with the application's AppCDS archive made by ./build.sh cds, so the three can be compared directly.
+ *
+ * For the bot target, a single bot (BotFleet with 0 seconds) is started against a server which is already running,
+ * and the time is from launching it until it has its answer to HELLO and its first look window.
+ * For the server target, the headless server is started from the linked server image, and the time is from launching it
+ * until a client connecting to it has its HELLO answered. The server is stopped after each run.
+ *
+ * Usage: java StartupBenchmark [--target bot|server] [--runs 10] [--port 40004] [--java path] [--classpath jar] [--archive file]
+ * The java, class path and archive default to those built by ./build.sh for the target.
+ *
+ * @author 18181
+ */
+public class StartupBenchmark {
+
+	// the ways each JVM is launched
+	private static final String[] CONFIGURATIONS = {"no CDS", "JDK CDS", "AppCDS"};
+
+	// how long a JVM may take to answer before the run is abandoned
+	private static final long TIMEOUT_MILLIS = 30000;
+
+	// what is started, and how
+	private final String target;
+	private final int port;
+	private final String java;
+	private final String classpath;
+	private final File archive;
+	private final File workingDirectory;
+
+	/**
+	 * Constructor sets up what is launched.
+	 * @param target "bot" or "server"
+	 * @param port the port of the server
+	 * @param java the java launcher
+	 * @param classpath
+	 * @param archive the AppCDS archive
+	 * @param workingDirectory where the JVM is started
+	 */
+	public StartupBenchmark(String target, int port, String java, String classpath, File archive, File workingDirectory) {
+		this.target = target;
+		this.port = port;
+		this.java = java;
+		this.classpath = classpath;
+		this.archive = archive;
+		this.workingDirectory = workingDirectory;
+	}
+
+	/**
+	 * Returns the options for launching a JVM with a configuration.
+	 * @param configuration
+	 * @return
+	 */
+	private ArrayList<String> options(String configuration) {
+		ArrayList<String> options = new ArrayList<String>();
+		switch (configuration) {
+			case "no CDS":
+				options.add("-Xshare:off");
+				break;
+			case "AppCDS":
+				// insist on the archive being used, so a stale archive fails rather than quietly timing nothing
+				options.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+				options.add("-Xshare:on");
+				break;
+			default:
+				// the JDK's own archive is used by default
+		}
+		return options;
+	}
+
+	/**
+	 * Launches one JVM and times how long it takes to get its first HELLO answered.
+	 * @param configuration
+	 * @return the time in milliseconds
+	 * @throws IOException if the JVM failed or didn't answer in time
+	 * @throws InterruptedException
+	 */
+	public double run(String configuration) throws IOException, InterruptedException {
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(java);
+		command.addAll(options(configuration));
+		command.add("-cp");
+		command.add(classpath);
+		if (target.equals("server")) {
+			command.addAll(Arrays.asList("HeadlessServer", Integer.toString(port), "example_map"));
+		}
+		else {
+			command.addAll(Arrays.asList("BotFleet", "localhost", Integer.toString(port), "1", "0", "0"));
+		}
+
+		ProcessBuilder builder = new ProcessBuilder(command).directory(workingDirectory).redirectErrorStream(true);
+		long start = System.nanoTime();
+		Process process = builder.start();
+		try {
+			if (target.equals("server")) {
+				helloServer(process, start);
+			}
+			else {
+				awaitBot(process);
+			}
+			return (System.nanoTime() - start) / 1e6;
+		} finally {
+			process.destroy();
+			process.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Waits for a bot to print that it has started.
+	 * @param process
+	 * @throws IOException if the bot stopped without starting
+	 */
+	private static void awaitBot(Process process) throws IOException {
+		BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		String line;
+		StringBuilder everything = new StringBuilder();
+		while ((line = output.readLine()) != null) {
+			if (line.startsWith("1 bots started")) {
+				return;
+			}
+			everything.append(line).append(System.lineSeparator());
+		}
+		throw new IOException("the bot did not start:" + System.lineSeparator() + everything);
+	}
+
+	/**
+	 * Connects to a server as soon as it is listening and sends it HELLO, waiting for the answer.
+	 * @param process
+	 * @param start when the server was launched
+	 * @throws IOException if the server stopped or didn't answer in time
+	 * @throws InterruptedException
+	 */
+	private void helloServer(Process process, long start) throws IOException, InterruptedException {
+		while (true) {
+			if (!process.isAlive()) {
+				throw new IOException("the server stopped with exit code " + process.exitValue());
+			}
+			if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS)) {
+				throw new IOException("the server did not answer within " + TIMEOUT_MILLIS + " ms");
+			}
+
+			Socket socket;
+			try {
+				socket = new Socket("localhost", port);
+			} catch (IOException e) {
+				// not listening yet
+				Thread.sleep(1);
+				continue;
+			}
+
+			try {
+				PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+				out.println("HELLO");
+				if (in.readLine() == null) {
+					throw new IOException("the server closed the connection without answering");
+				}
+				return;
+			} finally {
+				socket.close();
+			}
+		}
+	}
+
+	/**
+	 * Runs every configuration in turn for a number of rounds, after one round which isn't counted,
+	 * and prints the times of each.
+	 * @param runs
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void runAll(int runs) throws IOException, InterruptedException {
+		ArrayList<String> configurations = new ArrayList<String>(Arrays.asList(CONFIGURATIONS));
+		if (!archive.isFile()) {
+			System.out.println("No AppCDS archive at " + archive + " - run ./build.sh cds to make one");
+			configurations.remove("AppCDS");
+		}
+
+		// the first round fills the file cache, so isn't counted
+		double[][] times = new double[configurations.size()][runs];
+		for (int round = -1; round < runs; round++) {
+			for (int c = 0; c < configurations.size(); c++) {
+				double millis = run(configurations.get(c));
+				if (round >= 0) {
+					times[c][round] = millis;
+				}
+			}
+			if (round >= 0) {
+				System.out.printf("run %d of %d done%n", round + 1, runs);
+			}
+		}
+
+		System.out.println();
+		System.out.println("Time to first HELLO for the " + target + " (ms)");
+		System.out.printf("%-10s %10s %10s %10s %10s%n", "", "min", "median", "mean", "max");
+		for (int c = 0; c < configurations.size(); c++) {
+			double[] sorted = times[c].clone();
+			Arrays.sort(sorted);
+			double sum = 0;
+			for (double millis : sorted) {
+				sum += millis;
+			}
+			System.out.printf(Locale.ROOT, "%-10s %10.1f %10.1f %10.1f %10.1f%n", configurations.get(c),
+					sorted[0], sorted[sorted.length / 2], sum / sorted.length, sorted[sorted.length - 1]);
+		}
+	}
+
+	/**
+	 * Main method reads the settings and times each configuration.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String target = "bot";
+		int runs = 10;
+		int port = 40004;
+		String java = null;
+		String classpath = null;
+		String archive = null;
+
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--target": target = value; break;
+					case "--runs": runs = Integer.parseInt(value); break;
+					case "--port": port = Integer.parseInt(value); break;
+					case "--java": java = value; break;
+					case "--classpath": classpath = value; break;
+					case "--archive": archive = value; break;
+					default: throw new IllegalArgumentException("unknown option " + args[i]);
+				}
+			}
+			if (args.length % 2 != 0) {
+				throw new IllegalArgumentException("option " + args[args.length - 1] + " has no value");
+			}
+			if (!target.equals("bot") && !target.equals("server")) {
+				throw new IllegalArgumentException("the target is bot or server, not " + target);
+			}
+		} catch (IllegalArgumentException e) { // covers invalid numbers too
+			System.err.println(e.getMessage());
+			System.err.println("usage: java StartupBenchmark [--target bot|server] [--runs n] [--port p] [--java path] [--classpath jar] [--archive file]");
+			System.exit(-1);
+		}
+
+		// the server runs from the linked image, which holds its maps, and the bot from its jar
+		File workingDirectory;
+		if (target.equals("server")) {
+			File image = new File("build" + File.separator + "server-image");
+			workingDirectory = image;
+			java = java != null ? java : new File(image, "bin" + File.separator + "java").getAbsolutePath();
+			classpath = classpath != null ? classpath : new File(image, "app" + File.separator + "dungeon-server.jar").getAbsolutePath();
+			archive = archive != null ? archive : new File(image, "app" + File.separator + "server.jsa").getAbsolutePath();
+		}
+		else {
+			workingDirectory = new File(".");
+			java = java != null ? java : System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			classpath = classpath != null ? classpath : new File("build" + File.separator + "jars" + File.separator + "dungeon-bot.jar").getAbsolutePath();
+			archive = archive != null ? archive : new File("build" + File.separator + "cds" + File.separator + "bot.jsa").getAbsolutePath();
+		}
+
+		StartupBenchmark benchmark = new StartupBenchmark(target, port, java, classpath, new File(archive), workingDirectory);
+		benchmark.runAll(runs);
+	}
+}
@@ -0,0 +1,309 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for writing a test map and checking the table against a map of every reservation
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Test for the ReservationTable and the CooperativePlanner which uses it.
+ * First, reservations whose probe sequences run into each other, and wrap around the end of the table, are released
+ * in every possible order, and after each release every reservation left must still be found, as must every
+ * reservation after a long run of random reserves and releases. Then two players start at either end of a corridor,
+ * each heading for the other's end, and take turns as a server with a tick rate moves them. No move may fail and
+ * they may never swap places. With a bay off the side for one to step into whilst the other passes, both must reach
+ * their ends, even when only the player with the lower ID can reach it, and has to give way by backing into it;
+ * without one, they can only wait for each other.
+ * Run with: java TestCooperativePlanner
+ *
+ * @author 18181
+ */
+public class TestCooperativePlanner {
+
+	// a table with room for this many reservations has 16 slots, and doesn't grow until it holds more
+	private static final int CAPACITY = 8;
+	private static final int SLOTS = 16;
+
+	// the corridors: the first player heads for the gold at the east end, the second for the exit at the west end,
+	// and either the second can step into the bay near its end whilst the first passes, or only the first can, by backing
+	// into the bay it passed at the start
+	private static final String[] CORRIDOR_WITH_BAY = {
+		"###########",
+		"#E.......G#",
+		"#######.###",
+		"###########"
+	};
+	private static final String[] CORRIDOR_WITH_BAY_BEHIND = {
+		"###########",
+		"#E.......G#",
+		"###.#######",
+		"###########"
+	};
+	private static final String[] CORRIDOR = {
+		"###########",
+		"#E.......G#",
+		"###########"
+	};
+
+	// the most ticks the players may take to pass each other, or are moved for when they can't
+	private static final int TICKS = 40;
+
+	// the directions a player can move in, and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	// the number of problems found
+	private static int failures = 0;
+
+	public static void main(String[] args) throws IOException {
+		testCollidingReleases();
+		testRandomReleases();
+		testCorridor("with a bay ahead of the second player", CORRIDOR_WITH_BAY, true);
+		testCorridor("with a bay behind the first player", CORRIDOR_WITH_BAY_BEHIND, true);
+		testCorridor("without a bay", CORRIDOR, false);
+
+		if (failures > 0) {
+			System.out.println("FAIL: " + failures + " problems found");
+			System.exit(1);
+		}
+		System.out.println("PASS");
+	}
+
+	/**
+	 * Releases seven reservations in every possible order: four whose home is the second to last slot, so their
+	 * probe sequence wraps around to the start of the table, two whose home is the last slot and one whose home is the first.
+	 */
+	private static void testCollidingReleases() {
+		int[][] keys = new int[7][];
+		int[] homes = {SLOTS - 2, SLOTS - 2, SLOTS - 1, SLOTS - 2, 0, SLOTS - 1, SLOTS - 2};
+		int found = 0;
+		for (int tile = 0; found < keys.length; tile++) {
+			int time = tile % 5;
+			int home = ReservationTable.hash(ReservationTable.keyOf(tile, time)) & (SLOTS - 1);
+			for (int k = 0; k < keys.length; k++) {
+				if (keys[k] == null && homes[k] == home) {
+					keys[k] = new int[] {tile, time};
+					found++;
+					break;
+				}
+			}
+		}
+
+		int[] order = new int[keys.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		int orders = 0;
+		do {
+			// reserve them in the order of the keys, so each chain is interleaved with the next, then release them in this order
+			ReservationTable table = new ReservationTable(CAPACITY);
+			for (int k = 0; k < keys.length; k++) {
+				table.reserve(keys[k][0], keys[k][1], k);
+			}
+			boolean[] released = new boolean[keys.length];
+			for (int i = 0; i < order.length; i++) {
+				table.release(keys[order[i]][0], keys[order[i]][1]);
+				released[order[i]] = true;
+				for (int k = 0; k < keys.length; k++) {
+					int expected = released[k] ? ReservationTable.NONE : k;
+					if (table.ownerAt(keys[k][0], keys[k][1]) != expected) {
+						fail("releasing in the order " + Arrays.toString(order) + ", after " + (i + 1) + " the owner of key "
+								+ k + " is " + table.ownerAt(keys[k][0], keys[k][1]) + ", not " + expected);
+					}
+				}
+				if (table.size() != keys.length - i - 1) {
+					fail("the table holds " + table.size() + " reservations, not " + (keys.length - i - 1));
+				}
+			}
+			orders++;
+		} while (nextOrder(order));
+		System.out.println(orders + " orders of releasing colliding reservations checked");
+	}
+
+	/**
+	 * Reserves and releases random tiles and times in a table which starts small and has to grow,
+	 * checking it against a map of every reservation.
+	 */
+	private static void testRandomReleases() {
+		Random random = new Random(1);
+		ReservationTable table = new ReservationTable(CAPACITY);
+		HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+		int operations = 200000;
+		for (int i = 0; i < operations; i++) {
+			int tile = random.nextInt(64);
+			int time = random.nextInt(16);
+			long key = ReservationTable.keyOf(tile, time);
+			// reserve more than is released at first so the table grows, then as much of each so it stays around half full
+			if (random.nextInt(100) < (i < operations / 10 ? 70 : 50)) {
+				table.reserve(tile, time, i);
+				expected.put(key, i);
+			}
+			else {
+				table.release(tile, time);
+				expected.remove(key);
+			}
+
+			// check a few keys each time, and every key now and then
+			int checks = i % 1000 == 0 ? 64 * 16 : 4;
+			for (int c = 0; c < checks; c++) {
+				int checkTile = checks == 4 ? random.nextInt(64) : c % 64;
+				int checkTime = checks == 4 ? random.nextInt(16) : c / 64;
+				Integer owner = expected.get(ReservationTable.keyOf(checkTile, checkTime));
+				if (table.ownerAt(checkTile, checkTime) != (owner == null ? ReservationTable.NONE : owner)) {
+					fail("after " + (i + 1) + " random operations the owner of " + checkTile + " at " + checkTime + " is wrong");
+				}
+			}
+			if (table.size() != expected.size()) {
+				fail("after " + (i + 1) + " random operations the table holds " + table.size() + " reservations, not " + expected.size());
+			}
+		}
+		System.out.println(operations + " random reserves and releases checked");
+	}
+
+	/**
+	 * Moves two players towards each other's ends of a corridor, each taking one step a tick in the order of their IDs.
+	 * @param name what the corridor is like, for the report
+	 * @param rows the map of the corridor
+	 * @param passable whether the players must get past each other
+	 * @throws IOException if the map couldn't be written
+	 */
+	private static void testCorridor(String name, String[] rows, boolean passable) throws IOException {
+		File mapFile = File.createTempFile("corridor", ".txt");
+		mapFile.deleteOnExit();
+		BufferedWriter writer = new BufferedWriter(new FileWriter(mapFile));
+		try {
+			writer.write("name Test Corridor\n");
+			writer.write("win 0\n");
+			for (String row : rows) {
+				writer.write(row + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		Map map = new Map(mapFile);
+		OccupancyIndex occupancy = new OccupancyIndex(map.getHeight(), map.getWidth());
+		CooperativePlanner planner = new CooperativePlanner(map, occupancy);
+		DistanceField[] goals = {new DistanceField(map, 'G'), new DistanceField(map, 'E')};
+
+		// player 1 starts at the west end and player 2 at the east end, each next to the other's goal
+		int[][] positions = {{1, 2}, {1, 8}};
+		boolean[] arrived = new boolean[2];
+		for (int p = 0; p < positions.length; p++) {
+			occupancy.claim(positions[p][0], positions[p][1], p + 1);
+		}
+
+		int tick = 0;
+		while ((!arrived[0] || !arrived[1]) && tick < TICKS) {
+			// both players' tiles at the start of the tick, to spot them swapping places
+			int[][] before = {positions[0].clone(), positions[1].clone()};
+			for (int p = 0; p < positions.length; p++) {
+				if (arrived[p]) {
+					continue;
+				}
+				int[] position = positions[p];
+				char direction = planner.nextDirection(p + 1, position[0], position[1], goals[p], tick);
+				if (direction == 0) {
+					// on the goal, so the player leaves the corridor and its tile with it
+					arrived[p] = true;
+					occupancy.clear(position[0], position[1], p + 1);
+					planner.forget(p + 1);
+					continue;
+				}
+				int d = indexOf(direction);
+				if (d < 0) {
+					continue;
+				}
+				int newY = position[0] + ROW_STEP[d];
+				int newX = position[1] + COLUMN_STEP[d];
+				if (!map.isWalkable(newY, newX)) {
+					fail("tick " + tick + ": player " + (p + 1) + " was sent into a wall");
+				}
+				else if (!occupancy.move(position[0], position[1], newY, newX, p + 1)) {
+					fail("tick " + tick + ": player " + (p + 1) + " was sent onto the other player");
+				}
+				else {
+					position[0] = newY;
+					position[1] = newX;
+				}
+			}
+			if (positions[0][0] == before[1][0] && positions[0][1] == before[1][1]
+					&& positions[1][0] == before[0][0] && positions[1][1] == before[0][1]) {
+				fail("tick " + tick + ": the players swapped places");
+			}
+			tick++;
+		}
+
+		if (passable && (!arrived[0] || !arrived[1])) {
+			fail("the players hadn't passed each other in the corridor " + name + " after " + TICKS + " ticks");
+		}
+		System.out.println("two players moved for " + tick + " ticks in a corridor " + name
+				+ (arrived[0] && arrived[1] ? " and both reached their ends" : ""));
+	}
+
+	/**
+	 * Returns the index of a direction.
+	 * @param direction
+	 * @return the index, or -1 if it isn't a move
+	 */
+	private static int indexOf(char direction) {
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (DIRECTIONS[d] == direction) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Rearranges an order into the next one in lexicographic order.
+	 * @param order
+	 * @return false if it was already the last order
+	 */
+	private static boolean nextOrder(int[] order) {
+		int i = order.length - 2;
+		while (i >= 0 && order[i] >= order[i + 1]) {
+			i--;
+		}
+		if (i < 0) {
+			return false;
+		}
+		int j = order.length - 1;
+		while (order[j] <= order[i]) {
+			j--;
+		}
+		int swap = order[i];
+		order[i] = order[j];
+		order[j] = swap;
+		for (int a = i + 1, b = order.length - 1; a < b; a++, b--) {
+			swap = order[a];
+			order[a] = order[b];
+			order[b] = swap;
+		}
+		return true;
+	}
+
+	/**
+	 * Reports a problem, printing only the first few.
+	 * @param problem
+	 */
+	private static void fail(String problem) {
+		if (failures < 10) {
+			System.err.println(problem);
+		}
+		failures++;
+	}
+}
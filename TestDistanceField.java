@@ -0,0 +1,124 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for writing random maps and removing their gold in a random order
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Test for the repair DistanceField makes when a tile stops being of its type.
+ * Random maps crowded with gold have their gold picked up one tile at a time in a random order, and after every
+ * pickup the repaired field must hold the same steps for every tile as a field worked out afresh from the changed map.
+ * Run with: java TestDistanceField [maps] [size]
+ *
+ * @author 18181
+ */
+public class TestDistanceField {
+
+	// the chance out of 100 of each inner tile being a wall or gold, with the rest floor
+	private static final int WALLS = 25;
+	private static final int GOLD = 10;
+
+	public static void main(String[] args) throws IOException {
+		int maps = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+		File mapFile = File.createTempFile("distances", ".txt");
+		mapFile.deleteOnExit();
+		long removals = 0;
+		long compared = 0;
+		int failures = 0;
+
+		for (int seed = 1; seed <= maps; seed++) {
+			Random random = new Random(seed);
+			writeMap(mapFile, size, random);
+			Map map = new Map(mapFile);
+			DistanceField field = new DistanceField(map, 'G');
+			// work the field out before anything is removed, as a removal before then does nothing
+			field.stepsFrom(0, 0);
+
+			ArrayList<int[]> gold = new ArrayList<int[]>();
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					if (map.lookAtTile(y, x) == 'G') {
+						gold.add(new int[] {y, x});
+					}
+				}
+			}
+			Collections.shuffle(gold, random);
+
+			for (int[] tile : gold) {
+				map.replaceTile(tile[0], tile[1], '.');
+				field.sourceRemoved(tile[0], tile[1]);
+				removals++;
+
+				// every tile must match a field worked out from scratch, including those which can't reach gold any more
+				DistanceField fresh = new DistanceField(map, 'G');
+				for (int y = 0; y < size; y++) {
+					for (int x = 0; x < size; x++) {
+						compared++;
+						if (field.stepsFrom(y, x) != fresh.stepsFrom(y, x)) {
+							if (failures < 10) {
+								System.err.println("map " + seed + ": after removing gold at " + tile[0] + "," + tile[1] + " the tile at "
+										+ y + "," + x + " has " + field.stepsFrom(y, x) + " steps, not " + fresh.stepsFrom(y, x));
+							}
+							failures++;
+						}
+					}
+				}
+			}
+		}
+
+		System.out.println(removals + " removals checked over " + maps + " maps, comparing " + compared + " tiles");
+		if (failures > 0) {
+			System.out.println("FAIL: " + failures + " tiles differ");
+			System.exit(1);
+		}
+		System.out.println("PASS");
+	}
+
+	/**
+	 * Writes a random square map, walled around its edge, with an exit in one corner.
+	 * @param mapFile
+	 * @param size
+	 * @param random
+	 * @throws IOException
+	 */
+	private static void writeMap(File mapFile, int size, Random random) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(mapFile));
+		try {
+			writer.write("name Test Distances\n");
+			writer.write("win 0\n");
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					int roll = random.nextInt(100);
+					if (y == 0 || x == 0 || y == size - 1 || x == size - 1) {
+						writer.write('#');
+					}
+					else if (y == 1 && x == 1) {
+						writer.write('E');
+					}
+					else {
+						writer.write(roll < WALLS ? '#' : roll < WALLS + GOLD ? 'G' : '.');
+					}
+				}
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for writing random maps and picking random queries
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Test for the routes HierarchicalPathfinder finds, and for the repairs it makes as walls come and go.
+ * Random queries across random maps are answered by both the hierarchical pathfinder and a GridPathfinder searching
+ * every tile. Both must agree on whether the goal can be reached, and every route must turn into steps which each
+ * move one tile onto floor, end at the goal, take as many steps as the route says, and begin with its first direction.
+ * No route may be shorter than the shortest path. Between queries a random tile is turned into a wall or back into
+ * floor and the pathfinder told, so the queries after it are answered from the repaired graph.
+ * How much longer the routes are than the shortest paths is printed but not checked, as A* over the abstract graph
+ * only bounds them against the best path through the graph, which may itself be longer than the shortest path.
+ * Run with: java TestHierarchicalPathfinder [maps] [queries per map] [size]
+ *
+ * @author 18181
+ */
+public class TestHierarchicalPathfinder {
+
+	// the chance out of 100 of each inner tile starting as a wall, enough to cut some parts of the map off
+	private static final int WALLS = 30;
+
+	// the size of the clusters, small so that routes cross many of them
+	private static final int CLUSTER_SIZE = 8;
+
+	// the directions of each step and the change in row and column for each
+	private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+	private static final int[] ROW_STEP = {-1, 0, 1, 0};
+	private static final int[] COLUMN_STEP = {0, 1, 0, -1};
+
+	public static void main(String[] args) throws IOException {
+		int maps = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+		File mapFile = File.createTempFile("routes", ".txt");
+		mapFile.deleteOnExit();
+		GridPathfinder flat = new GridPathfinder();
+		int reachable = 0;
+		int unreachable = 0;
+		int longer = 0;
+		long extraSteps = 0;
+		long shortestSteps = 0;
+		int failures = 0;
+
+		for (int seed = 1; seed <= maps; seed++) {
+			Random random = new Random(seed);
+			writeMap(mapFile, size, random);
+			Map map = new Map(mapFile);
+			HierarchicalPathfinder routes = new HierarchicalPathfinder(map, CLUSTER_SIZE);
+
+			for (int q = 0; q < queries; q++) {
+				// change one inner tile, to a wall if it is floor and to floor if it is a wall
+				int changeY = 1 + random.nextInt(size - 2);
+				int changeX = 1 + random.nextInt(size - 2);
+				map.replaceTile(changeY, changeX, map.lookAtTile(changeY, changeX) == '#' ? '.' : '#');
+				routes.tileChanged(changeY, changeX);
+
+				int[] from = floorTile(map, random);
+				int[] to = floorTile(map, random);
+				String query = "map " + seed + ", query " + q + " from " + from[0] + "," + from[1] + " to " + to[0] + "," + to[1];
+				int shortest = flat.findPath(map, from[0], from[1], to[0], to[1]);
+				HierarchicalPathfinder.Route route = routes.findRoute(from[0], from[1], to[0], to[1]);
+
+				if (shortest < 0 || route == null) {
+					if (shortest >= 0 || route != null) {
+						failures = fail(failures, query + ": the shortest path has " + shortest + " steps but "
+								+ (route == null ? "no route was found" : "a route was found"));
+					}
+					unreachable++;
+					continue;
+				}
+				reachable++;
+				if (route.getLength() < shortest) {
+					failures = fail(failures, query + ": the route has " + route.getLength() + " steps, fewer than the shortest path's " + shortest);
+				}
+				extraSteps += route.getLength() - shortest;
+				shortestSteps += shortest;
+				if (route.getLength() * 16 > shortest * 17) {
+					longer++;
+				}
+
+				String problem = checkSteps(map, routes, route, from, to);
+				if (problem != null) {
+					failures = fail(failures, query + ": " + problem);
+				}
+			}
+		}
+
+		System.out.println(reachable + " routes and " + unreachable + " unreachable goals checked over " + maps + " maps");
+		System.out.printf(Locale.ROOT, "routes are %.2f%% longer than the shortest paths, and %d are more than 1/16 longer%n",
+				shortestSteps == 0 ? 0.0 : 100.0 * extraSteps / shortestSteps, longer);
+		if (failures > 0) {
+			System.out.println("FAIL: " + failures + " problems found");
+			System.exit(1);
+		}
+		System.out.println("PASS");
+	}
+
+	/**
+	 * Turns a route into steps and checks them.
+	 * @param map
+	 * @param routes
+	 * @param route
+	 * @param from
+	 * @param to
+	 * @return what is wrong with the steps, or null if nothing is
+	 */
+	private static String checkSteps(Map map, HierarchicalPathfinder routes, HierarchicalPathfinder.Route route, int[] from, int[] to) {
+		int width = map.getWidth();
+		int[] path = routes.refine(route);
+		if (path == null) {
+			return "the route couldn't be turned into steps";
+		}
+		if (path.length != route.getLength()) {
+			return "the route says " + route.getLength() + " steps but has " + path.length;
+		}
+
+		int y = from[0];
+		int x = from[1];
+		for (int s = 0; s < path.length; s++) {
+			int nextY = path[s] / width;
+			int nextX = path[s] % width;
+			if (Math.abs(nextY - y) + Math.abs(nextX - x) != 1) {
+				return "step " + s + " jumps from " + y + "," + x + " to " + nextY + "," + nextX;
+			}
+			if (!map.isWalkable(nextY, nextX)) {
+				return "step " + s + " walks into a wall at " + nextY + "," + nextX;
+			}
+			y = nextY;
+			x = nextX;
+		}
+		if (y != to[0] || x != to[1]) {
+			return "the steps end at " + y + "," + x;
+		}
+
+		// the first direction is found with a search of its own, which must agree with the first step
+		char first = routes.firstDirection(route);
+		char expected = 0;
+		for (int d = 0; path.length > 0 && d < DIRECTIONS.length; d++) {
+			if (path[0] == (from[0] + ROW_STEP[d]) * width + from[1] + COLUMN_STEP[d]) {
+				expected = DIRECTIONS[d];
+			}
+		}
+		if (first != expected) {
+			return "the first direction is " + (int) first + " but the first step is " + (int) expected;
+		}
+		return null;
+	}
+
+	/**
+	 * Reports a problem, printing only the first few.
+	 * @param failures the number of problems found so far
+	 * @param problem
+	 * @return the number of problems found now
+	 */
+	private static int fail(int failures, String problem) {
+		if (failures < 10) {
+			System.err.println(problem);
+		}
+		return failures + 1;
+	}
+
+	/**
+	 * Picks a random floor tile of the map.
+	 * @param map
+	 * @param random
+	 * @return the row and column
+	 */
+	private static int[] floorTile(Map map, Random random) {
+		while (true) {
+			int y = random.nextInt(map.getHeight());
+			int x = random.nextInt(map.getWidth());
+			if (map.isWalkable(y, x)) {
+				return new int[] {y, x};
+			}
+		}
+	}
+
+	/**
+	 * Writes a random square map, walled around its edge, with an exit in one corner.
+	 * @param mapFile
+	 * @param size
+	 * @param random
+	 * @throws IOException
+	 */
+	private static void writeMap(File mapFile, int size, Random random) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(mapFile));
+		try {
+			writer.write("name Test Routes\n");
+			writer.write("win 0\n");
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					int roll = random.nextInt(100);
+					if (y == 0 || x == 0 || y == size - 1 || x == size - 1) {
+						writer.write('#');
+					}
+					else if (y == 1 && x == 1) {
+						writer.write('E');
+					}
+					else {
+						writer.write(roll < WALLS ? '#' : '.');
+					}
+				}
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for running many players at once and checking the results
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress test for the lock-free tile claiming in OccupancyIndex.
+ * Many threads each drive one player around a small crowded room, all trying to move onto each other's tiles at once.
+ * After every successful move the player checks it really holds its new tile, and at the end every player
+ * must hold exactly the tile it thinks it is on, with no tile held by two players and no player lost.
+ * Run with: java TestTileClaims [players] [moves per player]
+ *
+ * @author 18181
+ */
+public class TestTileClaims {
+
+	// a small room, so that players are constantly competing for the same tiles
+	private static final int HEIGHT = 8;
+	private static final int WIDTH = 8;
+
+	public static void main(String[] args) throws InterruptedException {
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int movesPerPlayer = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+		final OccupancyIndex occupancy = new OccupancyIndex(HEIGHT, WIDTH);
+		final int[][] positions = new int[players + 1][];
+		final AtomicInteger successfulMoves = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+
+		// place each player on its own tile, reading along the rows
+		for (int id = 1; id <= players; id++) {
+			int y = (id - 1) / WIDTH;
+			int x = (id - 1) % WIDTH;
+			if (!occupancy.claim(y, x, id)) {
+				throw new IllegalStateException("could not place player " + id);
+			}
+			positions[id] = new int[] {y, x};
+		}
+
+		final int moves = movesPerPlayer;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[players];
+
+		for (int i = 0; i < players; i++) {
+			final int id = i + 1;
+			threads[i] = new Thread() {
+				public void run() {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					int[] position = positions[id];
+					int moved = 0;
+
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					for (int n = 0; n < moves; n++) {
+						// pick an adjacent tile inside the room
+						int newY = position[0];
+						int newX = position[1];
+						switch (random.nextInt(4)) {
+							case 0: newY--; break;
+							case 1: newY++; break;
+							case 2: newX--; break;
+							default: newX++; break;
+						}
+						if (newY < 0 || newX < 0 || newY >= HEIGHT || newX >= WIDTH) {
+							continue;
+						}
+
+						if (occupancy.move(position[0], position[1], newY, newX, id)) {
+							// nobody else may hold the tile just moved onto, or still hold the player's old tile for it
+							if (occupancy.ownerAt(newY, newX) != id || occupancy.ownerAt(position[0], position[1]) == id) {
+								failures.incrementAndGet();
+							}
+							position[0] = newY;
+							position[1] = newX;
+							moved++;
+						}
+					}
+
+					successfulMoves.addAndGet(moved);
+				}
+			};
+			threads[i].start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+		// every player holds exactly the tile it thinks it is on
+		for (int id = 1; id <= players; id++) {
+			if (occupancy.ownerAt(positions[id][0], positions[id][1]) != id) {
+				System.err.println("player " + id + " does not hold its own tile");
+				failures.incrementAndGet();
+			}
+		}
+
+		// and no other tile is held at all, so no player was duplicated or lost
+		int occupied = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				if (occupancy.isOccupied(y, x)) {
+					occupied++;
+				}
+			}
+		}
+		if (occupied != players) {
+			System.err.println(occupied + " tiles are occupied by " + players + " players");
+			failures.incrementAndGet();
+		}
+
+		System.out.println(players + " players made " + successfulMoves.get() + " moves in " + elapsedMillis + " ms");
+		if (failures.get() > 0) {
+			System.out.println("FAIL: " + failures.get() + " problems found");
+			System.exit(1);
+		}
+		System.out.println("PASS");
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for reading and scaling the tile images
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Holds the image for each type of tile, read from disk once and then shared by everything drawing tiles.
+ * Images are looked up by tile character, so finding one is an array index rather than a file read.
+ * Tiles can be keyed by any ASCII character, not only those found on maps, for images which stand in for a tile in some places.
+ * A scaled copy of the atlas can be made for drawing tiles at a different size, which again scales each image only once.
+ *
+ * @author 18181
+ */
+public class TileAtlas {
+
+	// the atlas of map tiles shown on the game engine GUI, made when first needed
+	private static TileAtlas mapTiles;
+
+	// the image for each ASCII tile character, or null for tiles without one
+	private final BufferedImage[] images = new BufferedImage[128];
+
+	// an icon wrapping each image, for showing tiles on labels
+	private final ImageIcon[] icons = new ImageIcon[128];
+
+	// width and height of every image in pixels
+	private final int tileSize;
+
+	/**
+	 * Constructor creates an empty atlas of tiles of the given size.
+	 * @param tileSize
+	 */
+	public TileAtlas(int tileSize) {
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Returns the atlas of map tiles used by the game engine GUI, reading the images the first time it is asked for.
+	 * @return
+	 */
+	public static synchronized TileAtlas mapTiles() {
+		if (mapTiles == null) {
+			mapTiles = new TileAtlas(38);
+			mapTiles.load('#', "img/wallTile.png");
+			mapTiles.load('.', "img/emptyTile.png");
+			mapTiles.load('P', "img/playerTile.png");
+			mapTiles.load('G', "img/goldTile.png");
+			mapTiles.load('E', "img/exitTile.png");
+			mapTiles.load('X', "img/xTile.png");
+		}
+		return mapTiles;
+	}
+
+	/**
+	 * Reads the image for a tile, scaling it to the atlas's tile size.
+	 * A missing or unreadable image leaves the tile without one, so it is drawn as background.
+	 * @param tile
+	 * @param path
+	 */
+	public void load(char tile, String path) {
+		try {
+			BufferedImage image = ImageIO.read(new File(path));
+			if (image != null) {
+				images[tile] = scale(image, tileSize);
+				icons[tile] = new ImageIcon(images[tile]);
+			}
+		} catch (IOException e) {
+			images[tile] = null;
+			icons[tile] = null;
+		}
+	}
+
+	/**
+	 * Returns the image for a tile, or null if it has none.
+	 * @param tile
+	 * @return
+	 */
+	public BufferedImage getImage(char tile) {
+		if (tile >= images.length) {
+			return null;
+		}
+		return images[tile];
+	}
+
+	/**
+	 * Returns the icon for a tile, or null if it has none. The same icon is returned every time.
+	 * @param tile
+	 * @return
+	 */
+	public ImageIcon getIcon(char tile) {
+		if (tile >= icons.length) {
+			return null;
+		}
+		return icons[tile];
+	}
+
+	/**
+	 * Accessor method returns the width and height of the images in pixels.
+	 * @return
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Returns a copy of the atlas with every image scaled to a new size.
+	 * @param size
+	 * @return
+	 */
+	public TileAtlas scaledTo(int size) {
+		if (size == tileSize) {
+			return this;
+		}
+
+		TileAtlas scaled = new TileAtlas(size);
+		for (int i = 0; i < images.length; i++) {
+			if (images[i] != null) {
+				scaled.images[i] = scale(images[i], size);
+				scaled.icons[i] = new ImageIcon(scaled.images[i]);
+			}
+		}
+		return scaled;
+	}
+
+	/**
+	 * Draws an image at a new size, in a format which is quick to draw onto other images.
+	 * @param image
+	 * @param size
+	 * @return
+	 */
+	private static BufferedImage scale(BufferedImage image, int size) {
+		BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(image, 0, 0, size, size, null);
+		g.dispose();
+		return scaled;
+	}
+}
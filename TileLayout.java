@@ -0,0 +1,58 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * The ways in which a map's tiles can be laid out in memory.
+ * The layout is chosen when the map is loaded.
+ *
+ * @author 18181
+ */
+public enum TileLayout {
+
+	// one char array per row (the original layout), two bytes per tile
+	CHAR_GRID("Char grid"),
+	// 3-bit tile codes packed into chunks of longs, for very large maps
+	PACKED("Packed 3-bit tiles"),
+	// tiles read straight from the map file mapped into memory, with changes kept on the heap
+	MAPPED("Memory-mapped file");
+
+	// name shown to the user when choosing the layout
+	private final String displayName;
+
+	TileLayout(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Creates a loader which fills an empty tile storage with this layout a row at a time, for a map read from text.
+	 * MAPPED tiles are opened from their file with MappedTileStorage instead, so a map which has to be read
+	 * from text is packed, the layout closest to it in the memory it takes.
+	 * @param width number of tiles in each row
+	 * @return
+	 */
+	public ITileLoader loader(int width) {
+		switch (this) {
+			case CHAR_GRID:
+				return new CharGridTileStorage(width);
+			default:
+				return new PackedTileStorage(width);
+		}
+	}
+
+	/**
+	 * Accessor method returns the name shown to the user.
+	 * @return
+	 */
+	@Override
+	public String toString() {
+		return displayName;
+	}
+}
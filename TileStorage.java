@@ -0,0 +1,50 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+/**
+ * Holds the tiles of a map. Map reads and writes every tile through this interface,
+ * so the way the tiles are laid out in memory can be chosen to suit the size of the map.
+ * Once a map is loaded its tiles are only changed one at a time. Layouts which a map can be read into from text
+ * are filled a row at a time through an ITileLoader.
+ *
+ * @author 18181
+ */
+public interface TileStorage {
+
+	/**
+	 * Returns the number of rows added so far.
+	 * @return
+	 */
+	int getHeight();
+
+	/**
+	 * Returns the number of tiles in each row.
+	 * @return
+	 */
+	int getWidth();
+
+	/**
+	 * Returns the tile at a position, which must be inside the map.
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	char getTile(int y, int x);
+
+	/**
+	 * Replaces the tile at a position, which must be inside the map.
+	 * Different tiles may be replaced by different threads at the same time.
+	 * @param y
+	 * @param x
+	 * @param tile
+	 */
+	void setTile(int y, int x, char tile);
+}
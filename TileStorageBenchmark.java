@@ -0,0 +1,161 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for generating a dungeon, writing it to a file and timing reads from it
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Memory benchmark comparing the ways a map's tiles can be laid out.
+ * A square dungeon is generated procedurally and loaded into each layout in turn,
+ * then the heap the layout keeps and the speed of random tile reads are printed.
+ * For the memory-mapped layout the dungeon is written to a temporary map file first, and the load time is the time to open it.
+ * Large sizes need a large heap for the char grid, e.g. java -Xmx4g TileStorageBenchmark 10000
+ * Run with: java TileStorageBenchmark [size] [reads]
+ *
+ * @author 18181
+ */
+public class TileStorageBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+		int reads = args.length > 1 ? Integer.parseInt(args[1]) : 20000000;
+
+		System.out.println("Dungeon of " + size + " x " + size + " tiles, " + reads + " random reads");
+
+		// the mapped layout is opened from a map file rather than generated into
+		File mapFile = File.createTempFile("dungeon", ".txt");
+		mapFile.deleteOnExit();
+		writeMapFile(mapFile, size);
+
+		for (TileLayout layout : TileLayout.values()) {
+			long before = usedHeap();
+			long startTime = System.nanoTime();
+			TileStorage tiles = layout == TileLayout.MAPPED ? new MappedTileStorage(mapFile) : generate(layout, size);
+			long loadMillis = (System.nanoTime() - startTime) / 1000000;
+			long bytes = usedHeap() - before;
+
+			// read tiles at random, summing them so the reads can't be optimised away
+			Random random = new Random(42);
+			long sum = 0;
+			startTime = System.nanoTime();
+			for (int i = 0; i < reads; i++) {
+				sum += tiles.getTile(random.nextInt(size), random.nextInt(size));
+			}
+			long readNanos = System.nanoTime() - startTime;
+
+			System.out.printf("%-20s %8.1f MB  %6.2f bytes/tile  load %6d ms  %6.1f ns/read  (checksum %d)%n",
+					layout, bytes / 1048576.0, (double) bytes / ((long) size * size), loadMillis,
+					(double) readNanos / reads, sum);
+
+			// drop the storage before measuring the next layout
+			tiles = null;
+		}
+	}
+
+	/**
+	 * Builds a dungeon with a wall round the edge, scattered walls and gold inside and an exit near each corner.
+	 * Each row is generated and added in turn, the way a map file is loaded.
+	 * @param layout
+	 * @param size
+	 * @return
+	 */
+	private static TileStorage generate(TileLayout layout, int size) {
+		ITileLoader tiles = layout.loader(size);
+		Random random = new Random(size);
+		char[] row = new char[size];
+
+		for (int y = 0; y < size; y++) {
+			generateRow(random, row, y);
+			tiles.appendRow(new String(row));
+		}
+		return tiles.getTiles();
+	}
+
+	/**
+	 * Writes the same dungeon as generate to a map file. Also used by GameBenchmarks for its generated maps.
+	 * @param mapFile
+	 * @param size
+	 * @throws IOException
+	 */
+	static void writeMapFile(File mapFile, int size) throws IOException {
+		writeMapFile(mapFile, size, size);
+	}
+
+	/**
+	 * Writes the same dungeon as generate to a map file, needing a given amount of gold to win.
+	 * Also used by ExplorationBenchmark, whose bots have to be able to win.
+	 * @param mapFile
+	 * @param size
+	 * @param win
+	 * @throws IOException
+	 */
+	static void writeMapFile(File mapFile, int size, int win) throws IOException {
+		Random random = new Random(size);
+		char[] row = new char[size];
+
+		BufferedWriter writer = new BufferedWriter(new FileWriter(mapFile));
+		try {
+			writer.write("name Generated Dungeon of Dooom\n");
+			writer.write("win " + win + "\n");
+			for (int y = 0; y < size; y++) {
+				generateRow(random, row, y);
+				writer.write(row);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Fills in one row of the generated dungeon.
+	 * @param random
+	 * @param row
+	 * @param y
+	 */
+	private static void generateRow(Random random, char[] row, int y) {
+		int size = row.length;
+		for (int x = 0; x < size; x++) {
+			if (y == 0 || x == 0 || y == size - 1 || x == size - 1) {
+				row[x] = '#';
+			}
+			else {
+				int roll = random.nextInt(100);
+				row[x] = roll < 20 ? '#' : roll < 21 ? 'G' : '.';
+			}
+		}
+		if (y == 1 || y == size - 2) {
+			row[1] = 'E';
+			row[size - 2] = 'E';
+		}
+	}
+
+	/**
+	 * Returns the heap in use once as much garbage as possible has been collected.
+	 * @return
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
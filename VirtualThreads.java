@@ -0,0 +1,66 @@
+/**
+ *   _____                                                  __   _____                              
+ *	|  __ \                                                / _| |  __ \                             
+ *	| |  | |_   _ _ __   __ _  ___  ___  _ __  ___    ___ | |_  | |  | | ___   ___   ___  _ __ ___  
+ *	| |  | | | | | '_ \ / _` |/ _ \/ _ \| '_ \/ __|  / _ \|  _| | |  | |/ _ \ / _ \ / _ \| '_ ` _ \ 
+ *	| |__| | |_| | | | | (_| |  __/ (_) | | | \__ \ | (_) | |   | |__| | (_) | (_) | (_) | | | | | |
+ *	|_____/ \__,_|_| |_|\__, |\___|\___/|_| |_|___/  \___/|_|   |_____/ \___/ \___/ \___/|_| |_| |_|
+ *                      __/  |                                                                      
+ * 	       	           |____/                                                                       
+ */
+
+// import libraries for executors and looking up the virtual thread factory method at runtime
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor used to run client connections on virtual threads.
+ * Virtual threads are only available from Java 21, so the factory method is looked up at runtime
+ * and the server keeps compiling and running on older versions.
+ *
+ * @author 18181
+ */
+public class VirtualThreads {
+
+	/**
+	 * Returns whether this JVM can create virtual threads.
+	 * @return
+	 */
+	public static boolean isSupported() {
+		return findFactory() != null;
+	}
+
+	/**
+	 * Creates an executor which starts a new virtual thread for every task.
+	 * If virtual threads are not supported, a cached pool of platform threads is returned instead.
+	 * @return
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		Method factory = findFactory();
+
+		if (factory != null) {
+			try {
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				e.printStackTrace();
+			}
+		}
+
+		// fall back to platform threads, which behave like the thread per client mode
+		System.err.println("virtual threads are not supported by this JVM, using platform threads instead");
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Looks up Executors.newVirtualThreadPerTaskExecutor().
+	 * @return the method, or null if this JVM does not have it
+	 */
+	private static Method findFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+#!/bin/sh
+#
+# Builds Dungeon of Dooom with nothing but the JDK (17 or later).
+#
+# The classes are split into modules, each compiled on its own against the jars of the modules it uses,
+# so a class can't reach into a module it shouldn't:
+#
+#   common  the binary protocol, tile images and path finding, shared by the others
+#   server  the game, maps and both server launchers (main class StartServer, or run HeadlessServer)
+#   client  the player client and GUI bot (main class StartClient)
+#   bot     the GUI-free bot fleet and load tester (main class BotFleet, or run LoadTest)
+#   bench   the benchmarks (main class GameBenchmarks, or run CooperationBenchmark, RouteBenchmark, StartupBenchmark
+#           or TileStorageBenchmark)
+#
+# Each module becomes a runnable jar in build/jars, with the jars it needs on its manifest class path.
+# Every file in the jars is given the same timestamp and added in the same order, so building the same
+# sources with the same JDK always gives byte-for-byte the same jars.
+#
+# The server is also linked into build/server-image: a cut-down Java runtime holding only the JDK modules
+# the server uses, with its default class data sharing archive generated, the server jars in app/,
+# the maps and images, and bin/dungeon-server to run the headless server from it. The server jars never
+# move within the image, so the class path is the same on every run as an AppCDS archive needs.
+#
+# ./build.sh cds also makes AppCDS archives of the classes the server and bots load, so new JVMs map them
+# straight in rather than loading and verifying each one. A fleet of bots plays against the server from
+# the image for a few seconds, and each JVM writes an archive of every class it loaded as it exits:
+# the server's to build/server-image/app/server.jsa, which bin/dungeon-server uses from then on, and the
+# bots' to build/cds/bot.jsa, used with
+#   java -XX:SharedArchiveFile=build/cds/bot.jsa -cp "$(pwd)/build/jars/dungeon-bot.jar" BotFleet ...
+# An archive is only used with the same java and the same jars at the same paths, so run cds again after
+# every build. StartupBenchmark times how much sooner each starts with its archive.
+#
+# Usage: ./build.sh [jars|image|cds|clean]    (no argument builds both the jars and the image)
+#
+# @author 18181
+
+set -e
+cd "$(dirname "$0")"
+
+BUILD=build
+JARS=$BUILD/jars
+IMAGE=$BUILD/server-image
+
+# the sources of each module
+COMMON="BinaryProtocol ExploredWorld GridPathfinder HierarchicalPathfinder IGrid IntMinHeap TileAtlas"
+SERVER="BinaryMapFile CharGridTileStorage ConnectionMode CooperativePlanner DirtyTileTracker DistanceField DungeonServer GameEngineGUI GameTickLoop
+	HeadlessServer IGameLogic IGameObserver IServerFunctionality ITileLoader LookSubscriptions Map MapCanvas MapConverter
+	MappedTileStorage NioConnectionEngine NioPlayerConnection OccupancyIndex PackedTileStorage PlayerConnection ReservationTable
+	StartServer TileLayout TileStorage VirtualThreads"
+CLIENT="Bot DungeonClient Main PlayGame PlayerGUI StartClient"
+BOT="BotBrain BotFleet HeadlessBot LatencyHistogram LoadTest LoadTestPlayer"
+BENCH="BenchmarkRunner CooperationBenchmark ExplorationBenchmark GameBenchmarks RouteBenchmark StartupBenchmark TileStorageBenchmark"
+
+# sources which are only run by hand whilst developing, and aren't packaged
+UNPACKAGED="TestGameLogic TestTileClaims TestDistanceField TestHierarchicalPathfinder TestCooperativePlanner"
+
+# the port the server is trained on by ./build.sh cds
+CDS_PORT=40099
+
+# the timestamp of every file in the jars, and the time zone it is written in
+STAMP=198001010000.00
+TZ=UTC
+export TZ
+
+# check every source is in a module, so a new class can't be left out of the jars by mistake
+check_sources() {
+	for source in *.java; do
+		case " $(echo $COMMON $SERVER $CLIENT $BOT $BENCH $UNPACKAGED) " in
+			*" ${source%.java} "*) ;;
+			*) echo "$source is not in any module - add it to one in build.sh" >&2; exit 1 ;;
+		esac
+	done
+}
+
+# compile_module <name> <main class or -> <module jars it uses> <classes...>
+compile_module() {
+	name=$1
+	main=$2
+	uses=$3
+	shift 3
+
+	classes=$BUILD/classes/$name
+	rm -rf "$classes"
+	mkdir -p "$classes/META-INF"
+
+	# the class path is the jars of the modules used, and nothing else
+	classpath=$BUILD/empty
+	manifestPath=
+	for module in $uses; do
+		classpath=$classpath:$JARS/dungeon-$module.jar
+		manifestPath="$manifestPath dungeon-$module.jar"
+	done
+
+	sources=
+	for class in "$@"; do
+		sources="$sources $class.java"
+	done
+	javac -encoding UTF-8 --release 17 -Xlint:all -Werror -cp "$classpath" -sourcepath "$BUILD/empty" -d "$classes" $sources
+
+	# the manifest is written here rather than by jar, which would stamp it with the time of the build
+	{
+		echo "Manifest-Version: 1.0"
+		echo "Implementation-Title: dungeon-$name"
+		if [ "$main" != "-" ]; then
+			echo "Main-Class: $main"
+		fi
+		if [ -n "$manifestPath" ]; then
+			echo "Class-Path:$manifestPath"
+		fi
+	} > "$classes/META-INF/MANIFEST.MF"
+
+	# same timestamps and order every time, manifest first
+	find "$classes" -exec touch -t $STAMP {} +
+	jar="$(pwd)/$JARS/dungeon-$name.jar"
+	rm -f "$jar"
+	(cd "$classes" && jar --create --no-manifest --file "$jar" META-INF/MANIFEST.MF $(find . -name '*.class' | sed 's|^\./||' | LC_ALL=C sort))
+	echo "Built $JARS/dungeon-$name.jar"
+}
+
+build_jars() {
+	check_sources
+	mkdir -p "$JARS" "$BUILD/empty"
+
+	compile_module common - "" $COMMON
+	compile_module server StartServer "common" $SERVER
+	compile_module client StartClient "common" $CLIENT
+	compile_module bot BotFleet "common" $BOT
+	compile_module bench GameBenchmarks "server client bot common" $BENCH
+}
+
+build_image() {
+	rm -rf "$IMAGE"
+
+	# only the JDK modules the server uses, without anything needed to develop against them
+	modules=$(jdeps --print-module-deps --ignore-missing-deps -cp "$JARS/dungeon-common.jar" "$JARS/dungeon-server.jar")
+	jlink --add-modules "$modules" --strip-debug --no-header-files --no-man-pages --output "$IMAGE"
+
+	# linked images have no class data sharing archive for the JDK classes until one is generated
+	"$IMAGE/bin/java" -Xshare:dump > /dev/null
+
+	mkdir -p "$IMAGE/app"
+	cp "$JARS/dungeon-server.jar" "$JARS/dungeon-common.jar" "$IMAGE/app/"
+	cp -R maps img "$IMAGE/"
+
+	# maps and images are found relative to the working directory, so the server runs from the image
+	cat > "$IMAGE/bin/dungeon-server" <<'LAUNCHER'
+#!/bin/sh
+# Runs the headless server, e.g. bin/dungeon-server 40004 example_map NIO 20
+# Options for the JVM can be given in JAVA_OPTS.
+IMAGE="$(cd "$(dirname "$0")/.." && pwd)"
+cd "$IMAGE"
+# use the archive of the server's classes made by ./build.sh cds, if there is one
+CDS=
+if [ -f "$IMAGE/app/server.jsa" ]; then
+	CDS="-XX:SharedArchiveFile=$IMAGE/app/server.jsa"
+fi
+exec "$IMAGE/bin/java" $CDS $JAVA_OPTS -cp "$IMAGE/app/dungeon-server.jar" HeadlessServer "$@"
+LAUNCHER
+	chmod +x "$IMAGE/bin/dungeon-server"
+	echo "Built $IMAGE with $modules"
+}
+
+build_cds() {
+	mkdir -p "$BUILD/cds"
+	rm -f "$IMAGE/app/server.jsa" "$BUILD/cds/bot.jsa"
+	bots="$(pwd)/$JARS/dungeon-bot.jar"
+
+	JAVA_OPTS="-XX:ArchiveClassesAtExit=$(pwd)/$IMAGE/app/server.jsa" "$IMAGE/bin/dungeon-server" $CDS_PORT example_map > "$BUILD/cds/server.log" 2>&1 &
+	server=$!
+
+	# wait for the server to answer a bot before training the bots against it
+	attempts=0
+	until java -cp "$bots" BotFleet localhost $CDS_PORT 1 0 0 2> /dev/null | grep -q "1 bots started"; do
+		attempts=$((attempts + 1))
+		if [ $attempts -ge 30 ]; then
+			kill $server
+			echo "the server did not start - see $BUILD/cds/server.log" >&2
+			exit 1
+		fi
+		sleep 1
+	done
+
+	java -XX:ArchiveClassesAtExit="$(pwd)/$BUILD/cds/bot.jsa" -cp "$bots" BotFleet localhost $CDS_PORT 20 10 5 > /dev/null
+
+	# the server writes its archive as it shuts down
+	kill $server
+	wait $server || true
+	if [ ! -f "$IMAGE/app/server.jsa" ] || [ ! -f "$BUILD/cds/bot.jsa" ]; then
+		echo "the archives were not written - see $BUILD/cds/server.log" >&2
+		exit 1
+	fi
+	echo "Built $IMAGE/app/server.jsa and $BUILD/cds/bot.jsa"
+}
+
+case "${1:-all}" in
+	jars) build_jars ;;
+	image|all) build_jars; build_image ;;
+	cds) build_jars; build_image; build_cds ;;
+	clean) rm -rf "$BUILD" ;;
+	*) echo "usage: ./build.sh [jars|image|cds|clean]" >&2; exit 1 ;;
+esac